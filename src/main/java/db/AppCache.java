@@ -0,0 +1,347 @@
+package db;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - In-process read-through cache of AppInfo rows keyed by primitive appid
+ * > Loaded in bulk through a streaming cursor and invalidated by exactly the rows each update batch touches
+ * > Misses are read through from the database on the cache's own connection (unknown appids are cached as missing)
+ * > Uses an open-addressing int-keyed table to avoid boxing 250k+ keys
+ */
+public class AppCache {
+    // Marker For Appids Not in the Database
+    private static final AppInfoRow MISSING = new AppInfoRow(0, null, 0, null, null, null);
+
+    private static final int EMPTY_KEY = 0; // appid 0 is Never a Steam App
+    private static final double MAX_LOAD = 0.6;
+
+    // JDBC Connection (Separate From the Update Connection)
+    private Connection conn;
+
+    // Logging
+    private final Logger logger;
+
+    // Open-Addressing Table
+    private int[] keys;
+    private AppInfoRow[] values;
+    private int size;
+    private final ReentrantReadWriteLock lock;
+
+    // Incremented on Every Invalidation so Stale Read-Throughs Are Not Installed
+    private final AtomicLong generation;
+
+    // Appids Invalidated During a Bulk Load (Removed Again Once the Load's Snapshot is Installed)
+    private boolean loading;
+    private int[] loadInvalidations;
+    private int loadInvalidationCount;
+
+    // Counters
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Constructor - Creates an empty AppCache
+     * @param logger is the existing logger
+     */
+    public AppCache(Logger logger) {
+        this.logger = logger;
+        this.keys = new int[1 << 16];
+        this.values = new AppInfoRow[1 << 16];
+        this.lock = new ReentrantReadWriteLock();
+        this.generation = new AtomicLong();
+        this.loadInvalidations = new int[64];
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Method to open the cache's own database connection
+     * @param info is the database connection info
+     * @return true on success
+     */
+    public boolean open(DatabaseInfo info) {
+        try {
+            conn = DBConnector.connect(info);
+            return true;
+        }
+        catch (ClassNotFoundException | SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Open AppCache Connection To Database");
+        }
+        return false;
+    }
+
+    /**
+     * Method to close the cache's database connection
+     */
+    public void close() {
+        try {
+            if(conn != null) {
+                conn.close();
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Close AppCache Connection To Database");
+        }
+    }
+
+    /**
+     * Method to bulk load all AppInfo rows into the cache
+     * > Rows read through or invalidated while loading take precedence over the load's snapshot
+     */
+    public void load() {
+        long start = Utils.getTimeSource().currentTimeMillis();
+        int loaded = 0;
+        setLoading(true);
+
+        try(Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE); // Stream Rows
+            ResultSet rs = stmt.executeQuery(getSnapshotApps);
+
+            while(rs.next()) {
+                AppInfoRow row = readRow(rs);
+                putIfAbsent(row.appid(), row);
+                loaded++;
+            }
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("AppCache Loaded %d Apps in %dms", loaded, Utils.getTimeSource().currentTimeMillis() - start));
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Load AppCache After %d Apps", loaded));
+        }
+        finally {
+            setLoading(false);
+        }
+    }
+
+    /**
+     * Method to get an app, reading it through from the database on a miss
+     * @param appid is the given appid
+     * @return AppInfoRow or null if the app is not in the database
+     */
+    public AppInfoRow get(int appid) {
+        if(appid == EMPTY_KEY) {
+            return null;
+        }
+
+        AppInfoRow row = find(appid);
+        if(row != null) {
+            hits.incrementAndGet();
+            return row == MISSING ? null : row;
+        }
+        misses.incrementAndGet();
+
+        // Read Through From Database
+        long readGeneration = generation.get();
+        row = readThrough(appid);
+        if(row == null) {
+            return null; // Database Error, Not Cached
+        }
+
+        // Only Install if Nothing Was Invalidated During the Read
+        if(readGeneration == generation.get()) {
+            putIfAbsent(appid, row);
+        }
+        return row == MISSING ? null : row;
+    }
+
+    /**
+     * Method to invalidate the cached rows of the given appids
+     * @param appids are the appids touched by an update batch
+     */
+    public void invalidate(int... appids) {
+        generation.incrementAndGet();
+
+        lock.writeLock().lock();
+        try {
+            for(int appid : appids) {
+                remove(appid);
+
+                // Remember Invalidations the Load's Snapshot May Still Overwrite
+                if(loading) {
+                    if(loadInvalidationCount == loadInvalidations.length) {
+                        loadInvalidations = Arrays.copyOf(loadInvalidations, loadInvalidationCount * 2);
+                    }
+                    loadInvalidations[loadInvalidationCount++] = appid;
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method to get the number of cached rows
+     * @return cache size
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to get cache hit and miss counts as a string
+     * @return hit/miss summary
+     */
+    public String getStats() {
+        return String.format("%d Apps, %d Hits, %d Misses", size(), hits.get(), misses.get());
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to start or finish a bulk load, dropping rows invalidated during it when finished
+     */
+    private void setLoading(boolean loading) {
+        lock.writeLock().lock();
+        try {
+            if(!loading) {
+                for(int i = 0; i < loadInvalidationCount; i++) {
+                    remove(loadInvalidations[i]);
+                }
+            }
+            this.loading = loading;
+            loadInvalidationCount = 0;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method to read a single app from the database
+     * @return AppInfoRow, MISSING if not in the database or null on failure
+     */
+    private AppInfoRow readThrough(int appid) {
+        // Connection Shared by Lookup Threads
+        synchronized(this) {
+            try(PreparedStatement pStmt = conn.prepareStatement(getAppInfoRow)) {
+                pStmt.setInt(1, appid);
+                ResultSet rs = pStmt.executeQuery();
+                return rs.next() ? readRow(rs) : MISSING;
+            }
+            catch (SQLException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, appid, "AppCache Failed to Read App: " + appid);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to read a row of {appid, name, last_update, type, header_image, background}
+     */
+    static AppInfoRow readRow(ResultSet rs) throws SQLException {
+        Timestamp lastUpdate = rs.getTimestamp(3);
+        return new AppInfoRow(rs.getInt(1), rs.getString(2), lastUpdate == null ? 0 : lastUpdate.getTime(),
+                rs.getString(4), rs.getString(5), rs.getString(6));
+    }
+
+    private AppInfoRow find(int appid) {
+        lock.readLock().lock();
+        try {
+            int mask = keys.length - 1;
+            for(int i = mix(appid) & mask; keys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+                if(keys[i] == appid) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putIfAbsent(int appid, AppInfoRow row) {
+        lock.writeLock().lock();
+        try {
+            if(size + 1 > keys.length * MAX_LOAD) {
+                resize();
+            }
+
+            int mask = keys.length - 1;
+            int i = mix(appid) & mask;
+            while(keys[i] != EMPTY_KEY) {
+                if(keys[i] == appid) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = appid;
+            values[i] = row;
+            size++;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method to remove a key, shifting back later entries of its probe chain (Write Lock Held)
+     */
+    private void remove(int appid) {
+        int mask = keys.length - 1;
+        int i = mix(appid) & mask;
+        while(keys[i] != appid) {
+            if(keys[i] == EMPTY_KEY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // Backward Shift Deletion
+        int j = i;
+        while(true) {
+            j = (j + 1) & mask;
+            if(keys[j] == EMPTY_KEY) {
+                break;
+            }
+            int home = mix(keys[j]) & mask;
+            if(((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY_KEY;
+        values[i] = null;
+        size--;
+    }
+
+    /**
+     * Method to double the table size (Write Lock Held)
+     */
+    private void resize() {
+        int[] oldKeys = keys;
+        AppInfoRow[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new AppInfoRow[oldKeys.length * 2];
+
+        int mask = keys.length - 1;
+        for(int k = 0; k < oldKeys.length; k++) {
+            if(oldKeys[k] != EMPTY_KEY) {
+                int i = mix(oldKeys[k]) & mask;
+                while(keys[i] != EMPTY_KEY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,260 @@
+package db;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - Dictionaries used by compact storage mode to shrink AppInfo rows
+ * > App types are stored as a TINYINT type_id backed by the AppTypes table
+ * > Image URLs are stored as a prefix_id (CDN prefix up to /apps/) plus the suffix after /apps/appid/
+ * > New types and prefixes are added to the dictionary tables on first use
+ * > Converting wide rows is recorded in MaintenanceTasks once complete, so later updates skip the AppInfo scan
+ */
+public class AppDictionary {
+    // Prefix Id For URLs Stored Whole in the Suffix Column
+    public static final int RAW_URL = 0;
+
+    // MaintenanceTasks Name of the Wide Row Conversion
+    private static final String COMPACT_TASK = "compact_existing_rows";
+
+    // JDBC Connection
+    private final Connection conn;
+
+    // Logging
+    private final Logger logger;
+
+    // Dictionaries
+    private final HashMap<String, Integer> typeIds;
+    private final HashMap<String, Integer> prefixIds;
+
+    // Record for Storing an Encoded URL
+    private record UrlPart(int prefixId, String suffix) {}
+
+    /**
+     * Constructor - Creates an empty AppDictionary for the given connection
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     */
+    public AppDictionary(Connection conn, Logger logger) {
+        this.conn = conn;
+        this.logger = logger;
+        this.typeIds = new HashMap<>();
+        this.prefixIds = new HashMap<>();
+    }
+
+    /**
+     * Method to load the type and prefix dictionaries from the database
+     */
+    public void load() {
+        typeIds.clear();
+        prefixIds.clear();
+
+        try(Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(getAllAppTypes);
+            while(rs.next()) {
+                typeIds.put(rs.getString(2), rs.getInt(1));
+            }
+
+            rs = stmt.executeQuery(getAllUrlPrefixes);
+            while(rs.next()) {
+                prefixIds.put(rs.getString(2), rs.getInt(1));
+            }
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("Compact Storage Dictionaries Loaded: %d Types, %d URL Prefixes", typeIds.size(), prefixIds.size()));
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Load Compact Storage Dictionaries");
+        }
+    }
+
+    /**
+     * Method to encode an app entry into its compact form
+     * @param entry is the app entry
+     * @return CompactAppEntry or null if the dictionaries could not be updated
+     */
+    public CompactAppEntry encode(AppEntry entry) {
+        try {
+            int typeId = getTypeId(entry.type());
+            UrlPart header = encodeUrl(entry.appid(), entry.header_image());
+            UrlPart background = encodeUrl(entry.appid(), entry.background());
+
+            return new CompactAppEntry(entry.appid(), typeId, header.prefixId(), header.suffix(),
+                    background.prefixId(), background.suffix(), entry.contentHash());
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, entry.appid(), "Failed to Encode Compact Entry For: " + entry.appid());
+        }
+        return null;
+    }
+
+    /**
+     * Method to convert rows stored in wide form to compact form in batches
+     * > Skipped once a run found no wide rows left, until resetCompaction marks it due again
+     * @param batchSize is the number of rows converted per transaction
+     * @return number of rows converted
+     */
+    public int compactExistingRows(int batchSize) {
+        int compacted = 0;
+
+        try {
+            if(isTaskComplete(COMPACT_TASK)) {
+                return 0;
+            }
+
+            while(true) {
+                // Get Next Batch of Wide Rows
+                ArrayList<AppEntry> entries = new ArrayList<>();
+                try(PreparedStatement pStmt = conn.prepareStatement(getWideAppsToCompact)) {
+                    pStmt.setInt(1, batchSize);
+                    ResultSet rs = pStmt.executeQuery();
+
+                    while(rs.next()) {
+                        entries.add(new AppEntry(rs.getInt(1), rs.getString(2), nullToEmpty(rs.getString(3)), nullToEmpty(rs.getString(4))));
+                    }
+                }
+
+                if(entries.isEmpty()) {
+                    completeTask(COMPACT_TASK); // No Wide Rows Left
+                    break;
+                }
+
+                // Rewrite Batch in Compact Form
+                try(PreparedStatement pStmt = conn.prepareStatement(compactApp)) {
+                    for(AppEntry entry : entries) {
+                        CompactAppEntry compact = encode(entry);
+                        if(compact == null) {
+                            return compacted;
+                        }
+                        setCompactColumns(pStmt, compact, 1);
+                        pStmt.setInt(7, compact.appid());
+                        pStmt.addBatch();
+                    }
+                    pStmt.executeBatch();
+                }
+                compacted += entries.size();
+            }
+
+            if(compacted > 0) {
+                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Converted %d Apps To Compact Storage", compacted));
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Convert Apps To Compact Storage After %d Apps", compacted));
+        }
+        return compacted;
+    }
+
+    /**
+     * Method to mark the conversion of wide rows as due again
+     * > Called when wide rows may have been written (Wide Storage Mode or a Snapshot Import)
+     */
+    public void resetCompaction() {
+        try(PreparedStatement pStmt = conn.prepareStatement(deleteCompletedTask)) {
+            pStmt.setString(1, COMPACT_TASK);
+            pStmt.executeUpdate();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Reset Compact Storage Conversion");
+        }
+    }
+
+    /**
+     * Method to set the compact columns of a prepared statement
+     * {type_id, header_prefix, header_suffix, background_prefix, background_suffix, content_hash}
+     * @param pStmt is the prepared statement
+     * @param entry is the compact entry
+     * @param start is the first parameter index
+     */
+    public static void setCompactColumns(PreparedStatement pStmt, CompactAppEntry entry, int start) throws SQLException {
+        pStmt.setInt(start, entry.typeId());
+        pStmt.setInt(start + 1, entry.headerPrefix());
+        pStmt.setString(start + 2, entry.headerSuffix());
+        pStmt.setInt(start + 3, entry.backgroundPrefix());
+        pStmt.setString(start + 4, entry.backgroundSuffix());
+        pStmt.setLong(start + 5, entry.contentHash());
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to check if a maintenance task is recorded as complete
+     */
+    private boolean isTaskComplete(String task) throws SQLException {
+        try(PreparedStatement pStmt = conn.prepareStatement(getCompletedTask)) {
+            pStmt.setString(1, task);
+            return pStmt.executeQuery().next();
+        }
+    }
+
+    /**
+     * Method to record a maintenance task as complete
+     */
+    private void completeTask(String task) throws SQLException {
+        try(PreparedStatement pStmt = conn.prepareStatement(insertCompletedTask)) {
+            pStmt.setString(1, task);
+            pStmt.setTimestamp(2, new Timestamp(Utils.getTimeSource().currentTimeMillis()));
+            pStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Method to get the id of a type, adding it to the dictionary if new
+     */
+    private int getTypeId(String type) throws SQLException {
+        Integer id = typeIds.get(type);
+        if(id == null) {
+            id = intern(insertAppType, getAppTypeId, type);
+            typeIds.put(type, id);
+        }
+        return id;
+    }
+
+    /**
+     * Method to encode a URL as a prefix id and suffix
+     * > https://cdn/.../apps/<appid>/header.jpg?t=1 -> {id of https://cdn/.../apps/, header.jpg?t=1}
+     */
+    private UrlPart encodeUrl(int appid, String url) throws SQLException {
+        String marker = "/apps/" + appid + "/";
+        int idx = url.indexOf(marker);
+
+        // Store Unrecognized URLs Whole
+        if(idx < 0) {
+            return new UrlPart(RAW_URL, url);
+        }
+
+        String prefix = url.substring(0, idx + "/apps/".length());
+        Integer id = prefixIds.get(prefix);
+        if(id == null) {
+            id = intern(insertUrlPrefix, getUrlPrefixId, prefix);
+            prefixIds.put(prefix, id);
+        }
+        return new UrlPart(id, url.substring(idx + marker.length()));
+    }
+
+    /**
+     * Method to add a value to a dictionary table and return its id
+     */
+    private int intern(String insertQuery, String selectQuery, String value) throws SQLException {
+        try(PreparedStatement insert = conn.prepareStatement(insertQuery);
+            PreparedStatement select = conn.prepareStatement(selectQuery)) {
+            insert.setString(1, value);
+            insert.executeUpdate();
+
+            // Select Id (Another Node May Have Added The Value First)
+            select.setString(1, value);
+            ResultSet rs = select.executeQuery();
+            if(!rs.next()) {
+                throw new SQLException("Dictionary Value Not Found After Insert: " + value);
+            }
+            logger.log(Logger.LOG_TYPE_UPDATE, "Added To Compact Storage Dictionary: " + value);
+            return rs.getInt(1);
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,170 @@
+package db;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - Append-only history of app details in the monthly partitioned AppInfoHistory table
+ * > A history row is only written when an app's content hash changes (or it had none)
+ * > Rows are written with multi-row inserts inside the AppWriter's batch transaction
+ * > Month partitions are added ahead of time and whole months are dropped once past the retention period
+ */
+public class AppHistory {
+    // Default Number of Months of History Kept
+    private static final int DEFAULT_RETENTION_MONTHS = 24;
+
+    // Months of Partitions Created Ahead of the Current Month
+    private static final int MONTHS_AHEAD = 1;
+
+    // JDBC Connection
+    private final Connection conn;
+
+    // Logging
+    private final Logger logger;
+
+    // Months of History Kept
+    private final int retentionMonths;
+
+    /**
+     * Constructor - Creates an AppHistory for the given connection
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     * @param retentionMonths is the number of months of history kept
+     */
+    public AppHistory(Connection conn, Logger logger, int retentionMonths) {
+        this.conn = conn;
+        this.logger = logger;
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Method to create an AppHistory from the steam.history system properties
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     * @return AppHistory or null if history is not enabled
+     */
+    public static AppHistory fromSystemProperties(Connection conn, Logger logger) {
+        if(!Boolean.getBoolean("steam.history")) {
+            return null;
+        }
+        return new AppHistory(conn, logger, Math.max(1, Integer.getInteger("steam.history.retention.months", DEFAULT_RETENTION_MONTHS)));
+    }
+
+    /**
+     * Method to add upcoming month partitions and drop partitions past the retention period
+     */
+    public void maintainPartitions() {
+        LocalDate month = Utils.getTimeSource().now().toLocalDate().withDayOfMonth(1);
+
+        try(Statement stmt = conn.createStatement()) {
+            HashSet<String> partitions = new HashSet<>();
+            ResultSet rs = stmt.executeQuery(getHistoryPartitions);
+            while(rs.next()) {
+                partitions.add(rs.getString(1));
+            }
+
+            // Add Current and Upcoming Months (In Order, Each Split From p_future)
+            for(int i = 0; i <= MONTHS_AHEAD; i++) {
+                LocalDate partitionMonth = month.plusMonths(i);
+                String name = getPartitionName(partitionMonth);
+                if(!partitions.contains(name) && !hasLaterPartition(partitions, partitionMonth)) {
+                    stmt.executeUpdate(String.format(addHistoryPartition, name, partitionMonth.plusMonths(1)));
+                    partitions.add(name);
+                    logger.log(Logger.LOG_TYPE_UPDATE, "Added AppInfoHistory Partition: " + name);
+                }
+            }
+
+            // Drop Months Past Retention
+            String oldestKept = getPartitionName(month.minusMonths(retentionMonths));
+            for(String name : partitions) {
+                if(!name.equals("p_future") && name.compareTo(oldestKept) < 0) {
+                    stmt.executeUpdate(String.format(dropHistoryPartition, name));
+                    logger.log(Logger.LOG_TYPE_UPDATE, "Dropped Expired AppInfoHistory Partition: " + name);
+                }
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Maintain AppInfoHistory Partitions - SQL Exception {%d}", e.getErrorCode()));
+        }
+    }
+
+    /**
+     * Method to get the entries of a batch whose content changed (Within the Batch Transaction)
+     * @param entries are the entries about to be written
+     * @return entries with a new content hash
+     */
+    public ArrayList<AppEntry> getChangedEntries(ArrayList<AppEntry> entries) throws SQLException {
+        HashMap<Integer, Long> hashes = new HashMap<>();
+
+        try(PreparedStatement pStmt = conn.prepareStatement(getContentHashesQuery(entries.size()))) {
+            for(int i = 0; i < entries.size(); i++) {
+                pStmt.setInt(i + 1, entries.get(i).appid());
+            }
+            ResultSet rs = pStmt.executeQuery();
+            while(rs.next()) {
+                long hash = rs.getLong(2);
+                if(!rs.wasNull()) {
+                    hashes.put(rs.getInt(1), hash);
+                }
+            }
+        }
+
+        ArrayList<AppEntry> changed = new ArrayList<>();
+        for(AppEntry entry : entries) {
+            Long hash = hashes.get(entry.appid());
+            if(hash == null || hash != entry.contentHash()) {
+                changed.add(entry);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Method to insert history rows for changed entries (Within the Batch Transaction)
+     * @param changed are the changed entries
+     * @param changedAt is the time of the change
+     */
+    public void insert(ArrayList<AppEntry> changed, Timestamp changedAt) throws SQLException {
+        if(changed.isEmpty()) {
+            return;
+        }
+
+        try(PreparedStatement pStmt = conn.prepareStatement(getInsertAppHistoryQuery(changed.size()))) {
+            int cnt = 1;
+            for(AppEntry entry : changed) {
+                pStmt.setInt(cnt++, entry.appid());
+                pStmt.setTimestamp(cnt++, changedAt);
+                pStmt.setString(cnt++, entry.type());
+                pStmt.setString(cnt++, entry.header_image());
+                pStmt.setString(cnt++, entry.background());
+                pStmt.setLong(cnt++, entry.contentHash());
+            }
+            pStmt.executeUpdate();
+        }
+    }
+
+    // *** Private Methods ***
+
+    private static String getPartitionName(LocalDate month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Method to check whether a month partition after the given month exists (Partitions Can Only Be Added at the End)
+     */
+    private static boolean hasLaterPartition(HashSet<String> partitions, LocalDate month) {
+        String name = getPartitionName(month);
+        for(String partition : partitions) {
+            if(!partition.equals("p_future") && partition.compareTo(name) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,228 @@
+package db;
+
+import java.sql.*;
+import java.util.ArrayList;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - Writes fetched app details to the database in batched transactions
+ * > Entries are buffered and written together with one batched UPDATE per flush
+ * > When history is enabled the batch's changed apps are written to AppInfoHistory in the same transaction
+ * > Pending NegativeCache changes are written in the same transaction, even when no entries are buffered
+ * > Written apps only have their lease cleared if this node holds it, so a lease taken over by another node is kept
+ * > Entries that cannot be encoded in compact form are skipped and their leases released, so another batch can retry them
+ * > Write and history time are tracked so the cost of history can be compared to the total write time
+ */
+public class AppWriter {
+    // JDBC Connection
+    private final Connection conn;
+
+    // Logging
+    private final Logger logger;
+
+    // Compact Storage Dictionary (null When Storing Wide Rows)
+    private final AppDictionary dictionary;
+
+    // App History (null if Disabled)
+    private final AppHistory history;
+
+    // Negative Cache Written With Each Batch (null if Not Used)
+    private final NegativeCache negativeCache;
+
+    // Lease Owner Id of this Node
+    private final String leaseOwner;
+
+    // Buffered Entries
+    private final ArrayList<AppEntry> pending;
+
+    // Write Timing
+    private long writeNanos;
+    private long historyNanos;
+    private int writtenApps;
+    private int historyRows;
+
+    /**
+     * Constructor - Creates an AppWriter for the given connection
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     * @param dictionary is the compact storage dictionary or null to write wide rows
+     * @param history is the app history or null if disabled
+     * @param negativeCache is the negative cache whose changes are written with each batch or null if not used
+     * @param leaseOwner is the lease owner id of this node
+     */
+    public AppWriter(Connection conn, Logger logger, AppDictionary dictionary, AppHistory history, NegativeCache negativeCache, String leaseOwner) {
+        this.conn = conn;
+        this.logger = logger;
+        this.dictionary = dictionary;
+        this.history = history;
+        this.negativeCache = negativeCache;
+        this.leaseOwner = leaseOwner;
+        this.pending = new ArrayList<>();
+    }
+
+    /**
+     * Method to buffer an entry until the next flush
+     * @param entry is the entry info
+     */
+    public void add(AppEntry entry) {
+        pending.add(entry);
+    }
+
+    /**
+     * Method to write all buffered entries in a single transaction
+     * @return entries written or null if the transaction failed
+     */
+    public ArrayList<AppEntry> flush() {
+        ArrayList<AppEntry> entries = new ArrayList<>();
+
+        // Encode Compact Forms Before the Transaction (Dictionary Inserts Commit on Their Own)
+        ArrayList<CompactAppEntry> compacts = new ArrayList<>();
+        ArrayList<Integer> unencoded = new ArrayList<>();
+        for(AppEntry entry : pending) {
+            if(dictionary != null) {
+                CompactAppEntry compact = dictionary.encode(entry);
+                if(compact == null) {
+                    unencoded.add(entry.appid());
+                    continue;
+                }
+                compacts.add(compact);
+            }
+            entries.add(entry);
+        }
+        pending.clear();
+
+        // Release Skipped Apps For a Later Retry
+        if(!unencoded.isEmpty()) {
+            logger.log(Logger.LOG_TYPE_WARNING, String.format("Skipped %d Apps That Could Not Be Encoded - Releasing Their Leases", unencoded.size()));
+            releaseLeases(unencoded);
+        }
+
+        boolean cacheChanges = negativeCache != null && negativeCache.hasPending();
+        if(entries.isEmpty() && !cacheChanges) {
+            return entries;
+        }
+
+        long start = System.nanoTime();
+        try {
+            conn.setAutoCommit(false);
+
+            // Find Real Changes Before Overwriting
+            long historyStart = System.nanoTime();
+            ArrayList<AppEntry> changed = history != null && !entries.isEmpty() ? history.getChangedEntries(entries) : null;
+            long historyTime = System.nanoTime() - historyStart;
+
+            // Update Apps
+            Timestamp now = new Timestamp(Utils.getTimeSource().currentTimeMillis());
+            try(PreparedStatement pStmt = conn.prepareStatement(dictionary != null ? updateAppCompact : updateApp)) {
+                for(int i = 0; i < entries.size(); i++) {
+                    AppEntry entry = entries.get(i);
+                    int cnt = 1;
+                    pStmt.setTimestamp(cnt++, now);
+                    if(dictionary != null) {
+                        AppDictionary.setCompactColumns(pStmt, compacts.get(i), cnt);
+                        cnt += 6;
+                    }
+                    else {
+                        pStmt.setString(cnt++, entry.type());
+                        pStmt.setString(cnt++, entry.header_image());
+                        pStmt.setString(cnt++, entry.background());
+                        pStmt.setLong(cnt++, entry.contentHash());
+                    }
+                    pStmt.setString(cnt++, leaseOwner);
+                    pStmt.setString(cnt++, leaseOwner);
+                    pStmt.setInt(cnt, entry.appid());
+                    pStmt.addBatch();
+                }
+                pStmt.executeBatch();
+            }
+
+            // Append History of Changed Apps
+            if(changed != null) {
+                historyStart = System.nanoTime();
+                history.insert(changed, now);
+                historyTime += System.nanoTime() - historyStart;
+            }
+
+            // Write Negative Cache Changes
+            if(cacheChanges) {
+                negativeCache.writePending();
+            }
+
+            conn.commit();
+            if(cacheChanges) {
+                negativeCache.pendingWritten();
+            }
+            historyRows += changed != null ? changed.size() : 0;
+            historyNanos += historyTime;
+            writeNanos += System.nanoTime() - start;
+            writtenApps += entries.size();
+            return entries;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed To Write Batch of %d Apps - SQL Exception {%d}", entries.size(), e.getErrorCode()));
+            rollback();
+        }
+        finally {
+            try {
+                conn.setAutoCommit(true);
+            }
+            catch (SQLException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed To Restore Auto-Commit After App Batch");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to log write timing since the last call and reset it
+     * > History time is the share of the write time spent finding changes and inserting history rows
+     */
+    public void logTiming() {
+        if(writtenApps == 0) {
+            return;
+        }
+
+        if(history != null) {
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("App Writes: %d Apps in %dms - History: %d Rows in %dms (%.1f%% of Write Time)",
+                    writtenApps, writeNanos / 1000000, historyRows, historyNanos / 1000000, 100.0 * historyNanos / Math.max(1, writeNanos)));
+        }
+        else {
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("App Writes: %d Apps in %dms", writtenApps, writeNanos / 1000000));
+        }
+        writeNanos = 0;
+        historyNanos = 0;
+        writtenApps = 0;
+        historyRows = 0;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to release this node's leases of apps that were not written
+     * @param appids is the list of appids to release
+     */
+    private void releaseLeases(ArrayList<Integer> appids) {
+        try(PreparedStatement pStmt = conn.prepareStatement(getReleaseAppLeasesQuery(appids.size()))) {
+            int cnt = 1;
+            pStmt.setString(cnt++, leaseOwner);
+            for(int appid : appids) {
+                pStmt.setInt(cnt++, appid);
+            }
+            pStmt.executeUpdate();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed To Release %d App Leases - SQL Exception {%d}", appids.size(), e.getErrorCode()));
+        }
+    }
+
+    private void rollback() {
+        try {
+            conn.rollback();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Roll Back App Batch");
+        }
+    }
+}
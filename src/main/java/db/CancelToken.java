@@ -0,0 +1,55 @@
+package db;
+
+/**
+ * Class - Cooperative cancellation of a running update
+ * > cancel() only sets a flag that the update checks between fetches, so work in progress is never cut off mid-write
+ * > Waits made through the token (e.g. circuit pauses) return early once cancelled
+ */
+public class CancelToken {
+    // Cancellation State {Guarded by this}
+    private boolean cancelled;
+
+    /**
+     * Method to request cancellation (Any Thread)
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Method to clear a cancellation before a new update starts
+     */
+    public synchronized void reset() {
+        cancelled = false;
+    }
+
+    /**
+     * Method to check if cancellation was requested
+     * @return true if cancelled
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Method to wait for a time, returning early if cancelled
+     * @param millis is the time to wait
+     * @return true if the full time passed or false if cancelled (or interrupted)
+     */
+    public synchronized boolean sleep(long millis) {
+        long end = Utils.getTimeSource().currentTimeMillis() + millis;
+        try {
+            long remaining = millis;
+            while(!cancelled && remaining > 0) {
+                Utils.getTimeSource().await(this, remaining);
+                remaining = end - Utils.getTimeSource().currentTimeMillis();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !cancelled;
+    }
+}
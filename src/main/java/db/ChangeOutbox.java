@@ -0,0 +1,339 @@
+package db;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Class - Append-only local outbox of AppInfo change events for downstream consumers
+ * > Events are buffered while a batch is written to the database and appended (and synced) once the batch is written
+ * > Each event gets a monotonically increasing offset, consumers tail the outbox from their last offset with OutboxReader
+ * > Events are stored as JSON lines in segment files named by their first offset, rotated by size and pruned by count
+ * > Delivery is at-most-once: the outbox is appended after the database commit, not inside it, so events of a batch are lost
+ *   if the append fails or the process dies between the commit and the append (lost events leave no offset gap)
+ *
+ * Event Line: {"offset": long, "time": epoch millis, "event": inserted|renamed|updated|invalidated, "appid": int,
+ *              "name": string (inserted/renamed), "type", "header_image", "background": string (updated)}
+ */
+public class ChangeOutbox {
+    // Event Types
+    public static final int EVENT_INSERTED = 0;
+    public static final int EVENT_RENAMED = 1;
+    public static final int EVENT_UPDATED = 2;
+    public static final int EVENT_INVALIDATED = 3;
+    private static final String[] EVENT_NAMES = {"inserted", "renamed", "updated", "invalidated"};
+
+    // Segments
+    static final String SEGMENT_PREFIX = "changes-";
+    static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final long SEGMENT_MAX_BYTES = 64L * 1024 * 1024; // 64 MiB
+    private static final int MAX_SEGMENTS = 32; // Oldest Segments Beyond This Are Deleted
+
+    // Record for Storing a Change Event
+    public record ChangeEvent(long offset, long time, int event, int appid, String name, String type, String header_image, String background) {}
+
+    // Outbox Directory
+    private final Path dir;
+
+    // Logging
+    private final Logger logger;
+
+    // Open Segment
+    private FileChannel segment;
+    private long segmentSize;
+
+    // Offset of the Next Event
+    private long nextOffset;
+
+    // Events of the Current Batch Not Yet Appended
+    private final StringBuilder pending;
+    private long pendingOffset;
+
+    /**
+     * Constructor - Creates a ChangeOutbox writing to the given directory
+     * @param dir is the outbox directory
+     * @param logger is the existing logger
+     */
+    public ChangeOutbox(Path dir, Logger logger) {
+        this.dir = dir;
+        this.logger = logger;
+        this.pending = new StringBuilder();
+        this.nextOffset = -1;
+    }
+
+    /**
+     * Method to create an outbox from the steam.outbox.dir system property
+     * @param logger is the existing logger
+     * @return ChangeOutbox or null if the outbox is not enabled
+     */
+    public static ChangeOutbox fromSystemProperties(Logger logger) {
+        String dir = System.getProperty("steam.outbox.dir");
+        return dir == null || dir.isBlank() ? null : new ChangeOutbox(Paths.get(dir), logger);
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to add an inserted app event to the current batch
+     */
+    public void inserted(int appid, String name) {
+        add(EVENT_INSERTED, appid, name, null, null, null);
+    }
+
+    /**
+     * Method to add a renamed app event to the current batch
+     */
+    public void renamed(int appid, String name) {
+        add(EVENT_RENAMED, appid, name, null, null, null);
+    }
+
+    /**
+     * Method to add an updated or invalidated app event to the current batch
+     * @param entry is the app entry written to the database
+     */
+    public void updated(ConnectorInterface.AppEntry entry) {
+        if(entry.isValid()) {
+            add(EVENT_UPDATED, entry.appid(), null, entry.type(), entry.header_image(), entry.background());
+        }
+        else {
+            add(EVENT_INVALIDATED, entry.appid(), null, null, null, null);
+        }
+    }
+
+    /**
+     * Method to append the current batch's events to the outbox once the batch is written to the database
+     * @return true on success (events of a failed append are dropped)
+     */
+    public boolean commit() {
+        if(pending.isEmpty()) {
+            return true;
+        }
+
+        try {
+            openSegment();
+
+            byte[] bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while(buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            segment.force(false);
+            segmentSize += bytes.length;
+
+            pending.setLength(0);
+            pendingOffset = nextOffset;
+
+            // Rotate Full Segment
+            if(segmentSize >= SEGMENT_MAX_BYTES) {
+                rotate();
+            }
+            return true;
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Append Change Events To Outbox: " + e.getMessage());
+            close();
+
+            // Drop Batch and Re-Read Offset From Disk (Part of the Batch May Have Been Written)
+            pending.setLength(0);
+            nextOffset = -1;
+        }
+        return false;
+    }
+
+    /**
+     * Method to close the open segment
+     */
+    public void close() {
+        try {
+            if(segment != null) {
+                segment.close();
+            }
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Close Outbox Segment");
+        }
+        segment = null;
+    }
+
+    /**
+     * Method to get the offset the next event will be written at
+     * @return next offset or -1 if the outbox was not opened yet
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Method to list the outbox segments in offset order
+     * @param dir is the outbox directory
+     * @return segment paths ordered by first offset
+     */
+    static ArrayList<Path> listSegments(Path dir) throws IOException {
+        ArrayList<Path> segments = new ArrayList<>();
+        if(!Files.isDirectory(dir)) {
+            return segments;
+        }
+
+        try(Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(segments::add); // Zero-Padded Offsets Sort by Name
+        }
+        return segments;
+    }
+
+    /**
+     * Method to get the first offset of a segment from its file name
+     * @param segment is the segment path
+     * @return first offset in the segment
+     */
+    static long getBaseOffset(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Method to parse an event line
+     * @param line is a complete JSON line
+     * @return ChangeEvent
+     */
+    static ChangeEvent parse(String line) {
+        JSONObject json = new JSONObject(line);
+        String eventName = json.getString("event");
+
+        int event = -1;
+        for(int i = 0; i < EVENT_NAMES.length; i++) {
+            if(EVENT_NAMES[i].equals(eventName)) {
+                event = i;
+            }
+        }
+        return new ChangeEvent(json.getLong("offset"), json.getLong("time"), event, json.getInt("appid"),
+                json.optString("name", null), json.optString("type", null),
+                json.optString("header_image", null), json.optString("background", null));
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to add an event to the current batch
+     */
+    private void add(int event, int appid, String name, String type, String header_image, String background) {
+        if(nextOffset < 0) {
+            recover();
+        }
+
+        JSONObject json = new JSONObject()
+                .put("offset", nextOffset++)
+                .put("time", Utils.getTimeSource().currentTimeMillis())
+                .put("event", EVENT_NAMES[event])
+                .put("appid", appid);
+
+        // Unused Fields Are Left Out
+        if(name != null) {
+            json.put("name", name);
+        }
+        if(type != null) {
+            json.put("type", type).put("header_image", header_image).put("background", background);
+        }
+        pending.append(json).append('\n');
+    }
+
+    /**
+     * Method to find the next offset from the last segment, truncating a partially written last line
+     */
+    private void recover() {
+        nextOffset = 0;
+
+        try {
+            Files.createDirectories(dir);
+            ArrayList<Path> segments = listSegments(dir);
+            if(!segments.isEmpty()) {
+                Path last = segments.get(segments.size() - 1);
+                nextOffset = getBaseOffset(last);
+
+                try(FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    long size = channel.size();
+                    int tailSize = (int) Math.min(size, 64 * 1024);
+                    ByteBuffer tail = ByteBuffer.allocate(tailSize);
+                    channel.read(tail, size - tailSize);
+                    byte[] bytes = tail.array();
+
+                    // Drop Partial Line Left by an Interrupted Append
+                    int end = lastNewline(bytes, tailSize - 1);
+                    long validSize = size - tailSize + end + 1;
+                    if(validSize < size) {
+                        channel.truncate(validSize);
+                        channel.force(true);
+                        logger.log(Logger.LOG_TYPE_WARNING, "Truncated Partial Change Event in Outbox Segment: " + last.getFileName());
+                    }
+
+                    // Continue After Last Complete Event
+                    if(end >= 0) {
+                        int start = lastNewline(bytes, end - 1) + 1;
+                        nextOffset = parse(new String(bytes, start, end - start, StandardCharsets.UTF_8)).offset() + 1;
+                    }
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Recover Change Outbox Offset: " + e.getMessage());
+        }
+        pendingOffset = nextOffset;
+        logger.log(Logger.LOG_TYPE_UPDATE, "Change Outbox Opened at Offset: " + nextOffset);
+    }
+
+    /**
+     * Method to find the last newline at or before an index
+     * @return index of the newline or -1 if there is none
+     */
+    private static int lastNewline(byte[] bytes, int from) {
+        for(int i = from; i >= 0; i--) {
+            if(bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to open the last segment for appending, starting a new one if none exists
+     */
+    private void openSegment() throws IOException {
+        if(segment != null) {
+            return;
+        }
+
+        ArrayList<Path> segments = listSegments(dir);
+        Path path = segments.isEmpty() ? segmentPath(pendingOffset) : segments.get(segments.size() - 1);
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+    }
+
+    /**
+     * Method to start a new segment at the next offset and delete segments beyond the retention count
+     */
+    private void rotate() throws IOException {
+        close();
+        segment = FileChannel.open(segmentPath(nextOffset), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = 0;
+
+        ArrayList<Path> segments = listSegments(dir);
+        for(int i = 0; i < segments.size() - MAX_SEGMENTS; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Method to get the path of a segment starting at the given offset
+     */
+    private Path segmentPath(long baseOffset) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseOffset, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,227 @@
+package db;
+
+/**
+ * Class - Circuit breaker for a single Steam Web API endpoint
+ * > Closed: Requests flow normally while the failure rate of the recent call window stays below the threshold
+ * > Open: Requests fail fast until the open period ends (doubling on every failed probe)
+ * > Half-Open: A few probe requests are let through, closing the circuit if they all succeed
+ */
+public class CircuitBreaker {
+    // Circuit States
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    // Failure Rate Window
+    private static final int WINDOW_SIZE = 20; // Number of Recent Calls Tracked
+    private static final int MIN_CALLS = 10; // Minimum Calls in Window Before Tripping
+    private static final double FAILURE_RATE_THRESHOLD = 0.5; // Failure Rate to Trip Circuit
+
+    // Open Period
+    private static final long MIN_OPEN_MILLIS = 30 * 1000; // 30 Seconds
+    private static final long MAX_OPEN_MILLIS = 10 * 60 * 1000; // 10 Minutes
+
+    // Half-Open Probes
+    private static final int PROBE_COUNT = 3;
+
+    // Endpoint Name (For Logging)
+    private final String name;
+
+    // Logging
+    private Logger logger;
+
+    // Circuit State
+    private int state;
+    private long openUntil;
+    private long openMillis;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    // Failure Window {true = failure}
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    /**
+     * Constructor - Creates a closed CircuitBreaker for an endpoint
+     * @param name is the endpoint name
+     */
+    public CircuitBreaker(String name) {
+        this.name = name;
+        this.window = new boolean[WINDOW_SIZE];
+        this.openMillis = MIN_OPEN_MILLIS;
+        this.state = STATE_CLOSED;
+    }
+
+    /**
+     * Method to set the logger used for state change logging
+     * @param logger is the existing logger
+     */
+    public synchronized void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Method to check whether a request may be sent, moving an expired open circuit to half-open
+     * @return true if the request may be sent or false to fail fast
+     */
+    public synchronized boolean allowRequest() {
+        // Move to Half-Open Once Open Period Ends
+        if(state == STATE_OPEN && Utils.getTimeSource().currentTimeMillis() >= openUntil) {
+            setState(STATE_HALF_OPEN);
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+
+        switch(state) {
+            case STATE_CLOSED -> {
+                return true;
+            }
+            case STATE_HALF_OPEN -> {
+                // Allow Limited Probes
+                if(probesInFlight + probeSuccesses < PROBE_COUNT) {
+                    probesInFlight++;
+                    return true;
+                }
+                return false;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Method to record a successful request
+     */
+    public synchronized void recordSuccess() {
+        if(state == STATE_HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            probeSuccesses++;
+
+            // Close After All Probes Succeed
+            if(probeSuccesses >= PROBE_COUNT) {
+                openMillis = MIN_OPEN_MILLIS;
+                clearWindow();
+                setState(STATE_CLOSED);
+            }
+            return;
+        }
+        addToWindow(false);
+    }
+
+    /**
+     * Method to record a failed request, tripping the circuit if needed
+     */
+    public synchronized void recordFailure() {
+        // Failed Probe Re-Opens With a Longer Period
+        if(state == STATE_HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            openMillis = Math.min(openMillis * 2, MAX_OPEN_MILLIS);
+            open();
+            return;
+        }
+
+        if(state == STATE_CLOSED) {
+            addToWindow(true);
+
+            // Trip When Failure Rate is Exceeded
+            if(windowCount >= MIN_CALLS && (double) windowFailures / windowCount >= FAILURE_RATE_THRESHOLD) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Method to get the current circuit state
+     * @return circuit state (STATE_*)
+     */
+    public synchronized int getState() {
+        return state;
+    }
+
+    /**
+     * Method to check whether requests are currently failing fast
+     * @return true if the circuit is open or half-open with all probes in use
+     */
+    public synchronized boolean isOpen() {
+        return state == STATE_OPEN || (state == STATE_HALF_OPEN && probesInFlight + probeSuccesses >= PROBE_COUNT);
+    }
+
+    /**
+     * Method to get the time remaining until an open circuit allows probes
+     * @return remaining milliseconds or 0 if requests may be sent
+     */
+    public synchronized long getRemainingOpenMillis() {
+        return state == STATE_OPEN ? Math.max(0, openUntil - Utils.getTimeSource().currentTimeMillis()) : 0;
+    }
+
+    /**
+     * Method to get the endpoint name
+     * @return endpoint name
+     */
+    public String getName() {
+        return name;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to open the circuit for the current open period
+     */
+    private void open() {
+        openUntil = Utils.getTimeSource().currentTimeMillis() + openMillis;
+        setState(STATE_OPEN);
+    }
+
+    /**
+     * Method to change state, logging the transition
+     * @param newState is the new state
+     */
+    private void setState(int newState) {
+        if(state == newState) {
+            return;
+        }
+        state = newState;
+
+        if(logger != null) {
+            switch(newState) {
+                case STATE_OPEN -> logger.log(Logger.LOG_TYPE_WARNING, String.format("Circuit OPEN For %s - Failing Fast For %d Seconds", name, openMillis / 1000));
+                case STATE_HALF_OPEN -> logger.log(Logger.LOG_TYPE_CONNECTION, String.format("Circuit HALF-OPEN For %s - Sending Probe Requests", name));
+                case STATE_CLOSED -> logger.log(Logger.LOG_TYPE_CONNECTION, String.format("Circuit CLOSED For %s - Resuming Requests", name));
+            }
+        }
+    }
+
+    /**
+     * Method to add a call outcome to the failure window
+     * @param failure is whether the call failed
+     */
+    private void addToWindow(boolean failure) {
+        // Remove Outcome Being Overwritten
+        if(windowCount == WINDOW_SIZE) {
+            if(window[windowIndex]) {
+                windowFailures--;
+            }
+        }
+        else {
+            windowCount++;
+        }
+
+        window[windowIndex] = failure;
+        if(failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % WINDOW_SIZE;
+    }
+
+    /**
+     * Method to clear the failure window
+     */
+    private void clearWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
@@ -0,0 +1,390 @@
+package db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Class - In-memory settings store persisted off the calling thread, usable by the GUI and headless runs alike
+ * > put() only updates memory, edits are written DEBOUNCE_MILLIS after the last one on the Config-Writer thread
+ * > Plain settings are kept in Preferences, secrets (e.g. the database password) in an owner-only properties file
+ * > Both stores are re-read every RELOAD_MILLIS while no edit is pending, so settings changed outside the process are picked up
+ * > Listeners are told about every changed key, on the thread that made the change
+ */
+public class ConfigStore {
+    // Persist and Reload Timing
+    private static final long DEBOUNCE_MILLIS = 750;
+    private static final long RELOAD_MILLIS = 5 * 1000;
+
+    // Default Secrets File (steam.config.secrets)
+    private static final String DEFAULT_SECRETS_FILE = ".steam-insight/secrets.properties";
+
+    // Interface for Observing Setting Changes
+    public interface Listener {
+        void settingChanged(String key, String value); // Method called when a setting changes
+    }
+
+    // Stores {Written and Read Under storeLock}
+    private final Object storeLock = new Object();
+    private final Preferences prefs;
+    private final Path secretsPath;
+    private final Set<String> secretKeys;
+
+    // Settings {Guarded by this}
+    private final HashMap<String, String> values = new HashMap<>();
+    private boolean dirty;
+    private long editVersion; // Incremented per Edit
+    private long savedVersion; // Last Edit Written to the Stores
+    private ScheduledFuture<?> pendingSave;
+    private long secretsModified; // {Guarded by storeLock}
+
+    // Background Writer and Reloader
+    private final ScheduledExecutorService executor;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Logging
+    private final Logger logger;
+
+    /**
+     * Constructor - Creates a ConfigStore, loading both stores
+     * > Secrets left in Preferences by earlier versions are moved to the secrets file
+     */
+    private ConfigStore(Preferences prefs, Path secretsPath, Set<String> secretKeys, Logger logger) {
+        this.prefs = prefs;
+        this.secretsPath = secretsPath;
+        this.secretKeys = secretKeys;
+        this.logger = logger;
+
+        values.putAll(readPreferences());
+        values.putAll(readSecrets());
+        for(String key : secretKeys) {
+            if(prefs.get(key, null) != null) {
+                values.putIfAbsent(key, prefs.get(key, null));
+                dirty = true; // Next Save Removes it From Preferences
+                editVersion = 1;
+            }
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Config-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reload, RELOAD_MILLIS, RELOAD_MILLIS, TimeUnit.MILLISECONDS);
+        if(dirty) {
+            scheduleSave();
+        }
+
+        // Write Pending Edits on Exit
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Config-Flush"));
+    }
+
+    /**
+     * Method to load the settings of a Preferences node
+     * > The secrets file is ~/.steam-insight/secrets.properties unless set with steam.config.secrets
+     * @param node is the Preferences node path of the plain settings
+     * @param secretKeys are the keys kept in the secrets file instead
+     * @param logger is the existing logger
+     * @return loaded ConfigStore
+     */
+    public static ConfigStore load(String node, Set<String> secretKeys, Logger logger) {
+        String secrets = System.getProperty("steam.config.secrets");
+        Path secretsPath = secrets != null && !secrets.isBlank()
+                ? Path.of(secrets)
+                : Path.of(System.getProperty("user.home"), DEFAULT_SECRETS_FILE);
+        return new ConfigStore(Preferences.userRoot().node(node), secretsPath, new HashSet<>(secretKeys), logger);
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to get a setting
+     * @param key is the setting key
+     * @param def is the value if not set
+     * @return setting value
+     */
+    public synchronized String get(String key, String def) {
+        return values.getOrDefault(key, def);
+    }
+
+    /**
+     * Method to get an integer setting
+     * @param key is the setting key
+     * @param def is the value if not set or not a number
+     * @return setting value
+     */
+    public int getInt(String key, int def) {
+        try {
+            return Integer.parseInt(get(key, Integer.toString(def)).trim());
+        }
+        catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /**
+     * Method to change a setting in memory, scheduling a debounced save (Any Thread)
+     * > Setting an unchanged value does nothing
+     * @param key is the setting key
+     * @param value is the new value
+     */
+    public void put(String key, String value) {
+        synchronized(this) {
+            if(value.equals(values.get(key))) {
+                return;
+            }
+            values.put(key, value);
+            dirty = true;
+            editVersion++;
+            scheduleSave();
+        }
+        notifyListeners(key, value);
+    }
+
+    /**
+     * Method to change an integer setting in memory, scheduling a debounced save (Any Thread)
+     * @param key is the setting key
+     * @param value is the new value
+     */
+    public void putInt(String key, int value) {
+        put(key, Integer.toString(value));
+    }
+
+    /**
+     * Method to add a listener told about changed settings
+     * @param listener is the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Method to write pending edits now (Blocks Until Written)
+     */
+    public void flush() {
+        synchronized(this) {
+            if(pendingSave != null) {
+                pendingSave.cancel(false);
+                pendingSave = null;
+            }
+        }
+        save();
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to (re)schedule the save after the debounce delay {Guarded by this}
+     */
+    private void scheduleSave() {
+        if(pendingSave != null) {
+            pendingSave.cancel(false);
+        }
+        pendingSave = executor.schedule(this::save, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to write all settings to their stores (Config-Writer Thread or Exit)
+     * > Edits made while writing only wait for the in-memory snapshot, never for the file I/O
+     */
+    private void save() {
+        HashMap<String, String> snapshot;
+        long version;
+        synchronized(this) {
+            if(!dirty) {
+                return;
+            }
+            dirty = false;
+            pendingSave = null;
+            snapshot = new HashMap<>(values);
+            version = editVersion;
+        }
+
+        synchronized(storeLock) {
+            write(snapshot);
+        }
+        synchronized(this) {
+            savedVersion = Math.max(savedVersion, version);
+        }
+    }
+
+    /**
+     * Method to write a snapshot of the settings to both stores {Guarded by storeLock}
+     */
+    private void write(HashMap<String, String> snapshot) {
+        // Plain Settings
+        Properties secrets = new Properties();
+        for(Map.Entry<String, String> entry : snapshot.entrySet()) {
+            if(secretKeys.contains(entry.getKey())) {
+                secrets.setProperty(entry.getKey(), entry.getValue());
+                prefs.remove(entry.getKey());
+            }
+            else {
+                prefs.put(entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            prefs.flush();
+        }
+        catch (BackingStoreException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Save Preferences");
+        }
+
+        // Secrets (Written to a Temp File and Moved Into Place)
+        if(secrets.isEmpty() && !Files.exists(secretsPath)) {
+            return;
+        }
+        try {
+            Files.createDirectories(secretsPath.toAbsolutePath().getParent());
+            Path temp = secretsPath.resolveSibling(secretsPath.getFileName() + ".tmp");
+            try(OutputStream out = Files.newOutputStream(temp)) {
+                restrictToOwner(temp);
+                secrets.store(out, "Steam Insight Secrets");
+            }
+            Files.move(temp, secretsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            secretsModified = Files.getLastModifiedTime(secretsPath).toMillis();
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Save Secrets: " + secretsPath);
+        }
+    }
+
+    /**
+     * Method to re-read both stores and apply settings changed outside the process (Config-Writer Thread)
+     * > Skipped while an edit is pending or being written, the edit wins
+     */
+    private void reload() {
+        synchronized(this) {
+            if(dirty || savedVersion != editVersion) {
+                return;
+            }
+        }
+
+        // Read Stores Without Blocking Edits
+        HashMap<String, String> loaded;
+        synchronized(storeLock) {
+            try {
+                prefs.sync();
+            }
+            catch (BackingStoreException e) {
+                return;
+            }
+            loaded = readPreferences();
+            if(secretsChanged()) {
+                loaded.putAll(readSecrets());
+            }
+        }
+
+        HashMap<String, String> changed = new HashMap<>();
+        synchronized(this) {
+            if(dirty || savedVersion != editVersion) {
+                return;
+            }
+
+            for(Map.Entry<String, String> entry : loaded.entrySet()) {
+                if(!entry.getValue().equals(values.get(entry.getKey()))) {
+                    changed.put(entry.getKey(), entry.getValue());
+                }
+            }
+            values.putAll(changed);
+        }
+
+        for(Map.Entry<String, String> entry : changed.entrySet()) {
+            logger.log(Logger.LOG_TYPE_UPDATE, "Setting Reloaded: " + entry.getKey());
+            notifyListeners(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Method to read the plain settings from Preferences (secret keys skipped)
+     */
+    private HashMap<String, String> readPreferences() {
+        HashMap<String, String> loaded = new HashMap<>();
+        try {
+            for(String key : prefs.keys()) {
+                String value = prefs.get(key, null);
+                if(value != null && !secretKeys.contains(key)) {
+                    loaded.put(key, value);
+                }
+            }
+        }
+        catch (BackingStoreException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Load Preferences");
+        }
+        return loaded;
+    }
+
+    /**
+     * Method to read the secrets file (empty if missing)
+     */
+    private HashMap<String, String> readSecrets() {
+        HashMap<String, String> loaded = new HashMap<>();
+        if(!Files.exists(secretsPath)) {
+            return loaded;
+        }
+
+        try(InputStream in = Files.newInputStream(secretsPath)) {
+            Properties secrets = new Properties();
+            secrets.load(in);
+            for(String key : secrets.stringPropertyNames()) {
+                loaded.put(key, secrets.getProperty(key));
+            }
+            secretsModified = Files.getLastModifiedTime(secretsPath).toMillis();
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Load Secrets: " + secretsPath);
+        }
+        return loaded;
+    }
+
+    /**
+     * Method to check if the secrets file changed since it was last read or written
+     */
+    private boolean secretsChanged() {
+        try {
+            return Files.exists(secretsPath) && Files.getLastModifiedTime(secretsPath).toMillis() != secretsModified;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method to make a file readable and writable by its owner only
+     */
+    private static void restrictToOwner(Path path) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        }
+        // Not a POSIX File System
+        catch (UnsupportedOperationException e) {
+            path.toFile().setReadable(false, false);
+            path.toFile().setReadable(true, true);
+            path.toFile().setWritable(false, false);
+            path.toFile().setWritable(true, true);
+        }
+    }
+
+    /**
+     * Method to tell listeners a setting changed
+     */
+    private void notifyListeners(String key, String value) {
+        for(Listener listener : listeners) {
+            listener.settingChanged(key, value);
+        }
+    }
+}
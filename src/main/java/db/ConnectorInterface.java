@@ -1,6 +1,9 @@
 package db;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
 
 /**
  * Interface - Contains Important Records and Basic Methods for use with external code
@@ -13,17 +16,94 @@ public interface ConnectorInterface {
     record UpdateResults(int newApps, int updatedApps) {}
 
     // Record for Storing init App Data
-    record App(int appid, String name) {} // Used for adding initial entry
+    record App(int appid, String name) { // Used for adding initial entry
+        public static long nameHash(String name) { // 64-bit FNV-1a hash of a name, used to detect renames without holding every name
+            if(name == null) {
+                return 0;
+            }
+            long hash = 0xcbf29ce484222325L;
+            for(int i = 0; i < name.length(); i++) {
+                hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+
+    // Record for Storing App List Changes From the Steam Web API
+    record AppListChanges(ArrayList<App> newApps, ArrayList<App> renamedApps) {}
+
+    // Interface for Consuming a Streamed App List One Chunk at a Time
+    interface AppListChunks {
+        boolean accept(ArrayList<App> newApps, ArrayList<App> renamedApps); // Method to take a chunk (false to stop the stream)
+    }
 
     // Record for Storing App Update Data
     record AppEntry(int appid, String type, String header_image, String background) { // Used for updating type/time of entry
         public boolean isValid() {
             return !type.equals("invalid");
         }
+
+        public boolean isMalformed() {
+            return type.equals("malformed");
+        }
+
+        public long contentHash() { // CRC32 of the app details, used to detect real changes
+            CRC32 crc = new CRC32();
+            crc.update((type + "\n" + header_image + "\n" + background).getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
     }
 
+    // Record for Storing App Update Data in Compact Form (Dictionary Ids and URL Suffixes)
+    record CompactAppEntry(int appid, int typeId, int headerPrefix, String headerSuffix, int backgroundPrefix, String backgroundSuffix, long contentHash) {}
+
+    // Record for Storing a Full AppInfo Row (last_update as Epoch Millis)
+    record AppInfoRow(int appid, String name, long lastUpdate, String type, String header_image, String background) {}
+
     boolean openConnection(DatabaseInfo info); // Method to Open Database Connection with given info
     void closeConnection(); // Method to Close Database Connection
     UpdateResults update(); // Method to Update The Database
     DatabaseMetaData getMetaData(); // Method to get the Database MetaData from the connected database
+
+    /**
+     * Method to update the database, optionally skipping the app list sync (used while draining a backlog)
+     * @param syncAppList is whether new and renamed apps are fetched from the Steam app list
+     * @return counters for the result of the update
+     */
+    default UpdateResults update(boolean syncAppList) {
+        return update();
+    }
+
+    /**
+     * Method to get the number of apps waiting for an update
+     * @return number of waiting apps (0 if unknown)
+     */
+    default int getBacklog() {
+        return 0;
+    }
+
+    /**
+     * Method to request cancellation of the running update, which saves the work already fetched before returning
+     */
+    default void cancel() {}
+
+    /**
+     * Method to request an urgent refresh of an app, fetched ahead of the background backlog
+     * @param appid is the appid to refresh
+     */
+    default void requestRefresh(int appid) {}
+
+    /**
+     * Method to check if refresh requests are waiting for an update to serve them
+     * @return true if requests are waiting
+     */
+    default boolean hasRefreshRequests() {
+        return false;
+    }
+
+    /**
+     * Method to set the ceiling of the adaptive Steam API rate, applied to a running update
+     * @param callsPerMinute is the new ceiling
+     */
+    default void setMaxRate(double callsPerMinute) {}
 }
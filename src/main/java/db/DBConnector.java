@@ -3,12 +3,14 @@ package db;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 import static db.Queries.*;
-import static db.SteamConnector.*;
 
 /**
  * Class - Defines an Object Used for Connection and Maintenance of a Steam Database
+ * > Apps are updated by the UpdateEngine through a MySqlSink (leased lanes, so multiple nodes can share the database)
+ * > Adds the MySQL only steps around it: migrations, snapshots, history partitions, compact storage, lookup, change outbox and fan-out
  */
 public class DBConnector implements ConnectorInterface {
     // Database Driver
@@ -17,6 +19,41 @@ public class DBConnector implements ConnectorInterface {
     // JDBC Connection
     private Connection conn;
 
+    // Compact Storage Mode (Type Dictionary and URL Prefix Compression)
+    private final boolean compactStorage = Boolean.getBoolean("steam.storage.compact");
+    private static final int COMPACT_BATCH_SIZE = 1000;
+    private AppDictionary dictionary;
+
+    // App Writes Through the Storage SPI and App History (null if Disabled)
+    private StorageSink sink;
+    private AppHistory appHistory;
+
+    // Update Pipeline
+    private final UpdateEngine engine;
+
+    // Snapshot Export After Each Update (null if Disabled)
+    private final SnapshotExporter snapshotExporter;
+
+    // Snapshot Import Into an Empty Database (null if Disabled)
+    private final SnapshotImporter snapshotImporter;
+
+    // In-Process AppInfo Cache Served Over HTTP (Port 0 if Disabled)
+    private final int lookupPort = Integer.getInteger("steam.lookup.port", 0);
+    private AppCache appCache;
+    private LookupServer lookupServer;
+
+    // Change Events For Downstream Consumers (null if Disabled)
+    private final ChangeOutbox changeOutbox;
+
+    // Additional Target Databases Written With the Same Fetched Data
+    private final ArrayList<TargetWriter> targets;
+    private static final int CATCH_UP_APPS = 10000; // Max Backlog Apps Copied per Target per Update
+    private static final int CATCH_UP_CHUNK_SIZE = 1000;
+    private static final long TARGET_STOP_MILLIS = 10 * 1000;
+
+    // Whether Hot Query Index Use Was Checked For This Connection
+    private boolean indexesVerified;
+
     // Logging
     private final Logger logger;
 
@@ -24,7 +61,7 @@ public class DBConnector implements ConnectorInterface {
      * Constructor - Creates a DBConnector Object to handle I/O from Steam Database
      */
     public DBConnector() {
-        logger = new Logger();
+        this(new Logger());
     }
 
     /**
@@ -32,6 +69,39 @@ public class DBConnector implements ConnectorInterface {
      */
     public DBConnector(Logger logger) {
         this.logger = logger;
+
+        // Run the Update Pipeline With the MySQL Only Steps Around It
+        engine = new UpdateEngine(new UpdateEngine.Hooks() {
+            @Override
+            public int prepare() {
+                return prepareUpdate();
+            }
+
+            @Override
+            public void finish(boolean cancelled) {
+                finishUpdate(cancelled);
+            }
+
+            @Override
+            public void inserted(ArrayList<App> apps) {
+                appsInserted(apps);
+            }
+
+            @Override
+            public void renamed(ArrayList<App> apps) {
+                appsRenamed(apps);
+            }
+
+            @Override
+            public void updated(ArrayList<AppEntry> entries) {
+                appsUpdated(entries);
+            }
+        }, logger);
+
+        snapshotExporter = SnapshotExporter.fromSystemProperties(logger);
+        snapshotImporter = SnapshotImporter.fromSystemProperties(logger);
+        changeOutbox = ChangeOutbox.fromSystemProperties(logger);
+        targets = TargetWriter.fromSystemProperties(compactStorage, logger);
     }
 
     // *** Public Methods ***
@@ -43,17 +113,30 @@ public class DBConnector implements ConnectorInterface {
      */
     public boolean openConnection(DatabaseInfo info) {
         try {
-            Class.forName(JDBC_DRIVER);
-            String url = String.format("jdbc:mysql://%s:%s/", info.address(), info.port());
-
             // Connect to Database
-            conn = DriverManager.getConnection(url, info.username(), info.password());
+            conn = connect(info);
 
-            // Set Database Name
-            conn.setCatalog(info.databaseName());
+            // Setup Storage (Work Leases, Lanes and Negative Cache) for this Connection
+            indexesVerified = false;
+            dictionary = new AppDictionary(conn, logger);
+            appHistory = AppHistory.fromSystemProperties(conn, logger);
+            sink = new MySqlSink(conn, compactStorage ? dictionary : null, appHistory, logger);
 
             // Log Connection
             logger.log(Logger.LOG_TYPE_CONNECTION, "Successfully Connected To Database");
+
+            // Start Updating (Shares the Steam API Budget With Other Instances)
+            engine.open(sink, info);
+
+            // Start Lookup Cache and Endpoint
+            if(lookupPort > 0) {
+                startLookup(info);
+            }
+
+            // Start Fan-Out Target Writers
+            for(TargetWriter target : targets) {
+                target.start();
+            }
             return true;
         }
         // Driver Failure
@@ -77,6 +160,19 @@ public class DBConnector implements ConnectorInterface {
      * Method to close the connection to the database
      */
     public void closeConnection() {
+        engine.close(this::close);
+    }
+
+    /**
+     * Method to close the connection, lookup and targets once no update is running
+     */
+    private void close() {
+        stopLookup();
+        stopTargets();
+        if(changeOutbox != null) {
+            changeOutbox.close();
+        }
+
         // Attempt to close Connection
         try {
             if(conn != null) {
@@ -96,27 +192,65 @@ public class DBConnector implements ConnectorInterface {
      * Method to update the database and return counters for its result
      */
     public UpdateResults update() {
-        // Update Counters
-        int newApps = 0;
-        int updatedApps = 0;
-
-        logger.logBreak();
-        logger.log(Logger.LOG_TYPE_UPDATE, "===Beginning Database Update===");
+        return update(true);
+    }
 
-        // 1) Attempt to Create AppInfo Table
-        createAppInfoTable();
+    /**
+     * Method to update the database and return counters for its result
+     * @param syncAppList is whether new and renamed apps are fetched from the Steam app list
+     */
+    @Override
+    public UpdateResults update(boolean syncAppList) {
+        if(!isConnected()) {
+            logger.log(Logger.LOG_TYPE_WARNING, "Cannot Update Database - Not Connected To Database");
+            return new UpdateResults(0, 0);
+        }
+        return engine.update(syncAppList);
+    }
 
-        // 2) Update AppList in Database and add new apps
-        newApps += updateAppList();
+    /**
+     * Method to set the ceiling of the adaptive Steam API rate, applied to a running update
+     * @param callsPerMinute is the new ceiling
+     */
+    @Override
+    public void setMaxRate(double callsPerMinute) {
+        engine.setMaxRate(callsPerMinute);
+    }
 
-        // 3) Update All Apps
-        updatedApps += updateApps();
+    /**
+     * Method to request cancellation of the running update (Any Thread)
+     * > Fetches not yet started are dropped, fetches in flight are drained and written, leases are released
+     */
+    @Override
+    public void cancel() {
+        engine.cancel();
+    }
 
-        logger.log(Logger.LOG_TYPE_UPDATE, "===Finished Database Update===");
-        logger.logBreak();
+    /**
+     * Method to request an urgent refresh of an app, served ahead of the background lanes
+     * @param appid is the appid to refresh
+     */
+    @Override
+    public void requestRefresh(int appid) {
+        engine.requestRefresh(appid);
+    }
 
-        return new UpdateResults(newApps, updatedApps);
+    /**
+     * Method to check if in-process refresh requests are waiting for an update
+     * @return true if requests are waiting
+     */
+    @Override
+    public boolean hasRefreshRequests() {
+        return engine.hasRefreshRequests();
+    }
 
+    /**
+     * Method to get the number of apps waiting for an update (across all nodes)
+     * @return number of apps to update or 0 if not connected
+     */
+    @Override
+    public int getBacklog() {
+        return isConnected() ? engine.getBacklog() : 0;
     }
 
     /**
@@ -139,6 +273,35 @@ public class DBConnector implements ConnectorInterface {
     }
 
 
+    /**
+     * Method to add a target database that receives the same app writes as the connected database
+     * > Apps are fetched from Steam once and written to every target by its own TargetWriter
+     * @param info is the target connection info
+     */
+    public void addTarget(DatabaseInfo info) {
+        TargetWriter target = new TargetWriter(info, compactStorage, logger);
+        targets.add(target);
+
+        if(isConnected()) {
+            target.start();
+        }
+    }
+
+    /**
+     * Method to open a JDBC connection to the given database
+     * @param info is the given connection info
+     * @return open connection with the database selected
+     */
+    static Connection connect(DatabaseInfo info) throws ClassNotFoundException, SQLException {
+        Class.forName(JDBC_DRIVER);
+        String url = String.format("jdbc:mysql://%s:%s/?rewriteBatchedStatements=true&allowLoadLocalInfile=true", info.address(), info.port());
+
+        Connection connection = DriverManager.getConnection(url, info.username(), info.password());
+        connection.setCatalog(info.databaseName()); // Set Database Name
+        return connection;
+    }
+
+
     // *** Private Methods ***
     /**
      * Method to check whether the connection to the database is open
@@ -155,219 +318,322 @@ public class DBConnector implements ConnectorInterface {
         return false;
     }
 
-    // * Update Methods *
+    // * Lookup Methods *
 
     /**
-     * Method to create the AppInfo Table in the connected database
+     * Method to start the AppInfo cache and its lookup endpoint
+     * > The cache is bulk loaded on a background thread, lookups read through to the database until it finishes
+     * @param info is the given connection info
      */
-    private void createAppInfoTable() {
-        if(!isConnected()) {
-            logger.log(Logger.LOG_TYPE_WARNING, "Cannot Create AppInfo Table - Not Connected To Database");
+    private void startLookup(DatabaseInfo info) {
+        appCache = new AppCache(logger);
+        if(!appCache.open(info)) {
+            appCache = null;
             return;
         }
 
-        // Create SQL Statement
-        try(Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(createTableAppInfo); // Execute Create Table Query
-            logger.log(Logger.LOG_TYPE_UPDATE, "AppInfo Table Created Successfully");
+        Thread loader = new Thread(appCache::load, "AppCache-Loader");
+        loader.setDaemon(true);
+        loader.start();
+
+        lookupServer = new LookupServer(appCache, logger);
+        lookupServer.start(lookupPort);
+    }
+
+    /**
+     * Method to stop the lookup endpoint and close the AppInfo cache
+     */
+    private void stopLookup() {
+        if(lookupServer != null) {
+            lookupServer.stop();
+            lookupServer = null;
         }
-        catch (SQLException e) {
-            // Ignore Table Already Exists Error
-            if(e.getSQLState().equals("42S01")) {
-                logger.log(Logger.LOG_TYPE_UPDATE, "AppInfo Table Already Exists In Database");
-            }
-            else {
-                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Create AppInfo Table");
-            }
+        if(appCache != null) {
+            appCache.close();
+            appCache = null;
         }
     }
 
+    // * Fan-Out Methods *
+
     /**
-     * Method to update the database app list with new appids from the Steam Web API
-     * @return The number of new apps added
+     * Method to queue a batch written to this database for every target
+     * > A target whose backlog would grow too large has its queue spilled to the TargetBacklog table instead
      */
-    private int updateAppList() {
-        HashSet<Integer> existingAppids = getAppids(); // Get Existing appids from Database
-
-        ArrayList<App> appList = getCurrentAppList(existingAppids, logger); // Get AppList
-        // Null AppList
-        if(appList == null) {
-            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Retrieve AppList From Steam Web API");
-            return 0;
+    private void fanOut(ArrayList<App> inserted, ArrayList<App> renamed, ArrayList<AppEntry> updated) {
+        TargetWriter.TargetBatch batch = new TargetWriter.TargetBatch(inserted, renamed, updated);
+        if(batch.size() == 0) {
+            return;
         }
 
-        // Empty AppList
-        if(appList.isEmpty()) {
-            logger.log(Logger.LOG_TYPE_UPDATE, "No New Apps To Add to Database");
-            return 0;
+        for(TargetWriter target : targets) {
+            if(target.getBacklogApps() + batch.size() > TargetWriter.MAX_BACKLOG_APPS) {
+                ArrayList<TargetWriter.TargetBatch> spilled = target.drainQueued();
+                spilled.add(batch);
+                spillBacklog(target, spilled);
+            }
+            else {
+                target.enqueue(batch);
+            }
         }
+    }
 
-        // Create New Query
-        StringBuilder sb = new StringBuilder(insertNewApp);
-
-        // Add Value Sections to SQL Query String
-        for(int i = 0; i < appList.size(); i++) {
-            sb.append("(?, ?)"); // Add Variable Section
-            sb.append((i < appList.size()-1) ? ", " : ";"); // Line Terminators
-            sb.append("\n"); //New Line
+    /**
+     * Method to record the apps of unwritten batches in the TargetBacklog table to be copied later
+     * @param target is the target that fell behind
+     * @param batches are the unwritten batches
+     */
+    private void spillBacklog(TargetWriter target, ArrayList<TargetWriter.TargetBatch> batches) {
+        HashSet<Integer> appids = new HashSet<>();
+        for(TargetWriter.TargetBatch batch : batches) {
+            batch.inserted().forEach(app -> appids.add(app.appid()));
+            batch.renamed().forEach(app -> appids.add(app.appid()));
+            batch.updated().forEach(entry -> appids.add(entry.appid()));
+        }
+        if(appids.isEmpty()) {
+            return;
         }
 
-        // Add Apps to Database
-        try(PreparedStatement pStmt = conn.prepareStatement(sb.toString())) {
-            int cnt = 1;
-
-            for(App app : appList) {
-                pStmt.setInt(cnt++, app.appid());
-                pStmt.setString(cnt++, app.name());
+        ArrayList<Integer> list = new ArrayList<>(appids);
+        try {
+            for(int i = 0; i < list.size(); i += CATCH_UP_CHUNK_SIZE) {
+                List<Integer> chunk = list.subList(i, Math.min(i + CATCH_UP_CHUNK_SIZE, list.size()));
+                try(PreparedStatement pStmt = conn.prepareStatement(getMultiRowInsertQuery(insertTargetBacklog, chunk.size(), 2))) {
+                    int cnt = 1;
+                    for(int appid : chunk) {
+                        pStmt.setString(cnt++, target.getName());
+                        pStmt.setInt(cnt++, appid);
+                    }
+                    pStmt.executeUpdate();
+                }
             }
-            int newApps = pStmt.executeUpdate();
-            logger.log(Logger.LOG_TYPE_UPDATE, String.format("AppList Update Finished: %d New Apps Added", newApps));
-
-            return newApps;
+            target.addSpilled(list.size());
+            logger.log(Logger.LOG_TYPE_WARNING, String.format("Target %s Fell Behind - %d Apps Saved For Catch-Up", target.getName(), list.size()));
         }
         catch (SQLException e) {
-            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Add %d New Apps to the Database", appList.size()));
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Save %d Apps For Catch-Up of Target %s", list.size(), target.getName()));
         }
-        return 0;
     }
 
     /**
-     * Method to update all apps with no type in database
-     * @return The Number of Updated Apps
-     * > Maximum 200 API Calls per 5-minute block to prevent rate-limiting
-     * > Will Exit on 5 Failed Attempts to Update an App
+     * Method to queue copies of backlogged apps for targets that are keeping up again
      */
-    private int updateApps() {
-        final int MAX_API_CALLS = 199; // Max Calls within 5min to prevent RateLimiter
-        final int MAX_FAILED_CALLS = 5; // Max Apps to Fail Before Stopping Update
-
-        // Counters
-        int apiCallCount = 0;
-        int failCount = 0;
-        int updatedApps = 0;
-
-        // Get Apps to update
-        ArrayList<Integer> appids = getAppsToUpdate();
-        logger.log(Logger.LOG_TYPE_UPDATE, String.format("Attempting To Update %d Apps", appids.size()));
-
-        for(int appid : appids) {
-            // Prevent RateLimit By Waiting 5Min
-            if(apiCallCount >= MAX_API_CALLS) {
-                try {
-
-                    logger.log(Logger.LOG_TYPE_WARNING, "API_LIMIT - Waiting 5 Minutes to Prevent RateLimit - Resume at: " + Utils.getTimeString(5));
-                    Thread.sleep(5 * 60 * 1000); // Wait 5 Minutes Before Continuing
+    private void catchUpTargets() {
+        for(TargetWriter target : targets) {
+            if(!target.isHealthy() || target.getBacklogApps() > TargetWriter.MAX_BACKLOG_APPS / 2) {
+                continue;
+            }
+
+            try {
+                // Get Target's Backlog
+                ArrayList<Integer> appids = new ArrayList<>();
+                try(PreparedStatement pStmt = conn.prepareStatement(getTargetBacklog)) {
+                    pStmt.setString(1, target.getName());
+                    pStmt.setInt(2, CATCH_UP_APPS);
+                    ResultSet rs = pStmt.executeQuery();
+                    while(rs.next()) {
+                        appids.add(rs.getInt(1));
+                    }
                 }
-                catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+
+                // Copy Current Rows in Chunks
+                for(int i = 0; i < appids.size(); i += CATCH_UP_CHUNK_SIZE) {
+                    List<Integer> chunk = appids.subList(i, Math.min(i + CATCH_UP_CHUNK_SIZE, appids.size()));
+                    target.enqueue(readCatchUpBatch(chunk));
+
+                    try(PreparedStatement pStmt = conn.prepareStatement(getDeleteTargetBacklogQuery(chunk.size()))) {
+                        pStmt.setString(1, target.getName());
+                        for(int j = 0; j < chunk.size(); j++) {
+                            pStmt.setInt(j + 2, chunk.get(j));
+                        }
+                        pStmt.executeUpdate();
+                    }
                 }
-                apiCallCount = 0;
-            }
-            apiCallCount++;
 
+                if(!appids.isEmpty()) {
+                    logger.log(Logger.LOG_TYPE_UPDATE, String.format("Catching Up Target %s - Copying %d Apps", target.getName(), appids.size()));
+                }
+            }
+            catch (SQLException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Read Catch-Up Backlog of Target: " + target.getName());
+            }
+        }
+    }
 
-            // Get Update Info
-            AppEntry entry = getAppInfoFromAppid(appid, logger);
+    /**
+     * Method to read the current rows of apps as a target batch
+     * @param appids are the apps to copy
+     * @return TargetBatch inserting, naming and updating the apps
+     */
+    private TargetWriter.TargetBatch readCatchUpBatch(List<Integer> appids) throws SQLException {
+        ArrayList<App> apps = new ArrayList<>();
+        ArrayList<AppEntry> entries = new ArrayList<>();
 
-            // Handle Info Failure
-            if(entry == null) {
-                logger.log(Logger.LOG_TYPE_ERROR, "Failed To Retrieve Info For: " + appid);
-                if(failCount == MAX_FAILED_CALLS) {
-                    logger.log(Logger.LOG_TYPE_WARNING, String.format("Failed To Fetch Response For %d Apps - Stopping Update", failCount));
-                    return updatedApps;
+        try(PreparedStatement pStmt = conn.prepareStatement(getAppInfoRowsQuery(appids.size()))) {
+            for(int i = 0; i < appids.size(); i++) {
+                pStmt.setInt(i + 1, appids.get(i));
+            }
+            ResultSet rs = pStmt.executeQuery();
+            while(rs.next()) {
+                AppInfoRow row = AppCache.readRow(rs);
+                apps.add(new App(row.appid(), row.name()));
+                if(row.type() != null) {
+                    entries.add(new AppEntry(row.appid(), row.type(), row.header_image(), row.background()));
                 }
-                failCount++;
             }
-            else {
-                // Update App
-                updateAppDetails(entry);
-                updatedApps++;
+        }
+        return new TargetWriter.TargetBatch(apps, apps, entries);
+    }
+
+    /**
+     * Method to stop the target writers, saving unwritten apps for catch-up
+     */
+    private void stopTargets() {
+        for(TargetWriter target : targets) {
+            ArrayList<TargetWriter.TargetBatch> unwritten = target.stop(TARGET_STOP_MILLIS);
+            if(isConnected()) {
+                spillBacklog(target, unwritten);
             }
         }
-        return updatedApps;
     }
 
-    // * Utility Methods *
+    // * Update Methods *
 
     /**
-     * Method to get the full list of appids from the Database
-     * @return HashSet of all appids in Database
+     * Method to create or migrate the tables in the connected database
+     * > Hot query index use is checked with EXPLAIN once per connection
+     * @return true if the schema is up-to-date
      */
-    public HashSet<Integer> getAppids() {
-        if(!isConnected()) {
-            logger.log(Logger.LOG_TYPE_ERROR, "Cannot Retrieve AppList from Database - Not Connected To Database");
-            return null;
+    private boolean migrateSchema() {
+        if(!Migrations.migrate(conn, logger)) {
+            return false;
         }
 
-        HashSet<Integer> appids = new HashSet<>();
+        if(!indexesVerified) {
+            Migrations.verifyIndexUse(conn, logger);
+            indexesVerified = true;
+        }
+        return true;
+    }
 
-        // Execute Query for full appid list
-        try(Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(getAllAppids);
+    /**
+     * Method to prepare the database before the app list sync (UpdateEngine Hook)
+     * > Migrates the schema, imports a snapshot into an empty database, maintains history partitions and compacts rows
+     * @return number of apps imported or -1 if the schema is not up-to-date or the snapshot import failed
+     */
+    private int prepareUpdate() {
+        if(!migrateSchema()) {
+            logger.log(Logger.LOG_TYPE_ERROR, "===Database Update Stopped - Schema Not Up-To-Date===");
+            return -1;
+        }
 
-            while(rs.next()) {
-                appids.add(rs.getInt(COLUMN_APPID));
+        int importedApps = 0;
+        if(snapshotImporter != null) {
+            importedApps = snapshotImporter.importIfEmpty(conn); // Bootstrap a New Database
+            if(importedApps < 0) {
+                logger.log(Logger.LOG_TYPE_ERROR, "===Database Update Stopped - Snapshot Import Failed===");
+                return -1;
             }
-            return appids;
         }
-        catch (SQLException e) {
-            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Retrieve App List From Database");
+        if(appHistory != null) {
+            appHistory.maintainPartitions();
         }
-        return null;
+        if(compactStorage) {
+            dictionary.load();
+            if(importedApps > 0) {
+                dictionary.resetCompaction(); // Snapshot Rows Are Loaded Wide
+            }
+            dictionary.compactExistingRows(COMPACT_BATCH_SIZE);
+        }
+        else {
+            dictionary.resetCompaction(); // Wide Rows Are Written Until Compact Storage is Turned On Again
+        }
+        catchUpTargets();
+        return importedApps;
     }
 
     /**
-     * Method to get the list of appids for apps to update
-     * @return ArrayList of appids to update
+     * Method to log target status and export a snapshot after the apps are updated (UpdateEngine Hook)
+     * @param cancelled is whether the update was cancelled (Snapshot Export Skipped)
      */
-    public ArrayList<Integer> getAppsToUpdate() {
-        if(!isConnected()) {
-            logger.log(Logger.LOG_TYPE_WARNING, "Cannot Fetch Apps to Update - Not Connected To Database");
-            return null;
+    private void finishUpdate(boolean cancelled) {
+        for(TargetWriter target : targets) {
+            target.logStatus();
         }
 
-        ArrayList<Integer> appids = new ArrayList<>();
+        // Export Snapshot For Downstream Analytics
+        if(snapshotExporter != null && !cancelled) {
+            snapshotExporter.export(conn);
+        }
+    }
 
-        // Execute Query to Get Apps Needed To Update
-        try(Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(getAppidsToUpdate);
+    /**
+     * Method to invalidate cached misses of new apps and write them to targets and the change outbox (UpdateEngine Hook)
+     * @param appList are the added apps
+     */
+    private void appsInserted(ArrayList<App> appList) {
+        // Invalidate Cached Misses For New Apps
+        if(appCache != null) {
+            appCache.invalidate(appList.stream().mapToInt(App::appid).toArray());
+        }
 
-            while(rs.next()) {
-                appids.add(rs.getInt(COLUMN_APPID));
+        // Write New Apps to Targets
+        fanOut(appList, new ArrayList<>(), new ArrayList<>());
+
+        // Emit Inserted Events
+        if(changeOutbox != null) {
+            for(App app : appList) {
+                changeOutbox.inserted(app.appid(), app.name());
             }
-            return appids;
+            changeOutbox.commit();
         }
-        catch (SQLException e) {
-            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Retrieve Apps To Update From Database");
+    }
+
+    /**
+     * Method to invalidate cached rows of renamed apps and write them to targets and the change outbox (UpdateEngine Hook)
+     * @param renamedApps are the apps with their new names
+     */
+    private void appsRenamed(ArrayList<App> renamedApps) {
+        // Invalidate Cached Rows
+        if(appCache != null) {
+            appCache.invalidate(renamedApps.stream().mapToInt(App::appid).toArray());
+        }
+
+        // Write Renamed Apps to Targets
+        fanOut(new ArrayList<>(), renamedApps, new ArrayList<>());
+
+        // Emit Renamed Events
+        if(changeOutbox != null) {
+            for(App app : renamedApps) {
+                changeOutbox.renamed(app.appid(), app.name());
+            }
+            changeOutbox.commit();
         }
-        return null;
     }
 
     /**
-     * Method to update a database entry (app) with given entry info
-     * @param entry is the entry info
+     * Method to invalidate cached rows of a committed batch and write it to targets and the change outbox (UpdateEngine Hook)
+     * @param written are the written entries
      */
-    private void updateAppDetails(AppEntry entry) {
-        // Setup Prepared Statement
-        try(PreparedStatement pStmt = conn.prepareStatement(updateApp)) {
-            // Set SQL Items and Execute
-            pStmt.setString(1, entry.type());
-            pStmt.setString(2, entry.header_image());
-            pStmt.setString(3, entry.background());
-            pStmt.setInt(4, entry.appid());
-            pStmt.executeUpdate();
-
-            // Log Valid or Invalid
-            if(!entry.isValid()) {
-                logger.log(Logger.LOG_TYPE_UPDATE, "App Updated to Invalid Status: " + entry.appid());
+    private void appsUpdated(ArrayList<AppEntry> written) {
+        for(AppEntry entry : written) {
+            // Invalidate Cached Row
+            if(appCache != null) {
+                appCache.invalidate(entry.appid());
             }
-            else {
-                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Updated App: {%d - %s}", entry.appid(), entry.type()));
+
+            // Emit Updated or Invalidated Event
+            if(changeOutbox != null) {
+                changeOutbox.updated(entry);
             }
         }
-        catch (SQLException e) {
-            e.printStackTrace();
-            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Update App: " + entry.appid());
+
+        // Append Change Events of the Written Batch
+        if(changeOutbox != null) {
+            changeOutbox.commit();
         }
+
+        // Write Batch to Targets
+        fanOut(new ArrayList<>(), new ArrayList<>(), written);
     }
 }
@@ -0,0 +1,183 @@
+package db;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Class - CPU-sized decode stage between the fetch (network I/O) threads and persistence
+ * > Fetch threads read raw responses into pooled buffers and hand them over, so they go straight back to waiting on I/O
+ * > Responses are decoded on a fork-join pool sized to the cores (steam.decode.threads), decoded entries are passed on to the update's write queue
+ * > Buffers are reused from a bounded pool to avoid byte[] churn, buffers grown past MAX_POOLED_BYTES are left to the GC
+ */
+public class DecodeStage {
+    // Decode Threads (steam.decode.threads, Default One per Core)
+    private static final int THREADS = Math.max(1, Integer.getInteger("steam.decode.threads", Runtime.getRuntime().availableProcessors()));
+
+    // Buffer Pool Limits
+    private static final int INITIAL_BUFFER_BYTES = 16 * 1024;
+    private static final int MAX_POOLED_BYTES = 1024 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 4 * (RateController.getMaxConcurrency() + THREADS);
+
+    // Shared Stage (One Pool per Process)
+    private static final DecodeStage shared = new DecodeStage();
+
+    // Pooled Buffers
+    private static final ConcurrentLinkedQueue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledBuffers = new AtomicInteger();
+    private static final AtomicLong buffersAcquired = new AtomicLong();
+    private static final AtomicLong buffersReused = new AtomicLong();
+
+    // Decode Pool
+    private final ForkJoinPool pool = new ForkJoinPool(THREADS);
+
+    // Counters Since the Last Status Log
+    private final AtomicInteger decoded = new AtomicInteger();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    /**
+     * Class - Reusable response buffer filled by a fetch thread and read by a decode thread
+     */
+    public static class Buffer implements SteamConnector.BodyTarget {
+        private byte[] data = new byte[INITIAL_BUFFER_BYTES];
+        private int length;
+
+        /**
+         * Method to read a live response body, growing the buffer as needed
+         * @param body is the response body stream
+         */
+        public void readFrom(InputStream body) throws IOException {
+            length = 0;
+            int read;
+            while((read = body.read(data, length, data.length - length)) >= 0) {
+                length += read;
+                if(length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+            }
+        }
+
+        /**
+         * Method to copy a captured or replayed body into the buffer
+         * @param body is the response body
+         */
+        public void write(byte[] body) {
+            if(body.length > data.length) {
+                data = new byte[body.length];
+            }
+            System.arraycopy(body, 0, data, 0, body.length);
+            length = body.length;
+        }
+
+        /**
+         * Method to get the size of the buffered body
+         * @return body length in bytes
+         */
+        public int size() {
+            return length;
+        }
+
+        /**
+         * Method to read the buffered body without copying it
+         * @return InputStream over the body
+         */
+        public InputStream asStream() {
+            return new ByteArrayInputStream(data, 0, length);
+        }
+    }
+
+    private DecodeStage() {}
+
+    /**
+     * Method to get the decode stage shared by all connectors
+     * @return shared DecodeStage
+     */
+    public static DecodeStage getShared() {
+        return shared;
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to take a buffer from the pool, or a new buffer if none is free (Any Thread)
+     * @return empty Buffer
+     */
+    public static Buffer acquireBuffer() {
+        buffersAcquired.incrementAndGet();
+        Buffer buffer = buffers.poll();
+        if(buffer == null) {
+            return new Buffer();
+        }
+        pooledBuffers.decrementAndGet();
+        buffersReused.incrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Method to return a buffer to the pool (Any Thread)
+     * > Oversized buffers and buffers beyond the pool size are dropped
+     * @param buffer is the buffer to return
+     */
+    public static void releaseBuffer(Buffer buffer) {
+        buffer.length = 0;
+        if(buffer.data.length > MAX_POOLED_BYTES) {
+            return;
+        }
+        if(pooledBuffers.incrementAndGet() > MAX_POOLED_BUFFERS) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        buffers.add(buffer);
+    }
+
+    /**
+     * Method to decode a fetched app details response on the decode pool (Fetch Thread)
+     * > The buffer is returned to the pool once decoded, a failed decode is passed on as a null entry
+     * @param appid is the fetched appid
+     * @param raw is the fetched response
+     * @param decodedEntry is called on the decode thread with the decoded entry
+     */
+    public void decodeAppDetails(int appid, Buffer raw, Consumer<AppEntry> decodedEntry) {
+        maxQueued.accumulateAndGet(pool.getQueuedSubmissionCount() + 1, Math::max);
+        pool.execute(() -> {
+            long start = System.nanoTime();
+            AppEntry entry;
+            try {
+                entry = SteamConnector.decodeAppDetails(appid, raw);
+            }
+            catch (RuntimeException e) {
+                entry = null;
+            }
+            decodeNanos.addAndGet(System.nanoTime() - start);
+            decoded.incrementAndGet();
+            decodedEntry.accept(entry);
+        });
+    }
+
+    /**
+     * Method to log decode timing and buffer reuse since the last call, then reset the counters
+     * @param logger is the existing logger
+     */
+    public void logStatus(Logger logger) {
+        int count = decoded.getAndSet(0);
+        long nanos = decodeNanos.getAndSet(0);
+        int queued = maxQueued.getAndSet(0);
+        long acquired = buffersAcquired.getAndSet(0);
+        long reused = buffersReused.getAndSet(0);
+        if(count == 0) {
+            return;
+        }
+
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("Decoded %d Responses on %d Threads - Avg: %.2fms, Max Queued: %d, Buffers Reused: %d/%d",
+                count, THREADS, nanos / 1e6 / count, queued, reused, acquired));
+    }
+}
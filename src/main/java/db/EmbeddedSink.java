@@ -0,0 +1,344 @@
+package db;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - StorageSink writing to an embedded SQLite database file
+ * > The file is opened in WAL mode so readers are never blocked by the updater
+ * > Writes are grouped into large transactions (a whole app list or fetch batch per commit)
+ * > Needs no database server, for single-node deployments and running the full update pipeline locally
+ * > Apps to update are paged in appid order (one node, no leases), apps in the negative cache are skipped until their next check
+ */
+public class EmbeddedSink implements StorageSink {
+    // Address Prefix Selecting the Embedded Store {sqlite:<file>}
+    public static final String ADDRESS_PREFIX = "sqlite:";
+
+    // SQLite Driver
+    private static final String JDBC_DRIVER = "org.sqlite.JDBC";
+
+    // Database File
+    private final String path;
+
+    // Logging
+    private final Logger logger;
+
+    // JDBC Connection
+    private Connection conn;
+
+    // Urgent Lane (No Control Table or Weighted Lanes Without MySQL) and Negative Cache
+    private final RefreshLanes lanes;
+    private NegativeCache negativeCache;
+
+    // Last Appid Claimed by the Running Update
+    private int claimedThrough;
+
+    // Write Timing
+    private long writeNanos;
+    private int writtenApps;
+
+    /**
+     * Constructor - Creates an EmbeddedSink for the given database file
+     * @param path is the SQLite database file
+     * @param logger is the existing logger
+     */
+    public EmbeddedSink(String path, Logger logger) {
+        this.path = path;
+        this.logger = logger;
+        this.lanes = new RefreshLanes(null, null, logger);
+    }
+
+    /**
+     * Method to check whether connection info selects the embedded store
+     * @param info is the database connection info
+     * @return true if the address is sqlite:<file>
+     */
+    public static boolean isEmbedded(DatabaseInfo info) {
+        return info.address().startsWith(ADDRESS_PREFIX);
+    }
+
+    /**
+     * Method to get the database file from connection info
+     * @param info is the database connection info
+     * @return database file path
+     */
+    public static String getPath(DatabaseInfo info) {
+        return info.address().substring(ADDRESS_PREFIX.length());
+    }
+
+    // *** StorageSink Methods ***
+
+    public boolean open() {
+        try {
+            Class.forName(JDBC_DRIVER);
+            conn = DriverManager.getConnection("jdbc:sqlite:" + path);
+
+            try(Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode=WAL");
+                stmt.execute("PRAGMA synchronous=NORMAL"); // Durable at Checkpoints, Safe Against Corruption in WAL Mode
+                stmt.execute("PRAGMA busy_timeout=5000");
+                stmt.executeUpdate(sqliteCreateTableAppInfo);
+                stmt.executeUpdate(sqliteCreateNeedsUpdateIndex);
+                stmt.executeUpdate(sqliteCreateTableAppNegativeCache);
+            }
+            negativeCache = new NegativeCache(conn, logger);
+            logger.log(Logger.LOG_TYPE_CONNECTION, "Opened Embedded Database: " + path);
+            return true;
+        }
+        catch (ClassNotFoundException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Open Embedded Database - SQLite Driver Not Found");
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Open Embedded Database %s - %s", path, e.getMessage()));
+        }
+        close();
+        return false;
+    }
+
+    public void close() {
+        try {
+            if(conn != null) {
+                conn.close();
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Close Embedded Database: " + path);
+        }
+        conn = null;
+    }
+
+    public String getName() {
+        return ADDRESS_PREFIX + path;
+    }
+
+    public HashMap<Integer, Long> getAppNameHashes() {
+        HashMap<Integer, Long> nameHashes = new HashMap<>();
+
+        try(Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(getAllAppNames);
+
+            while(rs.next()) {
+                nameHashes.put(rs.getInt(1), App.nameHash(rs.getString(2)));
+            }
+            return nameHashes;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Retrieve App Names From Embedded Database");
+        }
+        return null;
+    }
+
+    public int countAppsToUpdate() {
+        try(PreparedStatement pStmt = conn.prepareStatement(sqliteCountAppidsToUpdate)) {
+            pStmt.setLong(1, Utils.getTimeSource().currentTimeSeconds());
+            ResultSet rs = pStmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Count Apps To Update in Embedded Database");
+        }
+        return 0;
+    }
+
+    public void beginUpdate() {
+        negativeCache.load();
+        negativeCache.requeueDue();
+        claimedThrough = 0;
+    }
+
+    /**
+     * Method to claim the next page of apps to update in appid order
+     * > Apps that fail are passed by the page order and retried once due in the negative cache
+     */
+    public ArrayList<Integer> claimApps(int size) {
+        ArrayList<Integer> appids = new ArrayList<>();
+
+        try(PreparedStatement pStmt = conn.prepareStatement(sqliteGetAppidsToUpdateAfter)) {
+            pStmt.setInt(1, claimedThrough);
+            pStmt.setLong(2, Utils.getTimeSource().currentTimeSeconds());
+            pStmt.setInt(3, size);
+            ResultSet rs = pStmt.executeQuery();
+
+            while(rs.next()) {
+                appids.add(rs.getInt(COLUMN_APPID));
+            }
+            if(!appids.isEmpty()) {
+                claimedThrough = appids.get(appids.size() - 1);
+            }
+            return appids;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Retrieve Apps To Update From Embedded Database");
+        }
+        return null;
+    }
+
+    public void renewClaims(boolean force) {} // Single Node, Nothing Leased
+
+    public void releaseClaims() {} // Single Node, Nothing Leased
+
+    public RefreshLanes getLanes() {
+        return lanes;
+    }
+
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    public int insertApps(ArrayList<App> apps) {
+        UpdateEvents.DatabaseBatch event = UpdateEvents.beginDatabaseBatch(UpdateEvents.BATCH_INSERT_APPS, getName(), apps.size());
+        int added = insertAppRows(apps);
+        event.success = added >= 0;
+        event.commit();
+        return added;
+    }
+
+    public boolean renameApps(ArrayList<App> apps) {
+        UpdateEvents.DatabaseBatch event = UpdateEvents.beginDatabaseBatch(UpdateEvents.BATCH_RENAME_APPS, getName(), apps.size());
+        boolean renamed = renameAppRows(apps);
+        event.success = renamed;
+        event.commit();
+        return renamed;
+    }
+
+    public ArrayList<AppEntry> writeApps(ArrayList<AppEntry> entries) {
+        UpdateEvents.DatabaseBatch event = UpdateEvents.beginDatabaseBatch(UpdateEvents.BATCH_WRITE_APPS, getName(), entries.size());
+        ArrayList<AppEntry> written = writeAppRows(entries);
+        event.success = written != null;
+        event.commit();
+        return written;
+    }
+
+    public void logTiming() {
+        if(writtenApps > 0) {
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("App Writes: %d Apps in %dms", writtenApps, writeNanos / 1000000));
+        }
+        writeNanos = 0;
+        writtenApps = 0;
+    }
+
+    public DatabaseMetaData getMetaData() {
+        try {
+            return conn.getMetaData();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Retrieve Embedded Database MetaData");
+        }
+        return null;
+    }
+
+    // *** Private Methods ***
+
+    private int insertAppRows(ArrayList<App> apps) {
+        if(apps.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            conn.setAutoCommit(false);
+            int added = 0;
+
+            try(PreparedStatement pStmt = conn.prepareStatement(sqliteInsertNewApp)) {
+                for(App app : apps) {
+                    pStmt.setInt(1, app.appid());
+                    pStmt.setString(2, app.name());
+                    added += pStmt.executeUpdate();
+                }
+            }
+            conn.commit();
+            return added;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Add %d New Apps to the Embedded Database", apps.size()));
+            rollback();
+        }
+        finally {
+            restoreAutoCommit();
+        }
+        return -1;
+    }
+
+    private boolean renameAppRows(ArrayList<App> apps) {
+        try {
+            conn.setAutoCommit(false);
+
+            try(PreparedStatement pStmt = conn.prepareStatement(updateAppName)) {
+                for(App app : apps) {
+                    pStmt.setString(1, app.name());
+                    pStmt.setInt(2, app.appid());
+                    pStmt.addBatch();
+                }
+                pStmt.executeBatch();
+            }
+            conn.commit();
+            return true;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Rename %d Apps in the Embedded Database", apps.size()));
+            rollback();
+        }
+        finally {
+            restoreAutoCommit();
+        }
+        return false;
+    }
+
+    private ArrayList<AppEntry> writeAppRows(ArrayList<AppEntry> entries) {
+        long start = System.nanoTime();
+
+        try {
+            conn.setAutoCommit(false);
+
+            try(PreparedStatement pStmt = conn.prepareStatement(sqliteUpdateApp)) {
+                long now = Utils.getTimeSource().currentTimeMillis();
+                for(AppEntry entry : entries) {
+                    pStmt.setLong(1, now);
+                    pStmt.setString(2, entry.type());
+                    pStmt.setString(3, entry.header_image());
+                    pStmt.setString(4, entry.background());
+                    pStmt.setLong(5, entry.contentHash());
+                    pStmt.setInt(6, entry.appid());
+                    pStmt.addBatch();
+                }
+                pStmt.executeBatch();
+            }
+            negativeCache.writePending();
+            conn.commit();
+            negativeCache.pendingWritten();
+
+            writeNanos += System.nanoTime() - start;
+            writtenApps += entries.size();
+            return entries;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed To Write Batch of %d Apps to the Embedded Database", entries.size()));
+            rollback();
+        }
+        finally {
+            restoreAutoCommit();
+        }
+        return null;
+    }
+
+    private void rollback() {
+        try {
+            conn.rollback();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Roll Back Embedded Database Transaction");
+        }
+    }
+
+    private void restoreAutoCommit() {
+        try {
+            conn.setAutoCommit(true);
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Restore Auto-Commit on Embedded Database");
+        }
+    }
+}
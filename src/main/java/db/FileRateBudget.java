@@ -0,0 +1,131 @@
+package db;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class - Shared rate budget kept in a memory-mapped file, for processes on the same host
+ * > The file holds one long, the shared time of the next free slot, moved forward with compare-and-set so no file lock is needed
+ * > A new (zero filled) file starts with the full burst available
+ * > Every process sharing the file should use the same limit, the spacing is applied by the process that reserves
+ */
+public class FileRateBudget implements SharedRateBudget {
+    // File Layout {Next Slot Time (Native Long)}
+    private static final int FILE_SIZE = 8;
+    private static final int NEXT_SLOT_OFFSET = 0;
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // Budget File
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // Slot Spacing
+    private final long intervalMillis;
+    private final long burstMillis;
+
+    // Logging
+    private final Logger logger;
+
+    /**
+     * Constructor - Creates a FileRateBudget over a mapped budget file
+     */
+    private FileRateBudget(Path path, FileChannel channel, MappedByteBuffer buffer, long intervalMillis, int burst, Logger logger) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.intervalMillis = intervalMillis;
+        this.burstMillis = (burst - 1) * intervalMillis;
+        this.logger = logger;
+    }
+
+    /**
+     * Method to open (or create) and map a budget file
+     * @param path is the budget file path
+     * @param intervalMillis is the spacing between slots
+     * @param burst is the number of slots that may be taken back-to-back
+     * @param logger is the existing logger
+     * @return FileRateBudget or null on failure
+     */
+    public static FileRateBudget open(Path path, long intervalMillis, int burst, Logger logger) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if(parent != null) {
+                parent.toFile().mkdirs();
+            }
+
+            // Mapping Past the End Grows the File (Zero Filled)
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            return new FileRateBudget(path, channel, buffer, intervalMillis, burst, logger);
+        }
+        catch (IOException | RuntimeException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Open Shared Rate Budget File: " + path);
+            return null;
+        }
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to reserve the next shared call slot
+     * @return local time in millis the call may be made
+     */
+    @Override
+    public long reserve() {
+        while(true) {
+            long now = Utils.getTimeSource().currentTimeMillis();
+            long nextSlot = (long) LONG_VIEW.getVolatile(buffer, NEXT_SLOT_OFFSET);
+
+            // Slot Starts Up To a Burst Ahead of the Shared Schedule, an Idle Budget Restarts From Now
+            long slot = Math.max(now, nextSlot - burstMillis);
+            long newNextSlot = Math.max(nextSlot, now) + intervalMillis;
+            if(LONG_VIEW.compareAndSet(buffer, NEXT_SLOT_OFFSET, nextSlot, newNextSlot)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Method to push the next shared slot back after Steam rate-limited a call
+     * @param millis is the time from now no process may call before
+     */
+    @Override
+    public void backOff(long millis) {
+        long until = Utils.getTimeSource().currentTimeMillis() + millis + burstMillis;
+        while(true) {
+            long nextSlot = (long) LONG_VIEW.getVolatile(buffer, NEXT_SLOT_OFFSET);
+            if(nextSlot >= until || LONG_VIEW.compareAndSet(buffer, NEXT_SLOT_OFFSET, nextSlot, until)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Method to close the budget file (the mapping is released once collected)
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Close Shared Rate Budget File: " + path);
+        }
+    }
+
+    /**
+     * Method to get the budget name used in logs
+     * @return budget file path
+     */
+    @Override
+    public String getName() {
+        return "File: " + path;
+    }
+}
@@ -0,0 +1,123 @@
+package db;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Class - Continuous JDK Flight Recording of updates with a dump of every slow update cycle
+ * > Records the UpdateEvents and the JDK's default (low overhead) event settings, rolling over after maxAge
+ * > When a cycle takes longer than the slow threshold the rolling recording is dumped to a .jfr file
+ */
+public class FlightRecording {
+    // Rolling Recording Limits
+    private static final Duration MAX_AGE = Duration.ofHours(2);
+    private static final long MAX_SIZE_BYTES = 256L * 1024 * 1024; // 256 MiB
+
+    // Dump Settings
+    private final Path dir;
+    private final long slowCycleMillis;
+
+    // Logging
+    private final Logger logger;
+
+    // Running Recording (null Until Started)
+    private Recording recording;
+
+    /**
+     * Constructor - Creates a FlightRecording dumping slow cycles to the given directory
+     * @param dir is the dump directory
+     * @param slowCycleMillis is the cycle duration above which the recording is dumped
+     * @param logger is the existing logger
+     */
+    public FlightRecording(Path dir, long slowCycleMillis, Logger logger) {
+        this.dir = dir;
+        this.slowCycleMillis = slowCycleMillis;
+        this.logger = logger;
+    }
+
+    /**
+     * Method to create the flight recording from system properties
+     * > steam.jfr=true enables the recording
+     * > steam.jfr.dir sets the dump directory (default recordings)
+     * > steam.jfr.slow.minutes sets the cycle duration above which the recording is dumped (default 60)
+     * @param logger is the existing logger
+     * @return FlightRecording or null if disabled
+     */
+    public static FlightRecording fromSystemProperties(Logger logger) {
+        if(!Boolean.getBoolean("steam.jfr")) {
+            return null;
+        }
+        long slowMinutes = Math.max(1, Long.getLong("steam.jfr.slow.minutes", 60));
+        return new FlightRecording(Path.of(System.getProperty("steam.jfr.dir", "recordings")), slowMinutes * 60 * 1000, logger);
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to start the continuous recording if not already running
+     */
+    public void start() {
+        if(recording != null) {
+            return;
+        }
+
+        try {
+            Recording started = new Recording(Configuration.getConfiguration("default"));
+            for(Class<? extends Event> eventClass : UpdateEvents.getEventClasses()) {
+                started.enable(eventClass);
+            }
+            started.setName("Steam Insight Updater");
+            started.setToDisk(true);
+            started.setMaxAge(MAX_AGE);
+            started.setMaxSize(MAX_SIZE_BYTES);
+            started.start();
+
+            recording = started;
+            logger.log(Logger.LOG_TYPE_LOG, String.format("Started Flight Recording - Dumping Cycles Slower Than %s to %s",
+                    Duration.ofMillis(slowCycleMillis).toMinutes() + " Minutes", dir));
+        }
+        catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Start Flight Recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Method to report a finished update cycle, dumping the recording if it was slow
+     * @param durationMillis is the cycle duration
+     */
+    public void cycleFinished(long durationMillis) {
+        if(recording == null || durationMillis < slowCycleMillis) {
+            return;
+        }
+
+        Path file = dir.resolve("slow-cycle_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")) + ".jfr");
+        try {
+            Files.createDirectories(dir);
+            recording.dump(file);
+            logger.log(Logger.LOG_TYPE_WARNING, String.format("Slow Update Cycle (%s) - Flight Recording Dumped to %s",
+                    Duration.ofMillis(durationMillis).toMinutes() + " Minutes", file));
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Dump Flight Recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Method to stop and discard the recording
+     */
+    public void close() {
+        if(recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
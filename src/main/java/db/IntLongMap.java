@@ -0,0 +1,165 @@
+package db;
+
+import java.util.Arrays;
+
+/**
+ * Class - Open-addressing map of int keys to long values without boxing (about 12 bytes per entry at full load)
+ * > Linear probing with backward shift deletion, so removals leave no tombstones
+ * > Key 0 marks an empty slot and cannot be stored (appid 0 is never a Steam app)
+ * > Not thread-safe, callers synchronize
+ */
+class IntLongMap {
+    private static final int EMPTY_KEY = 0;
+    private static final double MAX_LOAD = 0.6;
+
+    // Open-Addressing Table
+    private int[] keys;
+    private long[] values;
+    private int size;
+
+    /**
+     * Constructor - Creates an empty IntLongMap
+     * @param capacity is the initial table size (rounded up to a power of two)
+     */
+    IntLongMap(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.keys = new int[tableSize];
+        this.values = new long[tableSize];
+    }
+
+    /**
+     * Method to get the value of a key
+     * @param key is the given key
+     * @param missing is the value returned if the key is not stored
+     * @return stored value or missing
+     */
+    long get(int key, long missing) {
+        int mask = keys.length - 1;
+        for(int i = mix(key) & mask; keys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+            if(keys[i] == key) {
+                return values[i];
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Method to store a value, replacing the value of an existing key
+     * @param key is the given key (not 0)
+     * @param value is the value to store
+     */
+    void put(int key, long value) {
+        if(size + 1 > keys.length * MAX_LOAD) {
+            resize();
+        }
+
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while(keys[i] != EMPTY_KEY) {
+            if(keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * Method to remove a key, shifting back later entries of its probe chain
+     * @param key is the given key
+     * @return true if the key was stored
+     */
+    boolean remove(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while(keys[i] != key) {
+            if(keys[i] == EMPTY_KEY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // Backward Shift Deletion
+        int j = i;
+        while(true) {
+            j = (j + 1) & mask;
+            if(keys[j] == EMPTY_KEY) {
+                break;
+            }
+            int home = mix(keys[j]) & mask;
+            if(((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY_KEY;
+        values[i] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * Method to get the stored keys in table order
+     * @return array of stored keys
+     */
+    int[] keys() {
+        int[] stored = new int[size];
+        int count = 0;
+        for(int key : keys) {
+            if(key != EMPTY_KEY) {
+                stored[count++] = key;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Method to get the number of stored keys
+     * @return map size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Method to remove every key, keeping the table size
+     */
+    void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to double the table size
+     */
+    private void resize() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+
+        int mask = keys.length - 1;
+        for(int k = 0; k < oldKeys.length; k++) {
+            if(oldKeys[k] != EMPTY_KEY) {
+                int i = mix(oldKeys[k]) & mask;
+                while(keys[i] != EMPTY_KEY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,232 @@
+package db;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static db.Queries.*;
+
+/**
+ * Class - Used to claim batches of apps to update using row leases so multiple updater nodes can share one database
+ * > Apps are claimed with SELECT ... FOR UPDATE SKIP LOCKED and marked with this node's lease owner
+ * > Leases are renewed on a heartbeat and expire if a node dies, allowing other nodes to reclaim the work
+ */
+public class LeaseManager {
+    private static final int LEASE_SECONDS = 15 * 60; // Lease Duration (Longer Than a RateLimit Wait)
+    private static final long HEARTBEAT_MILLIS = 60 * 1000; // Time Between Lease Renewals
+
+    // JDBC Connection
+    private final Connection conn;
+
+    // Logging
+    private final Logger logger;
+
+    // Lease Owner Id of this Node
+    private final String owner;
+
+    private long lastHeartbeat;
+
+    /**
+     * Constructor - Creates a LeaseManager for the given connection with a unique owner id for this node
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     */
+    public LeaseManager(Connection conn, Logger logger) {
+        this.conn = conn;
+        this.logger = logger;
+        this.owner = createOwnerId();
+    }
+
+    /**
+     * Method to get the lease owner id of this node
+     * @return lease owner id
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Method to claim a batch of apps to update that are not leased by another node
+     * > Apps with expired leases (from dead nodes) are claimable again
+     * @param claimQuery is the lane's claim query (lease expiry, [negative cache time], [updated before], limit parameters)
+     * @param negativeCacheParam is whether the query skips negative cached apps not yet due
+     * @param updatedBefore is the time apps must be last updated before or null if the query has no age parameter
+     * @param size is the maximum number of apps to claim
+     * @return ArrayList of claimed appids or null on failure
+     */
+    public ArrayList<Integer> claimBatch(String claimQuery, boolean negativeCacheParam, Timestamp updatedBefore, int size) {
+        ArrayList<Integer> appids = new ArrayList<>();
+
+        try {
+            conn.setAutoCommit(false);
+
+            // Lock Unclaimed Rows, Skipping Rows Locked by Other Nodes
+            try(PreparedStatement pStmt = conn.prepareStatement(claimQuery)) {
+                int cnt = 1;
+                pStmt.setTimestamp(cnt++, new Timestamp(Utils.getTimeSource().currentTimeMillis())); // Claim Expired Leases
+                if(negativeCacheParam) {
+                    pStmt.setLong(cnt++, Utils.getTimeSource().currentTimeSeconds()); // Skip Negative Cached Apps Not Yet Due
+                }
+                if(updatedBefore != null) {
+                    pStmt.setTimestamp(cnt++, updatedBefore); // Only Apps Last Updated Before
+                }
+                pStmt.setInt(cnt, size);
+                ResultSet rs = pStmt.executeQuery();
+
+                while(rs.next()) {
+                    appids.add(rs.getInt(COLUMN_APPID));
+                }
+            }
+
+            // Mark Locked Rows as Leased by this Node
+            if(!appids.isEmpty()) {
+                leaseApps(appids);
+            }
+
+            conn.commit();
+            lastHeartbeat = Utils.getTimeSource().currentTimeMillis();
+            return appids;
+        }
+        catch (SQLException e) {
+            rollback();
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Claim Apps To Update - SQL Exception {%d}", e.getErrorCode()));
+        }
+        finally {
+            restoreAutoCommit();
+        }
+        return null;
+    }
+
+    /**
+     * Method to lease apps to this node regardless of who holds them, used for urgent refreshes
+     * > A node that held one of the leases keeps fetching it, but its write no longer clears this node's lease
+     * @param appids is the list of appids to lease
+     * @return true on success or false on failure
+     */
+    public boolean lease(ArrayList<Integer> appids) {
+        if(appids.isEmpty()) {
+            return true;
+        }
+
+        try {
+            leaseApps(appids);
+            return true;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Lease %d Urgent Apps - SQL Exception {%d}", appids.size(), e.getErrorCode()));
+        }
+        return false;
+    }
+
+    /**
+     * Method to renew this node's leases if the heartbeat interval has passed
+     */
+    public void heartbeat() {
+        if(Utils.getTimeSource().currentTimeMillis() - lastHeartbeat >= HEARTBEAT_MILLIS) {
+            renew();
+        }
+    }
+
+    /**
+     * Method to renew all leases held by this node
+     */
+    public void renew() {
+        try(PreparedStatement pStmt = conn.prepareStatement(renewLeases)) {
+            pStmt.setTimestamp(1, getLeaseExpiry());
+            pStmt.setString(2, owner);
+            pStmt.executeUpdate();
+            lastHeartbeat = Utils.getTimeSource().currentTimeMillis();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Renew App Leases");
+        }
+    }
+
+    /**
+     * Method to release all leases held by this node so other nodes can claim the apps
+     */
+    public void releaseAll() {
+        try(PreparedStatement pStmt = conn.prepareStatement(releaseLeases)) {
+            pStmt.setString(1, owner);
+            int released = pStmt.executeUpdate();
+
+            if(released > 0) {
+                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Released %d Unfinished App Leases", released));
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Release App Leases");
+        }
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to mark apps as leased by this node
+     * @param appids is the list of appids to lease (not empty)
+     * @throws SQLException on failure
+     */
+    private void leaseApps(ArrayList<Integer> appids) throws SQLException {
+        try(PreparedStatement pStmt = conn.prepareStatement(getLeaseAppsQuery(appids.size()))) {
+            int cnt = 1;
+            pStmt.setString(cnt++, owner);
+            pStmt.setTimestamp(cnt++, getLeaseExpiry());
+            for(int appid : appids) {
+                pStmt.setInt(cnt++, appid);
+            }
+            pStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Method to get the expiry time of a lease taken or renewed now
+     * > Lease times come from the TimeSource so nodes must keep their clocks in sync (NTP)
+     * @return lease expiry timestamp
+     */
+    private Timestamp getLeaseExpiry() {
+        return new Timestamp(Utils.getTimeSource().currentTimeMillis() + LEASE_SECONDS * 1000L);
+    }
+
+    /**
+     * Method to rollback the current claim transaction
+     */
+    private void rollback() {
+        try {
+            conn.rollback();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Rollback App Claim");
+        }
+    }
+
+    /**
+     * Method to restore auto-commit after a claim transaction
+     */
+    private void restoreAutoCommit() {
+        try {
+            conn.setAutoCommit(true);
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Restore Auto-Commit After App Claim");
+        }
+    }
+
+    /**
+     * Method to create a unique owner id for this node {host:pid:random}
+     * @return owner id string (max 64 characters)
+     */
+    private static String createOwnerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        }
+        catch (UnknownHostException e) {
+            host = "unknown";
+        }
+
+        String id = String.format("%s:%d:%s", host, ProcessHandle.current().pid(), UUID.randomUUID().toString().substring(0, 8));
+        return id.length() > 64 ? id.substring(id.length() - 64) : id;
+    }
+}
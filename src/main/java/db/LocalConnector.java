@@ -0,0 +1,136 @@
+package db;
+
+import java.sql.DatabaseMetaData;
+
+/**
+ * Class - Runs the update pipeline against an embedded database (sqlite:<file>) on a single node
+ * > Needs no MySQL server, the UpdateEngine pages apps to update in appid order through the EmbeddedSink
+ * > Refresh requests from the GUI are served ahead of the pages (there is no control table or weighted lanes without MySQL)
+ * > Lookup, history, snapshots, the change outbox and fan-out need MySQL and are only run by the DBConnector
+ */
+public class LocalConnector implements ConnectorInterface {
+    // Storage
+    private StorageSink sink;
+
+    // Update Pipeline
+    private final UpdateEngine engine;
+
+    // Logging
+    private final Logger logger;
+
+    /**
+     * Constructor - Creates a LocalConnector with an existing Logger
+     * @param logger is the existing logger
+     */
+    public LocalConnector(Logger logger) {
+        this.logger = logger;
+        this.engine = new UpdateEngine(new UpdateEngine.Hooks() {}, logger);
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to open the storage sink with given Database Connection Info
+     * @param info is the given connection info
+     * @return true on success or false on any failure
+     */
+    public boolean openConnection(DatabaseInfo info) {
+        StorageSink opened = StorageSink.create(info, false, logger);
+        if(!opened.open()) {
+            return false;
+        }
+        sink = opened;
+        logger.log(Logger.LOG_TYPE_CONNECTION, "Successfully Connected To Database: " + sink.getName());
+
+        engine.open(sink, info);
+        return true;
+    }
+
+    /**
+     * Method to close the storage sink once no update is running
+     */
+    public void closeConnection() {
+        engine.close(() -> {
+            if(sink == null) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Close Connection To Database - Already Closed");
+                return;
+            }
+            sink.close();
+            sink = null;
+            logger.log(Logger.LOG_TYPE_CONNECTION, "Successfully Disconnected From Database");
+        });
+    }
+
+    /**
+     * Method to update the database and return counters for its result
+     */
+    public UpdateResults update() {
+        return update(true);
+    }
+
+    /**
+     * Method to update the database and return counters for its result
+     * @param syncAppList is whether new and renamed apps are fetched from the Steam app list
+     */
+    @Override
+    public UpdateResults update(boolean syncAppList) {
+        return engine.update(syncAppList);
+    }
+
+    /**
+     * Method to set the ceiling of the adaptive Steam API rate, applied to a running update
+     * @param callsPerMinute is the new ceiling
+     */
+    @Override
+    public void setMaxRate(double callsPerMinute) {
+        engine.setMaxRate(callsPerMinute);
+    }
+
+    /**
+     * Method to request cancellation of the running update (Any Thread)
+     * > Fetches not yet started are dropped, fetches in flight are drained and written
+     */
+    @Override
+    public void cancel() {
+        engine.cancel();
+    }
+
+    /**
+     * Method to get the number of apps waiting for an update
+     * @return number of apps to update or 0 if not connected
+     */
+    @Override
+    public int getBacklog() {
+        return engine.getBacklog();
+    }
+
+    /**
+     * Method to request an urgent refresh of an app, served ahead of the pages of apps to update
+     * @param appid is the appid to refresh
+     */
+    @Override
+    public void requestRefresh(int appid) {
+        engine.requestRefresh(appid);
+    }
+
+    /**
+     * Method to check if refresh requests are waiting for an update
+     * @return true if requests are waiting
+     */
+    @Override
+    public boolean hasRefreshRequests() {
+        return engine.hasRefreshRequests();
+    }
+
+    /**
+     * Method to retrieve metadata from the DataBase
+     * @return DatabaseMetaData Object for the connected Database
+     */
+    public DatabaseMetaData getMetaData() {
+        if(sink == null) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Cannot Retrieve Database Meta Data - Not Connected To Database");
+            return null;
+        }
+        return sink.getMetaData();
+    }
+}
@@ -0,0 +1,279 @@
+package db;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Class - In-memory ring of structured log events for the UI log view
+ * > Events are stored in parallel arrays (time, type, appid, message) so a million retained events stay compact
+ * > Per-type and per-appid indexes of event sequence numbers make filtered views O(1) to index into
+ * > Indexes are trimmed as the ring overwrites its oldest events, so memory is bounded by the capacity
+ * > The list for a filter on both type and appid is built once and then kept up to date by add, until the filter changes
+ */
+public class LogBuffer {
+    // Default Retained Events (steam.log.buffer.events)
+    private static final int DEFAULT_CAPACITY = 1000000;
+
+    // Filter Matching Any Type
+    public static final int ANY_TYPE = -1;
+
+    // Record for Storing a Retained Log Event (appid 0 if Not About an App)
+    public record LogEvent(long seq, long time, int type, int appid, String message) {}
+
+    // Ring Storage {Guarded by this}
+    private final int capacity;
+    private final long[] times;
+    private final byte[] types;
+    private final int[] appids;
+    private final String[] messages;
+    private long firstSeq; // Oldest Retained Event
+    private long nextSeq; // Next Event Added
+
+    // Indexes of Sequence Numbers {Guarded by this}
+    private final SeqList[] typeIndex;
+    private final HashMap<Integer, SeqList> appidIndex;
+
+    // Cached Index of the Last Type and Appid Filter (null if None) {Guarded by this}
+    private SeqList filtered;
+    private int filteredType;
+    private int filteredAppid;
+
+    /**
+     * Constructor - Creates a LogBuffer retaining the given number of events
+     * @param capacity is the max number of retained events
+     */
+    public LogBuffer(int capacity) {
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.types = new byte[capacity];
+        this.appids = new int[capacity];
+        this.messages = new String[capacity];
+        this.typeIndex = new SeqList[Logger.LOG_TYPE_COUNT];
+        for(int i = 0; i < typeIndex.length; i++) {
+            typeIndex[i] = new SeqList();
+        }
+        this.appidIndex = new HashMap<>();
+    }
+
+    /**
+     * Method to create a LogBuffer sized from the steam.log.buffer.events system property
+     * @return LogBuffer (default 1000000 events)
+     */
+    public static LogBuffer fromSystemProperties() {
+        return new LogBuffer(Math.max(1000, Integer.getInteger("steam.log.buffer.events", DEFAULT_CAPACITY)));
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to add an event, overwriting the oldest once full
+     * @param time is the event time in epoch millis
+     * @param type is the log type
+     * @param appid is the appid the event is about or 0
+     * @param message is the log message
+     */
+    public synchronized void add(long time, int type, int appid, String message) {
+        // Evict Oldest Event From the Ring and its Indexes
+        if(nextSeq - firstSeq == capacity) {
+            int slot = (int) (firstSeq % capacity);
+            typeIndex[types[slot]].removeFirst(firstSeq);
+
+            if(filtered != null && appids[slot] == filteredAppid && types[slot] == filteredType) {
+                filtered.removeFirst(firstSeq);
+            }
+            if(appids[slot] != 0) {
+                SeqList appidSeqs = appidIndex.get(appids[slot]);
+                if(appidSeqs != null) {
+                    appidSeqs.removeFirst(firstSeq);
+                }
+                if(appidSeqs != null && appidSeqs.size() == 0) {
+                    appidIndex.remove(appids[slot]);
+                }
+            }
+            messages[slot] = null;
+            firstSeq++;
+        }
+
+        int slot = (int) (nextSeq % capacity);
+        int indexedType = type >= 0 && type < typeIndex.length ? type : Logger.LOG_TYPE_LOG;
+        times[slot] = time;
+        types[slot] = (byte) indexedType;
+        appids[slot] = appid;
+        messages[slot] = message;
+
+        typeIndex[indexedType].add(nextSeq);
+        if(appid != 0) {
+            appidIndex.computeIfAbsent(appid, k -> new SeqList()).add(nextSeq);
+        }
+        if(filtered != null && appid == filteredAppid && indexedType == filteredType) {
+            filtered.add(nextSeq);
+        }
+        nextSeq++;
+    }
+
+    /**
+     * Method to count the events matching a filter
+     * @param type is the log type or ANY_TYPE
+     * @param appid is the appid or 0 for any
+     * @return number of matching retained events
+     */
+    public synchronized int size(int type, int appid) {
+        SeqList seqs = getIndex(type, appid);
+        if(seqs != null) {
+            return seqs.size();
+        }
+        return type == ANY_TYPE && appid == 0 ? (int) (nextSeq - firstSeq) : 0;
+    }
+
+    /**
+     * Method to get the index-th event matching a filter (oldest first)
+     * > With both a type and an appid set the appid index is used and scanned for the type
+     * @param type is the log type or ANY_TYPE
+     * @param appid is the appid or 0 for any
+     * @param index is the position in the filtered view
+     * @return LogEvent or null if out of range
+     */
+    public synchronized LogEvent get(int type, int appid, int index) {
+        long seq;
+        if(type == ANY_TYPE && appid == 0) {
+            seq = firstSeq + index;
+        }
+        else {
+            SeqList seqs = getIndex(type, appid);
+            if(seqs == null || index < 0 || index >= seqs.size()) {
+                return null;
+            }
+            seq = seqs.get(index);
+        }
+
+        if(index < 0 || seq < firstSeq || seq >= nextSeq) {
+            return null;
+        }
+        int slot = (int) (seq % capacity);
+        return new LogEvent(seq, times[slot], types[slot], appids[slot], messages[slot]);
+    }
+
+    /**
+     * Method to count the events matching a filter that were added before a sequence number and are still retained
+     * > Lets a view tell evicted rows at the front from rows appended at the back
+     * @param type is the log type or ANY_TYPE
+     * @param appid is the appid or 0 for any
+     * @param seq is the given sequence number
+     * @return number of matching retained events older than seq
+     */
+    public synchronized int countBefore(int type, int appid, long seq) {
+        SeqList seqs = getIndex(type, appid);
+        if(seqs == null) {
+            return (int) Math.max(0, Math.min(seq, nextSeq) - firstSeq);
+        }
+
+        // Binary Search the Ascending Sequence Numbers
+        int low = 0;
+        int high = seqs.size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(seqs.get(mid) < seq) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Method to get the sequence number of the next event (changes whenever an event is added)
+     * @return next sequence number
+     */
+    public synchronized long getNextSeq() {
+        return nextSeq;
+    }
+
+    /**
+     * Method to remove all retained events
+     */
+    public synchronized void clear() {
+        for(SeqList seqs : typeIndex) {
+            seqs.clear();
+        }
+        appidIndex.clear();
+        filtered = null;
+        Arrays.fill(messages, null);
+        firstSeq = nextSeq;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to get the index of a filter
+     * > Filters on both type and appid build a list from the (small) appid index, cached until another such filter is asked for
+     * @return SeqList of matching sequence numbers or null for the unfiltered view
+     */
+    private SeqList getIndex(int type, int appid) {
+        if(appid != 0) {
+            SeqList appidSeqs = appidIndex.get(appid);
+            if(type == ANY_TYPE) {
+                return appidSeqs == null ? new SeqList() : appidSeqs;
+            }
+            if(filtered != null && type == filteredType && appid == filteredAppid) {
+                return filtered;
+            }
+
+            filtered = new SeqList();
+            filteredType = type;
+            filteredAppid = appid;
+            for(int i = 0; appidSeqs != null && i < appidSeqs.size(); i++) {
+                long seq = appidSeqs.get(i);
+                if(types[(int) (seq % capacity)] == type) {
+                    filtered.add(seq);
+                }
+            }
+            return filtered;
+        }
+        if(type != ANY_TYPE) {
+            return type >= 0 && type < typeIndex.length ? typeIndex[type] : new SeqList();
+        }
+        return null;
+    }
+
+    /**
+     * Class - Growable queue of ascending sequence numbers (removed from the front, added at the back)
+     */
+    private static class SeqList {
+        private long[] data = new long[16];
+        private int head;
+        private int size;
+
+        void add(long seq) {
+            if(head + size == data.length) {
+                // Compact in Place if the Front Has Room, Otherwise Grow
+                long[] next = size * 2 <= data.length ? data : new long[data.length * 2];
+                System.arraycopy(data, head, next, 0, size);
+                data = next;
+                head = 0;
+            }
+            data[head + size++] = seq;
+        }
+
+        void removeFirst(long seq) {
+            if(size > 0 && data[head] == seq) {
+                head++;
+                size--;
+            }
+        }
+
+        long get(int index) {
+            return data[head + index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
@@ -1,14 +1,30 @@
 package db;
 
-import javax.swing.*;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Class - Used to handle logging to a log file and to the default console or a UI JTextField console
+ * Class - Used to handle logging to a log file and to the default console or a UI LogBuffer
+ * > The log file rolls over to a new segment once it reaches its size or age limit
+ * > Closed segments are gzipped on a background thread, then the oldest are pruned by total size and age
+ * > The open segment is file locked, so loggers of other processes sharing the log directory never compress it
+ * > Harnesses can log to the console or a LogBuffer only, without a log file
  */
 public class Logger {
     // Log Directory
@@ -22,30 +38,75 @@ public class Logger {
     public static final int LOG_TYPE_QUERY = 4;
     public static final int LOG_TYPE_DELETE = 5;
     public static final int LOG_TYPE_CONNECTION = 6;
+    public static final int LOG_TYPE_COUNT = 7;
+    private static final String[] LOG_TYPE_NAMES = {"LOG", "WARNING", "ERROR", "UPDATE", "QUERY", "DELETE", "CONNECTION"};
+
+    // Segment Limits (steam.log.max.mb, steam.log.max.hours)
+    private static final long MAX_SEGMENT_BYTES = Math.max(1, Long.getLong("steam.log.max.mb", 64)) * 1024 * 1024;
+    private static final long MAX_SEGMENT_MILLIS = Math.max(1, Long.getLong("steam.log.max.hours", 24)) * 60 * 60 * 1000;
+
+    // Retention of Closed Segments (steam.log.budget.mb, steam.log.retention.days)
+    private static final long MAX_TOTAL_BYTES = Math.max(1, Long.getLong("steam.log.budget.mb", 1024)) * 1024 * 1024;
+    private static final long MAX_AGE_MILLIS = Math.max(1, Long.getLong("steam.log.retention.days", 30)) * 24 * 60 * 60 * 1000;
+
+    // Segment File Names
+    private static final String FILE_PREFIX = "log_";
+    private static final String FILE_SUFFIX = ".txt";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Segment Names Locked by Loggers of This Process {Guarded by Itself}
+    // > Closing any channel of a file drops every lock this process holds on it, so a held segment is never opened twice
+    private static final HashSet<String> heldSegments = new HashSet<>();
 
     // Log File
-    private FileWriter logfile; // Open Logfile
+    private Writer logfile; // Open Logfile {Holds the Segment Lock Until Closed}
+    private File currentFile;
+    private long segmentBytes;
+    private long segmentOpened;
     private boolean open;
 
-    private JTextArea console;
+    // Background Compression and Pruning of Closed Segments
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Log-Compressor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Structured Events For the UI Log View (null to Print to the Default Console)
+    private LogBuffer buffer;
 
     /**
      * Constructor - Create A New Logger Object
      */
     public Logger() {
-        createLogDir(); // Create Log Directory if Necessary
-        openLogFile(); // Open New Logfile
+        this(null, true);
     }
 
     /**
-     * Constructor - Create a New Logger Object with an existing console (JTextArea)
-     * @param console is the existing console to write to
+     * Constructor - Create a New Logger Object writing events to an existing LogBuffer
+     * @param buffer is the existing buffer shown by the UI log view
      */
-    public Logger(JTextArea console) {
-        this.console = console;
+    public Logger(LogBuffer buffer) {
+        this(buffer, true);
+    }
 
+    /**
+     * Constructor - Create a New Logger Object, optionally without a log file (Harnesses Leaving No Files Behind)
+     * @param buffer is the buffer to write events to or null to print to the default console
+     * @param logToFile is whether events are also written to a log file in the log directory
+     */
+    public Logger(LogBuffer buffer, boolean logToFile) {
+        this.buffer = buffer;
+
+        if(!logToFile) {
+            open = true; // Console or Buffer Only
+            return;
+        }
         createLogDir(); // Create Log Directory if Necessary
         openLogFile(); // Open New Logfile
+        compressor.execute(this::compressLeftoverSegments); // Compress Segments Left by Earlier Runs
     }
 
     /**
@@ -54,30 +115,28 @@ public class Logger {
      * @param data is the data to log
      */
     public void log(int type, String data) {
+        log(type, 0, data);
+    }
+
+    /**
+     * Method to log a given string about an app with a given log type
+     * > The appid lets the UI log view filter the events of a single app
+     * @param type is the log type
+     * @param appid is the appid the data is about
+     * @param data is the data to log
+     */
+    public void log(int type, int appid, String data) {
         // If File is not Open, Cannot Log
         if(!open) {
             System.err.println("Log File Not Open");
             return;
         }
 
-        // Add Type Header
-        String logTypeStr;
-        switch(type) {
-            case LOG_TYPE_LOG -> logTypeStr = "LOG";
-            case LOG_TYPE_WARNING -> logTypeStr = "WARNING";
-            case LOG_TYPE_ERROR -> logTypeStr = "ERROR";
-            case LOG_TYPE_UPDATE -> logTypeStr = "UPDATE";
-            case LOG_TYPE_QUERY -> logTypeStr = "QUERY";
-            case LOG_TYPE_DELETE -> logTypeStr = "DELETE";
-            case LOG_TYPE_CONNECTION -> logTypeStr = "CONNECTION";
-            default -> logTypeStr = "NORMAL";
-        }
-
         // Compile String to Log
         String timeStamp = getTimeStamp();
-        String logString = String.format("%s: {%s} %s\n", timeStamp, logTypeStr, data);
+        String logString = String.format("%s: {%s} %s\n", timeStamp, getTypeName(type), data);
 
-        _log(logString);
+        _log(logString, type, appid, data);
     }
 
     /**
@@ -86,50 +145,261 @@ public class Logger {
     public void logBreak() {
         String logString = "=".repeat(50) + "\n";
 
-        _log(logString);
+        _log(logString, LOG_TYPE_LOG, 0, "=".repeat(50));
+    }
+
+    /**
+     * Method to get the name of a log type
+     * @param type is the log type
+     * @return type name used in log lines
+     */
+    public static String getTypeName(int type) {
+        return type >= 0 && type < LOG_TYPE_COUNT ? LOG_TYPE_NAMES[type] : "NORMAL";
     }
 
 
     // *** Private Methods ***
     /**
      * Method to log given string to console and logfile
+     * > Synchronized as fetch threads log concurrently
      * @param s is the given string
+     * @param type is the log type
+     * @param appid is the appid the line is about or 0
+     * @param data is the message of the line
      */
-    private void _log(String s) {
-        // Print to UI Console
-        if(hasConsole()) {
-            SwingUtilities.invokeLater(() -> console.append(s));
+    private synchronized void _log(String s, int type, int appid, String data) {
+        // Add to UI Log View
+        if(hasBuffer()) {
+            buffer.add(System.currentTimeMillis(), type, appid, data);
         }
         // Print to Default Console
         else {
             System.out.print(s);
         }
 
+        // No Log File
+        if(logfile == null) {
+            return;
+        }
+
+        // Roll Over Full or Old Segment
+        if(segmentBytes >= MAX_SEGMENT_BYTES || System.currentTimeMillis() - segmentOpened >= MAX_SEGMENT_MILLIS) {
+            rotate();
+        }
+
         // Write to Log File
+        UpdateEvents.LogFlush event = new UpdateEvents.LogFlush();
+        event.begin();
         try {
             logfile.write(s);
             logfile.flush(); // Flush Buffer to File Immediately
+            int bytes = utf8Length(s);
+            segmentBytes += bytes;
+
+            event.bytes = bytes;
+            event.commit();
         }
         catch (IOException e) {
             System.err.println("Failed to Write to Log File: " + e.getMessage());
         }
     }
 
+    /**
+     * Method to close the current segment and open the next one
+     * > Only the file switch happens on the logging thread, the closed segment is compressed in the background
+     */
+    private void rotate() {
+        File closed = currentFile;
+
+        try {
+            logfile.close();
+        }
+        catch (IOException e) {
+            System.err.println("Failed to Close Log Segment: " + e.getMessage());
+        }
+        release(closed);
+
+        if(!openSegment()) {
+            open = false;
+            return;
+        }
+        compressor.execute(() -> {
+            compress(closed);
+            prune();
+        });
+    }
+
     /**
      * Method to open a new logfile
      */
     private void openLogFile() {
-        String filename = FILE_DIR + "log_" + getTimeStamp() + ".txt";
-        try {
-            File file = new File(filename);
-            logfile = new FileWriter(file, true);
+        if(openSegment()) {
             open = true;
-
             log(LOG_TYPE_LOG, "Start of Logging");
         }
+    }
+
+    /**
+     * Method to open and lock a new segment file (numbered if a segment from the same second exists or is locked)
+     * @return true on success
+     */
+    private boolean openSegment() {
+        String name = FILE_PREFIX + getTimeStamp();
+        try {
+            for(int i = 0; ; i++) {
+                File file = new File(FILE_DIR + name + (i == 0 ? "" : "_" + i) + FILE_SUFFIX);
+                if(file.exists() || new File(file.getPath() + GZIP_SUFFIX).exists() || !hold(file)) {
+                    continue;
+                }
+
+                // Lock the Segment For as Long as It Is Written (Another Process May Have Created It Meanwhile)
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                if(tryLock(channel) == null) {
+                    channel.close();
+                    release(file);
+                    continue;
+                }
+
+                logfile = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+                currentFile = file;
+                segmentBytes = 0;
+                segmentOpened = System.currentTimeMillis();
+                return true;
+            }
+        }
         catch (IOException e) {
             System.err.println("Failed to Create Log File");
         }
+        return false;
+    }
+
+    /**
+     * Method to lock a whole segment without waiting
+     * @param channel is the open segment channel
+     * @return lock or null if a logger of this or another process holds the segment
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        }
+        catch (OverlappingFileLockException e) {
+            return null; // Held by Another Logger in This Process
+        }
+    }
+
+    /**
+     * Method to mark a segment as held by a logger of this process
+     * @return false if another logger of this process already holds it
+     */
+    private static boolean hold(File segment) {
+        synchronized(heldSegments) {
+            return heldSegments.add(segment.getName());
+        }
+    }
+
+    /**
+     * Method to unmark a segment once its channel is closed
+     */
+    private static void release(File segment) {
+        synchronized(heldSegments) {
+            heldSegments.remove(segment.getName());
+        }
+    }
+
+    /**
+     * Method to gzip segments left uncompressed by earlier runs, then prune (Compressor Thread)
+     * > Segments locked by a live logger (this or another process) are left alone, a crashed process holds no locks
+     */
+    private void compressLeftoverSegments() {
+        File[] segments = new File(FILE_DIR).listFiles((dir, name) -> name.startsWith(FILE_PREFIX));
+        if(segments == null) {
+            return;
+        }
+
+        for(File segment : segments) {
+            String name = segment.getName();
+
+            // Remove Partial Output of an Interrupted Compression (A Live Compression Still Has Its Segment)
+            if(name.endsWith(TEMP_SUFFIX)) {
+                File source = new File(FILE_DIR, name.substring(0, name.length() - GZIP_SUFFIX.length() - TEMP_SUFFIX.length()));
+                if(!source.exists() && !segment.delete()) {
+                    System.err.println("Failed to Delete Partial Log Segment: " + name);
+                }
+            }
+            else if(name.endsWith(FILE_SUFFIX)) {
+                compress(segment);
+            }
+        }
+        prune();
+    }
+
+    /**
+     * Method to gzip a closed segment, replacing it with <segment>.gz
+     * > The segment is locked while it is read, so segments still written or compressed by another logger are skipped
+     */
+    private void compress(File segment) {
+        if(!hold(segment)) {
+            return; // Live Segment of This Process
+        }
+
+        File temp = new File(segment.getPath() + GZIP_SUFFIX + TEMP_SUFFIX);
+        try(FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if(tryLock(channel) == null) {
+                return; // Live Segment
+            }
+
+            try(OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                Channels.newInputStream(channel).transferTo(out);
+            }
+            catch (IOException e) {
+                System.err.println("Failed to Compress Log Segment: " + segment.getName());
+                temp.delete();
+                return;
+            }
+            Files.move(temp.toPath(), new File(segment.getPath() + GZIP_SUFFIX).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (NoSuchFileException e) {
+            return; // Already Compressed by Another Logger
+        }
+        catch (IOException e) {
+            System.err.println("Failed to Replace Log Segment: " + segment.getName());
+            return;
+        }
+        finally {
+            release(segment);
+        }
+
+        // Delete Once Unlocked
+        try {
+            Files.deleteIfExists(segment.toPath());
+        }
+        catch (IOException e) {
+            System.err.println("Failed to Delete Log Segment: " + segment.getName());
+        }
+    }
+
+    /**
+     * Method to delete the oldest compressed segments beyond the size budget or max age
+     */
+    private void prune() {
+        File[] compressed = new File(FILE_DIR).listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(GZIP_SUFFIX));
+        if(compressed == null) {
+            return;
+        }
+
+        // Newest First
+        Arrays.sort(compressed, Comparator.comparingLong(File::lastModified).reversed());
+
+        long totalBytes = 0;
+        long now = System.currentTimeMillis();
+        for(File segment : compressed) {
+            totalBytes += segment.length();
+            if(totalBytes > MAX_TOTAL_BYTES || now - segment.lastModified() > MAX_AGE_MILLIS) {
+                if(!segment.delete()) {
+                    System.err.println("Failed to Prune Log Segment: " + segment.getName());
+                }
+            }
+        }
     }
 
     /**
@@ -138,13 +408,45 @@ public class Logger {
     public void closeLogFile() {
         try {
             log(LOG_TYPE_LOG, "End of Logging");
-            logfile.close();
-            open = false;
+            synchronized(this) {
+                if(logfile != null) {
+                    logfile.close();
+                    release(currentFile);
+                }
+                open = false;
+            }
+            compressor.shutdown(); // Finish Queued Compressions
         } catch (IOException e) {
             System.err.println("Failed to Close Log File");
         }
     }
 
+    /**
+     * Method to get the number of bytes a string takes in UTF-8 without encoding it
+     * @param s is the given string
+     * @return UTF-8 length in bytes
+     */
+    private static int utf8Length(String s) {
+        int bytes = 0;
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c < 0x80) {
+                bytes++;
+            }
+            else if(c < 0x800) {
+                bytes += 2;
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4; // Surrogate Pair
+                i++;
+            }
+            else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
     /**
      * Method to create the log directory if None Exists
      */
@@ -170,10 +472,10 @@ public class Logger {
     }
 
     /**
-     * Method to return if logger was given a UI console
-     * @return if UI console exists
+     * Method to return if logger was given a UI log buffer
+     * @return if UI log buffer exists
      */
-    private boolean hasConsole() {
-        return console != null;
+    private boolean hasBuffer() {
+        return buffer != null;
     }
 }
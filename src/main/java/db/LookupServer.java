@@ -0,0 +1,211 @@
+package db;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Class - Lightweight HTTP endpoint serving AppInfo lookups from the AppCache
+ * > GET /app?appid=<appid> returns a single app as a JSON object (404 if not in the database)
+ * > GET /apps?appids=<appid>,<appid>,... returns the found apps as a JSON array
+ * > GET /stats returns cache size and hit/miss counts
+ */
+public class LookupServer {
+    // Server Limits
+    private static final int THREAD_COUNT = 4;
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    // Cache Being Served
+    private final AppCache cache;
+
+    // Logging
+    private final Logger logger;
+
+    // HTTP Server
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Constructor - Creates a LookupServer for the given cache
+     * @param cache is the AppCache to serve
+     * @param logger is the existing logger
+     */
+    public LookupServer(AppCache cache, Logger logger) {
+        this.cache = cache;
+        this.logger = logger;
+    }
+
+    /**
+     * Method to start serving lookups on the given port
+     * @param port is the port to listen on
+     * @return true on success
+     */
+    public boolean start(int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/app", this::handleApp);
+            server.createContext("/apps", this::handleApps);
+            server.createContext("/stats", this::handleStats);
+
+            executor = Executors.newFixedThreadPool(THREAD_COUNT);
+            server.setExecutor(executor);
+            server.start();
+
+            logger.log(Logger.LOG_TYPE_CONNECTION, "AppInfo Lookup Endpoint Started on Port: " + port);
+            return true;
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Start AppInfo Lookup Endpoint on Port: " + port);
+        }
+        return false;
+    }
+
+    /**
+     * Method to stop serving lookups
+     */
+    public void stop() {
+        if(server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            logger.log(Logger.LOG_TYPE_CONNECTION, "AppInfo Lookup Endpoint Stopped");
+        }
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to handle a single app lookup
+     */
+    private void handleApp(HttpExchange exchange) throws IOException {
+        try(exchange) {
+            Integer appid = parseAppid(getParameter(exchange, "appid"));
+            if(appid == null) {
+                send(exchange, 400, new JSONObject().put("error", "Missing or Invalid appid").toString());
+                return;
+            }
+
+            AppInfoRow row = cache.get(appid);
+            if(row == null) {
+                send(exchange, 404, new JSONObject().put("error", "App Not Found").toString());
+                return;
+            }
+            send(exchange, 200, toJSON(row).toString());
+        }
+    }
+
+    /**
+     * Method to handle a batch app lookup
+     */
+    private void handleApps(HttpExchange exchange) throws IOException {
+        try(exchange) {
+            String param = getParameter(exchange, "appids");
+            if(param == null || param.isBlank()) {
+                send(exchange, 400, new JSONObject().put("error", "Missing appids").toString());
+                return;
+            }
+
+            String[] values = param.split(",");
+            if(values.length > MAX_BATCH_SIZE) {
+                send(exchange, 400, new JSONObject().put("error", "Too Many appids (Max " + MAX_BATCH_SIZE + ")").toString());
+                return;
+            }
+
+            JSONArray apps = new JSONArray();
+            for(String value : values) {
+                Integer appid = parseAppid(value.trim());
+                if(appid == null) {
+                    send(exchange, 400, new JSONObject().put("error", "Invalid appid: " + value).toString());
+                    return;
+                }
+
+                AppInfoRow row = cache.get(appid);
+                if(row != null) {
+                    apps.put(toJSON(row));
+                }
+            }
+            send(exchange, 200, apps.toString());
+        }
+    }
+
+    /**
+     * Method to handle a cache stats request
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try(exchange) {
+            send(exchange, 200, new JSONObject().put("stats", cache.getStats()).toString());
+        }
+    }
+
+    /**
+     * Method to convert a row to the JSON returned by the endpoint
+     */
+    private static JSONObject toJSON(AppInfoRow row) {
+        return new JSONObject()
+                .put("appid", row.appid())
+                .put("name", row.name() == null ? JSONObject.NULL : row.name())
+                .put("last_update", row.lastUpdate())
+                .put("type", row.type() == null ? JSONObject.NULL : row.type())
+                .put("header_image", row.header_image() == null ? JSONObject.NULL : row.header_image())
+                .put("background", row.background() == null ? JSONObject.NULL : row.background());
+    }
+
+    /**
+     * Method to get a query parameter of a request
+     * @return parameter value or null if not present
+     */
+    private static String getParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if(query == null) {
+            return null;
+        }
+
+        for(String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            if(idx > 0 && pair.substring(0, idx).equals(name)) {
+                return URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to parse a positive appid
+     * @return appid or null if invalid
+     */
+    private static Integer parseAppid(String value) {
+        if(value == null) {
+            return null;
+        }
+        try {
+            int appid = Integer.parseInt(value);
+            return appid > 0 ? appid : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method to send a JSON response
+     */
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
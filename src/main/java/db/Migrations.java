@@ -0,0 +1,248 @@
+package db;
+
+import java.sql.*;
+import java.util.HashSet;
+
+import static db.Queries.*;
+
+/**
+ * Class - Versioned schema migration runner for the Steam Database
+ * > Applied versions are recorded in the SchemaVersion table and each migration runs once
+ * > Statements that find their change already present (from before migrations existed, or a migration that failed part way) are skipped
+ * > A migration redefining a column never skips re-adding it, as a column still present has its old definition
+ * > Schema changes use online DDL (INSTANT/INPLACE, LOCK=NONE) wherever MySQL allows it
+ */
+public class Migrations {
+    // Named Lock Preventing Concurrent Migrations From Multiple Nodes
+    private static final String MIGRATION_LOCK = "steam_insight_migrations";
+    private static final int MIGRATION_LOCK_TIMEOUT = 60; // Seconds
+
+    // MySQL Errors Meaning a Change is Already Present
+    private static final int ER_TABLE_EXISTS = 1050;
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_CANT_DROP_FIELD_OR_KEY = 1091;
+
+    // Record for Storing a Schema Migration (redefinesColumn if it drops a column and adds it back with a new definition)
+    private record Migration(int version, String description, boolean redefinesColumn, String... statements) {
+        Migration(int version, String description, String... statements) {
+            this(version, description, false, statements);
+        }
+    }
+
+    // Schema Migrations (In Order, Never Edit an Applied Migration - Add a New One)
+    private static final Migration[] MIGRATIONS = {
+            new Migration(1, "Create AppInfo Table", createTableAppInfo),
+            new Migration(2, "Add Lease Columns", addLeaseColumns),
+            new Migration(3, "Create AppNegativeCache Table", createTableAppNegativeCache, seedAppNegativeCache),
+            new Migration(4, "Store last_update as DATETIME", modifyLastUpdateDatetime),
+            new Migration(5, "Add Content Hash Column", addContentHashColumn),
+            new Migration(6, "Add Planner Index", addNeedsUpdateColumn, addNeedsUpdateIndex),
+            new Migration(7, "Add Compact Storage Dictionaries and Columns", createTableAppTypes, createTableUrlPrefixes, addCompactColumns),
+            new Migration(8, "Include type_id in Planner Index", true, dropNeedsUpdateIndex, dropNeedsUpdateColumn, addNeedsUpdateColumnCompact, addNeedsUpdateIndex),
+            new Migration(9, "Create AppInfoView", createViewAppInfo),
+            new Migration(10, "Add last_update Index", addLastUpdateIndex),
+            new Migration(11, "Create AppInfoHistory Table", createTableAppInfoHistory),
+            new Migration(12, "Create TargetBacklog Table", createTableTargetBacklog),
+            new Migration(13, "Create RefreshRequests Table", createTableRefreshRequests),
+            new Migration(14, "Create RateBudget Table", createTableRateBudget),
+            new Migration(15, "Split needs_update by Planner Lane", true, dropNeedsUpdateIndex, dropNeedsUpdateColumn, addNeedsUpdateLaneColumn, addNeedsUpdateIndex),
+            new Migration(16, "Create MaintenanceTasks Table", createTableMaintenanceTasks),
+    };
+
+    /**
+     * Method to apply all pending migrations to the connected database
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     * @return true if the schema is up-to-date
+     */
+    public static boolean migrate(Connection conn, Logger logger) {
+        try(Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(createTableSchemaVersion);
+
+            // Lock Out Other Nodes While Migrating
+            if(!acquireLock(conn)) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Acquire Schema Migration Lock");
+                return false;
+            }
+
+            try {
+                HashSet<Integer> applied = getAppliedVersions(conn);
+
+                for(Migration migration : MIGRATIONS) {
+                    if(applied.contains(migration.version())) {
+                        continue;
+                    }
+
+                    logger.log(Logger.LOG_TYPE_UPDATE, String.format("Applying Schema Migration V%d - %s", migration.version(), migration.description()));
+                    for(String statement : migration.statements()) {
+                        applyStatement(conn, stmt, statement, migration.redefinesColumn());
+                    }
+                    recordVersion(conn, migration);
+                }
+                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Database Schema Up-To-Date (V%d)", getLatestVersion()));
+                return true;
+            }
+            finally {
+                releaseLock(conn);
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Migrate Database Schema - SQL Exception {%d} %s", e.getErrorCode(), e.getMessage()));
+        }
+        return false;
+    }
+
+    /**
+     * Method to check with EXPLAIN that the updater's hot queries use their indexes
+     * > Logs a warning for any hot query that scans the full table
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     * @return true if all hot queries use an index
+     */
+    public static boolean verifyIndexUse(Connection conn, Logger logger) {
+        Timestamp now = new Timestamp(Utils.getTimeSource().currentTimeMillis());
+        long nowSeconds = Utils.getTimeSource().currentTimeSeconds();
+        boolean indexed = true;
+
+        indexed &= explainUsesIndex(conn, logger, "Claim New Apps", claimNewAppids, now, 1);
+        indexed &= explainUsesIndex(conn, logger, "Claim NULL-Type Apps", claimNullTypeAppids, now, nowSeconds, 1);
+        indexed &= explainUsesIndex(conn, logger, "Claim Stale Apps", claimStaleAppids, now, nowSeconds, 1);
+        indexed &= explainUsesIndex(conn, logger, "Claim Aged Apps", claimAgedAppids, now, nowSeconds, now, 1);
+        indexed &= explainUsesIndex(conn, logger, "Count Apps To Update", countAppidsToUpdate, nowSeconds);
+        indexed &= explainUsesIndex(conn, logger, "Release Leases", releaseLeases, "");
+        indexed &= explainUsesIndex(conn, logger, "Requeue Invalid Apps", requeueDueNegativeCache, nowSeconds);
+
+        if(indexed) {
+            logger.log(Logger.LOG_TYPE_UPDATE, "Index Check Passed - All Hot Queries Use an Index");
+        }
+        return indexed;
+    }
+
+    /**
+     * Method to get the latest schema version known to this updater
+     * @return latest migration version
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS[MIGRATIONS.length - 1].version();
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to apply a single migration statement, skipping changes that are already present
+     * > A statement with a parameter (seeding the negative cache) is bound to the current time in epoch seconds
+     * @param conn is the open database connection
+     * @param stmt is the statement to execute with
+     * @param statement is the SQL statement
+     * @param redefinesColumn is true if a duplicate column means the old definition is still in place
+     * @throws SQLException on any other failure
+     */
+    private static void applyStatement(Connection conn, Statement stmt, String statement, boolean redefinesColumn) throws SQLException {
+        try {
+            if(statement.indexOf('?') < 0) {
+                stmt.executeUpdate(statement);
+                return;
+            }
+
+            try(PreparedStatement pStmt = conn.prepareStatement(statement)) {
+                pStmt.setLong(1, Utils.getTimeSource().currentTimeSeconds());
+                pStmt.executeUpdate();
+            }
+        }
+        catch (SQLException e) {
+            switch(e.getErrorCode()) {
+                case ER_TABLE_EXISTS, ER_DUP_KEYNAME, ER_CANT_DROP_FIELD_OR_KEY -> {} // Already Applied (Before Migrations Existed or by a Failed Run)
+                case ER_DUP_FIELDNAME -> {
+                    if(redefinesColumn) {
+                        throw e; // Column Was Not Dropped, It Still Has Its Old Definition
+                    }
+                }
+                default -> throw e;
+            }
+        }
+    }
+
+    /**
+     * Method to get the set of applied schema versions
+     */
+    private static HashSet<Integer> getAppliedVersions(Connection conn) throws SQLException {
+        HashSet<Integer> versions = new HashSet<>();
+
+        try(Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(getSchemaVersions);
+            while(rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Method to record a migration as applied
+     */
+    private static void recordVersion(Connection conn, Migration migration) throws SQLException {
+        try(PreparedStatement pStmt = conn.prepareStatement(insertSchemaVersion)) {
+            pStmt.setInt(1, migration.version());
+            pStmt.setString(2, migration.description());
+            pStmt.setTimestamp(3, new Timestamp(Utils.getTimeSource().currentTimeMillis()));
+            pStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Method to acquire the named migration lock
+     */
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try(PreparedStatement pStmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pStmt.setString(1, MIGRATION_LOCK);
+            pStmt.setInt(2, MIGRATION_LOCK_TIMEOUT);
+            ResultSet rs = pStmt.executeQuery();
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    /**
+     * Method to release the named migration lock
+     */
+    private static void releaseLock(Connection conn) throws SQLException {
+        try(PreparedStatement pStmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pStmt.setString(1, MIGRATION_LOCK);
+            pStmt.executeQuery();
+        }
+    }
+
+    /**
+     * Method to EXPLAIN a query and check that no table is fully scanned
+     * @param name is the query name for logging
+     * @param query is the query to explain
+     * @param params are sample parameters for the query
+     * @return true if every table access uses an index
+     */
+    private static boolean explainUsesIndex(Connection conn, Logger logger, String name, String query, Object... params) {
+        try(PreparedStatement pStmt = conn.prepareStatement("EXPLAIN " + query)) {
+            for(int i = 0; i < params.length; i++) {
+                pStmt.setObject(i + 1, params[i]);
+            }
+            ResultSet rs = pStmt.executeQuery();
+
+            boolean indexed = true;
+            while(rs.next()) {
+                String table = rs.getString("table");
+                String accessType = rs.getString("type");
+                String key = rs.getString("key");
+
+                // Full Table Scan (type ALL) or No Usable Key
+                if(table != null && ("ALL".equals(accessType) || key == null)) {
+                    logger.log(Logger.LOG_TYPE_WARNING, String.format("Index Check Failed - %s Scans Table %s (type=%s)", name, table, accessType));
+                    indexed = false;
+                }
+            }
+            return indexed;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to EXPLAIN Query: " + name);
+        }
+        return false;
+    }
+}
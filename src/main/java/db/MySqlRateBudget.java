@@ -0,0 +1,166 @@
+package db;
+
+import java.sql.*;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - Shared rate budget kept in a RateBudget row, for updaters on different hosts behind one egress IP
+ * > Each reservation locks the row in a short transaction on the budget's own connection
+ * > Slot times come from the TimeSource so hosts sharing a budget must keep their clocks in sync (NTP), as for leases
+ * > Fetch threads reserve one at a time, a failed reservation does not wait (the local RateController still paces calls)
+ */
+public class MySqlRateBudget implements SharedRateBudget {
+    // JDBC Connection (Used Only By This Budget) {Guarded by this}
+    private final Connection conn;
+    private final String name;
+
+    // Slot Spacing
+    private final long intervalMillis;
+    private final long burstMillis;
+
+    // Whether the Budget Row is Known to Exist {Guarded by this}
+    private boolean rowReady;
+    private boolean failureLogged;
+
+    // Logging
+    private final Logger logger;
+
+    /**
+     * Constructor - Creates a MySqlRateBudget over an open connection
+     */
+    private MySqlRateBudget(Connection conn, String name, long intervalMillis, int burst, Logger logger) {
+        this.conn = conn;
+        this.name = name;
+        this.intervalMillis = intervalMillis;
+        this.burstMillis = (burst - 1) * intervalMillis;
+        this.logger = logger;
+    }
+
+    /**
+     * Method to open a connection for a named budget
+     * > The RateBudget table is created by the schema migrations, reservations fail (without waiting) until it exists
+     * @param info is the database connection info
+     * @param name is the budget name shared by the instances behind one IP
+     * @param intervalMillis is the spacing between slots
+     * @param burst is the number of slots that may be taken back-to-back
+     * @param logger is the existing logger
+     * @return MySqlRateBudget or null on failure
+     */
+    public static MySqlRateBudget open(DatabaseInfo info, String name, long intervalMillis, int burst, Logger logger) {
+        try {
+            return new MySqlRateBudget(DBConnector.connect(info), name, intervalMillis, burst, logger);
+        }
+        catch (ClassNotFoundException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Open Shared Rate Budget - Class Not Found");
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Open Shared Rate Budget - SQL Exception {%d}", e.getErrorCode()));
+        }
+        return null;
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to reserve the next shared call slot
+     * @return local time in millis the call may be made, or 0 on failure
+     */
+    @Override
+    public synchronized long reserve() {
+        try {
+            if(!rowReady) {
+                try(PreparedStatement pStmt = conn.prepareStatement(insertRateBudget)) {
+                    pStmt.setString(1, name);
+                    pStmt.executeUpdate();
+                }
+                rowReady = true;
+            }
+
+            conn.setAutoCommit(false);
+            long now = Utils.getTimeSource().currentTimeMillis();
+            long nextSlot;
+            try(PreparedStatement pStmt = conn.prepareStatement(lockRateBudget)) {
+                pStmt.setString(1, name);
+                ResultSet rs = pStmt.executeQuery();
+                if(!rs.next()) {
+                    conn.rollback();
+                    rowReady = false;
+                    return 0;
+                }
+                nextSlot = rs.getLong(1);
+            }
+
+            // Slot Starts Up To a Burst Ahead of the Shared Schedule, an Idle Budget Restarts From Now
+            long slot = Math.max(now, nextSlot - burstMillis);
+            try(PreparedStatement pStmt = conn.prepareStatement(updateRateBudget)) {
+                pStmt.setLong(1, Math.max(nextSlot, now) + intervalMillis);
+                pStmt.setString(2, name);
+                pStmt.executeUpdate();
+            }
+            conn.commit();
+            failureLogged = false;
+            return slot;
+        }
+        catch (SQLException e) {
+            try {
+                conn.rollback();
+            }
+            catch (SQLException ex) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Rollback Shared Rate Budget Reservation");
+            }
+            if(!failureLogged) {
+                failureLogged = true;
+                logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Reserve Shared Rate Budget Slot - SQL Exception {%d}", e.getErrorCode()));
+            }
+            return 0;
+        }
+        finally {
+            try {
+                conn.setAutoCommit(true);
+            }
+            catch (SQLException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Restore Auto-Commit After Shared Rate Budget Reservation");
+            }
+        }
+    }
+
+    /**
+     * Method to push the next shared slot back after Steam rate-limited a call
+     * @param millis is the time from now no instance may call before
+     */
+    @Override
+    public synchronized void backOff(long millis) {
+        try(PreparedStatement pStmt = conn.prepareStatement(backOffRateBudget)) {
+            pStmt.setLong(1, Utils.getTimeSource().currentTimeMillis() + millis + burstMillis);
+            pStmt.setString(2, name);
+            pStmt.executeUpdate();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Back Off Shared Rate Budget - SQL Exception {%d}", e.getErrorCode()));
+        }
+    }
+
+    /**
+     * Method to close the budget connection
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            conn.close();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Close Shared Rate Budget Connection");
+        }
+    }
+
+    /**
+     * Method to get the budget name used in logs
+     * @return budget row name
+     */
+    @Override
+    public String getName() {
+        return "MySQL: " + name;
+    }
+}
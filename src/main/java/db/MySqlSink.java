@@ -0,0 +1,336 @@
+package db;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - StorageSink writing to a MySQL database
+ * > Connections use rewriteBatchedStatements so batched updates are sent as multi-row statements
+ * > Large app list inserts are streamed with LOAD DATA LOCAL INFILE, falling back to chunked multi-row inserts
+ * > App details go through an AppWriter (compact storage and history aware) in one transaction per batch
+ * > Apps to update are claimed in leased batches from weighted RefreshLanes so multiple nodes can share the database
+ */
+public class MySqlSink implements StorageSink {
+    // Inserts of at Least This Many Apps Use LOAD DATA
+    private static final int LOAD_DATA_MIN_APPS = 5000;
+
+    // Rows per Multi-Row Insert (Keeps Statements Below max_allowed_packet)
+    private static final int INSERT_CHUNK_SIZE = 5000;
+
+    // MySQL Errors When LOAD DATA LOCAL is Disabled
+    private static final int ER_NOT_ALLOWED_COMMAND = 1148;
+    private static final int ER_CLIENT_LOCAL_FILES_DISABLED = 3948;
+
+    // Connection Info (null When Writing Through an Existing Connection)
+    private final DatabaseInfo info;
+    private final boolean compactStorage;
+
+    // Logging
+    private final Logger logger;
+
+    // JDBC Connection
+    private Connection conn;
+    private AppWriter appWriter;
+    private boolean loadDataEnabled;
+
+    // Work Leases, Lanes and Negative Cache of the Connection
+    private LeaseManager leaseManager;
+    private RefreshLanes lanes;
+    private NegativeCache negativeCache;
+
+    /**
+     * Constructor - Creates a MySqlSink that connects to the given database when opened
+     * @param info is the database connection info
+     * @param compactStorage is whether rows are stored in compact form
+     * @param logger is the existing logger
+     */
+    public MySqlSink(DatabaseInfo info, boolean compactStorage, Logger logger) {
+        this.info = info;
+        this.compactStorage = compactStorage;
+        this.logger = logger;
+        this.loadDataEnabled = true;
+    }
+
+    /**
+     * Constructor - Creates a MySqlSink writing through an existing connection (migrated by its owner)
+     * @param conn is the open database connection
+     * @param dictionary is the compact storage dictionary or null to write wide rows
+     * @param history is the app history or null if disabled
+     * @param logger is the existing logger
+     */
+    public MySqlSink(Connection conn, AppDictionary dictionary, AppHistory history, Logger logger) {
+        this.info = null;
+        this.compactStorage = dictionary != null;
+        this.logger = logger;
+        this.loadDataEnabled = true;
+        setConnection(conn, dictionary, history);
+    }
+
+    // *** StorageSink Methods ***
+
+    public boolean open() {
+        if(info == null) {
+            return true; // Existing Connection
+        }
+
+        try {
+            conn = DBConnector.connect(info);
+        }
+        catch (ClassNotFoundException | SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Connect To Database: " + getName());
+            return false;
+        }
+
+        if(!Migrations.migrate(conn, logger)) {
+            close();
+            return false;
+        }
+
+        AppDictionary dictionary = null;
+        if(compactStorage) {
+            dictionary = new AppDictionary(conn, logger);
+            dictionary.load();
+        }
+
+        AppHistory history = AppHistory.fromSystemProperties(conn, logger);
+        if(history != null) {
+            history.maintainPartitions();
+        }
+
+        setConnection(conn, dictionary, history);
+        return true;
+    }
+
+    public void close() {
+        if(info == null) {
+            return; // Connection Owned by Caller
+        }
+
+        try {
+            if(conn != null) {
+                conn.close();
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Close Connection To Database: " + getName());
+        }
+        conn = null;
+    }
+
+    public String getName() {
+        return info == null ? "MySQL" : String.format("%s:%s/%s", info.address(), info.port(), info.databaseName());
+    }
+
+    public HashMap<Integer, Long> getAppNameHashes() {
+        HashMap<Integer, Long> nameHashes = new HashMap<>();
+
+        try(Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(getAllAppNames);
+
+            while(rs.next()) {
+                nameHashes.put(rs.getInt(1), App.nameHash(rs.getString(2)));
+            }
+            return nameHashes;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Retrieve App Names From Database");
+        }
+        return null;
+    }
+
+    public int countAppsToUpdate() {
+        try(PreparedStatement pStmt = conn.prepareStatement(countAppidsToUpdate)) {
+            pStmt.setLong(1, Utils.getTimeSource().currentTimeSeconds());
+            ResultSet rs = pStmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Count Apps To Update");
+        }
+        return 0;
+    }
+
+    public void beginUpdate() {
+        negativeCache.load();
+        negativeCache.requeueDue();
+    }
+
+    public ArrayList<Integer> claimApps(int size) {
+        return lanes.claimBatch(size);
+    }
+
+    public void renewClaims(boolean force) {
+        if(force) {
+            leaseManager.renew();
+        }
+        else {
+            leaseManager.heartbeat();
+        }
+    }
+
+    public void releaseClaims() {
+        leaseManager.releaseAll();
+    }
+
+    public RefreshLanes getLanes() {
+        return lanes;
+    }
+
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    public int insertApps(ArrayList<App> apps) {
+        UpdateEvents.DatabaseBatch event = UpdateEvents.beginDatabaseBatch(UpdateEvents.BATCH_INSERT_APPS, getName(), apps.size());
+        int added = insertAppRows(apps);
+        event.success = added >= 0;
+        event.commit();
+        return added;
+    }
+
+    public boolean renameApps(ArrayList<App> apps) {
+        UpdateEvents.DatabaseBatch event = UpdateEvents.beginDatabaseBatch(UpdateEvents.BATCH_RENAME_APPS, getName(), apps.size());
+        boolean renamed = renameAppRows(apps);
+        event.success = renamed;
+        event.commit();
+        return renamed;
+    }
+
+    public ArrayList<AppEntry> writeApps(ArrayList<AppEntry> entries) {
+        UpdateEvents.DatabaseBatch event = UpdateEvents.beginDatabaseBatch(UpdateEvents.BATCH_WRITE_APPS, getName(), entries.size());
+        ArrayList<AppEntry> written = writeAppRows(entries);
+        event.success = written != null;
+        event.commit();
+        return written;
+    }
+
+    public void logTiming() {
+        appWriter.logTiming();
+    }
+
+    public DatabaseMetaData getMetaData() {
+        try {
+            return conn.getMetaData();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Retrieve Database MetaData");
+        }
+        return null;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to set up leases, lanes, the negative cache and the app writer of an open connection
+     */
+    private void setConnection(Connection conn, AppDictionary dictionary, AppHistory history) {
+        this.conn = conn;
+        leaseManager = new LeaseManager(conn, logger);
+        lanes = new RefreshLanes(conn, leaseManager, logger);
+        negativeCache = new NegativeCache(conn, logger);
+        appWriter = new AppWriter(conn, logger, dictionary, history, negativeCache, leaseManager.getOwner());
+    }
+
+    private int insertAppRows(ArrayList<App> apps) {
+        if(apps.isEmpty()) {
+            return 0;
+        }
+
+        // Stream Large Lists (First Run Adds Every Steam App)
+        if(apps.size() >= LOAD_DATA_MIN_APPS && loadDataEnabled) {
+            int added = loadApps(apps);
+            if(added >= 0) {
+                return added;
+            }
+        }
+
+        try {
+            int added = 0;
+            for(int i = 0; i < apps.size(); i += INSERT_CHUNK_SIZE) {
+                List<App> chunk = apps.subList(i, Math.min(i + INSERT_CHUNK_SIZE, apps.size()));
+
+                try(PreparedStatement pStmt = conn.prepareStatement(getMultiRowInsertQuery(insertNewAppIgnore, chunk.size(), 2))) {
+                    int cnt = 1;
+                    for(App app : chunk) {
+                        pStmt.setInt(cnt++, app.appid());
+                        pStmt.setString(cnt++, app.name());
+                    }
+                    added += pStmt.executeUpdate();
+                }
+            }
+            return added;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Add %d New Apps to the Database", apps.size()));
+        }
+        return -1;
+    }
+
+    private boolean renameAppRows(ArrayList<App> apps) {
+        try(PreparedStatement pStmt = conn.prepareStatement(updateAppName)) {
+            for(App app : apps) {
+                pStmt.setString(1, app.name());
+                pStmt.setInt(2, app.appid());
+                pStmt.addBatch();
+            }
+            pStmt.executeBatch();
+            return true;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Rename %d Apps", apps.size()));
+        }
+        return false;
+    }
+
+    private ArrayList<AppEntry> writeAppRows(ArrayList<AppEntry> entries) {
+        entries.forEach(appWriter::add);
+        return appWriter.flush();
+    }
+
+    /**
+     * Method to bulk load apps with LOAD DATA LOCAL INFILE from an in-memory tab-separated stream
+     * @return number of apps added or -1 if LOAD DATA failed (disabled on the server for the rest of the session)
+     */
+    private int loadApps(ArrayList<App> apps) {
+        ByteArrayOutputStream tsv = new ByteArrayOutputStream(apps.size() * 32);
+        for(App app : apps) {
+            String line = app.appid() + "\t" + escapeField(app.name()) + "\n";
+            tsv.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try(Statement stmt = conn.createStatement()) {
+            stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(tsv.toByteArray()));
+            return stmt.executeUpdate(loadDataNewApps);
+        }
+        catch (SQLException e) {
+            if(e.getErrorCode() == ER_NOT_ALLOWED_COMMAND || e.getErrorCode() == ER_CLIENT_LOCAL_FILES_DISABLED) {
+                loadDataEnabled = false;
+                logger.log(Logger.LOG_TYPE_WARNING, "LOAD DATA LOCAL Disabled on Server - Using Multi-Row Inserts");
+            }
+            else {
+                logger.log(Logger.LOG_TYPE_WARNING, String.format("Failed to Bulk Load %d Apps - SQL Exception {%d} - Using Multi-Row Inserts", apps.size(), e.getErrorCode()));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to escape a LOAD DATA field (backslash, tab and newline)
+     */
+    static String escapeField(String value) {
+        if(value == null) {
+            return "\\N";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,215 @@
+package db;
+
+import java.sql.*;
+
+import static db.Queries.*;
+
+/**
+ * Class - Negative-result cache for apps that failed to return valid details
+ * > Stores a failure reason, a hit count and an exponentially growing next-check time per appid
+ * > Rows are stored compactly in the database and packed into one long per app in a primitive IntLongMap in memory
+ * > Changes are written with the next app batch, in the same transaction (see AppWriter)
+ * > Planners skip cached apps until their next check, while recoveries are still picked up eventually
+ */
+public class NegativeCache {
+    // Failure Reasons
+    public static final int REASON_NOT_FOUND = 1; // Steam Responded With success:false
+    public static final int REASON_MALFORMED = 2; // Response Could Not Be Parsed
+    public static final int REASON_FETCH_FAILED = 3; // No Response After All Retries
+
+    // Re-Check Backoff (Seconds)
+    private static final long NOT_FOUND_BASE = 24 * 60 * 60; // 1 Day
+    private static final long NOT_FOUND_MAX = 180 * 24 * 60 * 60; // 180 Days
+    private static final long TRANSIENT_BASE = 60 * 60; // 1 Hour
+    private static final long TRANSIENT_MAX = 7 * 24 * 60 * 60; // 7 Days
+
+    // Pending Change Marking an Entry to Delete (Packed Entries Always Have a Reason)
+    private static final long DELETED = 0;
+
+    // JDBC Connection
+    private final Connection conn;
+
+    // Logging
+    private final Logger logger;
+
+    // Cached Entries {appid -> reason(8) | hits(16) | nextCheck(32)} {Guarded by this}
+    private final IntLongMap entries;
+
+    // Changes Not Yet Written {appid -> packed entry or DELETED} {Guarded by this}
+    private final IntLongMap pending;
+
+    /**
+     * Constructor - Creates a NegativeCache for the given connection
+     * @param conn is the open database connection
+     * @param logger is the existing logger
+     */
+    public NegativeCache(Connection conn, Logger logger) {
+        this.conn = conn;
+        this.logger = logger;
+        this.entries = new IntLongMap(1 << 12);
+        this.pending = new IntLongMap(1 << 6);
+    }
+
+    /**
+     * Method to load all cached entries from the database in bulk
+     */
+    public synchronized void load() {
+        entries.clear();
+        pending.clear();
+        long now = now();
+        int due = 0;
+
+        try(Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(getAllNegativeCache);
+
+            while(rs.next()) {
+                long nextCheck = rs.getLong(4);
+                entries.put(rs.getInt(1), pack(rs.getInt(2), rs.getInt(3), nextCheck));
+
+                if(nextCheck <= now) {
+                    due++;
+                }
+            }
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("Negative Cache Loaded: %d Apps (%d Due For Re-Check)", entries.size(), due));
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Load Negative Cache From Database");
+        }
+    }
+
+    /**
+     * Method to requeue cached apps whose next check is due by clearing their last_update
+     * @return number of apps requeued
+     */
+    public int requeueDue() {
+        try(PreparedStatement pStmt = conn.prepareStatement(requeueDueNegativeCache)) {
+            pStmt.setLong(1, now());
+            int requeued = pStmt.executeUpdate();
+
+            if(requeued > 0) {
+                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Requeued %d Invalid Apps For Re-Check", requeued));
+            }
+            return requeued;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Requeue Invalid Apps For Re-Check");
+        }
+        return 0;
+    }
+
+    /**
+     * Method to record a failed result for an app, growing its next-check time exponentially
+     * > Written with the next app batch
+     * @param appid is the given appid
+     * @param reason is the failure reason (REASON_*)
+     */
+    public synchronized void record(int appid, int reason) {
+        long packed = entries.get(appid, DELETED);
+        int hits = packed == DELETED ? 1 : Math.min(hitsOf(packed) + 1, 0xFFFF);
+
+        // Get Backoff For Reason
+        boolean permanent = reason == REASON_NOT_FOUND;
+        long base = permanent ? NOT_FOUND_BASE : TRANSIENT_BASE;
+        long max = permanent ? NOT_FOUND_MAX : TRANSIENT_MAX;
+        long delay = Math.min(max, base << Math.min(hits - 1, 30));
+        long nextCheck = now() + delay;
+
+        packed = pack(reason, hits, nextCheck);
+        entries.put(appid, packed);
+        pending.put(appid, packed);
+    }
+
+    /**
+     * Method to remove an app from the cache after it returned valid details
+     * > Written with the next app batch
+     * @param appid is the given appid
+     */
+    public synchronized void clear(int appid) {
+        // Skip Apps Never Cached
+        if(!entries.remove(appid)) {
+            return;
+        }
+        pending.put(appid, DELETED);
+        logger.log(Logger.LOG_TYPE_UPDATE, appid, "App Recovered From Invalid Status: " + appid);
+    }
+
+    /**
+     * Method to check if changes are waiting to be written
+     * @return true if changes are pending
+     */
+    public synchronized boolean hasPending() {
+        return pending.size() > 0;
+    }
+
+    /**
+     * Method to write pending changes with one batched statement each, inside the caller's transaction (AppWriter)
+     * > Changes stay pending until pendingWritten() is called after the commit, so a rolled back batch retries them
+     */
+    public synchronized void writePending() throws SQLException {
+        if(pending.size() == 0) {
+            return;
+        }
+
+        try(PreparedStatement upsert = conn.prepareStatement(upsertNegativeCache);
+            PreparedStatement delete = conn.prepareStatement(deleteNegativeCache)) {
+            boolean upserts = false;
+            boolean deletes = false;
+
+            for(int appid : pending.keys()) {
+                long packed = pending.get(appid, DELETED);
+                if(packed == DELETED) {
+                    delete.setInt(1, appid);
+                    delete.addBatch();
+                    deletes = true;
+                }
+                else {
+                    upsert.setInt(1, appid);
+                    upsert.setInt(2, reasonOf(packed));
+                    upsert.setInt(3, hitsOf(packed));
+                    upsert.setLong(4, nextCheckOf(packed));
+                    upsert.addBatch();
+                    upserts = true;
+                }
+            }
+
+            if(upserts) {
+                upsert.executeBatch();
+            }
+            if(deletes) {
+                delete.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Method to drop the pending changes once the batch writing them committed
+     */
+    public synchronized void pendingWritten() {
+        pending.clear();
+    }
+
+    // *** Private Utilities ***
+
+    /**
+     * Method to get the current time in epoch seconds
+     */
+    private static long now() {
+        return Utils.getTimeSource().currentTimeSeconds();
+    }
+
+    private static long pack(int reason, int hits, long nextCheck) {
+        return ((long) (reason & 0xFF) << 48) | ((long) (hits & 0xFFFF) << 32) | (nextCheck & 0xFFFFFFFFL);
+    }
+
+    private static int reasonOf(long packed) {
+        return (int) ((packed >>> 48) & 0xFF);
+    }
+
+    private static int hitsOf(long packed) {
+        return (int) ((packed >>> 32) & 0xFFFF);
+    }
+
+    private static long nextCheckOf(long packed) {
+        return packed & 0xFFFFFFFFL;
+    }
+}
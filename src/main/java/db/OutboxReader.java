@@ -0,0 +1,173 @@
+package db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import static db.ChangeOutbox.*;
+
+/**
+ * Class - Tails a ChangeOutbox directory, returning only events at or after the consumer's offset
+ * > Consumers store getNextOffset() after processing a poll and pass it back in to resume
+ * > Events pruned by outbox retention are skipped, resuming at the oldest remaining event
+ * > Partially appended lines are left unread until the updater finishes writing them
+ */
+public class OutboxReader {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Outbox Directory
+    private final Path dir;
+
+    // Read Position
+    private long nextOffset;
+    private Path segment;
+    private long position;
+
+    // Bytes Read Past the Last Complete Line
+    private byte[] partial;
+
+    /**
+     * Constructor - Creates an OutboxReader starting at the given offset
+     * @param dir is the outbox directory
+     * @param fromOffset is the first offset to read (0 for the whole outbox)
+     */
+    public OutboxReader(Path dir, long fromOffset) {
+        this.dir = dir;
+        this.nextOffset = fromOffset;
+        this.partial = new byte[0];
+    }
+
+    /**
+     * Method to read the next change events written since the last poll
+     * @param maxEvents is the maximum number of events to return
+     * @return events in offset order (empty if there are no new events)
+     * @throws IOException on outbox read failure
+     */
+    public ArrayList<ChangeEvent> poll(int maxEvents) throws IOException {
+        ArrayList<ChangeEvent> events = new ArrayList<>();
+
+        while(events.size() < maxEvents) {
+            if(segment == null && !seek()) {
+                break;
+            }
+
+            // Read Lines From Current Segment
+            int read = readLines(events, maxEvents);
+            if(read > 0 || segment == null || events.size() >= maxEvents) {
+                continue;
+            }
+
+            // Move to Next Segment Once Current One is Finished
+            Path next = nextSegment();
+            if(next == null || partial.length > 0) {
+                break;
+            }
+            segment = next;
+            position = 0;
+        }
+        return events;
+    }
+
+    /**
+     * Method to get the offset to resume from after the events returned so far
+     * @return next unread offset
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to find the segment containing the next offset
+     * @return true if a segment was found
+     */
+    private boolean seek() throws IOException {
+        ArrayList<Path> segments = listSegments(dir);
+        if(segments.isEmpty()) {
+            return false;
+        }
+
+        // Last Segment Starting at or Before the Offset (or the Oldest Remaining One)
+        segment = segments.get(0);
+        for(Path path : segments) {
+            if(getBaseOffset(path) <= nextOffset) {
+                segment = path;
+            }
+        }
+        position = 0;
+        partial = new byte[0];
+        return true;
+    }
+
+    /**
+     * Method to get the segment after the current one
+     * @return next segment or null if the current segment is the newest
+     */
+    private Path nextSegment() throws IOException {
+        long base = getBaseOffset(segment);
+        for(Path path : listSegments(dir)) {
+            if(getBaseOffset(path) > base) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to read complete lines from the current segment
+     * @return number of bytes read
+     */
+    private int readLines(ArrayList<ChangeEvent> events, int maxEvents) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        int read;
+
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            read = channel.read(buffer, position);
+        }
+        catch (NoSuchFileException e) {
+            segment = null; // Pruned by Retention
+            return 0;
+        }
+        if(read <= 0) {
+            return 0;
+        }
+
+        // Join With Partial Line From Previous Read
+        byte[] bytes = new byte[partial.length + read];
+        System.arraycopy(partial, 0, bytes, 0, partial.length);
+        System.arraycopy(buffer.array(), 0, bytes, partial.length, read);
+        long bytesStart = position - partial.length;
+
+        int start = 0;
+        for(int i = 0; i < bytes.length && events.size() < maxEvents; i++) {
+            if(bytes[i] == '\n') {
+                ChangeEvent event = parse(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+
+                // Skip Events Before Requested Offset
+                if(event.offset() >= nextOffset) {
+                    events.add(event);
+                    nextOffset = event.offset() + 1;
+                }
+            }
+        }
+
+        // Keep Unfinished Line (Stop After Last Returned Event if Batch is Full)
+        if(events.size() >= maxEvents) {
+            position = bytesStart + start;
+            partial = new byte[0];
+        }
+        else {
+            position += read;
+            partial = new byte[bytes.length - start];
+            System.arraycopy(bytes, start, partial, 0, partial.length);
+        }
+        return read;
+    }
+}
@@ -4,7 +4,7 @@ public class Queries {
     // Column Names
     public static final String COLUMN_APPID = "appid";
 
-    // MySQL Query to create a new Table AppInfo with set columns {Statement}
+    // MySQL Query to create a new Table AppInfo with set columns (Schema V1, see Migrations) {Statement}
     public static final String createTableAppInfo = """
                 CREATE TABLE AppInfo (
                 appid INT PRIMARY KEY,
@@ -16,27 +16,635 @@ public class Queries {
                 )
                 """;
 
-    // MySQL Query to Get All appids from the Table
-    public static final String getAllAppids = """
-            SELECT appid
+    // MySQL Query to add lease columns to the AppInfo Table {Statement}
+    public static final String addLeaseColumns = """
+                ALTER TABLE AppInfo
+                ADD COLUMN lease_owner VARCHAR(64),
+                ADD COLUMN lease_expires DATETIME,
+                ADD INDEX idx_lease_owner (lease_owner),
+                ALGORITHM=INPLACE, LOCK=NONE
+                """;
+
+    // MySQL Query to store last_update as a DATETIME {Statement}
+    // > Changing a column type has no INPLACE or INSTANT form, so the table is copied with reads allowed (LOCK=NONE is rejected for COPY)
+    // > Only databases created before migrations hold rows at V4, a new database copies an empty table
+    public static final String modifyLastUpdateDatetime = """
+                ALTER TABLE AppInfo
+                MODIFY COLUMN last_update DATETIME,
+                ALGORITHM=COPY, LOCK=SHARED
+                """;
+
+    // MySQL Query to add a hash of an app's details to the AppInfo Table {Statement}
+    public static final String addContentHashColumn = """
+                ALTER TABLE AppInfo
+                ADD COLUMN content_hash INT UNSIGNED,
+                ALGORITHM=INSTANT
+                """;
+
+    // MySQL Query to add a virtual column flagging apps needing an update {Statement}
+    public static final String addNeedsUpdateColumn = """
+                ALTER TABLE AppInfo
+                ADD COLUMN needs_update TINYINT AS (IF(type IS NULL OR last_update IS NULL, 1, 0)) VIRTUAL,
+                ALGORITHM=INSTANT
+                """;
+
+    // MySQL Query to add the planner index on the needs_update lane flag and lease expiry (InnoDB appends appid, so claims only probe AppNegativeCache) {Statement}
+    public static final String addNeedsUpdateIndex = """
+                ALTER TABLE AppInfo
+                ADD INDEX idx_needs_update (needs_update, lease_expires),
+                ALGORITHM=INPLACE, LOCK=NONE
+                """;
+
+    // MySQL Query to create the app type dictionary Table {Statement}
+    public static final String createTableAppTypes = """
+                CREATE TABLE AppTypes (
+                type_id TINYINT UNSIGNED AUTO_INCREMENT PRIMARY KEY,
+                type VARCHAR(16) NOT NULL UNIQUE
+                )
+                """;
+
+    // MySQL Query to create the URL prefix dictionary Table {Statement}
+    public static final String createTableUrlPrefixes = """
+                CREATE TABLE UrlPrefixes (
+                prefix_id SMALLINT UNSIGNED AUTO_INCREMENT PRIMARY KEY,
+                prefix VARCHAR(255) NOT NULL UNIQUE
+                )
+                """;
+
+    // MySQL Query to add the compact storage columns to the AppInfo Table {Statement}
+    public static final String addCompactColumns = """
+                ALTER TABLE AppInfo
+                ADD COLUMN type_id TINYINT UNSIGNED,
+                ADD COLUMN header_prefix SMALLINT UNSIGNED,
+                ADD COLUMN header_suffix VARCHAR(1024),
+                ADD COLUMN background_prefix SMALLINT UNSIGNED,
+                ADD COLUMN background_suffix VARCHAR(1024),
+                ALGORITHM=INSTANT
+                """;
+
+    // MySQL Query to drop the virtual column flagging apps needing an update so it can be redefined (Drop idx_needs_update First, Each Reruns on Its Own) {Statement}
+    public static final String dropNeedsUpdateColumn = """
+                ALTER TABLE AppInfo
+                DROP COLUMN needs_update,
+                ALGORITHM=INPLACE, LOCK=NONE
+                """;
+
+    // MySQL Query to add the virtual column flagging apps needing an update in wide or compact form {Statement}
+    public static final String addNeedsUpdateColumnCompact = """
+                ALTER TABLE AppInfo
+                ADD COLUMN needs_update TINYINT AS (IF((type IS NULL AND type_id IS NULL) OR last_update IS NULL, 1, 0)) VIRTUAL,
+                ALGORITHM=INSTANT
+                """;
+
+    // MySQL Query to add the virtual column flagging apps needing an update by lane (0 Up-To-Date, 1 Untyped, 2 Typed and Requeued) {Statement}
+    public static final String addNeedsUpdateLaneColumn = """
+                ALTER TABLE AppInfo
+                ADD COLUMN needs_update TINYINT AS (IF(type IS NULL AND type_id IS NULL, 1, IF(last_update IS NULL, 2, 0))) VIRTUAL,
+                ALGORITHM=INSTANT
+                """;
+
+    // MySQL Query to create a view rebuilding the original AppInfo columns from wide or compact rows {Statement}
+    public static final String createViewAppInfo = """
+                CREATE OR REPLACE VIEW AppInfoView AS
+                SELECT
+                    a.appid, a.name, a.last_update,
+                    COALESCE(t.type, a.type) AS type,
+                    COALESCE(IF(a.header_prefix = 0, a.header_suffix, CONCAT(hp.prefix, a.appid, '/', a.header_suffix)), a.header_image) AS header_image,
+                    COALESCE(IF(a.background_prefix = 0, a.background_suffix, CONCAT(bp.prefix, a.appid, '/', a.background_suffix)), a.background) AS background
+                FROM AppInfo a
+                LEFT JOIN AppTypes t ON t.type_id = a.type_id
+                LEFT JOIN UrlPrefixes hp ON hp.prefix_id = a.header_prefix
+                LEFT JOIN UrlPrefixes bp ON bp.prefix_id = a.background_prefix
+                """;
+
+    // MySQL Query to add an index on last_update for incremental reads {Statement}
+    public static final String addLastUpdateIndex = """
+                ALTER TABLE AppInfo
+                ADD INDEX idx_last_update (last_update),
+                ALGORITHM=INPLACE, LOCK=NONE
+                """;
+
+    // MySQL Query to create the SchemaVersion Table if it does not exist {Statement}
+    public static final String createTableSchemaVersion = """
+                CREATE TABLE IF NOT EXISTS SchemaVersion (
+                version INT PRIMARY KEY,
+                description VARCHAR(255) NOT NULL,
+                applied_at DATETIME NOT NULL
+                )
+                """;
+
+    // MySQL Query to Get All applied schema versions
+    public static final String getSchemaVersions = "SELECT version FROM SchemaVersion";
+
+    // MySQL Query to record an applied schema version {Prepared Statement}
+    public static final String insertSchemaVersion = "INSERT INTO SchemaVersion (version, description, applied_at) VALUES (?, ?, ?)";
+
+    // MySQL Query to Get All appids and names from the Table
+    public static final String getAllAppNames = """
+            SELECT appid, name
             FROM AppInfo
             """;
 
-    // MySQL Query to Get All appids from the Table for updating
-    public static final String getAppidsToUpdate = """
+    // MySQL Query to Count the apps needing an update, excluding negative cached apps not yet due {Prepared Statement}
+    public static final String countAppidsToUpdate = """
+                SELECT COUNT(*)
+                FROM AppInfo
+                WHERE needs_update IN (1, 2)
+                    AND NOT EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid AND n.next_check > ?)
+                """;
+
+    // MySQL Query to lock a batch of unleased new apps (never fetched or failed), skipping rows locked by other nodes {Prepared Statement}
+    public static final String claimNewAppids = """
+                SELECT appid
+                FROM AppInfo
+                WHERE needs_update = 1
+                    AND (lease_expires IS NULL OR lease_expires < ?)
+                    AND NOT EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid)
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+                """;
+
+    // MySQL Query to lock a batch of unleased NULL-type apps due for a re-check after a failed fetch {Prepared Statement}
+    public static final String claimNullTypeAppids = """
+                SELECT appid
+                FROM AppInfo
+                WHERE needs_update = 1
+                    AND (lease_expires IS NULL OR lease_expires < ?)
+                    AND EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid)
+                    AND NOT EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid AND n.next_check > ?)
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+                """;
+
+    // MySQL Query to lock a batch of unleased typed apps queued for a refresh (e.g. invalid apps due a re-check) {Prepared Statement}
+    public static final String claimStaleAppids = """
                 SELECT appid
                 FROM AppInfo
-                WHERE (type IS NULL) OR (last_update IS NULL)
+                WHERE needs_update = 2
+                    AND (lease_expires IS NULL OR lease_expires < ?)
+                    AND NOT EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid AND n.next_check > ?)
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
                 """;
 
-    // MySQL Query to insert a new app into the AppInfo Table {Prepared Statement}
-    public static final String insertNewApp = "INSERT INTO AppInfo (appid, name) VALUES\n";
+    // MySQL Query to lock a batch of unleased typed apps last updated before a given time, oldest first {Prepared Statement}
+    public static final String claimAgedAppids = """
+                SELECT appid
+                FROM AppInfo
+                WHERE needs_update = 0
+                    AND (lease_expires IS NULL OR lease_expires < ?)
+                    AND NOT EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid AND n.next_check > ?)
+                    AND last_update < ?
+                ORDER BY last_update
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+                """;
+
+    // MySQL Query to lease a set of apps to an owner, appid list is appended {Prepared Statement}
+    public static final String leaseApps = "UPDATE AppInfo SET lease_owner=?, lease_expires=? WHERE appid IN ";
+
+    // MySQL Query to renew all leases held by an owner {Prepared Statement}
+    public static final String renewLeases = """
+            UPDATE AppInfo
+            SET
+                lease_expires=?
+            WHERE lease_owner=?
+            """;
+
+    // MySQL Query to release all leases held by an owner {Prepared Statement}
+    public static final String releaseLeases = """
+            UPDATE AppInfo
+            SET
+                lease_owner=NULL, lease_expires=NULL
+            WHERE lease_owner=?
+            """;
+
+    // MySQL Query to release an owner's leases of a set of apps, appid list is appended {Prepared Statement}
+    public static final String releaseAppLeases = "UPDATE AppInfo SET lease_owner=NULL, lease_expires=NULL WHERE lease_owner=? AND appid IN ";
+
+    // MySQL Query to create the negative result cache Table {Statement}
+    public static final String createTableAppNegativeCache = """
+                CREATE TABLE AppNegativeCache (
+                appid INT PRIMARY KEY,
+                reason TINYINT UNSIGNED NOT NULL,
+                hits SMALLINT UNSIGNED NOT NULL,
+                next_check INT UNSIGNED NOT NULL,
+                INDEX idx_next_check (next_check)
+                )
+                """;
+
+    // MySQL Query to create the monthly partitioned AppInfoHistory Table (Months Are Split From p_future) {Statement}
+    public static final String createTableAppInfoHistory = """
+                CREATE TABLE AppInfoHistory (
+                appid INT NOT NULL,
+                changed_at DATETIME NOT NULL,
+                type VARCHAR(16),
+                header_image VARCHAR(1024),
+                background VARCHAR(1024),
+                content_hash INT UNSIGNED,
+                PRIMARY KEY (appid, changed_at)
+                )
+                PARTITION BY RANGE (TO_DAYS(changed_at)) (
+                PARTITION p_future VALUES LESS THAN MAXVALUE
+                )
+                """;
+
+    // MySQL Query to create the TargetBacklog Table of apps a fan-out target must copy from this database {Statement}
+    public static final String createTableTargetBacklog = """
+                CREATE TABLE TargetBacklog (
+                target VARCHAR(255) NOT NULL,
+                appid INT NOT NULL,
+                PRIMARY KEY (target, appid)
+                )
+                """;
+
+    // MySQL Query to Create the RefreshRequests control table (Rows Inserted by Any Client Request an Urgent Refresh)
+    public static final String createTableRefreshRequests = """
+                CREATE TABLE RefreshRequests (
+                appid INT NOT NULL PRIMARY KEY,
+                requested_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+                )
+                """;
+
+    // MySQL Query to lock the oldest refresh requests, skipping requests locked by other nodes {Prepared Statement}
+    public static final String claimRefreshRequests = """
+                SELECT appid, requested_at
+                FROM RefreshRequests
+                ORDER BY requested_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+                """;
+
+    // MySQL Query to delete claimed refresh requests, appid list is appended {Prepared Statement}
+    public static final String deleteRefreshRequests = "DELETE FROM RefreshRequests WHERE appid IN ";
+
+    // MySQL Query to Create the RateBudget table (Next Free Steam API Slot per Shared Budget in Epoch Millis)
+    public static final String createTableRateBudget = """
+                CREATE TABLE RateBudget (
+                name VARCHAR(64) NOT NULL PRIMARY KEY,
+                next_slot BIGINT NOT NULL DEFAULT 0
+                )
+                """;
+
+    // MySQL Query to add a shared budget row if missing {Prepared Statement}
+    public static final String insertRateBudget = "INSERT IGNORE INTO RateBudget (name) VALUES (?)";
+
+    // MySQL Query to lock a shared budget row {Prepared Statement}
+    public static final String lockRateBudget = """
+                SELECT next_slot
+                FROM RateBudget
+                WHERE name = ?
+                FOR UPDATE
+                """;
+
+    // MySQL Query to set the next slot of a locked shared budget row {Prepared Statement}
+    public static final String updateRateBudget = "UPDATE RateBudget SET next_slot = ? WHERE name = ?";
+
+    // MySQL Query to push a shared budget's next slot back to a given time {Prepared Statement}
+    public static final String backOffRateBudget = """
+                UPDATE RateBudget
+                SET next_slot = GREATEST(next_slot, ?)
+                WHERE name = ?
+                """;
+
+    // MySQL Query to add apps to a target's backlog (Append Value Sections) {Prepared Statement}
+    public static final String insertTargetBacklog = "INSERT IGNORE INTO TargetBacklog (target, appid) VALUES\n";
+
+    // MySQL Query to get a target's backlog {Prepared Statement}
+    public static final String getTargetBacklog = """
+            SELECT appid
+            FROM TargetBacklog
+            WHERE target = ?
+            LIMIT ?
+            """;
 
-    // MySQL Query to update an app's type {Prepared Statement}
+    // MySQL Query to remove apps from a target's backlog (Append appid List) {Prepared Statement}
+    public static final String deleteTargetBacklog = "DELETE FROM TargetBacklog WHERE target = ? AND appid IN ";
+
+    // MySQL Query to read a batch of apps (Append appid List) {Prepared Statement}
+    public static final String getAppInfoRows = """
+            SELECT appid, name, last_update, type, header_image, background
+            FROM AppInfoView
+            WHERE appid IN\s""";
+
+    // MySQL Query to get the partitions of the AppInfoHistory Table {Statement}
+    public static final String getHistoryPartitions = """
+            SELECT PARTITION_NAME
+            FROM information_schema.PARTITIONS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'AppInfoHistory' AND PARTITION_NAME IS NOT NULL
+            """;
+
+    // MySQL Query to split a month partition (name, first day of next month) from p_future {Statement}
+    public static final String addHistoryPartition = """
+            ALTER TABLE AppInfoHistory REORGANIZE PARTITION p_future INTO (
+            PARTITION %s VALUES LESS THAN (TO_DAYS('%s')),
+            PARTITION p_future VALUES LESS THAN MAXVALUE
+            )
+            """;
+
+    // MySQL Query to drop an expired month partition (name) {Statement}
+    public static final String dropHistoryPartition = "ALTER TABLE AppInfoHistory DROP PARTITION %s";
+
+    // MySQL Query to get the current content hashes of a batch of apps (Append appid List) {Prepared Statement}
+    public static final String getContentHashes = "SELECT appid, content_hash FROM AppInfo WHERE appid IN ";
+
+    // MySQL Query to insert app history rows (Append Value Sections) {Prepared Statement}
+    public static final String insertAppHistory = "INSERT IGNORE INTO AppInfoHistory (appid, changed_at, type, header_image, background, content_hash) VALUES\n";
+
+    // MySQL Query to seed the negative cache with existing invalid apps (Not Found), spreading their next check over 30 days from now {Prepared Statement}
+    public static final String seedAppNegativeCache = """
+            INSERT IGNORE INTO AppNegativeCache (appid, reason, hits, next_check)
+            SELECT appid, 1, 1, ? + FLOOR(RAND() * 2592000)
+            FROM AppInfo
+            WHERE type = 'invalid'
+            """;
+
+    // MySQL Query to Get All negative cache entries
+    public static final String getAllNegativeCache = """
+            SELECT appid, reason, hits, next_check
+            FROM AppNegativeCache
+            """;
+
+    // Query to requeue negative cached apps that are due for a re-check (MySQL and SQLite) {Prepared Statement}
+    public static final String requeueDueNegativeCache = """
+            UPDATE AppInfo
+            SET last_update = NULL
+            WHERE last_update IS NOT NULL
+                AND appid IN (SELECT appid FROM AppNegativeCache WHERE next_check <= ?)
+            """;
+
+    // Query to insert or replace a negative cache entry (MySQL and SQLite) {Prepared Statement}
+    public static final String upsertNegativeCache = """
+            REPLACE INTO AppNegativeCache (appid, reason, hits, next_check)
+            VALUES (?, ?, ?, ?)
+            """;
+
+    // MySQL Query to delete a negative cache entry {Prepared Statement}
+    public static final String deleteNegativeCache = "DELETE FROM AppNegativeCache WHERE appid=?";
+
+    // MySQL Queries to Get All compact storage dictionary entries
+    public static final String getAllAppTypes = "SELECT type_id, type FROM AppTypes";
+    public static final String getAllUrlPrefixes = "SELECT prefix_id, prefix FROM UrlPrefixes";
+
+    // MySQL Queries to add and look up compact storage dictionary entries {Prepared Statement}
+    public static final String insertAppType = "INSERT IGNORE INTO AppTypes (type) VALUES (?)";
+    public static final String getAppTypeId = "SELECT type_id FROM AppTypes WHERE type=?";
+    public static final String insertUrlPrefix = "INSERT IGNORE INTO UrlPrefixes (prefix) VALUES (?)";
+    public static final String getUrlPrefixId = "SELECT prefix_id FROM UrlPrefixes WHERE prefix=?";
+
+    // MySQL Query to Get a batch of apps still stored in wide form {Prepared Statement}
+    public static final String getWideAppsToCompact = """
+            SELECT appid, type, header_image, background
+            FROM AppInfo
+            WHERE type IS NOT NULL
+            LIMIT ?
+            """;
+
+    // MySQL Query to Create the MaintenanceTasks table (One-Off Data Tasks Recorded Once Complete)
+    public static final String createTableMaintenanceTasks = """
+                CREATE TABLE MaintenanceTasks (
+                task VARCHAR(64) NOT NULL PRIMARY KEY,
+                completed_at DATETIME NOT NULL
+                )
+                """;
+
+    // MySQL Query to check if a maintenance task is complete {Prepared Statement}
+    public static final String getCompletedTask = "SELECT 1 FROM MaintenanceTasks WHERE task = ?";
+
+    // MySQL Query to record a maintenance task as complete {Prepared Statement}
+    public static final String insertCompletedTask = "REPLACE INTO MaintenanceTasks (task, completed_at) VALUES (?, ?)";
+
+    // MySQL Query to mark a maintenance task as due again {Prepared Statement}
+    public static final String deleteCompletedTask = "DELETE FROM MaintenanceTasks WHERE task = ?";
+
+    // MySQL Query to rewrite an app's details in compact form, keeping last_update {Prepared Statement}
+    public static final String compactApp = """
+            UPDATE AppInfo
+            SET
+                type=NULL, header_image=NULL, background=NULL,
+                type_id=?, header_prefix=?, header_suffix=?, background_prefix=?, background_suffix=?, content_hash=?
+            WHERE appid=?
+            """;
+
+    // MySQL Query to stream all apps for a snapshot
+    public static final String getSnapshotApps = """
+            SELECT appid, name, last_update, type, header_image, background
+            FROM AppInfoView
+            """;
+
+    // MySQL Query to read a single app for the lookup cache {Prepared Statement}
+    public static final String getAppInfoRow = """
+            SELECT appid, name, last_update, type, header_image, background
+            FROM AppInfoView
+            WHERE appid = ?
+            """;
+
+    // MySQL Query to stream apps updated since a watermark for an incremental snapshot {Prepared Statement}
+    public static final String getSnapshotAppsSince = """
+            SELECT appid, name, last_update, type, header_image, background
+            FROM AppInfoView
+            WHERE last_update >= ?
+            """;
+
+    // MySQL Query to insert apps into the AppInfo Table, skipping existing apps (Append Value Sections) {Prepared Statement}
+    public static final String insertNewAppIgnore = "INSERT IGNORE INTO AppInfo (appid, name) VALUES\n";
+
+    // MySQL Query to bulk load new apps from a streamed tab-separated {appid, name} file, skipping existing apps {Statement}
+    public static final String loadDataNewApps = """
+            LOAD DATA LOCAL INFILE 'apps.tsv' IGNORE INTO TABLE AppInfo
+            CHARACTER SET utf8mb4
+            FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'
+            LINES TERMINATED BY '\\n'
+            (appid, name)
+            """;
+
+    // MySQL Query to check if AppInfo has any rows {Statement}
+    public static final String getAnyApp = "SELECT 1 FROM AppInfo LIMIT 1";
+
+    // MySQL Query to drop the planner index before a bulk snapshot import or to redefine its column (DDL, commits on its own) {Statement}
+    public static final String dropNeedsUpdateIndex = "ALTER TABLE AppInfo DROP INDEX idx_needs_update";
+
+    // MySQL Query to drop the last_update index before a bulk snapshot import (DDL, commits on its own) {Statement}
+    public static final String dropLastUpdateIndex = "ALTER TABLE AppInfo DROP INDEX idx_last_update";
+
+    // MySQL Query to remove the rows of an import whose indexes could not be rebuilt (DDL, commits on its own) {Statement}
+    public static final String truncateAppInfo = "TRUNCATE TABLE AppInfo";
+
+    // MySQL Query to bulk load snapshot rows from a streamed tab-separated file, replacing earlier rows of the same apps {Statement}
+    public static final String loadDataSnapshotApps = """
+            LOAD DATA LOCAL INFILE 'snapshot.tsv' REPLACE INTO TABLE AppInfo
+            CHARACTER SET utf8mb4
+            FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'
+            LINES TERMINATED BY '\\n'
+            (appid, name, last_update, type, header_image, background, content_hash)
+            """;
+
+    // MySQL Query to insert snapshot rows, replacing earlier rows of the same apps (Append Value Sections) {Prepared Statement}
+    public static final String replaceSnapshotApps = "REPLACE INTO AppInfo (appid, name, last_update, type, header_image, background, content_hash) VALUES\n";
+
+    // MySQL Query to update the name of a renamed app {Prepared Statement}
+    public static final String updateAppName = "UPDATE AppInfo SET name=? WHERE appid=?";
+
+    // MySQL Query to update an app's type and release its lease if held by the given owner (SET runs left to right, expiry first) {Prepared Statement}
     public static final String updateApp = """
             UPDATE AppInfo
             SET
-                last_update=CURRENT_TIMESTAMP(), type=?, header_image=?, background=?
+                last_update=?, type=?, header_image=?, background=?, content_hash=?,
+                lease_expires=IF(lease_owner = ?, NULL, lease_expires), lease_owner=IF(lease_owner = ?, NULL, lease_owner)
+            WHERE appid=?
+            """;
+
+    // MySQL Query to update an app's details in compact form and release its lease if held by the given owner {Prepared Statement}
+    public static final String updateAppCompact = """
+            UPDATE AppInfo
+            SET
+                last_update=?, type=NULL, header_image=NULL, background=NULL,
+                type_id=?, header_prefix=?, header_suffix=?, background_prefix=?, background_suffix=?, content_hash=?,
+                lease_expires=IF(lease_owner = ?, NULL, lease_expires), lease_owner=IF(lease_owner = ?, NULL, lease_owner)
+            WHERE appid=?
+            """;
+
+    // *** SQLite Queries (EmbeddedSink) ***
+
+    // SQLite Query to create the AppInfo Table (last_update in epoch milliseconds) {Statement}
+    public static final String sqliteCreateTableAppInfo = """
+                CREATE TABLE IF NOT EXISTS AppInfo (
+                appid INTEGER PRIMARY KEY,
+                name TEXT NOT NULL,
+                last_update INTEGER,
+                type TEXT,
+                header_image TEXT,
+                background TEXT,
+                content_hash INTEGER
+                )
+                """;
+
+    // SQLite Query to create a partial index of apps needing an update {Statement}
+    public static final String sqliteCreateNeedsUpdateIndex = """
+                CREATE INDEX IF NOT EXISTS idx_needs_update
+                ON AppInfo (appid)
+                WHERE type IS NULL OR last_update IS NULL
+                """;
+
+    // SQLite Query to create the negative result cache Table {Statement}
+    public static final String sqliteCreateTableAppNegativeCache = """
+                CREATE TABLE IF NOT EXISTS AppNegativeCache (
+                appid INTEGER PRIMARY KEY,
+                reason INTEGER NOT NULL,
+                hits INTEGER NOT NULL,
+                next_check INTEGER NOT NULL
+                )
+                """;
+
+    // SQLite Query to get a page of apps to update after an appid, skipping negative cached apps not yet due {Prepared Statement}
+    public static final String sqliteGetAppidsToUpdateAfter = """
+            SELECT appid
+            FROM AppInfo
+            WHERE (type IS NULL OR last_update IS NULL) AND appid > ?
+                AND NOT EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid AND n.next_check > ?)
+            ORDER BY appid
+            LIMIT ?
+            """;
+
+    // SQLite Query to Count the apps needing an update, excluding negative cached apps not yet due {Prepared Statement}
+    public static final String sqliteCountAppidsToUpdate = """
+            SELECT COUNT(*)
+            FROM AppInfo
+            WHERE (type IS NULL OR last_update IS NULL)
+                AND NOT EXISTS (SELECT 1 FROM AppNegativeCache n WHERE n.appid = AppInfo.appid AND n.next_check > ?)
+            """;
+
+    // SQLite Query to insert a new app, skipping existing apps {Prepared Statement}
+    public static final String sqliteInsertNewApp = "INSERT OR IGNORE INTO AppInfo (appid, name) VALUES (?, ?)";
+
+    // SQLite Query to update an app's details {Prepared Statement}
+    public static final String sqliteUpdateApp = """
+            UPDATE AppInfo
+            SET last_update=?, type=?, header_image=?, background=?, content_hash=?
             WHERE appid=?
             """;
+
+    /**
+     * Method to build the lease query for a given number of appids
+     * @param count is the number of appids to lease
+     * @return Prepared Statement query string
+     */
+    public static String getLeaseAppsQuery(int count) {
+        return leaseApps + "(" + "?, ".repeat(count - 1) + "?)";
+    }
+
+    /**
+     * Method to build the lease release query for a given number of appids
+     * @param count is the number of appids to release
+     * @return Prepared Statement query string
+     */
+    public static String getReleaseAppLeasesQuery(int count) {
+        return releaseAppLeases + getInList(count);
+    }
+
+    /**
+     * Method to build the content hash query for a given number of appids
+     * @param count is the number of appids
+     * @return Prepared Statement query string
+     */
+    public static String getContentHashesQuery(int count) {
+        return getContentHashes + getInList(count);
+    }
+
+    /**
+     * Method to build the app rows query for a given number of appids
+     * @param count is the number of appids
+     * @return Prepared Statement query string
+     */
+    public static String getAppInfoRowsQuery(int count) {
+        return getAppInfoRows + getInList(count);
+    }
+
+    /**
+     * Method to build the backlog delete query for a given number of appids
+     * @param count is the number of appids
+     * @return Prepared Statement query string
+     */
+    public static String getDeleteTargetBacklogQuery(int count) {
+        return deleteTargetBacklog + getInList(count);
+    }
+
+    /**
+     * Method to build the refresh request delete query for a given number of appids
+     * @param count is the number of appids
+     * @return Prepared Statement query string
+     */
+    public static String getDeleteRefreshRequestsQuery(int count) {
+        return deleteRefreshRequests + getInList(count);
+    }
+
+    /**
+     * Method to build a multi-row insert query
+     * @param insert is the insert query ending in VALUES
+     * @param count is the number of rows
+     * @param columns is the number of columns per row
+     * @return Prepared Statement query string
+     */
+    public static String getMultiRowInsertQuery(String insert, int count, int columns) {
+        String row = "(" + "?, ".repeat(columns - 1) + "?)";
+        return insert + (row + ", ").repeat(count - 1) + row;
+    }
+
+    /**
+     * Method to build a parameter list for an IN clause
+     * @param count is the number of parameters
+     * @return parameter list
+     */
+    private static String getInList(int count) {
+        return "(" + "?, ".repeat(count - 1) + "?)";
+    }
+
+    /**
+     * Method to build the history insert query for a given number of rows
+     * @param count is the number of history rows
+     * @return Prepared Statement query string
+     */
+    public static String getInsertAppHistoryQuery(int count) {
+        return insertAppHistory + "(?, ?, ?, ?, ?, ?), ".repeat(count - 1) + "(?, ?, ?, ?, ?, ?)";
+    }
 }
@@ -0,0 +1,278 @@
+package db;
+
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Class - Adaptive (AIMD) rate and concurrency controller for Steam Web API calls
+ * > Rate and concurrency rise additively while responses are healthy
+ * > Rate and concurrency are cut multiplicatively on 429/5xx responses or latency spikes
+ * > The learned rate is kept between a floor and a ceiling and persisted between runs
+ * > Threads marked urgent (on-demand refreshes) take the next free permit ahead of waiting background threads
+ */
+public class RateController {
+    // Rate Limits (Calls per Minute)
+    private static final double MIN_RATE = 6;
+    private static final double MAX_RATE = 120;
+    private static final double DEFAULT_RATE = 199 / 5.0; // Previous Fixed Limit of 199 Calls per 5 Minutes
+
+    // Concurrency Limits
+    private static final int MIN_CONCURRENCY = 1;
+    private static final int MAX_CONCURRENCY = 8;
+
+    // AIMD Settings
+    private static final double DECREASE_FACTOR = 0.5; // Multiplicative Decrease on Overload
+    private static final long DECREASE_COOLDOWN_MILLIS = 10 * 1000; // Ignore Repeat Overloads From The Same Burst
+    private static final double LATENCY_SPIKE_FACTOR = 4.0; // Latency Over 4x the EWMA is a Spike
+    private static final long MIN_SPIKE_LATENCY_MILLIS = 2000; // Latencies Under 2 Seconds are Never a Spike
+    private static final double LATENCY_EWMA_WEIGHT = 0.1;
+
+    // Whether the Current Thread Fetches Urgent Apps
+    private static final ThreadLocal<Boolean> URGENT = ThreadLocal.withInitial(() -> false);
+
+    // Preferences
+    private static final String PREF_RATE = "learnedRate";
+    private static final String PREF_CONCURRENCY = "learnedConcurrency";
+    private final Preferences prefs;
+
+    // Logging
+    private final Logger logger;
+
+    // Controller State
+    private double rate; // Calls per Minute
+    private double maxRate = MAX_RATE; // Configured Ceiling (Calls per Minute)
+    private double concurrency; // Fractional to Allow Additive Increase
+    private int inFlight;
+    private int urgentWaiting;
+    private long nextPermitTime;
+    private long lastDecreaseTime;
+    private double latencyEwma;
+
+    // Counters
+    private int successCount;
+    private int overloadCount;
+
+    /**
+     * Constructor - Creates a RateController loading the last learned rate
+     * @param logger is the existing logger
+     */
+    public RateController(Logger logger) {
+        this.logger = logger;
+        this.prefs = Preferences.userNodeForPackage(RateController.class).node("rateController");
+
+        rate = clamp(prefs.getDouble(PREF_RATE, DEFAULT_RATE), MIN_RATE, maxRate);
+        concurrency = clamp(prefs.getDouble(PREF_CONCURRENCY, MIN_CONCURRENCY), MIN_CONCURRENCY, MAX_CONCURRENCY);
+    }
+
+    /**
+     * Method to wait for a call permit (free concurrency slot and rate spacing)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        UpdateEvents.Wait event = new UpdateEvents.Wait();
+        event.begin();
+
+        // Wait For Free Concurrency Slot (Background Threads Let Urgent Threads Go First)
+        boolean urgent = URGENT.get();
+        if(urgent) {
+            urgentWaiting++;
+        }
+        try {
+            while(inFlight >= (int) concurrency || (!urgent && urgentWaiting > 0)) {
+                wait();
+            }
+        }
+        finally {
+            if(urgent) {
+                urgentWaiting--;
+                notifyAll();
+            }
+        }
+        inFlight++;
+
+        // Reserve Next Slot in Rate Schedule
+        long now = Utils.getTimeSource().currentTimeMillis();
+        long permitTime = Math.max(now, nextPermitTime);
+        nextPermitTime = permitTime + getIntervalMillis();
+
+        // Wait Until Reserved Slot (Releasing Lock So Other Threads Can Reserve)
+        try {
+            long waitTime = permitTime - now;
+            event.plannedMillis = Math.max(0, waitTime);
+            while(waitTime > 0) {
+                Utils.getTimeSource().await(this, waitTime);
+                waitTime = permitTime - Utils.getTimeSource().currentTimeMillis();
+            }
+            event.reason = UpdateEvents.WAIT_RATE_PERMIT;
+            event.commit();
+        }
+        // Give Back Concurrency Slot When Interrupted
+        catch (InterruptedException e) {
+            inFlight--;
+            notifyAll();
+            throw e;
+        }
+    }
+
+    /**
+     * Method to mark whether the current thread's calls are urgent
+     * @param urgent is true while the thread fetches urgent apps
+     */
+    public static void setUrgent(boolean urgent) {
+        URGENT.set(urgent);
+    }
+
+    /**
+     * Method to report the result of a call made with an acquired permit
+     * @param status is the HTTP status code or -1 if no response was received
+     * @param latencyMillis is the call latency in milliseconds
+     */
+    public synchronized void release(int status, long latencyMillis) {
+        inFlight = Math.max(0, inFlight - 1);
+
+        // Overloaded (RateLimited or Server Error)
+        if(status == 429 || status >= 500) {
+            decrease(String.format("Steam Responded With HTTP %d", status));
+        }
+        // Healthy Response
+        else if(status >= 200 && status < 300) {
+            boolean spike = latencyEwma > 0
+                    && latencyMillis > MIN_SPIKE_LATENCY_MILLIS
+                    && latencyMillis > latencyEwma * LATENCY_SPIKE_FACTOR;
+
+            latencyEwma = latencyEwma == 0 ? latencyMillis : latencyEwma + LATENCY_EWMA_WEIGHT * (latencyMillis - latencyEwma);
+
+            if(spike) {
+                decrease(String.format("Latency Spike of %dms", latencyMillis));
+            }
+            else {
+                increase();
+            }
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Method to save the learned rate and concurrency for the next run
+     */
+    public synchronized void save() {
+        prefs.putDouble(PREF_RATE, rate);
+        prefs.putDouble(PREF_CONCURRENCY, concurrency);
+
+        try {
+            prefs.flush();
+        }
+        catch (BackingStoreException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Save Learned API Rate");
+        }
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("API Rate Saved: %.1f Calls/Min, Concurrency %d (%d OK, %d Overloaded)",
+                rate, (int) concurrency, successCount, overloadCount));
+    }
+
+    /**
+     * Method to get the current rate
+     * @return rate in calls per minute
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Method to get the current concurrency limit
+     * @return max concurrent calls
+     */
+    public synchronized int getConcurrency() {
+        return (int) concurrency;
+    }
+
+    /**
+     * Method to set the ceiling the learned rate may grow to, applied to the running controller
+     * @param callsPerMinute is the new ceiling (kept between the rate floor and MAX_RATE)
+     */
+    public synchronized void setMaxRate(double callsPerMinute) {
+        double ceiling = clamp(callsPerMinute, MIN_RATE, MAX_RATE);
+        if(ceiling == maxRate) {
+            return;
+        }
+        maxRate = ceiling;
+        rate = Math.min(rate, maxRate);
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("API Rate Ceiling Set to %.0f Calls/Min", maxRate));
+        notifyAll();
+    }
+
+    /**
+     * Method to get the lowest rate the controller backs off to (and the lowest ceiling that may be configured)
+     * @return rate in calls per minute
+     */
+    public static int getRateFloor() {
+        return (int) MIN_RATE;
+    }
+
+    /**
+     * Method to get the highest rate ceiling that may be configured
+     * @return rate in calls per minute
+     */
+    public static int getRateCeiling() {
+        return (int) MAX_RATE;
+    }
+
+    /**
+     * Method to get the maximum concurrency this controller will allow
+     * @return concurrency ceiling
+     */
+    public static int getMaxConcurrency() {
+        return MAX_CONCURRENCY;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to additively increase rate and concurrency after a healthy response
+     * > Rate grows by ~1 call/min for every minute of healthy calls
+     * > Concurrency grows by 1 for every 20 windows of healthy calls
+     */
+    private void increase() {
+        successCount++;
+        rate = clamp(rate + 1.0 / rate, MIN_RATE, maxRate);
+        concurrency = clamp(concurrency + 1.0 / (20 * concurrency), MIN_CONCURRENCY, MAX_CONCURRENCY);
+    }
+
+    /**
+     * Method to multiplicatively decrease rate and concurrency on overload
+     * @param reason is the overload reason for logging
+     */
+    private void decrease(String reason) {
+        overloadCount++;
+
+        long now = Utils.getTimeSource().currentTimeMillis();
+        if(now - lastDecreaseTime < DECREASE_COOLDOWN_MILLIS) {
+            return;
+        }
+        lastDecreaseTime = now;
+
+        rate = clamp(rate * DECREASE_FACTOR, MIN_RATE, maxRate);
+        concurrency = clamp(Math.floor(concurrency * DECREASE_FACTOR), MIN_CONCURRENCY, MAX_CONCURRENCY);
+
+        // Back Off Before The Next Permit
+        nextPermitTime = Math.max(nextPermitTime, now + getIntervalMillis());
+
+        logger.log(Logger.LOG_TYPE_WARNING, String.format("API_LIMIT - %s - Reducing Rate to %.1f Calls/Min, Concurrency %d",
+                reason, rate, (int) concurrency));
+    }
+
+    /**
+     * Method to get the spacing between permits at the current rate
+     * @return interval in milliseconds
+     */
+    private long getIntervalMillis() {
+        return (long) (60 * 1000 / rate);
+    }
+
+    /**
+     * Method to clamp a value between a floor and ceiling
+     */
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,345 @@
+package db;
+
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static db.Queries.*;
+
+/**
+ * Class - Priority lanes in front of the fetch stage, deciding which apps are fetched next
+ * > The urgent lane holds explicitly requested appids (from the GUI or the RefreshRequests control table) and is served between fetches
+ * > Background apps are claimed from weighted lanes (new apps, NULL-type re-checks, stale refreshes) so no lane starves the others
+ * > The stale lane takes apps queued for a refresh first, then typed apps not updated within steam.refresh.stale.days (oldest first)
+ * > Urgent apps are leased to this node before they are fetched, so background claims on other nodes skip them
+ * > All lanes share the RateController budget, urgent fetches take the next free permit ahead of background fetches
+ */
+public class RefreshLanes {
+    // Lanes
+    public static final int LANE_URGENT = 0;
+    public static final int LANE_NEW = 1;
+    public static final int LANE_NULL_TYPE = 2;
+    public static final int LANE_STALE = 3;
+    private static final String[] LANE_NAMES = {"Urgent", "New", "NULL-Type", "Stale"};
+    private static final String[] CLAIM_QUERIES = {null, claimNewAppids, claimNullTypeAppids, claimStaleAppids};
+
+    // Background Lane Weights (steam.lanes.weights as new,null-type,stale)
+    private static final int[] DEFAULT_WEIGHTS = {0, 4, 2, 1};
+
+    // Urgent Lane Latency Target (steam.refresh.target.seconds), the Control Table is Polled Several Times Within It
+    private static final long TARGET_MILLIS = Math.max(1, Integer.getInteger("steam.refresh.target.seconds", 30)) * 1000L;
+    private static final long POLL_MILLIS = Math.max(1000, TARGET_MILLIS / 4);
+    private static final int MAX_POLLED_REQUESTS = 50;
+
+    // Stale Lane Age (steam.refresh.stale.days), Typed Apps Not Updated Within it are Refreshed (0 Disables)
+    private static final long STALE_MILLIS = Math.max(0, Integer.getInteger("steam.refresh.stale.days", 30)) * 24L * 60 * 60 * 1000;
+
+    // Record for Storing an Urgent Refresh Request
+    private record Request(int appid, long requestedAt) {}
+
+    // JDBC Connection and Leases (null Without MySQL)
+    private final Connection conn;
+    private final LeaseManager leaseManager;
+
+    // Logging
+    private final Logger logger;
+
+    // Lane Weights
+    private final int[] weights;
+
+    // Urgent Requests Made In-Process {Guarded by this}
+    private final ArrayDeque<Request> requested = new ArrayDeque<>();
+
+    // Urgent Apps Being Fetched {Update Thread Only}
+    private final HashMap<Integer, Long> urgentRequestTimes = new HashMap<>();
+    private long lastPoll;
+
+    // Counters For the Current Update {Update Thread Only}
+    private final int[] claimed = new int[LANE_NAMES.length];
+    private int served;
+    private int missedTarget;
+    private long totalLatency;
+    private long maxLatency;
+
+    /**
+     * Constructor - Creates RefreshLanes claiming background apps through a LeaseManager
+     * @param conn is the open database connection (null for the in-process urgent lane only)
+     * @param leaseManager is the lease manager of the connection (null for the in-process urgent lane only)
+     * @param logger is the existing logger
+     */
+    public RefreshLanes(Connection conn, LeaseManager leaseManager, Logger logger) {
+        this.conn = conn;
+        this.leaseManager = leaseManager;
+        this.logger = logger;
+        this.weights = parseWeights(System.getProperty("steam.lanes.weights"), logger);
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to request an urgent refresh of an app (Any Thread)
+     * > Picked up by the running update within the latency target, or by the next update
+     * @param appid is the appid to refresh
+     */
+    public synchronized void request(int appid) {
+        for(Request request : requested) {
+            if(request.appid() == appid) {
+                return;
+            }
+        }
+        requested.add(new Request(appid, Utils.getTimeSource().currentTimeMillis()));
+        logger.log(Logger.LOG_TYPE_UPDATE, appid, "Refresh Requested For: " + appid);
+    }
+
+    /**
+     * Method to check if in-process refresh requests are waiting (Any Thread)
+     * @return true if requests are waiting
+     */
+    public synchronized boolean hasRequests() {
+        return !requested.isEmpty();
+    }
+
+    /**
+     * Method to take the urgent apps waiting to be fetched (Update Thread)
+     * > In-process requests are taken on every call, the control table is polled at most every POLL_MILLIS
+     * > Apps already being fetched for an earlier request are not returned twice
+     * @param force is whether the control table is polled regardless of the poll interval
+     * @return ArrayList of urgent appids (may be empty)
+     */
+    public ArrayList<Integer> pollUrgent(boolean force) {
+        ArrayList<Request> requests;
+        synchronized(this) {
+            requests = new ArrayList<>(requested);
+            requested.clear();
+        }
+
+        long now = Utils.getTimeSource().currentTimeMillis();
+        if(conn != null && (force || now - lastPoll >= POLL_MILLIS)) {
+            lastPoll = now;
+            requests.addAll(claimRefreshRequests());
+        }
+
+        ArrayList<Integer> appids = new ArrayList<>();
+        for(Request request : requests) {
+            if(urgentRequestTimes.putIfAbsent(request.appid(), request.requestedAt()) == null) {
+                appids.add(request.appid());
+            }
+        }
+        if(leaseManager != null) {
+            leaseManager.lease(appids);
+        }
+        claimed[LANE_URGENT] += appids.size();
+        return appids;
+    }
+
+    /**
+     * Method to claim a batch of background apps, split between the lanes by weight (Update Thread)
+     * > Each lane claims its weighted share, the rest of the batch is filled from the lanes in priority order
+     * > A lane weighted 0 only fills what the other lanes leave
+     * @param size is the maximum number of apps to claim
+     * @return ArrayList of claimed appids or null on failure
+     */
+    public ArrayList<Integer> claimBatch(int size) {
+        int totalWeight = 0;
+        for(int lane = LANE_NEW; lane < weights.length; lane++) {
+            totalWeight += weights[lane];
+        }
+
+        // Claim Each Lane's Weighted Share
+        ArrayList<Integer> appids = new ArrayList<>();
+        boolean[] drained = new boolean[weights.length];
+        for(int lane = LANE_NEW; lane < weights.length; lane++) {
+            int share = (int) Math.ceil((double) size * weights[lane] / totalWeight);
+            if(!claimLane(lane, Math.min(share, size - appids.size()), appids, drained)) {
+                return null;
+            }
+        }
+
+        // Fill the Rest From Lanes With Apps Left
+        for(int lane = LANE_NEW; lane < weights.length && appids.size() < size; lane++) {
+            if(!drained[lane] && !claimLane(lane, size - appids.size(), appids, drained)) {
+                return null;
+            }
+        }
+        return appids;
+    }
+
+    /**
+     * Method to check if an app is being fetched for an urgent request (Update Thread)
+     * @param appid is the fetched appid
+     * @return true if urgent
+     */
+    public boolean isUrgent(int appid) {
+        return urgentRequestTimes.containsKey(appid);
+    }
+
+    /**
+     * Method to record that an urgent app was fetched and written, checking its latency against the target (Update Thread)
+     * @param appid is the served appid
+     */
+    public void served(int appid) {
+        Long requestedAt = urgentRequestTimes.remove(appid);
+        if(requestedAt == null) {
+            return;
+        }
+
+        long latency = Math.max(0, Utils.getTimeSource().currentTimeMillis() - requestedAt);
+        served++;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+
+        if(latency > TARGET_MILLIS) {
+            missedTarget++;
+            logger.log(Logger.LOG_TYPE_WARNING, appid, String.format("Refresh of %d Took %.1fs - Over %ds Target",
+                    appid, latency / 1000.0, TARGET_MILLIS / 1000));
+        }
+        else {
+            logger.log(Logger.LOG_TYPE_UPDATE, appid, String.format("Refreshed %d in %.1fs", appid, latency / 1000.0));
+        }
+    }
+
+    /**
+     * Method to log the apps taken from each lane and the urgent lane latency, then reset the counters (Update Thread)
+     */
+    public void logStatus() {
+        StringBuilder lanes = new StringBuilder("Apps Taken per Lane -");
+        for(int lane = 0; lane < LANE_NAMES.length; lane++) {
+            lanes.append(String.format(" %s: %d", LANE_NAMES[lane], claimed[lane]));
+            claimed[lane] = 0;
+        }
+        logger.log(Logger.LOG_TYPE_UPDATE, lanes.toString());
+
+        if(served > 0) {
+            logger.log(missedTarget > 0 ? Logger.LOG_TYPE_WARNING : Logger.LOG_TYPE_UPDATE,
+                    String.format("Served %d Refresh Requests - Avg: %.1fs, Max: %.1fs, Over %ds Target: %d",
+                            served, totalLatency / 1000.0 / served, maxLatency / 1000.0, TARGET_MILLIS / 1000, missedTarget));
+        }
+        served = 0;
+        missedTarget = 0;
+        totalLatency = 0;
+        maxLatency = 0;
+        urgentRequestTimes.clear(); // Unserved Requests Failed (Logged by the Update)
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to claim apps from one background lane
+     * > The stale lane tops up from apps past the stale age once its queued apps are claimed
+     * @param lane is the lane to claim from
+     * @param count is the maximum number of apps to claim
+     * @param appids is the batch to add claimed apps to
+     * @param drained is set for the lane if it returned fewer apps than asked for
+     * @return false on failure
+     */
+    private boolean claimLane(int lane, int count, ArrayList<Integer> appids, boolean[] drained) {
+        if(count <= 0) {
+            return true;
+        }
+
+        ArrayList<Integer> laneAppids = leaseManager.claimBatch(CLAIM_QUERIES[lane], lane != LANE_NEW, null, count);
+        if(laneAppids == null) {
+            return false;
+        }
+
+        // Top Up the Stale Lane With Apps Past the Stale Age
+        if(lane == LANE_STALE && STALE_MILLIS > 0 && laneAppids.size() < count) {
+            Timestamp updatedBefore = new Timestamp(Utils.getTimeSource().currentTimeMillis() - STALE_MILLIS);
+            ArrayList<Integer> agedAppids = leaseManager.claimBatch(claimAgedAppids, true, updatedBefore, count - laneAppids.size());
+            if(agedAppids == null) {
+                return false;
+            }
+            laneAppids.addAll(agedAppids);
+        }
+
+        drained[lane] = laneAppids.size() < count;
+        claimed[lane] += laneAppids.size();
+        appids.addAll(laneAppids);
+        return true;
+    }
+
+    /**
+     * Method to claim and delete the oldest requests in the RefreshRequests control table
+     * > Requests are deleted when claimed, so a request is served by one node even if its fetch fails
+     * @return ArrayList of claimed requests (empty on failure)
+     */
+    private ArrayList<Request> claimRefreshRequests() {
+        ArrayList<Request> requests = new ArrayList<>();
+
+        try {
+            conn.setAutoCommit(false);
+
+            try(PreparedStatement pStmt = conn.prepareStatement(claimRefreshRequests)) {
+                pStmt.setInt(1, MAX_POLLED_REQUESTS);
+                ResultSet rs = pStmt.executeQuery();
+
+                while(rs.next()) {
+                    requests.add(new Request(rs.getInt(COLUMN_APPID), rs.getTimestamp(2).getTime()));
+                }
+            }
+
+            if(!requests.isEmpty()) {
+                try(PreparedStatement pStmt = conn.prepareStatement(getDeleteRefreshRequestsQuery(requests.size()))) {
+                    int cnt = 1;
+                    for(Request request : requests) {
+                        pStmt.setInt(cnt++, request.appid());
+                    }
+                    pStmt.executeUpdate();
+                }
+            }
+
+            conn.commit();
+            return requests;
+        }
+        catch (SQLException e) {
+            try {
+                conn.rollback();
+            }
+            catch (SQLException ex) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Rollback Refresh Request Claim");
+            }
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Poll Refresh Requests - SQL Exception {%d}", e.getErrorCode()));
+        }
+        finally {
+            try {
+                conn.setAutoCommit(true);
+            }
+            catch (SQLException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Restore Auto-Commit After Refresh Request Claim");
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to parse the background lane weights (new,null-type,stale)
+     * @param property is the steam.lanes.weights value or null for the defaults
+     * @param logger is the existing logger
+     * @return weights indexed by lane
+     */
+    private static int[] parseWeights(String property, Logger logger) {
+        if(property == null || property.isBlank()) {
+            return DEFAULT_WEIGHTS;
+        }
+
+        String[] parts = property.split(",");
+        int[] weights = new int[LANE_NAMES.length];
+        int total = 0;
+        try {
+            for(int lane = LANE_NEW; lane < weights.length; lane++) {
+                weights[lane] = Math.max(0, Integer.parseInt(parts[lane - 1].trim()));
+                total += weights[lane];
+            }
+        }
+        catch (RuntimeException e) {
+            total = 0;
+        }
+
+        if(parts.length != LANE_NAMES.length - 1 || total == 0) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Invalid Lane Weights (Expected new,null-type,stale): " + property);
+            return DEFAULT_WEIGHTS;
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,71 @@
+package db;
+
+import java.nio.file.Path;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Interface - Host-wide Steam API call budget shared by every updater (and other tool) on the same egress IP
+ * > Steam limits calls per IP, so each process reserves a slot from the shared budget before every call
+ * > Slots are spaced GCRA style: one shared "next slot" time moves forward one interval per call, allowing a small burst
+ * > FileRateBudget shares the budget between processes on one host through a memory-mapped file updated with CAS
+ * > MySqlRateBudget shares the budget between hosts behind one IP through a row in the RateBudget table
+ */
+public interface SharedRateBudget {
+    // Default Budget (Steam's appdetails Limit of ~200 Calls per 5 Minutes, Less One Call of Headroom)
+    int DEFAULT_LIMIT = 199;
+    int DEFAULT_WINDOW_SECONDS = 5 * 60;
+    int DEFAULT_BURST = 4;
+
+    // Shared Back Off After a 429 Response
+    long BACK_OFF_MILLIS = 30 * 1000;
+
+    long reserve(); // Method to reserve the next shared call slot (local time in millis the call may be made, or 0 to not wait on failure)
+    void backOff(long millis); // Method to push every process's next slot back after Steam rate-limited a call
+    void close(); // Method to close the budget
+    String getName(); // Method to get the budget name used in logs
+
+    /**
+     * Method to create the shared budget from system properties (null if disabled)
+     * > steam.rate.shared=file:<path> shares a memory-mapped budget file between processes on this host
+     * > steam.rate.shared=mysql[:<name>] shares a named budget row in the updater's MySQL database between hosts
+     * > steam.rate.shared.limit calls per steam.rate.shared.window.seconds (default 199 per 300), steam.rate.shared.burst (default 4)
+     * @param info is the database connection info
+     * @param logger is the existing logger
+     * @return SharedRateBudget or null if disabled or unavailable
+     */
+    static SharedRateBudget fromSystemProperties(DatabaseInfo info, Logger logger) {
+        String property = System.getProperty("steam.rate.shared");
+        if(property == null || property.isBlank()) {
+            return null;
+        }
+
+        int limit = Math.max(1, Integer.getInteger("steam.rate.shared.limit", DEFAULT_LIMIT));
+        int windowSeconds = Math.max(1, Integer.getInteger("steam.rate.shared.window.seconds", DEFAULT_WINDOW_SECONDS));
+        int burst = Math.max(1, Integer.getInteger("steam.rate.shared.burst", DEFAULT_BURST));
+        long intervalMillis = Math.max(1, windowSeconds * 1000L / limit);
+
+        SharedRateBudget budget = null;
+        if(property.startsWith("file:")) {
+            budget = FileRateBudget.open(Path.of(property.substring("file:".length())), intervalMillis, burst, logger);
+        }
+        else if(property.equals("mysql") || property.startsWith("mysql:")) {
+            if(EmbeddedSink.isEmbedded(info)) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Shared Rate Budget Needs a MySQL Database - Using Local Pacing Only");
+                return null;
+            }
+            String name = property.equals("mysql") ? "steam" : property.substring("mysql:".length());
+            budget = MySqlRateBudget.open(info, name, intervalMillis, burst, logger);
+        }
+        else {
+            logger.log(Logger.LOG_TYPE_ERROR, "Invalid Shared Rate Budget (Expected file:<path> or mysql[:<name>]): " + property);
+            return null;
+        }
+
+        if(budget != null) {
+            logger.log(Logger.LOG_TYPE_CONNECTION, String.format("Sharing Steam API Budget %s - %d Calls per %ds, Burst %d",
+                    budget.getName(), limit, windowSeconds, burst));
+        }
+        return budget;
+    }
+}
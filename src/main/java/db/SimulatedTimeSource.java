@@ -0,0 +1,113 @@
+package db;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class - Virtual TimeSource used to simulate update schedules in milliseconds
+ * > Sleeping and waiting move virtual time forward instead of blocking for the real time
+ * > Time only moves to the earliest wake time of the threads sleeping or waiting, so concurrent sleepers wake in order
+ * > Time only moves once every thread that woke has slept again or run for a few real milliseconds,
+ *   so work between two sleeps (e.g. a local call into a stub that sleeps for its latency) finishes at the time it began
+ * > Waiting on a monitor releases it like a real wait, so other threads keep entering it meanwhile
+ */
+public class SimulatedTimeSource implements TimeSource {
+    private static final long SETTLE_NANOS = 5 * 1000 * 1000; // Real Time a Woken Thread May Run Before Time Moves
+
+    private final AtomicLong time;
+
+    // Wake Times of Sleeping and Waiting Threads (Wake Time to Thread Count) {Guarded by Itself}
+    private final TreeMap<Long, Integer> wakeTimes = new TreeMap<>();
+    private final HashMap<Thread, Long> wokenNanos = new HashMap<>(); // Threads Running Since Their Last Sleep {Guarded by wakeTimes}
+
+    /**
+     * Constructor - Creates a SimulatedTimeSource starting at the current system time
+     */
+    public SimulatedTimeSource() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor - Creates a SimulatedTimeSource starting at a given time
+     * @param startMillis is the start time in epoch milliseconds
+     */
+    public SimulatedTimeSource(long startMillis) {
+        this.time = new AtomicLong(startMillis);
+    }
+
+    public long currentTimeMillis() {
+        return time.get();
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        if(Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        long wakeTime = time.get() + Math.max(0, millis);
+        addWakeTime(wakeTime);
+        try {
+            // Move Time to the Earliest Wake Time Once Settled, Threads Due Earlier Wake First
+            while(time.get() < wakeTime) {
+                Thread.sleep(1);
+                advanceToEarliestWakeTime(wakeTime);
+            }
+        }
+        finally {
+            removeWakeTime(wakeTime);
+        }
+    }
+
+    public void await(Object monitor, long millis) throws InterruptedException {
+        long wakeTime = time.get() + Math.max(0, millis);
+        addWakeTime(wakeTime);
+        try {
+            // Release the Monitor Until Settled (Returning Early is a Valid Spurious Wakeup for Callers Waiting in a Loop)
+            monitor.wait(SETTLE_NANOS / 1000000 + 1);
+            advanceToEarliestWakeTime(wakeTime);
+        }
+        finally {
+            removeWakeTime(wakeTime);
+        }
+    }
+
+    /**
+     * Method to manually advance virtual time
+     * @param millis is the number of milliseconds to advance
+     */
+    public void advance(long millis) {
+        time.addAndGet(millis);
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to move virtual time to the earliest wake time of all sleeping and waiting threads, never past the caller's
+     * > Does nothing while a thread woke less than SETTLE_NANOS ago and has not slept again
+     * @param wakeTime is the caller's wake time
+     */
+    private void advanceToEarliestWakeTime(long wakeTime) {
+        synchronized(wakeTimes) {
+            long now = System.nanoTime();
+            wokenNanos.values().removeIf(woken -> now - woken >= SETTLE_NANOS); // Settled
+            if(wokenNanos.isEmpty()) {
+                time.accumulateAndGet(Math.min(wakeTime, wakeTimes.firstKey()), Math::max);
+            }
+        }
+    }
+
+    private void addWakeTime(long wakeTime) {
+        synchronized(wakeTimes) {
+            wakeTimes.merge(wakeTime, 1, Integer::sum);
+            wokenNanos.remove(Thread.currentThread());
+        }
+    }
+
+    private void removeWakeTime(long wakeTime) {
+        synchronized(wakeTimes) {
+            wakeTimes.compute(wakeTime, (t, count) -> count == 1 ? null : count - 1);
+            wokenNanos.put(Thread.currentThread(), System.nanoTime());
+        }
+    }
+}
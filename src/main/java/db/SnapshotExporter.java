@@ -0,0 +1,323 @@
+package db;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static db.Queries.*;
+
+/**
+ * Class - Exports AppInfo as compressed columnar snapshot files for downstream analytics
+ * > Rows are streamed from AppInfoView through a forward-only cursor into one compressed block per column
+ * > The type column is dictionary-encoded, appids are delta-encoded
+ * > Snapshots and the manifest are written to a temp file and renamed atomically
+ * > Incremental snapshots only contain rows updated since the last snapshot's watermark
+ *
+ * File Format (Big-Endian):
+ *   magic "SICS", format version (int), kind (byte: 0 full, 1 delta), row count (int), watermark (long epoch millis), column count (int)
+ *   per column: name (UTF), encoding (byte), [dictionary size (int), values (UTF)...], compressed length (int), CRC32 of uncompressed data (long), deflated data
+ */
+public class SnapshotExporter {
+    // Format
+    public static final byte[] MAGIC = {'S', 'I', 'C', 'S'};
+    public static final int FORMAT_VERSION = 1;
+    public static final byte KIND_FULL = 0;
+    public static final byte KIND_DELTA = 1;
+    public static final String MANIFEST = "manifest.json";
+
+    // Column Encodings
+    public static final byte ENCODING_DELTA_VARINT = 0; // Delta From Previous Value as ZigZag VarInt (long)
+    public static final byte ENCODING_STRING = 1; // VarInt Length + UTF-8 Bytes (Length 0 and Null Flag for Null)
+    public static final byte ENCODING_DICTIONARY = 2; // VarInt Code Into Column Dictionary (0 for Null)
+
+    // Take a Full Snapshot After This Many Deltas
+    private static final int MAX_DELTAS = 24;
+
+    // Snapshot Directory
+    private final Path dir;
+
+    // Logging
+    private final Logger logger;
+
+    /**
+     * Constructor - Creates a SnapshotExporter writing to the given directory
+     * @param dir is the snapshot directory
+     * @param logger is the existing logger
+     */
+    public SnapshotExporter(Path dir, Logger logger) {
+        this.dir = dir;
+        this.logger = logger;
+    }
+
+    /**
+     * Method to create an exporter from the steam.snapshot.dir system property
+     * @param logger is the existing logger
+     * @return SnapshotExporter or null if snapshots are not enabled
+     */
+    public static SnapshotExporter fromSystemProperties(Logger logger) {
+        String dir = System.getProperty("steam.snapshot.dir");
+        return dir == null || dir.isBlank() ? null : new SnapshotExporter(Paths.get(dir), logger);
+    }
+
+    /**
+     * Method to export a full or incremental snapshot of AppInfo
+     * @param conn is the open database connection
+     * @return true on success
+     */
+    public boolean export(Connection conn) {
+        long start = Utils.getTimeSource().currentTimeMillis();
+
+        try {
+            Files.createDirectories(dir);
+            JSONObject manifest = readManifest();
+            JSONArray snapshots = manifest.getJSONArray("snapshots");
+
+            // Get Snapshot Kind
+            boolean full = snapshots.length() == 0 || snapshots.length() > MAX_DELTAS;
+            long sinceWatermark = full ? 0 : manifest.getLong("watermark");
+            int sequence = manifest.optInt("sequence", 0) + 1;
+
+            String fileName = String.format("appinfo-%06d-%s.sics", sequence, full ? "full" : "delta");
+            SnapshotInfo info = writeSnapshot(conn, dir.resolve(fileName), full, sinceWatermark);
+
+            // Start New Chain on Full Snapshot
+            JSONArray replaced = null;
+            if(full) {
+                replaced = snapshots;
+                snapshots = new JSONArray();
+            }
+
+            snapshots.put(new JSONObject()
+                    .put("file", fileName)
+                    .put("kind", full ? "full" : "delta")
+                    .put("rows", info.rows())
+                    .put("watermark", info.watermark())
+                    .put("crc32", info.crc())
+                    .put("created", start));
+
+            manifest.put("formatVersion", FORMAT_VERSION);
+            manifest.put("sequence", sequence);
+            manifest.put("watermark", Math.max(sinceWatermark, info.watermark()));
+            manifest.put("snapshots", snapshots);
+            writeAtomically(dir.resolve(MANIFEST), manifest.toString(2).getBytes(StandardCharsets.UTF_8));
+
+            // Delete Replaced Chain Once Manifest No Longer References It
+            if(replaced != null) {
+                deleteSnapshots(replaced);
+            }
+
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("Exported %s Snapshot %s: %d Apps in %dms",
+                    full ? "Full" : "Incremental", fileName, info.rows(), Utils.getTimeSource().currentTimeMillis() - start));
+            return true;
+        }
+        catch (IOException | SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Export AppInfo Snapshot: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // *** Private Methods ***
+
+    // Record for Storing Info of a Written Snapshot
+    private record SnapshotInfo(int rows, long watermark, long crc) {}
+
+    /**
+     * Method to stream AppInfo rows into a new snapshot file
+     */
+    private SnapshotInfo writeSnapshot(Connection conn, Path file, boolean full, long sinceWatermark) throws IOException, SQLException {
+        // Column Buffers
+        ColumnWriter appids = new ColumnWriter("appid", ENCODING_DELTA_VARINT);
+        ColumnWriter names = new ColumnWriter("name", ENCODING_STRING);
+        ColumnWriter lastUpdates = new ColumnWriter("last_update", ENCODING_DELTA_VARINT);
+        ColumnWriter types = new ColumnWriter("type", ENCODING_DICTIONARY);
+        ColumnWriter headers = new ColumnWriter("header_image", ENCODING_STRING);
+        ColumnWriter backgrounds = new ColumnWriter("background", ENCODING_STRING);
+        ColumnWriter[] columns = {appids, names, lastUpdates, types, headers, backgrounds};
+
+        int rows = 0;
+        long watermark = sinceWatermark;
+
+        // Stream Rows Through Forward-Only Cursor (MySQL Streams Rows With Fetch Size MIN_VALUE)
+        try(PreparedStatement pStmt = conn.prepareStatement(full ? getSnapshotApps : getSnapshotAppsSince,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pStmt.setFetchSize(Integer.MIN_VALUE);
+            if(!full) {
+                pStmt.setTimestamp(1, new Timestamp(sinceWatermark));
+            }
+
+            ResultSet rs = pStmt.executeQuery();
+            while(rs.next()) {
+                Timestamp lastUpdate = rs.getTimestamp(3);
+                long lastUpdateMillis = lastUpdate == null ? 0 : lastUpdate.getTime();
+
+                appids.writeLong(rs.getInt(1));
+                names.writeString(rs.getString(2));
+                lastUpdates.writeLong(lastUpdateMillis);
+                types.writeDictionary(rs.getString(4));
+                headers.writeString(rs.getString(5));
+                backgrounds.writeString(rs.getString(6));
+
+                watermark = Math.max(watermark, lastUpdateMillis);
+                rows++;
+            }
+        }
+
+        // Assemble File
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeByte(full ? KIND_FULL : KIND_DELTA);
+        out.writeInt(rows);
+        out.writeLong(watermark);
+        out.writeInt(columns.length);
+        for(ColumnWriter column : columns) {
+            column.writeTo(out);
+        }
+        out.flush();
+
+        byte[] data = bytes.toByteArray();
+        writeAtomically(file, data);
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return new SnapshotInfo(rows, watermark, crc.getValue());
+    }
+
+    /**
+     * Method to read the manifest or create an empty one
+     */
+    private JSONObject readManifest() throws IOException {
+        Path file = dir.resolve(MANIFEST);
+        if(!Files.exists(file)) {
+            return new JSONObject().put("snapshots", new JSONArray());
+        }
+        return new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method to delete the snapshot files of a replaced chain
+     */
+    private void deleteSnapshots(JSONArray snapshots) {
+        for(int i = 0; i < snapshots.length(); i++) {
+            try {
+                Files.deleteIfExists(dir.resolve(snapshots.getJSONObject(i).getString("file")));
+            }
+            catch (IOException e) {
+                logger.log(Logger.LOG_TYPE_WARNING, "Failed to Delete Old Snapshot: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method to write a file by writing and syncing a temp file, then renaming it over the target
+     * @param file is the target file
+     * @param data is the file contents
+     */
+    static void writeAtomically(Path file, byte[] data) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.wrap(data));
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Class - Buffers a single column, compressing values as they are written
+     */
+    private static class ColumnWriter {
+        private final String name;
+        private final byte encoding;
+        private final ByteArrayOutputStream compressed;
+        private final DataOutputStream out;
+        private final CRC32 crc;
+        private final Deflater deflater;
+        private final LinkedHashMap<String, Integer> dictionary;
+        private long previous;
+
+        ColumnWriter(String name, byte encoding) {
+            this.name = name;
+            this.encoding = encoding;
+            this.compressed = new ByteArrayOutputStream();
+            this.deflater = new Deflater(Deflater.BEST_SPEED);
+            this.out = new DataOutputStream(new DeflaterOutputStream(compressed, deflater, 64 * 1024));
+            this.crc = new CRC32();
+            this.dictionary = new LinkedHashMap<>();
+        }
+
+        void writeLong(long value) throws IOException {
+            long delta = value - previous;
+            previous = value;
+            writeVarLong((delta << 1) ^ (delta >> 63)); // ZigZag
+        }
+
+        void writeString(String value) throws IOException {
+            if(value == null) {
+                writeVarLong(0);
+                writeVarLong(1); // Null Flag
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            if(bytes.length == 0) {
+                writeVarLong(0); // Empty, Not Null
+            }
+            out.write(bytes);
+            crc.update(bytes);
+        }
+
+        void writeDictionary(String value) throws IOException {
+            if(value == null) {
+                writeVarLong(0);
+                return;
+            }
+            Integer code = dictionary.get(value);
+            if(code == null) {
+                code = dictionary.size() + 1;
+                dictionary.put(value, code);
+            }
+            writeVarLong(code);
+        }
+
+        void writeTo(DataOutputStream file) throws IOException {
+            out.close(); // Finish Compression
+            deflater.end();
+
+            file.writeUTF(name);
+            file.writeByte(encoding);
+            if(encoding == ENCODING_DICTIONARY) {
+                file.writeInt(dictionary.size());
+                for(String value : dictionary.keySet()) {
+                    file.writeUTF(value);
+                }
+            }
+            file.writeInt(compressed.size());
+            file.writeLong(crc.getValue());
+            compressed.writeTo(file);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeByte(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package db;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+import static db.SnapshotExporter.*;
+
+/**
+ * Class - Bootstraps an empty AppInfo table from snapshots exported by another updater (see SnapshotExporter)
+ * > Takes a snapshot directory (full snapshot plus deltas, applied in manifest order) or a single .sics file
+ * > Every file is checked against its manifest CRC32 and every column against its own CRC32 before any row is loaded
+ * > Rows are streamed with LOAD DATA LOCAL INFILE (falling back to chunked multi-row inserts) in one transaction
+ * > The secondary indexes are dropped before and rebuilt after that transaction, DDL commits on its own so neither step is part of it
+ * > An import whose indexes cannot be rebuilt is removed again and reported as failed, so the next update retries it
+ * > Imported rows keep their last_update, so the incremental update carries on from the snapshot's watermark
+ */
+public class SnapshotImporter {
+    // Rows per Multi-Row Insert (7 Columns, Keeps Statements Below max_allowed_packet)
+    private static final int INSERT_CHUNK_SIZE = 5000;
+
+    // MySQL Errors When LOAD DATA LOCAL is Disabled
+    private static final int ER_NOT_ALLOWED_COMMAND = 1148;
+    private static final int ER_CLIENT_LOCAL_FILES_DISABLED = 3948;
+
+    // MySQL Errors of Index Changes Already Made (by an Interrupted Import)
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_CANT_DROP_FIELD_OR_KEY = 1091;
+
+    // last_update Format For LOAD DATA
+    private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // Snapshot Directory or File
+    private final Path source;
+
+    // Logging
+    private final Logger logger;
+
+    private boolean loadDataEnabled = true;
+
+    /**
+     * Constructor - Creates a SnapshotImporter reading the given snapshot directory or file
+     * @param source is a snapshot directory with a manifest or a single .sics file
+     * @param logger is the existing logger
+     */
+    public SnapshotImporter(Path source, Logger logger) {
+        this.source = source;
+        this.logger = logger;
+    }
+
+    /**
+     * Method to create an importer from the steam.import.snapshot system property
+     * @param logger is the existing logger
+     * @return SnapshotImporter or null if importing is not enabled
+     */
+    public static SnapshotImporter fromSystemProperties(Logger logger) {
+        String source = System.getProperty("steam.import.snapshot");
+        return source == null || source.isBlank() ? null : new SnapshotImporter(Paths.get(source), logger);
+    }
+
+    /**
+     * Method to import the snapshot if AppInfo is empty (a freshly migrated database)
+     * @param conn is the open, migrated database connection
+     * @return number of imported apps (0 if AppInfo already had rows) or -1 on failure
+     */
+    public int importIfEmpty(Connection conn) {
+        try(Statement stmt = conn.createStatement()) {
+            if(stmt.executeQuery(getAnyApp).next()) {
+                return 0; // Not a New Database
+            }
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Check For Existing Apps - SQL Exception {%d}", e.getErrorCode()));
+            return -1;
+        }
+
+        long start = Utils.getTimeSource().currentTimeMillis();
+        logger.log(Logger.LOG_TYPE_UPDATE, "Bootstrapping Empty Database From Snapshot: " + source);
+
+        // Read and Verify All Files Before Loading Any Rows
+        ArrayList<byte[]> files;
+        try {
+            files = readSnapshotFiles();
+            for(byte[] file : files) {
+                new SnapshotReader(file).verify();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Read Snapshot: " + e.getMessage());
+            return -1;
+        }
+
+        // Drop Secondary Indexes (DDL, Committed on its Own), Then Load Rows in One Transaction (a Failed Load Leaves AppInfo Empty to Retry)
+        int imported = 0;
+        long watermark = 0;
+        boolean indexesDropped = false;
+        boolean loaded = false;
+        try(Statement stmt = conn.createStatement()) {
+            indexesDropped = true;
+            applyIndexChange(stmt, dropNeedsUpdateIndex);
+            applyIndexChange(stmt, dropLastUpdateIndex);
+            conn.setAutoCommit(false);
+
+            loaded = true;
+            for(byte[] file : files) {
+                SnapshotReader reader = new SnapshotReader(file);
+                if(loadRows(conn, reader) < 0) {
+                    loaded = false;
+                    break;
+                }
+                imported += reader.getRows();
+                watermark = Math.max(watermark, reader.getWatermark());
+            }
+
+            if(loaded) {
+                // Spread Re-Checks of Imported Invalid Apps Over the Next Month
+                try(PreparedStatement pStmt = conn.prepareStatement(seedAppNegativeCache)) {
+                    pStmt.setLong(1, Utils.getTimeSource().currentTimeSeconds());
+                    pStmt.executeUpdate();
+                }
+                conn.commit();
+            }
+            else {
+                conn.rollback();
+            }
+        }
+        catch (IOException | SQLException e) {
+            loaded = false;
+            rollback(conn);
+            if(e instanceof SQLException sqlException) {
+                logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Import Snapshot - SQL Exception {%d}", sqlException.getErrorCode()));
+            }
+            else {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Read Snapshot: " + e.getMessage());
+            }
+        }
+        finally {
+            restoreAutoCommit(conn);
+        }
+
+        // Rebuild Indexes After the Transaction, Removing Rows Left Without Them so the Next Update Retries the Import
+        if(indexesDropped && !rebuildIndexes(conn)) {
+            if(loaded) {
+                removeImportedRows(conn);
+            }
+            return -1;
+        }
+        if(!loaded) {
+            return -1;
+        }
+
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("Imported %d Apps From %d Snapshot Files in %.1fs - Watermark: %s",
+                imported, files.size(), (Utils.getTimeSource().currentTimeMillis() - start) / 1000.0,
+                watermark == 0 ? "None" : DATETIME_FORMAT.format(Instant.ofEpochMilli(watermark))));
+        return imported;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to read the snapshot files in apply order, checking each against its manifest CRC32
+     * @return file contents in apply order (full snapshot first)
+     */
+    private ArrayList<byte[]> readSnapshotFiles() throws IOException {
+        ArrayList<byte[]> files = new ArrayList<>();
+        if(!Files.isDirectory(source)) {
+            files.add(Files.readAllBytes(source));
+            return files;
+        }
+
+        JSONObject manifest = new JSONObject(Files.readString(source.resolve(MANIFEST), StandardCharsets.UTF_8));
+        if(manifest.optInt("formatVersion", FORMAT_VERSION) > FORMAT_VERSION) {
+            throw new IOException("Unsupported Snapshot Format Version " + manifest.getInt("formatVersion"));
+        }
+
+        JSONArray snapshots = manifest.getJSONArray("snapshots");
+        for(int i = 0; i < snapshots.length(); i++) {
+            JSONObject snapshot = snapshots.getJSONObject(i);
+            byte[] data = Files.readAllBytes(source.resolve(snapshot.getString("file")));
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if(crc.getValue() != snapshot.getLong("crc32")) {
+                throw new IOException("Checksum Mismatch in " + snapshot.getString("file"));
+            }
+            files.add(data);
+        }
+        return files;
+    }
+
+    /**
+     * Method to load a snapshot's rows, replacing earlier rows of the same apps
+     * @return number of loaded rows or -1 on failure
+     */
+    private int loadRows(Connection conn, SnapshotReader reader) throws IOException {
+        if(loadDataEnabled) {
+            try(Statement stmt = conn.createStatement()) {
+                stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(new TsvStream(reader));
+                return stmt.executeUpdate(loadDataSnapshotApps);
+            }
+            catch (SQLException e) {
+                if(e.getErrorCode() != ER_NOT_ALLOWED_COMMAND && e.getErrorCode() != ER_CLIENT_LOCAL_FILES_DISABLED) {
+                    logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Bulk Load Snapshot - SQL Exception {%d}", e.getErrorCode()));
+                    return -1;
+                }
+                loadDataEnabled = false;
+                logger.log(Logger.LOG_TYPE_WARNING, "LOAD DATA LOCAL Disabled on Server - Using Multi-Row Inserts");
+                reader.reset(); // Nothing Was Loaded
+            }
+        }
+        return insertRows(conn, reader);
+    }
+
+    /**
+     * Method to insert a snapshot's rows with chunked multi-row REPLACE statements
+     * @return number of inserted rows or -1 on failure
+     */
+    private int insertRows(Connection conn, SnapshotReader reader) throws IOException {
+        int inserted = 0;
+        ArrayList<AppInfoRow> chunk = new ArrayList<>(INSERT_CHUNK_SIZE);
+
+        try {
+            AppInfoRow row;
+            while((row = reader.nextRow()) != null) {
+                chunk.add(row);
+                if(chunk.size() == INSERT_CHUNK_SIZE) {
+                    inserted += insertChunk(conn, chunk);
+                    chunk.clear();
+                }
+            }
+            if(!chunk.isEmpty()) {
+                inserted += insertChunk(conn, chunk);
+            }
+            return inserted;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Insert Snapshot Rows - SQL Exception {%d}", e.getErrorCode()));
+        }
+        return -1;
+    }
+
+    private int insertChunk(Connection conn, ArrayList<AppInfoRow> chunk) throws SQLException {
+        try(PreparedStatement pStmt = conn.prepareStatement(getMultiRowInsertQuery(replaceSnapshotApps, chunk.size(), 7))) {
+            int cnt = 1;
+            for(AppInfoRow row : chunk) {
+                pStmt.setInt(cnt++, row.appid());
+                pStmt.setString(cnt++, row.name());
+                pStmt.setTimestamp(cnt++, row.lastUpdate() == 0 ? null : new Timestamp(row.lastUpdate()));
+                pStmt.setString(cnt++, row.type());
+                pStmt.setString(cnt++, row.header_image());
+                pStmt.setString(cnt++, row.background());
+                if(row.type() == null) {
+                    pStmt.setNull(cnt++, Types.INTEGER);
+                }
+                else {
+                    pStmt.setLong(cnt++, getContentHash(row));
+                }
+            }
+            pStmt.executeUpdate();
+            return chunk.size();
+        }
+    }
+
+    /**
+     * Method to re-add the secondary indexes dropped for the import (DDL, runs after the import transaction)
+     * @return true on success
+     */
+    private boolean rebuildIndexes(Connection conn) {
+        long start = Utils.getTimeSource().currentTimeMillis();
+        try(Statement stmt = conn.createStatement()) {
+            applyIndexChange(stmt, addNeedsUpdateIndex);
+            applyIndexChange(stmt, addLastUpdateIndex);
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("Rebuilt AppInfo Indexes in %dms", Utils.getTimeSource().currentTimeMillis() - start));
+            return true;
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Rebuild AppInfo Indexes - SQL Exception {%d}", e.getErrorCode()));
+        }
+        return false;
+    }
+
+    /**
+     * Method to drop or add an index, skipping changes an interrupted import already made
+     * @param stmt is the statement to execute with
+     * @param statement is the index DDL statement
+     * @throws SQLException on any other failure
+     */
+    private static void applyIndexChange(Statement stmt, String statement) throws SQLException {
+        try {
+            stmt.executeUpdate(statement);
+        }
+        catch (SQLException e) {
+            if(e.getErrorCode() != ER_DUP_KEYNAME && e.getErrorCode() != ER_CANT_DROP_FIELD_OR_KEY) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Method to empty AppInfo after an import whose indexes could not be rebuilt
+     * > The next update finds AppInfo empty, imports again and retries the rebuild
+     */
+    private void removeImportedRows(Connection conn) {
+        try(Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(truncateAppInfo);
+            logger.log(Logger.LOG_TYPE_ERROR, "Snapshot Import Failed - Imported Rows Removed, Import Retried by the Next Update");
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed to Remove Snapshot Rows Without Indexes - SQL Exception {%d}", e.getErrorCode()));
+        }
+    }
+
+    /**
+     * Method to rollback a failed import
+     */
+    private void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Rollback Snapshot Import");
+        }
+    }
+
+    /**
+     * Method to restore auto-commit after the import transaction
+     */
+    private void restoreAutoCommit(Connection conn) {
+        try {
+            conn.setAutoCommit(true);
+        }
+        catch (SQLException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Restore Auto-Commit After Snapshot Import");
+        }
+    }
+
+    /**
+     * Method to get the content hash the updater would store for a row
+     */
+    private static long getContentHash(AppInfoRow row) {
+        return new AppEntry(row.appid(), row.type(), row.header_image(), row.background()).contentHash();
+    }
+
+    /**
+     * Class - Reads the rows of a snapshot file, one value from each column stream per row
+     */
+    private static class SnapshotReader {
+        private final byte[] data;
+        private final int rows;
+        private final long watermark;
+        private final ColumnReader[] columns;
+        private int row;
+
+        SnapshotReader(byte[] data) throws IOException {
+            this.data = data;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if(!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a Snapshot File");
+            }
+            int version = in.readInt();
+            if(version > FORMAT_VERSION) {
+                throw new IOException("Unsupported Snapshot Format Version " + version);
+            }
+            in.readByte(); // Kind (Full and Delta Rows are Applied the Same Way)
+            rows = in.readInt();
+            watermark = in.readLong();
+
+            // Columns are Stored in Export Order {appid, name, last_update, type, header_image, background}
+            int columnCount = in.readInt();
+            if(columnCount != 6) {
+                throw new IOException("Unexpected Snapshot Column Count " + columnCount);
+            }
+            columns = new ColumnReader[columnCount];
+            for(int i = 0; i < columnCount; i++) {
+                String name = in.readUTF();
+                byte encoding = in.readByte();
+                String[] dictionary = null;
+                if(encoding == ENCODING_DICTIONARY) {
+                    dictionary = new String[in.readInt()];
+                    for(int j = 0; j < dictionary.length; j++) {
+                        dictionary[j] = in.readUTF();
+                    }
+                }
+                int length = in.readInt();
+                long crc = in.readLong();
+                int offset = data.length - in.available();
+                columns[i] = new ColumnReader(name, dictionary, data, offset, length, crc);
+                in.skipNBytes(length);
+            }
+        }
+
+        int getRows() {
+            return rows;
+        }
+
+        long getWatermark() {
+            return watermark;
+        }
+
+        /**
+         * Method to check every column's CRC32 by decompressing it fully
+         */
+        void verify() throws IOException {
+            for(ColumnReader column : columns) {
+                column.verify();
+            }
+        }
+
+        /**
+         * Method to restart reading from the first row
+         */
+        void reset() {
+            for(ColumnReader column : columns) {
+                column.reset();
+            }
+            row = 0;
+        }
+
+        /**
+         * Method to read the next row
+         * @return AppInfoRow (last_update 0 if null) or null after the last row
+         */
+        AppInfoRow nextRow() throws IOException {
+            if(row == rows) {
+                return null;
+            }
+            row++;
+            return new AppInfoRow((int) columns[0].readLong(), columns[1].readString(), columns[2].readLong(),
+                    columns[3].readDictionary(), columns[4].readString(), columns[5].readString());
+        }
+    }
+
+    /**
+     * Class - Decodes one compressed column (the reverse of SnapshotExporter's ColumnWriter)
+     */
+    private static class ColumnReader {
+        private final String name;
+        private final String[] dictionary;
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+        private final long crc;
+        private DataInputStream in;
+        private long previous;
+
+        ColumnReader(String name, String[] dictionary, byte[] data, int offset, int length, long crc) {
+            this.name = name;
+            this.dictionary = dictionary;
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            reset();
+        }
+
+        void reset() {
+            in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data, offset, length)), 64 * 1024));
+            previous = 0;
+        }
+
+        void verify() throws IOException {
+            CRC32 actual = new CRC32();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while((read = in.read(buffer)) > 0) {
+                actual.update(buffer, 0, read);
+            }
+            if(actual.getValue() != crc) {
+                throw new IOException("Checksum Mismatch in Column " + name);
+            }
+            reset();
+        }
+
+        long readLong() throws IOException {
+            long zigZag = readVarLong();
+            previous += (zigZag >>> 1) ^ -(zigZag & 1);
+            return previous;
+        }
+
+        String readString() throws IOException {
+            int length = (int) readVarLong();
+            if(length == 0) {
+                return readVarLong() == 1 ? null : "";
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String readDictionary() throws IOException {
+            int code = (int) readVarLong();
+            return code == 0 ? null : dictionary[code - 1];
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for(int shift = 0; ; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Class - Streams a snapshot's rows as LOAD DATA tab-separated lines without buffering the whole file
+     */
+    private static class TsvStream extends InputStream {
+        private final SnapshotReader reader;
+        private byte[] line = new byte[0];
+        private int position;
+
+        TsvStream(SnapshotReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(position == line.length && !nextLine()) {
+                return -1;
+            }
+            return line[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if(len == 0) {
+                return 0;
+            }
+            int copied = 0;
+            while(copied < len) {
+                if(position == line.length && !nextLine()) {
+                    break;
+                }
+                int count = Math.min(len - copied, line.length - position);
+                System.arraycopy(line, position, buffer, off + copied, count);
+                position += count;
+                copied += count;
+            }
+            return copied == 0 ? -1 : copied;
+        }
+
+        private boolean nextLine() throws IOException {
+            AppInfoRow row = reader.nextRow();
+            if(row == null) {
+                return false;
+            }
+
+            String text = row.appid()
+                    + "\t" + MySqlSink.escapeField(row.name())
+                    + "\t" + (row.lastUpdate() == 0 ? "\\N" : DATETIME_FORMAT.format(Instant.ofEpochMilli(row.lastUpdate())))
+                    + "\t" + MySqlSink.escapeField(row.type())
+                    + "\t" + MySqlSink.escapeField(row.header_image())
+                    + "\t" + MySqlSink.escapeField(row.background())
+                    + "\t" + (row.type() == null ? "\\N" : Long.toString(getContentHash(row)))
+                    + "\n";
+            line = text.getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+    }
+}
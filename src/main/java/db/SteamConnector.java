@@ -3,13 +3,23 @@ package db;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static db.ConnectorInterface.*;
 
@@ -18,72 +28,250 @@ import static db.ConnectorInterface.*;
  */
 public class SteamConnector {
     private static final int MAX_RETRIES = 5; // Max API Call Retries
+    private static final long RETRY_DELAY_MILLIS = 2 * 1000; // Initial Retry Delay (Doubles Each Retry)
     private static final String INVALID = "invalid";
+    private static final String MALFORMED = "malformed";
+
+    // Steam Web API Hosts (Overridable to Point at a Local Steam Stub)
+    private static final String API_HOST = System.getProperty("steam.api.url", "https://api.steampowered.com");
+    private static final String STORE_HOST = System.getProperty("steam.store.url", "https://store.steampowered.com");
+
+    // Adaptive Rate Controller for App Details Calls (null for Unlimited)
+    private static RateController rateController;
+
+    // Host-Wide Call Budget Shared With Other Processes (null When Not Shared)
+    private static SharedRateBudget sharedBudget;
+
+    // Traffic Capture or Replay Archive (null When Calling Steam Directly)
+    private static TrafficArchive trafficArchive;
+
+    // Interface for Taking a Response Body Without Reading it Into a New Array (Temp Files, Pooled Decode Buffers)
+    interface BodyTarget {
+        void readFrom(InputStream body) throws IOException; // Method to take a live response body
+        void write(byte[] body) throws IOException; // Method to take a captured or replayed body
+        int size() throws IOException; // Method to get the size of the taken body
+    }
+
+    // Circuit Breakers per Endpoint
+    private static final CircuitBreaker appListCircuit = new CircuitBreaker("GetAppList");
+    private static final CircuitBreaker appDetailsCircuit = new CircuitBreaker("AppDetails");
+
+    /**
+     * Method to set the rate controller used to pace app details calls
+     * @param controller is the rate controller or null to disable pacing
+     */
+    public static void setRateController(RateController controller) {
+        rateController = controller;
+    }
+
+    /**
+     * Method to set the budget every Steam call reserves a shared slot from
+     * @param budget is the shared rate budget or null to pace this process only
+     */
+    public static void setSharedBudget(SharedRateBudget budget) {
+        sharedBudget = budget;
+    }
+
+    /**
+     * Method to set the archive exchanges are captured to or replayed from
+     * @param archive is the traffic archive or null to call Steam directly
+     */
+    public static void setTrafficArchive(TrafficArchive archive) {
+        trafficArchive = archive;
+    }
+
+    /**
+     * Method to set the logger used by the endpoint circuit breakers
+     * @param logger is the existing logger
+     */
+    public static void setCircuitLogger(Logger logger) {
+        appListCircuit.setLogger(logger);
+        appDetailsCircuit.setLogger(logger);
+    }
+
+    /**
+     * Method to get the circuit breaker of the app details endpoint
+     * @return app details CircuitBreaker
+     */
+    public static CircuitBreaker getAppDetailsCircuit() {
+        return appDetailsCircuit;
+    }
 
     // *** Steam Web API Methods ***
 
     /**
-     * Method to get current app list from Steam Web API excluding given list of appids
-     * @param appids is the list of existing appids in the database
+     * Method to get new and renamed apps from the Steam Web API app list
+     * > Renames are detected by comparing 64-bit name hashes, apps listed with a blank name are never treated as renamed
+     * @param nameHashes is the map of existing appids in the database to the hash of their name
      * @param logger is the existing logger
-     * @return ArrayList of Apps to add to database
+     * @return AppListChanges with the apps to add and rename or null on failure
      */
-    public static ArrayList<App> getCurrentAppList(HashSet<Integer> appids, Logger logger) {
+    public static AppListChanges getAppListChanges(HashMap<Integer, Long> nameHashes, Logger logger) {
         // Setup URL
-        final String url = "https://api.steampowered.com/ISteamApps/GetAppList/v2/";
+        final String url = API_HOST + "/ISteamApps/GetAppList/v2/";
 
         // Get JSON String from Steam Web API
-        String jsonResult = getJSONStringFromURL(url, logger);
+        String jsonResult = getJSONStringFromURL(url, logger, null, appListCircuit, 0);
         if(jsonResult == null) {
             return null;
         }
 
-        // Return JSONArray from Result
+        UpdateEvents.Parse event = new UpdateEvents.Parse();
+        event.begin();
+        event.endpoint = appListCircuit.getName();
+        event.bytes = jsonResult.length();
+
         try {
             // Get App List from JSON String
             JSONArray jsonArray = new JSONObject(jsonResult).getJSONObject("applist").getJSONArray("apps");
-            ArrayList<App> appList = new ArrayList<>();
+            ArrayList<App> newApps = new ArrayList<>();
+            ArrayList<App> renamedApps = new ArrayList<>();
 
-            // Convert JSONArray to ArrayList<App>
             for(Object obj : jsonArray) {
                 JSONObject app = (JSONObject) obj;
                 String name = app.getString("name");
                 int appid = app.getInt("appid");
 
-                // Add To List if Not in database
-                if(!appids.contains(appid)) {
-                    appList.add(new App(appid, name));
+                Long nameHash = nameHashes.get(appid);
+                if(nameHash == null) {
+                    newApps.add(new App(appid, name));
+                }
+                else if(nameHash != App.nameHash(name) && !name.isBlank()) {
+                    renamedApps.add(new App(appid, name));
                 }
             }
-            return appList;
+            event.result = String.format("%d New, %d Renamed", newApps.size(), renamedApps.size());
+            event.commit();
+            return new AppListChanges(newApps, renamedApps);
         }
-        // Return Null on Extraction Failure
         catch (JSONException e) {
-            System.err.println("Failed to Retrieve JSON Object from Steam Web API");
-            e.printStackTrace();
+            event.result = MALFORMED;
+            event.commit();
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Read App List From Steam Web API");
             return null;
         }
     }
 
     /**
-     * Method to get App Info for given appid from Steam Web API
+     * Method to stream new and renamed apps from the Steam Web API app list in fixed-size chunks (bounded memory)
+     * > The response is downloaded to a temp file, then parsed one app at a time, so no full response, JSON tree or app list is held
+     * > Each chunk is handed to the consumer (e.g. written to the database) before the next one is read
+     * @param nameHashes is the map of existing appids in the database to the hash of their name
+     * @param chunkSize is the number of apps per chunk
+     * @param chunks is the consumer of each chunk
+     * @param logger is the existing logger
+     * @return true if the whole list was read and every chunk accepted
+     */
+    public static boolean streamAppListChanges(HashMap<Integer, Long> nameHashes, int chunkSize, AppListChunks chunks, Logger logger) {
+        final String url = API_HOST + "/ISteamApps/GetAppList/v2/";
+
+        Path body = null;
+        try {
+            body = Files.createTempFile("steam-applist", ".json");
+            if(!download(url, new FileTarget(body), logger, appListCircuit)) {
+                return false;
+            }
+
+            UpdateEvents.Parse event = new UpdateEvents.Parse();
+            event.begin();
+            event.endpoint = appListCircuit.getName();
+            event.bytes = (int) Math.min(Integer.MAX_VALUE, Files.size(body));
+
+            try(BufferedReader reader = Files.newBufferedReader(body, StandardCharsets.UTF_8)) {
+                boolean read = parseAppListChunks(new JSONTokener(reader), nameHashes, chunkSize, chunks);
+                event.result = read ? "Streamed" : "Stopped";
+                event.commit();
+                return read;
+            }
+            catch (JSONException e) {
+                event.result = MALFORMED;
+                event.commit();
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed to Read App List From Steam Web API");
+            }
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Spill App List to a Temp File: " + e.getMessage());
+        }
+        finally {
+            if(body != null) {
+                try {
+                    Files.deleteIfExists(body);
+                }
+                catch (IOException e) {
+                    logger.log(Logger.LOG_TYPE_ERROR, "Failed to Delete App List Temp File: " + body);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to get App Info for given appid from Steam Web API (fetched and decoded on the calling thread)
      * @param appid is the given appid
      * @param logger is the current logger
-     * @return AppEntry Object with app info
+     * @return AppEntry Object with app info, of type invalid for unknown apps or malformed for unreadable responses
      */
     public static AppEntry getAppInfoFromAppid(int appid, Logger logger) {
-        final String steam_api_url = "https://store.steampowered.com/api/appdetails?appids=%d";
+        DecodeStage.Buffer raw = fetchAppDetails(appid, logger);
+        return raw == null ? null : decodeAppDetails(appid, raw);
+    }
+
+    /**
+     * Method to fetch the raw app details response for an appid into a pooled buffer (I/O Thread)
+     * > The buffer is returned to the pool by decodeAppDetails
+     * @param appid is the given appid
+     * @param logger is the current logger
+     * @return Buffer with the response or null on failure
+     */
+    public static DecodeStage.Buffer fetchAppDetails(int appid, Logger logger) {
+        final String steam_api_url = STORE_HOST + "/api/appdetails?appids=%d";
 
         String url = String.format(steam_api_url, appid);
 
-        String jsonResult = getJSONStringFromURL(url, logger);
-        if(jsonResult == null) {
+        DecodeStage.Buffer raw = DecodeStage.acquireBuffer();
+        if(!download(url, raw, logger, rateController, appDetailsCircuit, appid)) {
+            DecodeStage.releaseBuffer(raw);
             return null;
         }
+        return raw;
+    }
 
+    /**
+     * Method to decode a raw app details response into an AppEntry, returning its buffer to the pool (Decode Thread)
+     * @param appid is the given appid
+     * @param raw is the fetched response
+     * @return AppEntry Object with app info, of type invalid for unknown apps or malformed for unreadable responses
+     */
+    public static AppEntry decodeAppDetails(int appid, DecodeStage.Buffer raw) {
+        UpdateEvents.Parse event = new UpdateEvents.Parse();
+        event.begin();
+
+        AppEntry entry;
+        try {
+            entry = parseAppEntry(appid, new JSONTokener(new InputStreamReader(raw.asStream(), StandardCharsets.UTF_8)));
+            event.bytes = raw.size();
+        }
+        finally {
+            DecodeStage.releaseBuffer(raw);
+        }
+
+        event.endpoint = appDetailsCircuit.getName();
+        event.appid = appid;
+        event.result = entry.type();
+        event.commit();
+        return entry;
+    }
+
+    /**
+     * Method to deconstruct an app details response into an AppEntry
+     * @param appid is the given appid
+     * @param tokener is the app details response
+     * @return AppEntry Object with app info, of type invalid for unknown apps or malformed for unreadable responses
+     */
+    private static AppEntry parseAppEntry(int appid, JSONTokener tokener) {
         // Deconstruct JSON Result and Convert To Usable Data
         try {
-            JSONObject json = new JSONObject(jsonResult);
+            JSONObject json = new JSONObject(tokener);
             JSONObject parent = json.getJSONObject("" + appid);
 
             String type;
@@ -105,50 +293,367 @@ public class SteamConnector {
             }
             return new AppEntry(appid, type, header_image, background);
         }
-        // Return Invalid on Extraction Failure
+        // Return Malformed on Extraction Failure (Kept Apart From Invalid as it May Be Transient)
         catch (JSONException e) {
-            return new AppEntry(appid, INVALID, "", "");
+            return new AppEntry(appid, MALFORMED, "", "");
         }
     }
 
     // *** Private Utilities ***
 
+    /**
+     * Method to parse the app list ({"applist":{"apps":[...]}}) one app at a time, handing out full chunks as they fill
+     * @return false if the consumer stopped the stream
+     */
+    private static boolean parseAppListChunks(JSONTokener tokener, HashMap<Integer, Long> nameHashes, int chunkSize, AppListChunks chunks) throws JSONException {
+        enterKey(tokener, "applist");
+        enterKey(tokener, "apps");
+        if(tokener.nextClean() != '[') {
+            throw tokener.syntaxError("Expected App Array");
+        }
+
+        ArrayList<App> newApps = new ArrayList<>(chunkSize);
+        ArrayList<App> renamedApps = new ArrayList<>();
+        if(tokener.nextClean() != ']') {
+            tokener.back();
+            while(true) {
+                JSONObject app = new JSONObject(tokener);
+                String name = app.getString("name");
+                int appid = app.getInt("appid");
+
+                Long nameHash = nameHashes.get(appid);
+                if(nameHash == null) {
+                    newApps.add(new App(appid, name));
+                }
+                else if(nameHash != App.nameHash(name) && !name.isBlank()) {
+                    renamedApps.add(new App(appid, name));
+                }
+
+                // Hand Out Full Chunks
+                if(newApps.size() >= chunkSize || renamedApps.size() >= chunkSize) {
+                    if(!chunks.accept(newApps, renamedApps)) {
+                        return false;
+                    }
+                    newApps = new ArrayList<>(chunkSize);
+                    renamedApps = new ArrayList<>();
+                }
+
+                char next = tokener.nextClean();
+                if(next == ']') {
+                    break;
+                }
+                if(next != ',') {
+                    throw tokener.syntaxError("Expected , or ]");
+                }
+            }
+        }
+        return (newApps.isEmpty() && renamedApps.isEmpty()) || chunks.accept(newApps, renamedApps);
+    }
+
+    /**
+     * Method to move a tokener to the value of a key in the next object, skipping the values of other keys
+     */
+    private static void enterKey(JSONTokener tokener, String key) throws JSONException {
+        if(tokener.nextClean() != '{') {
+            throw tokener.syntaxError("Expected Object With " + key);
+        }
+
+        while(true) {
+            char next = tokener.nextClean();
+            if(next == '}') {
+                throw tokener.syntaxError("Missing " + key);
+            }
+            if(next != ',') {
+                tokener.back();
+            }
+
+            String name = tokener.nextValue().toString();
+            if(tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected : After " + name);
+            }
+            if(name.equals(key)) {
+                return;
+            }
+            tokener.nextValue(); // Skip Value
+        }
+    }
+
+    /**
+     * Method to download a url into a body target with the same retries, circuit, pacing and shared budget as other calls
+     * @param controller is the rate controller to pace and report calls to (may be null)
+     * @param appid is the appid the call is for (0 for the app list), recorded in the SteamCall event
+     * @return true on success
+     */
+    private static boolean download(String url, BodyTarget target, Logger logger, RateController controller, CircuitBreaker circuit, int appid) {
+        UpdateEvents.SteamCall event = new UpdateEvents.SteamCall();
+        event.begin();
+
+        String result = fetchJSONString(url, logger, controller, circuit, event, target);
+
+        event.endpoint = circuit.getName();
+        event.appid = appid;
+        event.commit();
+        return result != null;
+    }
+
+    private static boolean download(String url, BodyTarget target, Logger logger, CircuitBreaker circuit) {
+        return download(url, target, logger, null, circuit, 0);
+    }
+
+    // Body Target Streaming a Response Into a File
+    private record FileTarget(Path path) implements BodyTarget {
+        public void readFrom(InputStream body) throws IOException {
+            Files.copy(body, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        public void write(byte[] body) throws IOException {
+            Files.write(path, body);
+        }
+
+        public int size() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, Files.size(path));
+        }
+    }
+
     /**
      * Method to get a JSONString from a given API URL
+     * > Fails fast without a request while the endpoint's circuit is open
+     * > Retries failed calls with a doubling delay (2s, 4s, 8s, 16s)
+     * > Replaying as fast as possible skips rate pacing and retry delays
      * @param url is the given url
      * @param logger is the current logger
+     * @param controller is the rate controller to pace and report calls to (may be null)
+     * @param circuit is the circuit breaker of the endpoint
+     * @param appid is the appid the call is for (0 for the app list), recorded in the SteamCall event
      * @return JSONStrong response for API or null on failure
      */
-    private static String getJSONStringFromURL(String url, Logger logger) {
+    private static String getJSONStringFromURL(String url, Logger logger, RateController controller, CircuitBreaker circuit, int appid) {
+        UpdateEvents.SteamCall event = new UpdateEvents.SteamCall();
+        event.begin();
+
+        String result = fetchJSONString(url, logger, controller, circuit, event, null);
+
+        event.endpoint = circuit.getName();
+        event.appid = appid;
+        event.commit();
+        return result;
+    }
+
+    /**
+     * Method to call a url with retries, recording the status, size and retries of the call in its event
+     * > With a body target the response is handed to the target (streamed when calling Steam directly) and an empty string is returned
+     */
+    private static String fetchJSONString(String url, Logger logger, RateController controller, CircuitBreaker circuit, UpdateEvents.SteamCall event, BodyTarget target) {
         int retryCount = 0; // Used for Call Retries
+        long retryDelay = RETRY_DELAY_MILLIS;
+
+        TrafficArchive archive = trafficArchive;
+        boolean unpaced = archive != null && archive.isUnpaced();
+        event.replayed = archive != null && archive.isReplay();
+        if(unpaced) {
+            controller = null;
+        }
 
         while(retryCount < MAX_RETRIES) {
+            // Fail Fast While Circuit is Open
+            if(!circuit.allowRequest()) {
+                return null;
+            }
+
+            int status = -1;
+            long start = 0;
+            boolean permitHeld = false;
+
             try {
-                // Setup Connection
-                HttpURLConnection httpConn = (HttpURLConnection) new URL(url).openConnection();
-                httpConn.setRequestMethod("GET");
-                httpConn.setRequestProperty("Accept", "application/json");
+                // Wait For Call Permit, Then a Slot in the Shared Budget
+                if(controller != null) {
+                    controller.acquire();
+                    permitHeld = true;
+                }
+                if(archive == null || !archive.isReplay()) {
+                    awaitSharedSlot();
+                }
+                start = Utils.getTimeSource().currentTimeMillis();
+
+                // Get Exchange From Steam or the Replay Archive
+                TrafficArchive.Exchange exchange = getExchange(url, archive, start, target);
+                if(exchange == null) {
+                    if(controller != null) {
+                        controller.release(status, 0);
+                    }
+                    return null; // Not Recorded (Not a Steam Failure)
+                }
 
-                // Get Result as String
-                byte[] byteResult = httpConn.getInputStream().readAllBytes();
-                return new String(byteResult, StandardCharsets.UTF_8);
+                status = exchange.status();
+                event.status = status;
+                event.bytes = exchange.body().length;
+                if(status == 429) {
+                    backOffSharedBudget();
+                }
+                if(status < 0 || status >= 400) {
+                    throw new IOException("Server returned HTTP response code: " + status);
+                }
+
+                if(controller != null) {
+                    controller.release(status, Utils.getTimeSource().currentTimeMillis() - start);
+                }
+                circuit.recordSuccess();
+                if(target != null) {
+                    // Local Write Failures (e.g. Temp File) are Not Steam Failures, the Call is Not Released Again or Retried
+                    try {
+                        if(archive != null) {
+                            target.write(exchange.body()); // Captured or Replayed Bodies are Held Anyway
+                        }
+                        event.bytes = target.size();
+                    }
+                    catch (IOException e) {
+                        if(logger != null) {
+                            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Store Steam Response: " + e.getMessage());
+                        }
+                        return null;
+                    }
+                    return "";
+                }
+                return new String(exchange.body(), StandardCharsets.UTF_8);
+            }
+            // Cancelled While Waiting For a Permit or a Paced Replay (Give Back a Held Permit)
+            catch (InterruptedException e) {
+                if(controller != null && permitHeld) {
+                    controller.release(status, 0);
+                }
+                Thread.currentThread().interrupt();
+                return null;
             }
             // Catch Any Error and Retry Up To MAX_RETRIES Times
             catch (IOException e) {
+                if(controller != null) {
+                    controller.release(status, Utils.getTimeSource().currentTimeMillis() - start);
+                }
+                circuit.recordFailure();
+                retryCount++;
+                event.status = status;
+                event.retries = retryCount;
+
+                // Stop Retrying Once Circuit Opens
+                if(retryCount >= MAX_RETRIES || circuit.isOpen()) {
+                    break;
+                }
+
                 if(logger != null) {
-                    logger.log(Logger.LOG_TYPE_CONNECTION, String.format("Failed to Fetch JSONString: Retrying In 60 Seconds (%d/%d)\n", retryCount+1, MAX_RETRIES));
+                    logger.log(Logger.LOG_TYPE_CONNECTION, String.format("Failed to Fetch JSONString (HTTP %d): Retrying In %d Seconds (%d/%d)",
+                            status, retryDelay / 1000, retryCount, MAX_RETRIES));
                 }
 
                 try {
-                    Thread.sleep(60 * 1000); // Wait 60 Seconds
+                    if(!unpaced) {
+                        UpdateEvents.Wait wait = new UpdateEvents.Wait();
+                        wait.begin();
+                        Utils.getTimeSource().sleep(retryDelay);
+                        wait.reason = UpdateEvents.WAIT_RETRY_DELAY;
+                        wait.plannedMillis = retryDelay;
+                        wait.commit();
+                    }
                 }
+                // Cancelled During Retry Delay
                 catch (InterruptedException ex) {
-                    throw new RuntimeException(ex);
+                    Thread.currentThread().interrupt();
+                    return null;
                 }
-                retryCount++;
+                retryDelay *= 2;
             }
         }
         return null;
     }
 
+    /**
+     * Method to wait for the next slot reserved in the shared budget (no wait if not shared)
+     */
+    private static void awaitSharedSlot() throws InterruptedException {
+        SharedRateBudget budget = sharedBudget;
+        if(budget == null) {
+            return;
+        }
+
+        long waitTime = budget.reserve() - Utils.getTimeSource().currentTimeMillis();
+        if(waitTime > 0) {
+            UpdateEvents.Wait wait = new UpdateEvents.Wait();
+            wait.begin();
+            Utils.getTimeSource().sleep(waitTime);
+            wait.reason = UpdateEvents.WAIT_SHARED_BUDGET;
+            wait.plannedMillis = waitTime;
+            wait.commit();
+        }
+    }
+
+    /**
+     * Method to push the shared budget back after a 429 so every process sharing it pauses
+     */
+    private static void backOffSharedBudget() {
+        SharedRateBudget budget = sharedBudget;
+        if(budget != null) {
+            budget.backOff(SharedRateBudget.BACK_OFF_MILLIS);
+        }
+    }
+
+    /**
+     * Method to perform a GET request, capturing or replaying it with the traffic archive
+     * > HTTP error statuses are returned (not thrown) so they can be captured, connection failures are captured with status -1
+     * @param url is the given url
+     * @param archive is the traffic archive (may be null)
+     * @param start is the time the request started
+     * @param target is where a successful body is streamed when calling Steam without an archive (null to read it into the Exchange)
+     * @return Exchange with the response or null if replaying a url that was never captured
+     */
+    private static TrafficArchive.Exchange getExchange(String url, TrafficArchive archive, long start, BodyTarget target) throws IOException, InterruptedException {
+        if(archive != null && archive.isReplay()) {
+            return archive.replay(url);
+        }
+
+        TrafficArchive.Exchange exchange;
+        try {
+            // Setup Connection
+            HttpURLConnection httpConn = (HttpURLConnection) new URL(url).openConnection();
+            httpConn.setRequestMethod("GET");
+            httpConn.setRequestProperty("Accept", "application/json");
+
+            // Get Result Bytes (Error Body For Failed Statuses)
+            int status = httpConn.getResponseCode();
+            InputStream body = status >= 400 ? httpConn.getErrorStream() : httpConn.getInputStream();
+            byte[] byteResult;
+            if(body != null && target != null && archive == null && status < 400) {
+                target.readFrom(body); // Never Read Into a New Array
+                byteResult = new byte[0];
+            }
+            else {
+                byteResult = body == null ? new byte[0] : body.readAllBytes();
+            }
+
+            exchange = new TrafficArchive.Exchange(url, status, getHeaders(httpConn), byteResult, Utils.getTimeSource().currentTimeMillis() - start);
+        }
+        catch (IOException e) {
+            if(archive != null) {
+                archive.record(new TrafficArchive.Exchange(url, -1, Map.of(), new byte[0], Utils.getTimeSource().currentTimeMillis() - start));
+            }
+            throw e;
+        }
+
+        if(archive != null) {
+            archive.record(exchange);
+        }
+        return exchange;
+    }
+
+    /**
+     * Method to get the response headers of a connection (multiple values joined by commas)
+     */
+    private static Map<String, String> getHeaders(HttpURLConnection httpConn) {
+        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+        for(Map.Entry<String, List<String>> header : httpConn.getHeaderFields().entrySet()) {
+            if(header.getKey() != null) { // Status Line
+                headers.put(header.getKey(), String.join(", ", header.getValue()));
+            }
+        }
+        return headers;
+    }
+
 }
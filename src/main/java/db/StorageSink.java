@@ -0,0 +1,51 @@
+package db;
+
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Interface - Storage SPI the UpdateEngine reads its plan from and writes fetched apps through
+ * > MySqlSink writes to MySQL with rewritten batches and LOAD DATA for bulk app list inserts, claiming apps in leased weighted lanes
+ * > EmbeddedSink writes to a local SQLite file (WAL) in large transactions, needing no database server, paging apps in appid order
+ * > Both keep a NegativeCache written with each app batch, everything else about updating is storage independent
+ */
+public interface StorageSink {
+    boolean open(); // Method to open the sink and bring its schema up-to-date
+    void close(); // Method to close the sink
+    String getName(); // Method to get the sink name used in logs
+
+    HashMap<Integer, Long> getAppNameHashes(); // Method to get the 64-bit hash of every stored app name (null on failure)
+    int countAppsToUpdate(); // Method to count every app needing an update (0 on failure)
+
+    void beginUpdate(); // Method to prepare claiming: load the negative cache, requeue apps due for a re-check and restart the claim order
+    ArrayList<Integer> claimApps(int size); // Method to claim the next background apps to update (empty once none remain or null on failure)
+    void renewClaims(boolean force); // Method to keep claimed apps from other nodes (at most every heartbeat unless forced)
+    void releaseClaims(); // Method to release claimed apps that were not written so other nodes can claim them
+    RefreshLanes getLanes(); // Method to get the lanes serving urgent refresh requests
+    NegativeCache getNegativeCache(); // Method to get the negative cache written with each app batch
+
+    int insertApps(ArrayList<App> apps); // Method to add new apps, skipping existing ones (number added or -1 on failure)
+    boolean renameApps(ArrayList<App> apps); // Method to update the names of renamed apps
+    ArrayList<AppEntry> writeApps(ArrayList<AppEntry> entries); // Method to write app details in one transaction (written entries or null on failure)
+
+    void logTiming(); // Method to log write timing since the last call
+    DatabaseMetaData getMetaData(); // Method to get the JDBC metadata of the store (null on failure)
+
+    /**
+     * Method to create the sink for a database
+     * > Databases with an address of sqlite:<file> are stored in an embedded SQLite file
+     * @param info is the database connection info
+     * @param compactStorage is whether MySQL rows are stored in compact form
+     * @param logger is the existing logger
+     * @return StorageSink for the database (not yet opened)
+     */
+    static StorageSink create(DatabaseInfo info, boolean compactStorage, Logger logger) {
+        if(EmbeddedSink.isEmbedded(info)) {
+            return new EmbeddedSink(EmbeddedSink.getPath(info), logger);
+        }
+        return new MySqlSink(info, compactStorage, logger);
+    }
+}
@@ -0,0 +1,23 @@
+package db;
+
+/**
+ * Class - TimeSource backed by the system clock and real thread sleeps
+ */
+public class SystemTimeSource implements TimeSource {
+
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        if(millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    public void await(Object monitor, long millis) throws InterruptedException {
+        if(millis > 0) {
+            monitor.wait(millis);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Class - Writes the primary database's app changes to one additional target database on its own thread
+ * > Batches queue up in order and are written in batched transactions, so a slow or failed target never holds up the update
+ * > A failed write is retried with a doubling delay, reconnecting (and migrating) the target first
+ * > A target that falls too far behind has its queue spilled to the primary's TargetBacklog table and copied once it recovers
+ */
+public class TargetWriter implements Runnable {
+    // Max Queued Apps Before the Queue is Spilled to the Primary
+    public static final int MAX_BACKLOG_APPS = 50000;
+
+    // Max Apps Written per Transaction
+    private static final int MAX_TRANSACTION_APPS = 1000;
+
+    // Retry Delay (Doubles per Failure)
+    private static final long MIN_RETRY_MILLIS = 1000; // 1 Second
+    private static final long MAX_RETRY_MILLIS = 5 * 60 * 1000; // 5 Minutes
+
+    // Record for Storing a Batch of Changes Written to the Primary
+    public record TargetBatch(ArrayList<App> inserted, ArrayList<App> renamed, ArrayList<AppEntry> updated) {
+        public int size() {
+            return inserted.size() + renamed.size() + updated.size();
+        }
+    }
+
+    // Target Storage
+    private final StorageSink sink;
+    private final String name;
+
+    // Logging
+    private final Logger logger;
+
+    // Whether the Sink is Open (Writer Thread Only)
+    private boolean open;
+
+    // Queued Batches and the Batches Being Written {Guarded by this}
+    private final ArrayDeque<TargetBatch> queue;
+    private ArrayList<TargetBatch> inFlight;
+    private int backlogApps;
+    private boolean stopped;
+
+    // Catch-Up Tracking {Guarded by this}
+    private long writtenApps;
+    private long spilledApps;
+    private int failures;
+    private long lastWriteMillis;
+
+    private Thread thread;
+
+    /**
+     * Constructor - Creates a TargetWriter for the given target database
+     * > Targets with an address of sqlite:<file> are written to an embedded SQLite file
+     * @param info is the target connection info
+     * @param compactStorage is whether a MySQL target stores rows in compact form
+     * @param logger is the existing logger
+     */
+    public TargetWriter(DatabaseInfo info, boolean compactStorage, Logger logger) {
+        this.sink = StorageSink.create(info, compactStorage, logger);
+        this.name = sink.getName();
+        this.logger = logger;
+        this.queue = new ArrayDeque<>();
+        this.inFlight = new ArrayList<>();
+    }
+
+    /**
+     * Method to parse fan-out targets from the steam.targets system property
+     * > Format: user:password@address:port/database;sqlite:<file>
+     * @param compactStorage is whether targets store rows in compact form
+     * @param logger is the existing logger
+     * @return list of TargetWriters (empty if no targets are set)
+     */
+    public static ArrayList<TargetWriter> fromSystemProperties(boolean compactStorage, Logger logger) {
+        ArrayList<TargetWriter> targets = new ArrayList<>();
+        String property = System.getProperty("steam.targets");
+        if(property == null || property.isBlank()) {
+            return targets;
+        }
+
+        for(String target : property.split(";")) {
+            // Embedded Target
+            if(target.startsWith(EmbeddedSink.ADDRESS_PREFIX)) {
+                targets.add(new TargetWriter(new DatabaseInfo(target, "", "", "", ""), compactStorage, logger));
+                continue;
+            }
+
+            try {
+                int at = target.lastIndexOf('@');
+                int colon = target.indexOf(':');
+                int slash = target.indexOf('/', at);
+                int portColon = target.lastIndexOf(':', slash);
+
+                targets.add(new TargetWriter(new DatabaseInfo(target.substring(at + 1, portColon), target.substring(portColon + 1, slash),
+                        target.substring(0, colon), target.substring(colon + 1, at), target.substring(slash + 1)), compactStorage, logger));
+            }
+            catch (IndexOutOfBoundsException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Invalid Fan-Out Target (Expected user:password@address:port/database)");
+            }
+        }
+        return targets;
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to start the writer thread
+     */
+    public synchronized void start() {
+        stopped = false;
+        thread = new Thread(this, "Target-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Method to stop the writer thread, waiting for it to write its queue
+     * @param timeoutMillis is the max time to wait for the queue to be written
+     * @return batches left unwritten (to be spilled to the primary)
+     */
+    public ArrayList<TargetBatch> stop(long timeoutMillis) {
+        long deadline = Utils.getTimeSource().currentTimeMillis() + timeoutMillis;
+
+        synchronized(this) {
+            try {
+                while(backlogApps > 0 && Utils.getTimeSource().currentTimeMillis() < deadline) {
+                    Utils.getTimeSource().await(this, deadline - Utils.getTimeSource().currentTimeMillis());
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stopped = true;
+            notifyAll();
+        }
+
+        if(thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(timeoutMillis);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized(this) {
+            ArrayList<TargetBatch> unwritten = new ArrayList<>(inFlight);
+            unwritten.addAll(drainQueued());
+            inFlight = new ArrayList<>();
+            backlogApps = 0;
+            return unwritten;
+        }
+    }
+
+    /**
+     * Method to queue a batch for writing
+     * @param batch is the batch written to the primary
+     */
+    public synchronized void enqueue(TargetBatch batch) {
+        if(batch.size() == 0) {
+            return;
+        }
+        queue.add(batch);
+        backlogApps += batch.size();
+        notifyAll();
+    }
+
+    /**
+     * Method to remove all queued batches not yet being written
+     * @return removed batches
+     */
+    public synchronized ArrayList<TargetBatch> drainQueued() {
+        ArrayList<TargetBatch> drained = new ArrayList<>(queue);
+        for(TargetBatch batch : queue) {
+            backlogApps -= batch.size();
+        }
+        queue.clear();
+        return drained;
+    }
+
+    /**
+     * Method to record apps spilled to the primary's backlog
+     * @param apps is the number of apps spilled
+     */
+    public synchronized void addSpilled(int apps) {
+        spilledApps += apps;
+    }
+
+    /**
+     * Method to get the number of queued and in-flight apps
+     * @return backlog size in apps
+     */
+    public synchronized int getBacklogApps() {
+        return backlogApps;
+    }
+
+    /**
+     * Method to check whether the target is keeping up
+     * @return true if the last write succeeded (or none failed yet)
+     */
+    public synchronized boolean isHealthy() {
+        return failures == 0;
+    }
+
+    /**
+     * Method to get the target name used for logging and the primary's backlog
+     * @return address:port/database
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Method to log the target's catch-up status
+     */
+    public synchronized void logStatus() {
+        logger.log(failures == 0 ? Logger.LOG_TYPE_UPDATE : Logger.LOG_TYPE_WARNING,
+                String.format("Target %s: %s - Backlog %d Apps, %d Written, %d Spilled For Catch-Up%s", name,
+                        failures == 0 ? "Up-To-Date" : failures + " Failed Writes", backlogApps, writtenApps, spilledApps,
+                        lastWriteMillis == 0 ? "" : ", Last Write " + Utils.getTimeStringIn(lastWriteMillis - Utils.getTimeSource().currentTimeMillis())));
+    }
+
+    /**
+     * Method to run the writer loop (Writer Thread)
+     */
+    @Override
+    public void run() {
+        long retryDelay = MIN_RETRY_MILLIS;
+
+        while(true) {
+            ArrayList<TargetBatch> batches;
+            try {
+                batches = takeBatches();
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            if(batches == null) {
+                break;
+            }
+
+            // Write Batches, Retrying Until They Succeed or the Writer Stops
+            if(write(batches)) {
+                synchronized(this) {
+                    int apps = batches.stream().mapToInt(TargetBatch::size).sum();
+                    inFlight = new ArrayList<>();
+                    backlogApps -= apps;
+                    writtenApps += apps;
+                    lastWriteMillis = Utils.getTimeSource().currentTimeMillis();
+                    failures = 0;
+                    notifyAll();
+                }
+                retryDelay = MIN_RETRY_MILLIS;
+            }
+            else {
+                synchronized(this) {
+                    failures++;
+                }
+                closeConnection();
+
+                try {
+                    Utils.getTimeSource().sleep(retryDelay);
+                }
+                catch (InterruptedException e) {
+                    break;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_MILLIS);
+            }
+        }
+        closeConnection();
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to wait for queued batches, moving up to a transaction's worth in flight
+     * @return in-flight batches (failed batches are returned again) or null once stopped
+     */
+    private synchronized ArrayList<TargetBatch> takeBatches() throws InterruptedException {
+        while(!stopped && inFlight.isEmpty() && queue.isEmpty()) {
+            wait();
+        }
+        if(stopped) {
+            return null;
+        }
+
+        if(inFlight.isEmpty()) {
+            int apps = 0;
+            while(!queue.isEmpty() && (inFlight.isEmpty() || apps + queue.peek().size() <= MAX_TRANSACTION_APPS)) {
+                TargetBatch batch = queue.poll();
+                apps += batch.size();
+                inFlight.add(batch);
+            }
+        }
+        return new ArrayList<>(inFlight);
+    }
+
+    /**
+     * Method to write batches to the target, opening it first if needed
+     * > New and renamed apps are written before the app details transaction, both are idempotent
+     * @return true on success
+     */
+    private boolean write(ArrayList<TargetBatch> batches) {
+        if(!open) {
+            open = sink.open();
+            if(!open) {
+                return false;
+            }
+            logger.log(Logger.LOG_TYPE_CONNECTION, "Connected To Target: " + name);
+        }
+
+        ArrayList<App> inserted = new ArrayList<>();
+        ArrayList<App> renamed = new ArrayList<>();
+        ArrayList<AppEntry> updated = new ArrayList<>();
+        for(TargetBatch batch : batches) {
+            inserted.addAll(batch.inserted());
+            renamed.addAll(batch.renamed());
+            updated.addAll(batch.updated());
+        }
+
+        if(!inserted.isEmpty() && sink.insertApps(inserted) < 0) {
+            return false;
+        }
+        if(!renamed.isEmpty() && !sink.renameApps(renamed)) {
+            return false;
+        }
+        return updated.isEmpty() || sink.writeApps(updated) != null;
+    }
+
+    private void closeConnection() {
+        if(open) {
+            sink.close();
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package db;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Interface - Clock and sleeper used by all scheduling, retry and rate-limit code
+ * > SystemTimeSource uses the real clock, SimulatedTimeSource lets long schedules run in milliseconds
+ */
+public interface TimeSource {
+    long currentTimeMillis(); // Method to get the current time in epoch milliseconds
+    void sleep(long millis) throws InterruptedException; // Method to sleep the current thread
+    void await(Object monitor, long millis) throws InterruptedException; // Method to wait on a held monitor with a timeout
+
+    /**
+     * Method to get the current time in epoch seconds
+     * @return epoch seconds
+     */
+    default long currentTimeSeconds() {
+        return currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Method to get the current local date-time
+     * @return current LocalDateTime
+     */
+    default LocalDateTime now() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(currentTimeMillis()), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,437 @@
+package db;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Class - Archive of recorded Steam Web API exchanges for capture and deterministic replay
+ * > Capture mode appends every exchange (url, status, headers, body, latency) as its own deflated record
+ * > An index of url -> record offsets is written on close, or rebuilt by scanning if the capture was cut short
+ * > Replay mode serves each url's recorded exchanges in capture order, at recorded timing or as fast as possible
+ */
+public class TrafficArchive {
+    // Archive Modes
+    public static final int MODE_CAPTURE = 0;
+    public static final int MODE_REPLAY = 1;
+
+    // File Layout {Header, Records, Index, Trailer}
+    private static final int FILE_MAGIC = 0x53495441; // SITA
+    private static final int INDEX_MAGIC = 0x53494458; // SIDX
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 8; // Magic, Version
+    private static final int TRAILER_BYTES = 16; // Index Offset, Record Count, Magic
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    // Record for Storing a Recorded Exchange
+    public record Exchange(String url, int status, Map<String, String> headers, byte[] body, long latencyMillis) {}
+
+    // Record for Storing the Location of a Recorded Exchange
+    private record IndexEntry(String url, long offset) {}
+
+    // Archive File
+    private final Path path;
+    private final int mode;
+    private final boolean recordedTiming;
+
+    // Logging
+    private final Logger logger;
+
+    // Open File and Index {Guarded by this}
+    private FileChannel channel;
+    private long dataEnd;
+    private final ArrayList<IndexEntry> index;
+    private final HashMap<String, ArrayList<Long>> offsets;
+    private final HashMap<String, Integer> cursors;
+
+    // Counters Since Open {Guarded by this}
+    private int captured;
+    private int replayed;
+    private int missing;
+
+    /**
+     * Constructor - Creates a TrafficArchive for the given file (opened on first use)
+     * @param path is the archive file
+     * @param mode is MODE_CAPTURE or MODE_REPLAY
+     * @param recordedTiming is whether replayed exchanges wait out their recorded latency
+     * @param logger is the existing logger
+     */
+    public TrafficArchive(Path path, int mode, boolean recordedTiming, Logger logger) {
+        this.path = path;
+        this.mode = mode;
+        this.recordedTiming = recordedTiming;
+        this.logger = logger;
+        this.index = new ArrayList<>();
+        this.offsets = new HashMap<>();
+        this.cursors = new HashMap<>();
+    }
+
+    /**
+     * Method to create the traffic archive from system properties
+     * > steam.traffic.capture=<file> records every exchange with Steam
+     * > steam.traffic.replay=<file> serves recorded exchanges instead of calling Steam
+     * > steam.traffic.replay.timing=recorded|fast (default fast) sets whether replay waits out recorded latency
+     * @param logger is the existing logger
+     * @return TrafficArchive or null if neither capture nor replay is set
+     */
+    public static TrafficArchive fromSystemProperties(Logger logger) {
+        String replay = System.getProperty("steam.traffic.replay");
+        if(replay != null && !replay.isBlank()) {
+            boolean recordedTiming = "recorded".equalsIgnoreCase(System.getProperty("steam.traffic.replay.timing", "fast"));
+            return new TrafficArchive(Path.of(replay), MODE_REPLAY, recordedTiming, logger);
+        }
+
+        String capture = System.getProperty("steam.traffic.capture");
+        if(capture != null && !capture.isBlank()) {
+            return new TrafficArchive(Path.of(capture), MODE_CAPTURE, false, logger);
+        }
+        return null;
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to check whether exchanges are served from the archive instead of Steam
+     * @return true in replay mode
+     */
+    public boolean isReplay() {
+        return mode == MODE_REPLAY;
+    }
+
+    /**
+     * Method to check whether calls skip rate pacing and retry delays
+     * @return true when replaying as fast as possible
+     */
+    public boolean isUnpaced() {
+        return mode == MODE_REPLAY && !recordedTiming;
+    }
+
+    /**
+     * Method to append an exchange to the archive (Capture Mode)
+     * @param exchange is the completed exchange
+     */
+    public synchronized void record(Exchange exchange) {
+        if(mode != MODE_CAPTURE || !ensureOpen()) {
+            return;
+        }
+
+        try {
+            byte[] record = deflate(encode(exchange));
+            ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+            buffer.putInt(record.length).put(record).flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer, dataEnd + buffer.position());
+            }
+
+            index.add(new IndexEntry(exchange.url(), dataEnd));
+            dataEnd += 4 + record.length;
+            captured++;
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Capture Exchange: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Method to get the next recorded exchange for a url (Replay Mode)
+     * > A url's exchanges are served in capture order, its last exchange is repeated once they run out
+     * > With recorded timing the call waits out the exchange's recorded latency
+     * @param url is the requested url
+     * @return recorded Exchange or null if the url was never captured
+     */
+    public Exchange replay(String url) throws InterruptedException {
+        Exchange exchange;
+        synchronized(this) {
+            if(mode != MODE_REPLAY || !ensureOpen()) {
+                return null;
+            }
+
+            ArrayList<Long> urlOffsets = offsets.get(url);
+            if(urlOffsets == null) {
+                missing++;
+                logger.log(Logger.LOG_TYPE_WARNING, "No Recorded Exchange For: " + url);
+                return null;
+            }
+
+            int cursor = cursors.getOrDefault(url, 0);
+            cursors.put(url, cursor + 1);
+
+            try {
+                exchange = readRecord(urlOffsets.get(Math.min(cursor, urlOffsets.size() - 1)));
+            }
+            catch (IOException | DataFormatException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Failed To Read Recorded Exchange For: " + url);
+                return null;
+            }
+            replayed++;
+        }
+
+        // Wait Out Recorded Latency Outside the Lock (Concurrent Fetches Overlap as Recorded)
+        if(recordedTiming && exchange.latencyMillis() > 0) {
+            Utils.getTimeSource().sleep(exchange.latencyMillis());
+        }
+        return exchange;
+    }
+
+    /**
+     * Method to close the archive, writing the index of a capture
+     * > Replay restarts from the first recorded exchange of each url once reopened
+     */
+    public synchronized void close() {
+        if(channel == null) {
+            return;
+        }
+
+        try {
+            if(mode == MODE_CAPTURE) {
+                writeIndex();
+                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Traffic Archive: Captured %d Exchanges to %s", captured, path));
+            }
+            else {
+                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Traffic Archive: Replayed %d Exchanges From %s (%d Missing)", replayed, path, missing));
+            }
+            channel.close();
+        }
+        catch (IOException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Close Traffic Archive: " + path);
+        }
+
+        channel = null;
+        index.clear();
+        offsets.clear();
+        cursors.clear();
+        captured = 0;
+        replayed = 0;
+        missing = 0;
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to open the archive file and load its index on first use
+     * > An archive without a valid trailer is scanned, dropping a partial last record
+     * @return true if the archive is open
+     */
+    private boolean ensureOpen() {
+        if(channel != null) {
+            return true;
+        }
+
+        try {
+            if(mode == MODE_CAPTURE) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if(channel.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(FILE_MAGIC).putInt(FILE_VERSION).flip();
+                    channel.write(header, 0);
+                }
+            }
+            else {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+
+            loadIndex();
+
+            // Continue Capture After the Last Record
+            if(mode == MODE_CAPTURE) {
+                channel.truncate(dataEnd);
+            }
+            logger.log(Logger.LOG_TYPE_CONNECTION, String.format("Opened Traffic Archive For %s: %s (%d Recorded Exchanges)",
+                    mode == MODE_CAPTURE ? "Capture" : "Replay", path, index.size()));
+            return true;
+        }
+        catch (IOException | DataFormatException e) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed To Open Traffic Archive %s - %s", path, e.getMessage()));
+        }
+
+        try {
+            if(channel != null) {
+                channel.close();
+            }
+        }
+        catch (IOException ignored) {}
+        channel = null;
+        index.clear();
+        offsets.clear();
+        return false;
+    }
+
+    /**
+     * Method to load the index from the trailer or by scanning all records
+     */
+    private void loadIndex() throws IOException, DataFormatException {
+        long size = channel.size();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        if(header.getInt(0) != FILE_MAGIC || header.getInt(4) != FILE_VERSION) {
+            throw new IOException("Not a Traffic Archive");
+        }
+
+        // Read Index Written on Close
+        if(size >= HEADER_BYTES + TRAILER_BYTES) {
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            readFully(trailer, size - TRAILER_BYTES);
+            long indexOffset = trailer.getLong(0);
+            int count = trailer.getInt(8);
+
+            if(trailer.getInt(12) == INDEX_MAGIC && indexOffset >= HEADER_BYTES && indexOffset <= size - TRAILER_BYTES) {
+                ByteBuffer indexBytes = ByteBuffer.allocate((int) (size - TRAILER_BYTES - indexOffset));
+                readFully(indexBytes, indexOffset);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(indexBytes.array()));
+                for(int i = 0; i < count; i++) {
+                    addIndexEntry(new IndexEntry(in.readUTF(), in.readLong()));
+                }
+                dataEnd = indexOffset;
+                return;
+            }
+        }
+
+        // Scan Records (Capture Was Not Closed)
+        long offset = HEADER_BYTES;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while(offset + 4 <= size) {
+            length.clear();
+            readFully(length, offset);
+            int recordLength = length.getInt(0);
+            if(recordLength <= 0 || recordLength > MAX_RECORD_BYTES || offset + 4 + recordLength > size) {
+                break; // Partial Last Record
+            }
+
+            Exchange exchange;
+            try {
+                exchange = readRecord(offset);
+            }
+            catch (DataFormatException | EOFException e) {
+                break;
+            }
+            addIndexEntry(new IndexEntry(exchange.url(), offset));
+            offset += 4 + recordLength;
+        }
+        dataEnd = offset;
+        if(size > HEADER_BYTES) {
+            logger.log(Logger.LOG_TYPE_WARNING, String.format("Traffic Archive %s Has No Index - Recovered %d Exchanges", path, index.size()));
+        }
+    }
+
+    private void addIndexEntry(IndexEntry entry) {
+        index.add(entry);
+        offsets.computeIfAbsent(entry.url(), k -> new ArrayList<>()).add(entry.offset());
+    }
+
+    /**
+     * Method to write the index and trailer after the last record
+     */
+    private void writeIndex() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for(IndexEntry entry : index) {
+            out.writeUTF(entry.url());
+            out.writeLong(entry.offset());
+        }
+        out.writeLong(dataEnd);
+        out.writeInt(index.size());
+        out.writeInt(INDEX_MAGIC);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        channel.truncate(dataEnd);
+        while(buffer.hasRemaining()) {
+            channel.write(buffer, dataEnd + buffer.position());
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Method to read and decode the record at an offset
+     */
+    private Exchange readRecord(long offset) throws IOException, DataFormatException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(record, offset + 4);
+        return decode(inflate(record.array()));
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    // * Record Encoding *
+
+    private static byte[] encode(Exchange exchange) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(exchange.body().length + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(exchange.url());
+        out.writeInt(exchange.status());
+        out.writeLong(exchange.latencyMillis());
+        out.writeInt(exchange.headers().size());
+        for(Map.Entry<String, String> header : exchange.headers().entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeUTF(header.getValue());
+        }
+        out.writeInt(exchange.body().length);
+        out.write(exchange.body());
+        return bytes.toByteArray();
+    }
+
+    private static Exchange decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        String url = in.readUTF();
+        int status = in.readInt();
+        long latencyMillis = in.readLong();
+
+        int headerCount = in.readInt();
+        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+        for(int i = 0; i < headerCount; i++) {
+            headers.put(in.readUTF(), in.readUTF());
+        }
+
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new Exchange(url, status, headers, body, latencyMillis);
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        byte[] chunk = new byte[8192];
+        while(!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] bytes) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+        byte[] chunk = new byte[8192];
+        try {
+            while(!inflater.finished()) {
+                int inflated = inflater.inflate(chunk);
+                if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated Record");
+                }
+                out.write(chunk, 0, inflated);
+            }
+        }
+        finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+}
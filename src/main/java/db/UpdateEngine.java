@@ -0,0 +1,706 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static db.ConnectorInterface.*;
+import static db.SteamConnector.*;
+
+/**
+ * Class - Runs the update pipeline against a StorageSink, shared by every connector
+ * > Syncs the app list, then fetches apps claimed from the sink concurrently, paced by the adaptive RateController
+ * > Urgent refresh requests are fetched on their own thread ahead of the background batch and written right away
+ * > Fetched apps are written in one transaction per batch together with the sink's negative cache changes
+ * > Storage specific work (claiming, leases, schema) stays in the sink, connector specific work runs through Hooks
+ */
+public class UpdateEngine {
+    // Number of Background Apps to Claim per Batch
+    private static final int CLAIM_BATCH_SIZE = 50;
+
+    // Streamed App List (steam.applist.streaming), Chunks Match the Bulk Load Threshold
+    private static final boolean STREAM_APP_LIST = Boolean.getBoolean("steam.applist.streaming");
+    private static final int APP_LIST_CHUNK_SIZE = 5000;
+
+    // Cooperative Cancellation (In-Flight Fetches Get DRAIN_MILLIS to Finish and are Written Before the Update Returns)
+    private final CancelToken cancelToken = new CancelToken();
+    private final Object updateLock = new Object(); // Held While Updating
+    private final AtomicInteger updates = new AtomicInteger(); // Updates Running or Waiting For the Lock
+    private static final long DRAIN_MILLIS = 1000;
+    private static final long CANCEL_POLL_MILLIS = 50;
+
+    // Adaptive Steam API Rate
+    private final RateController rateController;
+
+    // CPU-Sized Decode Stage Shared by All Connectors (Fetch Threads Only Do I/O)
+    private final DecodeStage decodeStage = DecodeStage.getShared();
+
+    // Host-Wide Steam API Budget Shared With Other Instances (null if Not Shared)
+    private SharedRateBudget sharedBudget;
+
+    // Steam Traffic Capture or Replay (null if Disabled)
+    private final TrafficArchive trafficArchive;
+
+    // Continuous Flight Recording (null if Disabled)
+    private final FlightRecording flightRecording;
+
+    // Storage of the Open Connection (null if Not Connected)
+    private volatile StorageSink sink;
+    private final ArrayList<AppEntry> pendingWrites = new ArrayList<>();
+
+    // Connector Steps Around the Update
+    private final Hooks hooks;
+
+    // Logging
+    private final Logger logger;
+
+    // Record for Storing the Result of a Concurrent App Fetch
+    private record AppFetch(int appid, AppEntry entry) {}
+
+    // Interface for Connector Specific Steps Run by the Update (Update Thread)
+    public interface Hooks {
+        default int prepare() { return 0; } // Method to prepare storage before the app list sync (apps added, or -1 to stop the update)
+        default void finish(boolean cancelled) {} // Method to run after the apps are updated
+        default void inserted(ArrayList<App> apps) {} // Method called after new apps are written
+        default void renamed(ArrayList<App> apps) {} // Method called after renamed apps are written
+        default void updated(ArrayList<AppEntry> entries) {} // Method called after a batch of app details commits
+    }
+
+    /**
+     * Constructor - Creates an UpdateEngine pacing Steam calls with an adaptive rate
+     * @param hooks are the connector specific steps of the update
+     * @param logger is the existing logger
+     */
+    public UpdateEngine(Hooks hooks, Logger logger) {
+        this.hooks = hooks;
+        this.logger = logger;
+
+        // Pace App Details Calls With Adaptive Rate
+        rateController = new RateController(logger);
+        setRateController(rateController);
+        setCircuitLogger(logger);
+
+        // Capture or Replay Steam Traffic
+        trafficArchive = TrafficArchive.fromSystemProperties(logger);
+        setTrafficArchive(trafficArchive);
+        flightRecording = FlightRecording.fromSystemProperties(logger);
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to start updating an opened sink
+     * @param sink is the opened storage sink
+     * @param info is the connection info (used to share the Steam API budget)
+     */
+    public void open(StorageSink sink, DatabaseInfo info) {
+        this.sink = sink;
+        cancelToken.reset(); // A Cancel Made While Disconnected Does Not Apply to the New Connection
+
+        // Share the Steam API Budget With Other Instances
+        sharedBudget = SharedRateBudget.fromSystemProperties(info, logger);
+        setSharedBudget(sharedBudget);
+    }
+
+    /**
+     * Method to stop updating, closing the connector's storage once no update is running
+     * > A running update is cancelled first, it drains and saves its work before the storage closes
+     * @param closeStorage closes the connector's storage (Holding the Update Lock)
+     */
+    public void close(Runnable closeStorage) {
+        // Wait For a Cancelled Update to Save its Work
+        if(updates.get() > 0) {
+            cancelToken.cancel();
+        }
+        synchronized(updateLock) {
+            closeStorage.run();
+            sink = null;
+
+            closeSharedBudget();
+            if(trafficArchive != null) {
+                trafficArchive.close();
+            }
+            if(flightRecording != null) {
+                flightRecording.close();
+            }
+        }
+    }
+
+    /**
+     * Method to update the storage and return counters for its result
+     * @param syncAppList is whether new and renamed apps are fetched from the Steam app list
+     * @return counters for the result of the update
+     */
+    public UpdateResults update(boolean syncAppList) {
+        updates.incrementAndGet();
+        try {
+            synchronized(updateLock) {
+                try {
+                    return runUpdate(syncAppList);
+                }
+                finally {
+                    cancelToken.reset(); // A Cancel Made Just Before the Update Started Still Applies to it
+                }
+            }
+        }
+        finally {
+            updates.decrementAndGet();
+        }
+    }
+
+    /**
+     * Method to request cancellation of the running update (Any Thread)
+     * > Fetches not yet started are dropped, fetches in flight are drained and written, claims are released
+     */
+    public void cancel() {
+        if(!cancelToken.isCancelled()) {
+            cancelToken.cancel();
+            logger.log(Logger.LOG_TYPE_UPDATE, "Cancelling Update - Saving Fetched Apps");
+        }
+    }
+
+    /**
+     * Method to set the ceiling of the adaptive Steam API rate, applied to a running update
+     * @param callsPerMinute is the new ceiling
+     */
+    public void setMaxRate(double callsPerMinute) {
+        rateController.setMaxRate(callsPerMinute);
+    }
+
+    /**
+     * Method to get the number of apps waiting for an update
+     * @return number of apps to update or 0 if not connected
+     */
+    public int getBacklog() {
+        StorageSink current = sink;
+        return current == null ? 0 : current.countAppsToUpdate();
+    }
+
+    /**
+     * Method to request an urgent refresh of an app, served ahead of the background batches
+     * @param appid is the appid to refresh
+     */
+    public void requestRefresh(int appid) {
+        StorageSink current = sink;
+        if(current == null) {
+            logger.log(Logger.LOG_TYPE_WARNING, "Cannot Request Refresh - Not Connected To Database");
+            return;
+        }
+        current.getLanes().request(appid);
+    }
+
+    /**
+     * Method to check if in-process refresh requests are waiting for an update
+     * @return true if requests are waiting
+     */
+    public boolean hasRefreshRequests() {
+        StorageSink current = sink;
+        return current != null && current.getLanes().hasRequests();
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to run an update (Holding the Update Lock)
+     * @param syncAppList is whether new and renamed apps are fetched from the Steam app list
+     * @return counters for the result of the update
+     */
+    private UpdateResults runUpdate(boolean syncAppList) {
+        // Update Counters
+        int newApps = 0;
+        int updatedApps = 0;
+
+        if(sink == null) {
+            logger.log(Logger.LOG_TYPE_WARNING, "Cannot Update Database - Not Connected To Database");
+            return new UpdateResults(newApps, updatedApps);
+        }
+
+        logger.logBreak();
+        logger.log(Logger.LOG_TYPE_UPDATE, "===Beginning Database Update===");
+
+        // Record Cycle For Flight Recorder
+        if(flightRecording != null) {
+            flightRecording.start();
+        }
+        UpdateEvents.UpdateCycle cycle = new UpdateEvents.UpdateCycle();
+        cycle.begin();
+        long cycleStart = Utils.getTimeSource().currentTimeMillis();
+
+        // 1) Prepare Storage
+        int prepared = hooks.prepare();
+        if(prepared < 0) {
+            return new UpdateResults(newApps, updatedApps);
+        }
+        newApps += prepared;
+
+        // 2) Update AppList in Database and add new apps
+        if(syncAppList) {
+            UpdateEvents.AppListSync sync = new UpdateEvents.AppListSync();
+            sync.begin();
+            sync.newApps = updateAppList();
+            sync.commit();
+            newApps += sync.newApps;
+        }
+
+        // 3) Requeue Invalid Apps Due For a Re-Check and Update All Apps
+        if(!cancelToken.isCancelled()) {
+            sink.beginUpdate();
+            updatedApps += updateApps();
+        }
+        hooks.finish(cancelToken.isCancelled());
+
+        logger.log(Logger.LOG_TYPE_UPDATE, cancelToken.isCancelled() ? "===Cancelled Database Update===" : "===Finished Database Update===");
+        logger.logBreak();
+
+        cycle.newApps = newApps;
+        cycle.updatedApps = updatedApps;
+        cycle.commit();
+        if(flightRecording != null) {
+            flightRecording.cycleFinished(Utils.getTimeSource().currentTimeMillis() - cycleStart);
+        }
+
+        return new UpdateResults(newApps, updatedApps);
+    }
+
+    /**
+     * Method to stop sharing the Steam API budget and close it
+     */
+    private void closeSharedBudget() {
+        if(sharedBudget != null) {
+            setSharedBudget(null);
+            sharedBudget.close();
+            sharedBudget = null;
+        }
+    }
+
+    // * App List Methods *
+
+    /**
+     * Method to update the database app list with new and renamed apps from the Steam Web API
+     * > In streaming mode (steam.applist.streaming) the list is read and written in chunks so memory stays bounded for any catalog size
+     * @return The number of new apps added
+     */
+    private int updateAppList() {
+        HashMap<Integer, Long> nameHashes = sink.getAppNameHashes(); // Get Existing Apps from Database
+        if(nameHashes == null) {
+            return 0;
+        }
+
+        if(STREAM_APP_LIST) {
+            return updateAppListStreamed(nameHashes);
+        }
+
+        AppListChanges changes = getAppListChanges(nameHashes, logger); // Get AppList Changes
+        // Null AppList
+        if(changes == null) {
+            logger.log(Logger.LOG_TYPE_ERROR, "Failed To Retrieve AppList From Steam Web API");
+            return 0;
+        }
+
+        // Update Renamed Apps
+        renameApps(changes.renamedApps());
+
+        ArrayList<App> appList = changes.newApps();
+
+        // Empty AppList
+        if(appList.isEmpty()) {
+            logger.log(Logger.LOG_TYPE_UPDATE, "No New Apps To Add to Database");
+            return 0;
+        }
+
+        // Add Apps to Database (Bulk Loaded When Large)
+        int newApps = addNewApps(appList);
+        if(newApps < 0) {
+            return 0;
+        }
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("AppList Update Finished: %d New Apps Added", newApps));
+
+        return newApps;
+    }
+
+    /**
+     * Method to update the database app list chunk by chunk as it is streamed from the Steam Web API
+     * > Each chunk is written (and passed to the hooks) before the next is read, a failed chunk stops the stream
+     * @param nameHashes is the map of existing appids to the hash of their name
+     * @return The number of new apps added
+     */
+    private int updateAppListStreamed(HashMap<Integer, Long> nameHashes) {
+        int[] newApps = new int[1];
+        boolean read = streamAppListChanges(nameHashes, APP_LIST_CHUNK_SIZE, (appList, renamedApps) -> {
+            renameApps(renamedApps);
+            int added = addNewApps(appList);
+            if(added < 0) {
+                return false;
+            }
+            newApps[0] += added;
+            return !cancelToken.isCancelled();
+        }, logger);
+
+        if(!read) {
+            logger.log(Logger.LOG_TYPE_ERROR, String.format("Failed To Stream AppList From Steam Web API - %d New Apps Added Before Stopping", newApps[0]));
+        }
+        else if(newApps[0] == 0) {
+            logger.log(Logger.LOG_TYPE_UPDATE, "No New Apps To Add to Database");
+        }
+        else {
+            logger.log(Logger.LOG_TYPE_UPDATE, String.format("AppList Update Finished: %d New Apps Added", newApps[0]));
+        }
+        return newApps[0];
+    }
+
+    /**
+     * Method to add new apps
+     * @param appList are the new apps
+     * @return number of apps added or -1 on failure
+     */
+    private int addNewApps(ArrayList<App> appList) {
+        if(appList.isEmpty()) {
+            return 0;
+        }
+
+        int newApps = sink.insertApps(appList);
+        if(newApps < 0) {
+            return -1;
+        }
+        hooks.inserted(appList);
+        return newApps;
+    }
+
+    /**
+     * Method to update the names of renamed apps
+     * @param renamedApps are the apps with their new names
+     */
+    private void renameApps(ArrayList<App> renamedApps) {
+        if(renamedApps.isEmpty() || !sink.renameApps(renamedApps)) {
+            return;
+        }
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("Renamed %d Apps", renamedApps.size()));
+        hooks.renamed(renamedApps);
+    }
+
+    // * App Update Methods *
+
+    /**
+     * Method to update all apps claimed from the sink
+     * @return The Number of Updated Apps
+     * > Urgent refresh requests are taken with each batch and between fetches, fetched ahead of queued background fetches and written right away
+     * > Apps in a batch are fetched concurrently, paced by the adaptive RateController to prevent rate-limiting
+     * > Fetched apps are written in one transaction per batch (together with history when enabled)
+     * > Invalid, malformed and failed apps are recorded in the NegativeCache and skipped until their next check
+     * > While the Steam circuit is open the update pauses and retries the batch's unfinished apps once it recovers
+     * > Once cancelled no more fetches start, fetches in flight are drained for up to DRAIN_MILLIS and everything fetched is written
+     */
+    private int updateApps() {
+        int updatedApps = 0;
+        RefreshLanes lanes = sink.getLanes();
+        NegativeCache negativeCache = sink.getNegativeCache();
+
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("Attempting To Update %d Apps - Rate: %.1f Calls/Min",
+                sink.countAppsToUpdate(), rateController.getRate()));
+
+        // Fetch Threads (Concurrency Limited by RateController, Urgent Apps Skip the Background Queue)
+        ExecutorService fetchPool = Executors.newFixedThreadPool(RateController.getMaxConcurrency());
+        ExecutorService urgentPool = Executors.newSingleThreadExecutor();
+        CircuitBreaker circuit = getAppDetailsCircuit();
+
+        long drainDeadline = 0;
+
+        try {
+            // Claim Batches Until No Urgent or Background Apps Remain (or Cancelled)
+            ArrayList<Integer> appids;
+            while(!cancelToken.isCancelled() && (appids = claimBatch(lanes)) != null && !appids.isEmpty()) {
+                ArrayList<Integer> pending = appids;
+
+                while(!pending.isEmpty()) {
+                    // Pause While Steam Circuit is Open
+                    if(!waitForCircuit(circuit)) {
+                        break;
+                    }
+
+                    // Fetch Pending Apps Concurrently (Both Pools Decode Into One Queue)
+                    BlockingQueue<AppFetch> completed = new LinkedBlockingQueue<>();
+                    for(int appid : pending) {
+                        submitFetch(appid, lanes, fetchPool, urgentPool, completed);
+                    }
+                    int fetchCount = pending.size();
+                    pending = new ArrayList<>();
+
+                    // Write Results in Order of Completion
+                    for(int i = 0; i < fetchCount; i++) {
+                        AppFetch fetch = takeFetch(completed, drainDeadline);
+
+                        // Cancelled - Stop Taking Fetches (Queued Ones are Skipped Without a Request), Then Drain Those in Flight
+                        if(fetch == null) {
+                            if(drainDeadline > 0) {
+                                logger.log(Logger.LOG_TYPE_WARNING, String.format("Stopped Waiting For %d In-Flight Fetches", fetchCount - i));
+                                break;
+                            }
+                            drainDeadline = Utils.getTimeSource().currentTimeMillis() + DRAIN_MILLIS;
+                            fetchPool.shutdown();
+                            urgentPool.shutdown();
+                            i--;
+                            continue;
+                        }
+
+                        AppEntry entry = fetch.entry();
+                        boolean urgent = lanes.isUrgent(fetch.appid());
+
+                        // Handle Info Failure
+                        if(entry == null) {
+                            // Cancelled Before a Response (Claim Released For a Later Update)
+                            if(drainDeadline > 0) {
+                                continue;
+                            }
+                            // Retry After Pause if Circuit Opened
+                            else if(circuit.isOpen()) {
+                                pending.add(fetch.appid());
+                            }
+                            else {
+                                logger.log(Logger.LOG_TYPE_ERROR, fetch.appid(), "Failed To Retrieve Info For: " + fetch.appid());
+                                negativeCache.record(fetch.appid(), NegativeCache.REASON_FETCH_FAILED);
+                                lanes.served(fetch.appid());
+                            }
+                        }
+                        // Handle Unreadable Response (Left Without Type to be Re-Checked)
+                        else if(entry.isMalformed()) {
+                            logger.log(Logger.LOG_TYPE_WARNING, entry.appid(), "Malformed Response For: " + entry.appid());
+                            negativeCache.record(entry.appid(), NegativeCache.REASON_MALFORMED);
+                            lanes.served(entry.appid());
+                        }
+                        else {
+                            // Buffer App For Batch Write (Releases its Claim)
+                            pendingWrites.add(entry);
+
+                            // Cache Invalid Apps or Clear Recovered Apps
+                            if(!entry.isValid()) {
+                                negativeCache.record(entry.appid(), NegativeCache.REASON_NOT_FOUND);
+                            }
+                            else {
+                                negativeCache.clear(entry.appid());
+                            }
+
+                            // Write Urgent Apps Without Waiting For the Batch
+                            if(urgent) {
+                                updatedApps += writeApps();
+                                lanes.served(entry.appid());
+                            }
+                        }
+
+                        // Start Urgent Apps Requested Since the Batch Began
+                        if(drainDeadline == 0) {
+                            for(int appid : lanes.pollUrgent(false)) {
+                                submitFetch(appid, lanes, fetchPool, urgentPool, completed);
+                                fetchCount++;
+                            }
+                        }
+
+                        sink.renewClaims(false);
+                    }
+
+                    // Write Batch in One Transaction
+                    updatedApps += writeApps();
+                    if(cancelToken.isCancelled()) {
+                        break;
+                    }
+                }
+            }
+        }
+        finally {
+            updatedApps += writeApps();
+            if(cancelToken.isCancelled()) {
+                logger.log(Logger.LOG_TYPE_UPDATE, String.format("Update Cancelled - %d Apps Written", updatedApps));
+            }
+            sink.logTiming();
+
+            shutdownPools(drainDeadline, fetchPool, urgentPool);
+            rateController.save(); // Keep Learned Rate For Next Run
+            decodeStage.logStatus(logger);
+            lanes.logStatus();
+
+            // Release Claims of Unfinished Apps so Other Nodes Can Claim Them
+            sink.releaseClaims();
+        }
+        return updatedApps;
+    }
+
+    /**
+     * Method to take the next batch: waiting urgent apps, then a batch of background apps claimed from the sink
+     * > Background apps that are also requested urgently are only fetched once (as urgent)
+     * @param lanes are the sink's refresh lanes
+     * @return ArrayList of appids to fetch (empty once no apps remain) or null on failure
+     */
+    private ArrayList<Integer> claimBatch(RefreshLanes lanes) {
+        ArrayList<Integer> appids = lanes.pollUrgent(true);
+        ArrayList<Integer> background = sink.claimApps(CLAIM_BATCH_SIZE);
+        if(background == null) {
+            return appids.isEmpty() ? null : appids;
+        }
+
+        background.removeIf(lanes::isUrgent);
+        appids.addAll(background);
+        return appids;
+    }
+
+    /**
+     * Method to submit an app fetch to the urgent or background pool
+     * @param appid is the appid to fetch
+     * @param lanes are the sink's refresh lanes
+     * @param fetchPool is the background fetch pool
+     * @param urgentPool is the urgent fetch pool
+     * @param completed is the queue decoded fetches are added to
+     */
+    private void submitFetch(int appid, RefreshLanes lanes, ExecutorService fetchPool, ExecutorService urgentPool, BlockingQueue<AppFetch> completed) {
+        if(lanes.isUrgent(appid)) {
+            urgentPool.execute(() -> {
+                RateController.setUrgent(true); // Take the Next Free Permit Ahead of Background Fetches
+                try {
+                    fetchApp(appid, completed);
+                }
+                finally {
+                    RateController.setUrgent(false);
+                }
+            });
+        }
+        else {
+            fetchPool.execute(() -> fetchApp(appid, completed));
+        }
+    }
+
+    /**
+     * Method to pause the update while a circuit is open, keeping claims alive
+     * @param circuit is the circuit breaker to wait on
+     * @return false if cancelled during the pause
+     */
+    private boolean waitForCircuit(CircuitBreaker circuit) {
+        long wait = circuit.getRemainingOpenMillis();
+        if(wait <= 0) {
+            return true;
+        }
+
+        logger.log(Logger.LOG_TYPE_WARNING, String.format("Steam %s Unavailable - Pausing Update - Resume at: %s",
+                circuit.getName(), Utils.getTimeStringIn(wait)));
+
+        sink.renewClaims(true); // Keep Claims Alive Through The Pause
+        UpdateEvents.Wait event = new UpdateEvents.Wait();
+        event.begin();
+        boolean resumed = cancelToken.sleep(wait);
+        event.reason = UpdateEvents.WAIT_CIRCUIT_OPEN;
+        event.plannedMillis = wait;
+        event.commit();
+        sink.renewClaims(true);
+        return resumed;
+    }
+
+    /**
+     * Method to fetch the raw app details for an appid on a fetch thread, handing the response to the decode stage
+     * > Exactly one AppFetch is added per app, with a null entry on failure
+     * @param appid is the given appid
+     * @param completed is the queue the decoded fetch is added to
+     */
+    private void fetchApp(int appid, BlockingQueue<AppFetch> completed) {
+        // Skip Fetches Still Queued When Cancelled
+        if(cancelToken.isCancelled()) {
+            completed.add(new AppFetch(appid, null));
+            return;
+        }
+
+        DecodeStage.Buffer raw;
+        try {
+            raw = fetchAppDetails(appid, logger);
+        }
+        catch (RuntimeException e) {
+            raw = null;
+        }
+
+        if(raw == null) {
+            completed.add(new AppFetch(appid, null));
+            return;
+        }
+        decodeStage.decodeAppDetails(appid, raw, entry -> completed.add(new AppFetch(appid, entry)));
+    }
+
+    /**
+     * Method to stop the fetch pools, letting fetches in flight finish until the drain deadline
+     * > Fetches still running past the deadline (e.g. waiting for a rate permit) are interrupted
+     * @param drainDeadline is the time to stop draining or 0 if not cancelled (pools are idle, DRAIN_MILLIS is allowed)
+     * @param pools are the fetch pools
+     */
+    private void shutdownPools(long drainDeadline, ExecutorService... pools) {
+        for(ExecutorService pool : pools) {
+            pool.shutdown();
+        }
+
+        long deadline = drainDeadline > 0 ? drainDeadline : Utils.getTimeSource().currentTimeMillis() + DRAIN_MILLIS;
+        try {
+            for(ExecutorService pool : pools) {
+                long wait = deadline - Utils.getTimeSource().currentTimeMillis();
+                if(wait <= 0 || !pool.awaitTermination(wait, TimeUnit.MILLISECONDS)) {
+                    pool.shutdownNow();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for(ExecutorService pool : pools) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Method to wait for the next decoded app fetch, checking for cancellation while waiting
+     * @param completed is the queue of decoded fetches of the current batch
+     * @param drainDeadline is the time to stop draining in-flight fetches or 0 if not cancelled yet
+     * @return the next completed AppFetch or null once cancelled (not yet draining) or the drain deadline passed
+     */
+    private AppFetch takeFetch(BlockingQueue<AppFetch> completed, long drainDeadline) {
+        try {
+            while(true) {
+                AppFetch fetch = completed.poll(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if(fetch != null) {
+                    return fetch;
+                }
+                if(drainDeadline > 0 ? Utils.getTimeSource().currentTimeMillis() >= drainDeadline : cancelToken.isCancelled()) {
+                    return null;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelToken.cancel();
+            return null;
+        }
+    }
+
+    /**
+     * Method to write the buffered app entries in one transaction
+     * > Pending negative cache changes are written in the same transaction, so a batch of only failures still flushes
+     * > The hooks see the written entries once the transaction commits
+     * @return The Number of Updated Apps
+     */
+    private int writeApps() {
+        if(pendingWrites.isEmpty() && !sink.getNegativeCache().hasPending()) {
+            return 0;
+        }
+
+        ArrayList<AppEntry> written = sink.writeApps(new ArrayList<>(pendingWrites));
+        pendingWrites.clear();
+        if(written == null || written.isEmpty()) {
+            return 0;
+        }
+
+        // Log Valid or Invalid
+        for(AppEntry entry : written) {
+            if(!entry.isValid()) {
+                logger.log(Logger.LOG_TYPE_UPDATE, entry.appid(), "App Updated to Invalid Status: " + entry.appid());
+            }
+            else {
+                logger.log(Logger.LOG_TYPE_UPDATE, entry.appid(), String.format("Updated App: {%d - %s}", entry.appid(), entry.type()));
+            }
+        }
+
+        hooks.updated(written);
+        return written.size();
+    }
+}
@@ -0,0 +1,159 @@
+package db;
+
+import jdk.jfr.*;
+
+import java.util.List;
+
+/**
+ * Class - JDK Flight Recorder events for update phases and external calls
+ * > Events cost an allocation and a disabled check unless a recording is running (see FlightRecording)
+ * > High frequency events (waits, log flushes) are only recorded above a duration threshold
+ */
+public final class UpdateEvents {
+    private static final String CATEGORY = "Steam Insight";
+
+    // Wait Reasons
+    public static final String WAIT_RATE_PERMIT = "Rate Permit";
+    public static final String WAIT_CIRCUIT_OPEN = "Circuit Open";
+    public static final String WAIT_RETRY_DELAY = "Retry Delay";
+    public static final String WAIT_SHARED_BUDGET = "Shared Budget";
+
+    // Database Batch Operations
+    public static final String BATCH_INSERT_APPS = "Insert Apps";
+    public static final String BATCH_RENAME_APPS = "Rename Apps";
+    public static final String BATCH_WRITE_APPS = "Write Apps";
+
+    private UpdateEvents() {}
+
+    @Name("steam.UpdateCycle")
+    @Label("Update Cycle")
+    @Category({CATEGORY, "Update"})
+    @Description("A full database update")
+    public static class UpdateCycle extends Event {
+        @Label("New Apps")
+        public int newApps;
+
+        @Label("Updated Apps")
+        public int updatedApps;
+    }
+
+    @Name("steam.AppListSync")
+    @Label("App List Sync")
+    @Category({CATEGORY, "Update"})
+    @Description("Fetching the Steam app list and adding new and renamed apps")
+    public static class AppListSync extends Event {
+        @Label("New Apps")
+        public int newApps;
+    }
+
+    @Name("steam.SteamCall")
+    @Label("Steam Call")
+    @Category({CATEGORY, "Steam"})
+    @Description("A Steam Web API call including its retries")
+    public static class SteamCall extends Event {
+        @Label("Endpoint")
+        public String endpoint;
+
+        @Label("Appid")
+        public int appid;
+
+        @Label("Status")
+        public int status;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Retries")
+        public int retries;
+
+        @Label("Replayed")
+        public boolean replayed;
+    }
+
+    @Name("steam.Parse")
+    @Label("Parse")
+    @Category({CATEGORY, "Steam"})
+    @Description("Parsing a Steam Web API response")
+    public static class Parse extends Event {
+        @Label("Endpoint")
+        public String endpoint;
+
+        @Label("Appid")
+        public int appid;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Result")
+        public String result;
+    }
+
+    @Name("steam.DatabaseBatch")
+    @Label("Database Batch")
+    @Category({CATEGORY, "Database"})
+    @Description("A batched database write")
+    public static class DatabaseBatch extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Sink")
+        public String sink;
+
+        @Label("Rows")
+        public int rows;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("steam.Wait")
+    @Label("Wait")
+    @Category({CATEGORY, "Steam"})
+    @Description("Waiting for a rate permit, an open circuit or a retry delay")
+    @Threshold("1 ms")
+    public static class Wait extends Event {
+        @Label("Reason")
+        public String reason;
+
+        @Label("Planned Wait")
+        @Timespan(Timespan.MILLISECONDS)
+        public long plannedMillis;
+    }
+
+    @Name("steam.LogFlush")
+    @Label("Log Flush")
+    @Category({CATEGORY, "Logging"})
+    @Description("Writing and flushing a log line")
+    @Threshold("1 ms")
+    public static class LogFlush extends Event {
+        @Label("Bytes")
+        @DataAmount
+        public int bytes;
+    }
+
+    /**
+     * Method to begin a database batch event
+     * @param operation is the batch operation
+     * @param sink is the name of the sink written to
+     * @param rows is the number of rows in the batch
+     * @return begun DatabaseBatch event
+     */
+    static DatabaseBatch beginDatabaseBatch(String operation, String sink, int rows) {
+        DatabaseBatch event = new DatabaseBatch();
+        event.begin();
+        event.operation = operation;
+        event.sink = sink;
+        event.rows = rows;
+        return event;
+    }
+
+    /**
+     * Method to get all event classes (enabled by FlightRecording)
+     * @return event classes
+     */
+    static List<Class<? extends Event>> getEventClasses() {
+        return List.of(UpdateCycle.class, AppListSync.class, SteamCall.class, Parse.class, DatabaseBatch.class, Wait.class, LogFlush.class);
+    }
+}
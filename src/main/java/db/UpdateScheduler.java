@@ -0,0 +1,377 @@
+package db;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Class - Runs updates on its own thread, continuously while apps are waiting and on an interval once caught up
+ * > After an update that leaves a backlog (and made progress) the next update starts right away, skipping the app list sync until the interval is due
+ * > Once caught up the next update waits the configured interval with random jitter, so nodes do not start together
+ * > Updates only start inside the configured windows (e.g. off-peak database hours), an in-progress update is never cut off
+ * > runNow() starts a full update immediately, ignoring the interval but not the windows
+ * > requestRefresh() hands an appid to the running update, or starts an update without an app list sync to serve it
+ * > setInterval() applies a new interval to the running scheduler, moving a planned update without waiting for it
+ */
+public class UpdateScheduler implements Runnable {
+    // Delay Between Back-to-Back Updates While Draining a Backlog
+    private static final long BACKLOG_DELAY_MILLIS = 5 * 1000;
+
+    // Random Jitter as a Fraction of the Interval (steam.schedule.jitter)
+    private static final double JITTER = Math.min(0.5, Math.max(0, Double.parseDouble(System.getProperty("steam.schedule.jitter", "0.1"))));
+
+    // Max Search When Looking For the Next Window (One Week)
+    private static final int MAX_WINDOW_SEARCH_MINUTES = 8 * 24 * 60;
+
+    // Record for Storing an Allowed Window {days bit per DayOfWeek, start and end (end before start wraps past midnight)}
+    public record ScheduleWindow(int days, LocalTime start, LocalTime end) {
+        public boolean allows(LocalDateTime time) {
+            LocalTime t = time.toLocalTime();
+            if(!start.isAfter(end)) {
+                return allowsDay(time.getDayOfWeek()) && !t.isBefore(start) && t.isBefore(end);
+            }
+            // Wrapping Window Belongs to the Day it Started On
+            return (allowsDay(time.getDayOfWeek()) && !t.isBefore(start)) || (allowsDay(time.getDayOfWeek().minus(1)) && t.isBefore(end));
+        }
+
+        private boolean allowsDay(DayOfWeek day) {
+            return (days & (1 << day.ordinal())) != 0;
+        }
+    }
+
+    // Interface for Observing Scheduled Updates (Called on the Scheduler Thread)
+    public interface Listener {
+        void updateStarted(); // Method called when an update starts
+        void updateFinished(UpdateResults results); // Method called when an update finishes
+        void nextUpdateScheduled(long timeMillis); // Method called with the start time of the next update
+    }
+
+    // Scheduling
+    private final ConnectorInterface connector;
+    private final ArrayList<ScheduleWindow> windows;
+    private final Listener listener;
+
+    // Logging
+    private final Logger logger;
+
+    // State {Guarded by this}
+    private boolean stopped;
+    private boolean runRequested;
+    private boolean syncRequested;
+    private boolean updating;
+    private long intervalMillis;
+    private long lastStart;
+    private double jitter; // Fraction of the Interval Drawn For the Next Run
+    private long backlogRunAt; // Next Backlog Run (0 Once Caught Up)
+    private long lastAppListSync;
+    private Thread thread;
+
+    /**
+     * Constructor - Creates an UpdateScheduler for a connector
+     * @param connector is the connected database connector
+     * @param intervalMillis is the interval between updates once caught up
+     * @param windows are the windows updates may start in (empty for any time)
+     * @param listener is the observer of scheduled updates (may be null)
+     * @param logger is the existing logger
+     */
+    public UpdateScheduler(ConnectorInterface connector, long intervalMillis, ArrayList<ScheduleWindow> windows, Listener listener, Logger logger) {
+        this.connector = connector;
+        this.intervalMillis = intervalMillis;
+        this.windows = windows;
+        this.listener = listener;
+        this.logger = logger;
+    }
+
+    /**
+     * Method to parse update windows from the steam.schedule.windows system property
+     * > Format: [days] HH:mm-HH:mm;... where days are Mon-Fri style ranges or Sat,Sun style lists (default every day)
+     * > Example: Mon-Fri 22:00-06:00;Sat,Sun 00:00-24:00
+     * @param logger is the existing logger
+     * @return list of windows (empty to allow any time)
+     */
+    public static ArrayList<ScheduleWindow> windowsFromSystemProperties(Logger logger) {
+        ArrayList<ScheduleWindow> windows = new ArrayList<>();
+        String property = System.getProperty("steam.schedule.windows");
+        if(property == null || property.isBlank()) {
+            return windows;
+        }
+
+        for(String spec : property.split(";")) {
+            try {
+                windows.add(parseWindow(spec.trim()));
+            }
+            catch (RuntimeException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Invalid Update Window (Expected [Mon-Fri] HH:mm-HH:mm): " + spec);
+            }
+        }
+        return windows;
+    }
+
+    // *** Public Methods ***
+
+    /**
+     * Method to start the scheduler thread, running the first update as soon as a window allows
+     */
+    public synchronized void start() {
+        stopped = false;
+        runRequested = true;
+        syncRequested = true;
+        thread = new Thread(this, "Update-Scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Method to stop the scheduler
+     * > A cancelled update stops starting fetches and saves what it already fetched before the thread exits
+     * @param cancelUpdate is whether an in-progress update is cancelled
+     */
+    public synchronized void stop(boolean cancelUpdate) {
+        stopped = true;
+        notifyAll();
+        if(cancelUpdate && updating) {
+            connector.cancel();
+        }
+    }
+
+    /**
+     * Method to start an update now (once the current update, if any, finishes)
+     */
+    public synchronized void runNow() {
+        runRequested = true;
+        syncRequested = true;
+        notifyAll();
+    }
+
+    /**
+     * Method to request an urgent refresh of an app
+     * > A running update serves it within the latency target, otherwise an update starts now (inside the windows)
+     * @param appid is the appid to refresh
+     */
+    public synchronized void requestRefresh(int appid) {
+        connector.requestRefresh(appid);
+        if(!updating) {
+            runRequested = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Method to set the interval between updates once caught up, applied to the running scheduler
+     * @param intervalMillis is the new interval
+     */
+    public synchronized void setInterval(long intervalMillis) {
+        if(intervalMillis == this.intervalMillis) {
+            return;
+        }
+        this.intervalMillis = intervalMillis;
+        logger.log(Logger.LOG_TYPE_UPDATE, String.format("Update Interval Set to %.1f Hrs", intervalMillis / 3600000.0));
+        notifyAll(); // Re-Plan a Waiting Update
+    }
+
+    /**
+     * Method to run the scheduler loop (Scheduler Thread)
+     */
+    @Override
+    public void run() {
+        while(true) {
+            // Wait For Next Run, Run Now or Stop
+            try {
+                if(!awaitRun()) {
+                    break;
+                }
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+
+            // Sync App List Only Once the Interval is Due
+            long start = Utils.getTimeSource().currentTimeMillis();
+            boolean syncAppList;
+            synchronized(this) {
+                syncAppList = syncRequested || start - lastAppListSync >= intervalMillis;
+                if(syncAppList) {
+                    lastAppListSync = start;
+                    syncRequested = false;
+                }
+                if(stopped) {
+                    break;
+                }
+                updating = true;
+            }
+
+            if(listener != null) {
+                listener.updateStarted();
+            }
+
+            UpdateResults results;
+            int backlog;
+            try {
+                results = connector.update(syncAppList);
+                backlog = connector.getBacklog();
+            }
+            catch (RuntimeException e) {
+                logger.log(Logger.LOG_TYPE_ERROR, "Update Failed: " + e.getMessage());
+                results = new UpdateResults(0, 0);
+                backlog = 0;
+            }
+
+            // Serve Refresh Requests Made as the Update Finished
+            synchronized(this) {
+                updating = false;
+                if(connector.hasRefreshRequests()) {
+                    runRequested = true;
+                }
+            }
+
+            if(listener != null) {
+                listener.updateFinished(results);
+            }
+            synchronized(this) {
+                if(stopped) {
+                    break;
+                }
+
+                // Drain Backlog Right Away While Updates Make Progress, Otherwise Back Off to the Interval
+                lastStart = start;
+                jitter = JITTER * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+                backlogRunAt = 0;
+                if(backlog > 0 && results.updatedApps() > 0) {
+                    backlogRunAt = Utils.getTimeSource().currentTimeMillis() + BACKLOG_DELAY_MILLIS;
+                    logger.log(Logger.LOG_TYPE_UPDATE, String.format("%d Apps Waiting - Next Update Starts Immediately", backlog));
+                }
+            }
+        }
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to wait until the next run time (moved into the next window) or a run-now request
+     * > The run time is planned again on every wake-up, so interval changes apply to a waiting update
+     * @return true to run an update or false once stopped
+     */
+    private synchronized boolean awaitRun() throws InterruptedException {
+        while(!stopped) {
+            long now = Utils.getTimeSource().currentTimeMillis();
+            long runAt = nextWindowStart(runRequested ? now : plannedRun());
+            if(listener != null) {
+                listener.nextUpdateScheduled(runAt);
+            }
+
+            if(runAt <= now) {
+                runRequested = false;
+                return true;
+            }
+            Utils.getTimeSource().await(this, runAt - now);
+        }
+        return false;
+    }
+
+    /**
+     * Method to get the planned time of the next run from the last start, interval and jitter {Guarded by this}
+     */
+    private long plannedRun() {
+        if(backlogRunAt > 0) {
+            return backlogRunAt;
+        }
+        return lastStart + intervalMillis + (long) (intervalMillis * jitter);
+    }
+
+    /**
+     * Method to get the first time at or after the given time inside an update window
+     * @param timeMillis is the earliest time
+     * @return start time of the next allowed update
+     */
+    private long nextWindowStart(long timeMillis) {
+        if(windows.isEmpty()) {
+            return timeMillis;
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), zone);
+        if(isAllowed(time)) {
+            return timeMillis;
+        }
+
+        // Step to the Next Allowed Minute
+        LocalDateTime candidate = time.truncatedTo(ChronoUnit.MINUTES);
+        for(int i = 0; i < MAX_WINDOW_SEARCH_MINUTES; i++) {
+            candidate = candidate.plusMinutes(1);
+            if(isAllowed(candidate)) {
+                return candidate.atZone(zone).toInstant().toEpochMilli();
+            }
+        }
+        return timeMillis; // No Window Ever Allows (Ignore Windows)
+    }
+
+    private boolean isAllowed(LocalDateTime time) {
+        for(ScheduleWindow window : windows) {
+            if(window.allows(time)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to parse a window spec ([days] HH:mm-HH:mm)
+     */
+    private static ScheduleWindow parseWindow(String spec) {
+        String[] parts = spec.split("\\s+");
+        int days = 0x7F;
+        String range = parts[0];
+        if(parts.length == 2) {
+            days = parseDays(parts[0]);
+            range = parts[1];
+        }
+        else if(parts.length != 1) {
+            throw new IllegalArgumentException(spec);
+        }
+
+        String[] times = range.split("-");
+        return new ScheduleWindow(days, parseTime(times[0]), parseTime(times[1]));
+    }
+
+    /**
+     * Method to parse a time, treating 24:00 as the end of the day
+     */
+    private static LocalTime parseTime(String time) {
+        return time.equals("24:00") ? LocalTime.MAX : LocalTime.parse(time);
+    }
+
+    /**
+     * Method to parse a day list (Mon,Wed) or range (Mon-Fri, may wrap past Sun) into a DayOfWeek bit set
+     */
+    private static int parseDays(String spec) {
+        int days = 0;
+        for(String part : spec.split(",")) {
+            String[] range = part.split("-");
+            int from = parseDay(range[0]);
+            int to = range.length > 1 ? parseDay(range[1]) : from;
+            for(int day = from; ; day = (day + 1) % 7) {
+                days |= 1 << day;
+                if(day == to) {
+                    break;
+                }
+            }
+        }
+        return days;
+    }
+
+    private static int parseDay(String day) {
+        for(DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            if(dayOfWeek.name().regionMatches(true, 0, day, 0, 3) && day.length() >= 3) {
+                return dayOfWeek.ordinal();
+            }
+        }
+        throw new IllegalArgumentException(day);
+    }
+}
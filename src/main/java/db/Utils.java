@@ -1,19 +1,44 @@
 package db;
 
-import java.net.URL;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 
 public class Utils {
+    // Clock Used For Scheduling, Retries and Rate Limits
+    private static volatile TimeSource timeSource = new SystemTimeSource();
+
+    /**
+     * Method to get the current time source
+     * @return TimeSource used for all scheduling
+     */
+    public static TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Method to replace the time source (e.g. with a SimulatedTimeSource)
+     * @param source is the new time source
+     */
+    public static void setTimeSource(TimeSource source) {
+        timeSource = source;
+    }
+
     /**
      * Method to get the time string in given number of minutes
      * @param minutes is the given number of minutes
      * @return is the String representation of the time in given minutes
      */
     public static String getTimeString(int minutes) {
+        return getTimeStringIn(minutes * 60 * 1000L);
+    }
+
+    /**
+     * Method to get the time string in given number of milliseconds
+     * @param millis is the given number of milliseconds
+     * @return is the String representation of the time in given milliseconds
+     */
+    public static String getTimeStringIn(long millis) {
         // Update Time
-        LocalTime futureTime = LocalTime.now().plus((minutes), ChronoUnit.MINUTES);
-        return futureTime.format(DateTimeFormatter.ofPattern("HH:mm:ss"));
+        return timeSource.now().plus(millis, ChronoUnit.MILLIS).format(DateTimeFormatter.ofPattern("HH:mm:ss"));
     }
 }
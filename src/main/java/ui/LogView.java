@@ -0,0 +1,241 @@
+package ui;
+
+import db.LogBuffer;
+import db.LogBuffer.LogEvent;
+import db.Logger;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.io.Serial;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Class - Virtualized, filterable view of the log events in a LogBuffer
+ * > The list only renders its visible rows, so it stays responsive with a million retained events
+ * > Filtering by log type or appid uses the buffer's indexes instead of scanning the events
+ * > New events are picked up on a timer, coalescing bursts of logging into one repaint
+ */
+public class LogView extends JPanel {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // Refresh Interval
+    private static final int REFRESH_MILLIS = 250;
+
+    // Row Formatting
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final Font ROW_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color WARNING_COLOR = new Color(230, 160, 40);
+    private static final Color ERROR_COLOR = new Color(230, 80, 80);
+
+    // Log Events
+    private final LogBuffer buffer;
+    private final LogListModel model;
+
+    // Components
+    private final JList<LogEvent> list;
+    private final JComboBox<String> typeFilter;
+    private final JTextField appidFilter;
+    private final JCheckBox followCheck;
+    private final JLabel countLabel;
+
+    /**
+     * Constructor - Creates a LogView of the given buffer
+     * @param buffer is the buffer the Logger writes to
+     */
+    public LogView(LogBuffer buffer) {
+        super(new BorderLayout());
+        this.buffer = buffer;
+        this.model = new LogListModel(buffer);
+
+        // Event List (Fixed Row Height so Only Visible Rows are Measured and Rendered)
+        list = new JList<>(model);
+        list.setFont(ROW_FONT);
+        list.setFixedCellHeight(list.getFontMetrics(ROW_FONT).getHeight() + 2);
+        list.setPrototypeCellValue(new LogEvent(0, 0, Logger.LOG_TYPE_LOG, 0, "X".repeat(120)));
+        list.setCellRenderer(new LogEventRenderer());
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+        // Filter Bar
+        String[] typeNames = new String[Logger.LOG_TYPE_COUNT + 1];
+        typeNames[0] = "All Types";
+        for(int i = 0; i < Logger.LOG_TYPE_COUNT; i++) {
+            typeNames[i + 1] = Logger.getTypeName(i);
+        }
+        typeFilter = new JComboBox<>(typeNames);
+        typeFilter.addActionListener(e -> applyFilter());
+
+        appidFilter = new JTextField(8);
+        appidFilter.setToolTipText("Show Only Events of an Appid");
+        appidFilter.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { applyFilter(); }
+            public void removeUpdate(DocumentEvent e) { applyFilter(); }
+            public void changedUpdate(DocumentEvent e) { applyFilter(); }
+        });
+
+        followCheck = new JCheckBox("Follow", true);
+        followCheck.addActionListener(e -> scrollToEnd());
+
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> {
+            buffer.clear();
+            refresh();
+        });
+
+        countLabel = new JLabel();
+
+        JPanel filterBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterBar.add(new JLabel("Type:"));
+        filterBar.add(typeFilter);
+        filterBar.add(new JLabel("Appid:"));
+        filterBar.add(appidFilter);
+        filterBar.add(followCheck);
+        filterBar.add(clearButton);
+        filterBar.add(countLabel);
+
+        add(filterBar, BorderLayout.NORTH);
+        add(new JScrollPane(list), BorderLayout.CENTER);
+
+        // Pick Up New Events
+        new Timer(REFRESH_MILLIS, e -> refresh()).start();
+        refresh();
+    }
+
+    // *** Private Methods ***
+
+    /**
+     * Method to apply the filter inputs to the list
+     * > An appid that is not a number shows no events
+     */
+    private void applyFilter() {
+        int type = typeFilter.getSelectedIndex() - 1; // All Types -> LogBuffer.ANY_TYPE
+        int appid = 0;
+        String appidText = appidFilter.getText().trim();
+        if(!appidText.isEmpty()) {
+            try {
+                appid = Integer.parseInt(appidText);
+            }
+            catch (NumberFormatException e) {
+                appid = -1;
+            }
+        }
+
+        model.setFilter(type, appid);
+        refresh();
+    }
+
+    /**
+     * Method to update the list with events added since the last refresh
+     */
+    private void refresh() {
+        if(!model.refresh()) {
+            return;
+        }
+
+        int total = buffer.size(LogBuffer.ANY_TYPE, 0);
+        countLabel.setText(String.format("%,d of %,d Events", model.getSize(), total));
+        scrollToEnd();
+    }
+
+    private void scrollToEnd() {
+        if(followCheck.isSelected() && model.getSize() > 0) {
+            list.ensureIndexIsVisible(model.getSize() - 1);
+        }
+    }
+
+    /**
+     * Class - List model of the events matching the current filter
+     * > The size is cached between refreshes so the list sees a stable model while painting
+     * > Refreshes report the rows evicted from the front and the rows appended at the back, the rows in between are unchanged
+     */
+    private static class LogListModel extends AbstractListModel<LogEvent> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final LogBuffer buffer;
+        private int type = LogBuffer.ANY_TYPE;
+        private int appid;
+        private int size;
+        private long seenSeq = -1;
+        private boolean filterChanged;
+
+        LogListModel(LogBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void setFilter(int type, int appid) {
+            this.type = type;
+            this.appid = appid;
+            filterChanged = true;
+        }
+
+        /**
+         * Method to re-read the filtered size if events were added or the filter changed
+         * @return true if the model changed
+         */
+        boolean refresh() {
+            long nextSeq;
+            int newSize;
+            int kept;
+            synchronized(buffer) { // One Consistent Read While Fetch Threads Log
+                nextSeq = buffer.getNextSeq();
+                newSize = appid < 0 ? 0 : buffer.size(type, appid);
+                kept = appid < 0 || filterChanged ? 0 : buffer.countBefore(type, appid, seenSeq);
+            }
+            if(nextSeq == seenSeq && newSize == size && !filterChanged) {
+                return false;
+            }
+            seenSeq = nextSeq;
+            filterChanged = false;
+
+            // Rows Before the Last Refresh Still Retained Keep Their Content, Evicted Rows Leave the Front
+            int oldSize = size;
+            size = newSize;
+            if(oldSize > kept) {
+                fireIntervalRemoved(this, 0, oldSize - kept - 1);
+            }
+            if(newSize > kept) {
+                fireIntervalAdded(this, kept, newSize - 1);
+            }
+            return true;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public LogEvent getElementAt(int index) {
+            return appid < 0 ? null : buffer.get(type, appid, index);
+        }
+    }
+
+    /**
+     * Class - Renders a log event as a log line, colored by type
+     */
+    private static class LogEventRenderer extends DefaultListCellRenderer {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            LogEvent event = (LogEvent) value;
+            String text = event == null ? "" : String.format("%s: {%s} %s",
+                    TIME_FORMAT.format(Instant.ofEpochMilli(event.time())), Logger.getTypeName(event.type()), event.message());
+            super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+
+            if(event != null && !isSelected) {
+                if(event.type() == Logger.LOG_TYPE_ERROR) {
+                    setForeground(ERROR_COLOR);
+                }
+                else if(event.type() == Logger.LOG_TYPE_WARNING) {
+                    setForeground(WARNING_COLOR);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package ui;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
-import javax.swing.text.DefaultCaret;
 import java.awt.*;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
@@ -11,12 +10,17 @@ import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.prefs.BackingStoreException;
-import java.util.prefs.Preferences;
+import java.util.Set;
 
+import db.ConfigStore;
+import db.ConnectorInterface;
 import db.DBConnector;
+import db.EmbeddedSink;
+import db.LocalConnector;
+import db.LogBuffer;
 import db.Logger;
+import db.RateController;
+import db.UpdateScheduler;
 import db.ConnectorInterface.*;
 
 /**
@@ -30,16 +34,17 @@ public class Menu extends JFrame {
     private final Logger logger;
 
     // Database Connector
-    private final DBConnector sdbc;
+    private ConnectorInterface sdbc;
 
-    // Preferences
-    private final Preferences prefs;
+    // Preferences (Saved Debounced Off the EDT, Password Kept Apart in the Secrets File)
+    private final ConfigStore config;
     private static final String PREF_ADDRESS = "address";
     private static final String PREF_PORT = "port";
     private static final String PREF_USERNAME = "username";
     private static final String PREF_PASSWORD = "password";
     private static final String PREF_DATABASE_NAME = "databaseName";
     private static final String PREF_INTERVAL = "interval";
+    private static final String PREF_MAX_RATE = "maxRate";
 
     // Connection
     private boolean isConnected;
@@ -47,7 +52,8 @@ public class Menu extends JFrame {
     private static final String DISCONNECT_BUTTON = "Disconnect";
 
     // Update
-    private Timer updateTimer;
+    private UpdateScheduler scheduler;
+    private long nextUpdateMillis;
     private boolean isRunning;
     private static final String START_UPDATE = "Start Update";
     private static final String STOP_UPDATE = "Stop Update";
@@ -57,9 +63,6 @@ public class Menu extends JFrame {
     private static final int STATUS_READY = 1;
     private static final int STATUS_UPDATING = 2;
 
-    // Update Worker
-    private SwingWorker<Void, Void> worker;
-
     // *** GUI Components ***
     // Settings Components
     private JTextField addressInput;
@@ -68,8 +71,12 @@ public class Menu extends JFrame {
     private JTextField passwordInput;
     private JTextField databaseNameInput;
     private JSpinner updateIntervalSpinner;
+    private JSpinner maxRateSpinner;
     private JButton connectButton;
     private JButton updateButton;
+    private JButton runNowButton;
+    private JTextField refreshInput;
+    private JButton refreshButton;
 
     // Database Info
     private JLabel productNameLabel;
@@ -87,16 +94,21 @@ public class Menu extends JFrame {
     private int updatedAppsCount;
 
     // Console
-    private JTextArea console;
+    private LogBuffer logBuffer;
 
     /**
      * Constructor - Creates a GUI For Steam DB Updater
      */
     public Menu() {
 
+        // *** Logging ***
+        logBuffer = LogBuffer.fromSystemProperties();
+        logger = new Logger(logBuffer); // Create Logger with given LogBuffer
+
         // *** UI ***
-        // Load Preferences
-        prefs = Preferences.userRoot().node(this.getClass().getName());
+        // Load Preferences (Interval and Rate Changes Apply to Running Updates)
+        config = ConfigStore.load(this.getClass().getName(), Set.of(PREF_PASSWORD), logger);
+        config.addListener((key, value) -> SwingUtilities.invokeLater(() -> applySetting(key)));
 
         // Initialize Components
         initComponents();
@@ -105,8 +117,8 @@ public class Menu extends JFrame {
         initFrame();
 
         // *** Updater ***
-        logger = new Logger(console); // Create Logger with given JTextArea
         sdbc = new DBConnector(logger); // Send Existing Logger to Connector
+        sdbc.setMaxRate(config.getInt(PREF_MAX_RATE, RateController.getRateCeiling()));
         isConnected = false;
         isRunning = false;
 
@@ -151,12 +163,8 @@ public class Menu extends JFrame {
         topPanel.add(controlPanel);
         topPanel.add(infoPanel);
 
-        // Init Bottom Console
-        console = new JTextArea();
-        console.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(console);
-        DefaultCaret caret = (DefaultCaret) console.getCaret();
-        caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
+        // Init Bottom Console (Filterable Log View)
+        LogView logView = new LogView(logBuffer);
 
         // Create MainPanel
         JPanel mainPanel = new JPanel();
@@ -164,7 +172,7 @@ public class Menu extends JFrame {
 
         // Add Components to Panel
         mainPanel.add(topPanel, BorderLayout.NORTH);
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(logView, BorderLayout.CENTER);
 
         // Add Panel to Frame
         add(mainPanel, BorderLayout.CENTER);
@@ -182,44 +190,53 @@ public class Menu extends JFrame {
 
         // Create Address Input
         inputPanel.add(new JLabel("Address: "));
-        addressInput = new JTextField(prefs.get(PREF_ADDRESS, "localhost"));
-        addressInput.addCaretListener(e -> savePreferences());
+        addressInput = new JTextField(config.get(PREF_ADDRESS, "localhost"));
+        UiUtils.onTextChange(addressInput, () -> config.put(PREF_ADDRESS, addressInput.getText()));
         inputPanel.add(addressInput);
 
         // Create Port Input
         inputPanel.add(new JLabel("Port: "));
-        portInput = new JTextField(prefs.get(PREF_PORT, "3306"));
-        portInput.addCaretListener(e -> savePreferences());
+        portInput = new JTextField(config.get(PREF_PORT, "3306"));
+        UiUtils.onTextChange(portInput, () -> config.put(PREF_PORT, portInput.getText()));
         inputPanel.add(portInput);
 
         // Create Username Input
         inputPanel.add(new JLabel("Username: "));
-        usernameInput = new JTextField(prefs.get(PREF_USERNAME, ""));
-        usernameInput.addCaretListener(e -> savePreferences());
+        usernameInput = new JTextField(config.get(PREF_USERNAME, ""));
+        UiUtils.onTextChange(usernameInput, () -> config.put(PREF_USERNAME, usernameInput.getText()));
         inputPanel.add(usernameInput);
 
         // Create Password Input
         inputPanel.add(new JLabel("Password: "));
-        passwordInput = new JTextField(prefs.get(PREF_PASSWORD, "")); // Hides Password
-        passwordInput.addCaretListener(e -> savePreferences());
+        passwordInput = new JTextField(config.get(PREF_PASSWORD, "")); // Hides Password
+        UiUtils.onTextChange(passwordInput, () -> config.put(PREF_PASSWORD, passwordInput.getText()));
         inputPanel.add(passwordInput);
 
         // Create Database Name Input
         inputPanel.add(new JLabel("Database Name: "));
-        databaseNameInput = new JTextField(prefs.get(PREF_DATABASE_NAME, ""));
-        databaseNameInput.addCaretListener(e -> savePreferences());
+        databaseNameInput = new JTextField(config.get(PREF_DATABASE_NAME, ""));
+        UiUtils.onTextChange(databaseNameInput, () -> config.put(PREF_DATABASE_NAME, databaseNameInput.getText()));
         inputPanel.add(databaseNameInput);
 
         // Create Update Interval Setting
         inputPanel.add(new JLabel("Update Interval (Hrs): "));
         updateIntervalSpinner = new JSpinner();
-        updateIntervalSpinner.setValue(prefs.getInt(PREF_INTERVAL, 1));
+        updateIntervalSpinner.setValue(config.getInt(PREF_INTERVAL, 1));
         updateIntervalSpinner.addChangeListener(e -> {
             limitJSpinner(e);
-            savePreferences();
+            config.putInt(PREF_INTERVAL, (int) updateIntervalSpinner.getValue());
         });
         inputPanel.add(updateIntervalSpinner);
 
+        // Create Max Rate Setting
+        inputPanel.add(new JLabel("Max Rate (Calls/Min): "));
+        int rateCeiling = RateController.getRateCeiling();
+        maxRateSpinner = new JSpinner(new SpinnerNumberModel(
+                Math.min(rateCeiling, Math.max(RateController.getRateFloor(), config.getInt(PREF_MAX_RATE, rateCeiling))),
+                RateController.getRateFloor(), rateCeiling, 1));
+        maxRateSpinner.addChangeListener(e -> config.putInt(PREF_MAX_RATE, (int) maxRateSpinner.getValue()));
+        inputPanel.add(maxRateSpinner);
+
         // *** Buttons ***
         JPanel buttonPanel = new JPanel(new GridLayout(0, 1));
         buttonPanel.setBorder(UiUtils.getPaddedBorder(5, 5));
@@ -248,8 +265,31 @@ public class Menu extends JFrame {
             }
         });
 
+        // Setup Run Now Button
+        runNowButton = new JButton("Run Update Now");
+        runNowButton.setEnabled(false); // Enabled While Updates are Scheduled
+        runNowButton.addActionListener(e -> {
+            if(scheduler != null) {
+                scheduler.runNow();
+            }
+        });
+
+        // Setup Refresh App Input and Button
+        refreshInput = new JTextField();
+        refreshInput.setToolTipText("Appid to Refresh Ahead of the Backlog");
+        refreshButton = new JButton("Refresh App");
+        refreshButton.setEnabled(false); // Enabled While Updates are Scheduled
+        refreshButton.addActionListener(e -> requestRefresh());
+        refreshInput.addActionListener(e -> requestRefresh());
+
+        JPanel refreshPanel = new JPanel(new BorderLayout(5, 0));
+        refreshPanel.add(refreshInput, BorderLayout.CENTER);
+        refreshPanel.add(refreshButton, BorderLayout.EAST);
+
         buttonPanel.add(connectButton);
         buttonPanel.add(updateButton);
+        buttonPanel.add(runNowButton);
+        buttonPanel.add(refreshPanel);
 
         // Setup Control Panel
         JPanel controlPanel = new JPanel(new BorderLayout());
@@ -357,25 +397,25 @@ public class Menu extends JFrame {
     }
 
     /**
-     * Method to save inputs as preferences
+     * Method to apply a changed setting to the inputs and a running update (EDT)
+     *  > Settings changed outside the app (reloaded from the stores) update their inputs too
+     * @param key is the changed setting
      */
-    private void savePreferences() {
-        prefs.put(PREF_ADDRESS, addressInput.getText());
-        prefs.put(PREF_PORT, portInput.getText());
-        prefs.put(PREF_USERNAME, usernameInput.getText());
-        prefs.put(PREF_PASSWORD, passwordInput.getText());
-        prefs.put(PREF_DATABASE_NAME, databaseNameInput.getText());
-        prefs.putInt(PREF_INTERVAL, (int) updateIntervalSpinner.getValue());
-
-        // Immediately Save Preferences
-        try {
-            prefs.flush();
-            prefs.sync();
-        }
-        catch (BackingStoreException e) {
-            logger.log(Logger.LOG_TYPE_ERROR, "Failed to Save Preferences");
+    private void applySetting(String key) {
+        switch (key) {
+            case PREF_INTERVAL -> {
+                int hours = config.getInt(PREF_INTERVAL, 1);
+                updateIntervalSpinner.setValue(hours);
+                if(scheduler != null) {
+                    scheduler.setInterval(hours * 60 * 60 * 1000L);
+                }
+            }
+            case PREF_MAX_RATE -> {
+                int maxRate = config.getInt(PREF_MAX_RATE, RateController.getRateCeiling());
+                maxRateSpinner.setValue(Math.min(RateController.getRateCeiling(), Math.max(RateController.getRateFloor(), maxRate)));
+                sdbc.setMaxRate(maxRate);
+            }
         }
-
     }
 
     // *** Button Methods ***
@@ -394,6 +434,12 @@ public class Menu extends JFrame {
                 databaseNameInput.getText()
         );
 
+        // Select Connector For the Storage (Embedded sqlite:<file> or MySQL)
+        if(EmbeddedSink.isEmbedded(us) != sdbc instanceof LocalConnector) {
+            sdbc = EmbeddedSink.isEmbedded(us) ? new LocalConnector(logger) : new DBConnector(logger);
+            sdbc.setMaxRate(config.getInt(PREF_MAX_RATE, RateController.getRateCeiling()));
+        }
+
         // Attempt Connection
         if(sdbc.openConnection(us)) {
             connectButton.setText(DISCONNECT_BUTTON);
@@ -406,81 +452,103 @@ public class Menu extends JFrame {
 
     /**
      * Method to handle disconnecting from the database
+     *  > The connection is closed on a background thread, as it waits for a cancelled update to drain and save its work
      */
     private void disconnect() {
         stopUpdate(); // Stop Update if In Progress
-        sdbc.closeConnection(); // Close Connection
-
-        // Set UI as disconnected
-        connectButton.setText(CONNECT_BUTTON);
+        connectButton.setEnabled(false);
         updateButton.setEnabled(false);
         isConnected = false;
-        updateDatabaseInfo(); // Update Database Info Section
-        updateRunInfo(STATUS_CONN); // Update Run Info Section
+
+        // Close Connection Off the EDT
+        ConnectorInterface connector = sdbc;
+        Thread closer = new Thread(() -> {
+            connector.closeConnection();
+
+            // Set UI as disconnected
+            SwingUtilities.invokeLater(() -> {
+                connectButton.setText(CONNECT_BUTTON);
+                connectButton.setEnabled(true);
+                updateDatabaseInfo(); // Update Database Info Section
+                updateRunInfo(STATUS_CONN); // Update Run Info Section
+            });
+        }, "Database-Disconnect");
+        closer.start(); // Not a Daemon, Exiting Waits For the Fetched Apps to be Saved
     }
 
     /**
-     * Method to start a database update on a continuous interval
-     *  > Utilizes a separate thread for the updating to keep UI usable
-     *  > Prevents Multiple Concurrent Updates by using a Semaphore (isTicking)
+     * Method to start scheduled database updates
+     *  > Updates run on the UpdateScheduler thread, continuously while apps are waiting and on the set interval once caught up
+     *  > Only one update runs at a time, Run Update Now starts the next one right away
      */
     private void startUpdate() {
         if(isConnected && !isRunning) {
             isRunning = true;
             updateButton.setText(STOP_UPDATE);
+            runNowButton.setEnabled(true);
+            refreshButton.setEnabled(true);
 
-            // Setup Semaphore to Prevent Multiple Updates
-            AtomicBoolean isTicking = new AtomicBoolean(false);
-
-            // Setup Timer for Continuous Updates
             int hours = (int) updateIntervalSpinner.getValue();
-            updateTimer = new Timer(hours * 60 * 60 * 1000, e -> {
-
-                // Prevent Multiple Updates at the same time
-                if(!isTicking.get()) {
-                    // Run Update on Separate Thread to Allow for GUI to Continue Working
-                    worker = new SwingWorker<>() {
-                        @Override
-                        protected Void doInBackground() {
-
-                            isTicking.set(true);
-                            updateRunInfo(STATUS_UPDATING);
-
-                            // Begin Update
-                            UpdateResults ur = sdbc.update();
+            scheduler = new UpdateScheduler(sdbc, hours * 60 * 60 * 1000L, UpdateScheduler.windowsFromSystemProperties(logger),
+                    new UpdateScheduler.Listener() {
+                        public void updateStarted() {
+                            SwingUtilities.invokeLater(() -> updateRunInfo(STATUS_UPDATING));
+                        }
 
-                            // Increment Counts With Result
-                            newAppsCount += ur.newApps();
-                            updatedAppsCount += ur.updatedApps();
+                        public void updateFinished(UpdateResults results) {
+                            SwingUtilities.invokeLater(() -> {
+                                // Increment Counts With Result
+                                newAppsCount += results.newApps();
+                                updatedAppsCount += results.updatedApps();
+                                updateRunInfo(STATUS_READY);
+                            });
+                        }
 
-                            // Update UI
-                            updateRunInfo(STATUS_READY);
-                            isTicking.set(false);
-                            return null;
+                        public void nextUpdateScheduled(long timeMillis) {
+                            SwingUtilities.invokeLater(() -> {
+                                nextUpdateMillis = timeMillis;
+                                updateRunInfo(STATUS_READY);
+                            });
                         }
-                    };
-                    worker.execute(); // Begin Thread Execution
-                }
-                else {
-                    logger.log(Logger.LOG_TYPE_WARNING, "Update Could Not Begin - Update In Progress");
-                }
-            });
-            // Start Timer and Begin First Execution Immediately
-            updateTimer.setInitialDelay(0);
-            updateTimer.start();
+                    }, logger);
+            scheduler.start(); // Begin First Update Immediately
         }
     }
 
     /**
-     * Method to stop a database update (Will not stop in-progress update)
+     * Method to stop scheduled database updates (Cancels an in-progress update, which saves the apps it already fetched)
      */
     private void stopUpdate() {
-        if(updateTimer != null) {
-            updateTimer.stop(); // Stop Timer
+        if(scheduler != null) {
+            scheduler.stop(true); // Stop Scheduler and Cancel Update
+            scheduler = null;
             updateButton.setText(START_UPDATE); // Update Button Text
-            updateRunInfo(STATUS_READY);
+            runNowButton.setEnabled(false);
+            refreshButton.setEnabled(false);
             isRunning = false;
-            worker.cancel(true); // Force End To Update Thread
+            updateRunInfo(STATUS_READY);
+        }
+    }
+
+    /**
+     * Method to request an urgent refresh of the appid in the refresh input
+     *  > The running update fetches it ahead of the backlog, otherwise an update starts for it
+     */
+    private void requestRefresh() {
+        if(scheduler == null) {
+            return;
+        }
+
+        try {
+            int appid = Integer.parseInt(refreshInput.getText().trim());
+            if(appid <= 0) {
+                throw new NumberFormatException();
+            }
+            scheduler.requestRefresh(appid);
+            refreshInput.setText("");
+        }
+        catch (NumberFormatException e) {
+            logger.log(Logger.LOG_TYPE_WARNING, "Cannot Refresh App - Invalid Appid: " + refreshInput.getText());
         }
     }
 
@@ -525,10 +593,13 @@ public class Menu extends JFrame {
             case STATUS_UPDATING -> statusLabel.setText("Update In Progress");
         }
 
-        // Update Timer
-        if(updateTimer != null && updateTimer.isRunning()) {
+        // Update Next Scheduled Update
+        if(scheduler != null && status == STATUS_UPDATING) {
+            nextUpdateLabel.setText("After Current Update");
+        }
+        else if(scheduler != null) {
             // Get Time String of Next Update
-            long nextExecutionTimeLong = System.currentTimeMillis() + updateTimer.getDelay();
+            long nextExecutionTimeLong = Math.max(System.currentTimeMillis(), nextUpdateMillis);
             LocalTime nextExecutionTime = LocalTime.ofInstant(
                     Instant.ofEpochMilli(nextExecutionTimeLong), ZoneId.systemDefault()
             );
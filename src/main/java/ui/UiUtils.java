@@ -2,6 +2,8 @@ package ui;
 
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 
 /**
@@ -123,4 +125,24 @@ public class UiUtils {
         return BorderFactory.createCompoundBorder(getPaddedBorder(leftRight, topBottom), getTitledBorder(text, color));
     }
 
+    /**
+     * Method to run an action whenever the text of a field is edited (not on caret movement)
+     * @param field is the text field to watch
+     * @param action is the action to run on the EDT
+     */
+    public static void onTextChange(JTextField field, Runnable action) {
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                action.run();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                action.run();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                action.run();
+            }
+        });
+    }
 }
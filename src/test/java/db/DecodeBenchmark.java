@@ -0,0 +1,134 @@
+package db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Class - Runnable throughput comparison of decoding app details on the fetch thread and on the DecodeStage
+ * > Decodes synthetic appdetails responses shaped like Steam's (long HTML descriptions around the fields the updater reads)
+ * > Inline decodes every response on one thread with a new byte[] each, like the fetch threads did before the decode stage
+ * > Stage hands pooled buffers to the decode pool, run again with -Dsteam.decode.threads=<n> to compare thread counts
+ *
+ * Usage: java -cp <classes> [-Dsteam.decode.threads=<n>] db.DecodeBenchmark [responses] [description KiB]
+ */
+public class DecodeBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int descriptionKiB = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        byte[][] responses = new byte[count][];
+        long totalBytes = 0;
+        Random random = new Random(42);
+        for(int i = 0; i < count; i++) {
+            responses[i] = createResponse(i + 1, descriptionKiB, random);
+            totalBytes += responses[i].length;
+        }
+        System.out.printf("%d Responses, %.1f MiB, %d Cores, %d Decode Threads%n", count, totalBytes / 1048576.0,
+                Runtime.getRuntime().availableProcessors(), Integer.getInteger("steam.decode.threads", Runtime.getRuntime().availableProcessors()));
+
+        for(int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean measured = round == WARMUP_ROUNDS;
+            long inlineNanos = decodeInline(responses);
+            long stageNanos = decodeOnStage(responses);
+
+            if(measured) {
+                report("Inline (Fetch Thread)", count, totalBytes, inlineNanos);
+                report("Decode Stage", count, totalBytes, stageNanos);
+                System.out.printf("Speedup: %.2fx%n", (double) inlineNanos / stageNanos);
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Method to decode every response on the calling thread, copying each into a new buffer
+     * @return elapsed nanos
+     */
+    private static long decodeInline(byte[][] responses) {
+        long start = System.nanoTime();
+        int valid = 0;
+        for(int i = 0; i < responses.length; i++) {
+            DecodeStage.Buffer raw = new DecodeStage.Buffer();
+            raw.write(responses[i].clone()); // Fresh byte[] per Response
+            if(SteamConnector.decodeAppDetails(i + 1, raw).isValid()) {
+                valid++;
+            }
+        }
+        check(valid, responses.length);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Method to decode every response on the shared DecodeStage from pooled buffers
+     * @return elapsed nanos once the last response is decoded
+     */
+    private static long decodeOnStage(byte[][] responses) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(responses.length);
+        AtomicInteger valid = new AtomicInteger();
+        DecodeStage stage = DecodeStage.getShared();
+
+        long start = System.nanoTime();
+        for(int i = 0; i < responses.length; i++) {
+            DecodeStage.Buffer raw = DecodeStage.acquireBuffer();
+            raw.write(responses[i]);
+            stage.decodeAppDetails(i + 1, raw, entry -> {
+                if(entry != null && entry.isValid()) {
+                    valid.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        check(valid.get(), responses.length);
+        return elapsed;
+    }
+
+    private static void report(String name, int count, long totalBytes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-22s %8.0f Responses/s %8.1f MiB/s (%.2fs)%n", name, count / seconds, totalBytes / 1048576.0 / seconds, seconds);
+    }
+
+    private static void check(int valid, int expected) {
+        if(valid != expected) {
+            throw new IllegalStateException(String.format("Decoded %d Valid Apps, Expected %d", valid, expected));
+        }
+    }
+
+    /**
+     * Method to build a synthetic appdetails response
+     * @param appid is the response appid
+     * @param descriptionKiB is the size of the filler description
+     * @param random is the filler source
+     * @return UTF-8 response body
+     */
+    private static byte[] createResponse(int appid, int descriptionKiB, Random random) {
+        StringBuilder description = new StringBuilder(descriptionKiB * 1024);
+        while(description.length() < descriptionKiB * 1024) {
+            description.append("<p>Lorem ipsum \\\"dolor\\\" sit amet ").append(random.nextInt(100000)).append(" \\u00e9t\\u00e9 <br /></p>");
+        }
+
+        String cdn = "https://cdn.akamai.steamstatic.com/steam/apps/" + appid;
+        String json = "{\"" + appid + "\":{\"success\":true,\"data\":{"
+                + "\"type\":\"game\",\"name\":\"App " + appid + "\",\"steam_appid\":" + appid + ",\"required_age\":0,\"is_free\":false,"
+                + "\"detailed_description\":\"" + description + "\","
+                + "\"about_the_game\":\"" + description + "\","
+                + "\"short_description\":\"Short description of app " + appid + "\","
+                + "\"supported_languages\":\"English<strong>*</strong>, French, German\","
+                + "\"header_image\":\"" + cdn + "/header.jpg?t=1700000000\","
+                + "\"developers\":[\"Studio\"],\"publishers\":[\"Publisher\"],"
+                + "\"platforms\":{\"windows\":true,\"mac\":false,\"linux\":true},"
+                + "\"categories\":[{\"id\":2,\"description\":\"Single-player\"},{\"id\":22,\"description\":\"Steam Achievements\"}],"
+                + "\"screenshots\":[{\"id\":0,\"path_thumbnail\":\"" + cdn + "/ss_0.600x338.jpg\",\"path_full\":\"" + cdn + "/ss_0.1920x1080.jpg\"}],"
+                + "\"release_date\":{\"coming_soon\":false,\"date\":\"1 Jan, 2020\"},"
+                + "\"background\":\"" + cdn + "/page_bg_generated_v6b.jpg?t=1700000000\""
+                + "}}}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,116 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static db.ConnectorInterface.*;
+import static db.Queries.*;
+
+/**
+ * Class - Runnable benchmark of the write cost App History adds to batched app writes
+ * > Writes every app in batches through AppWriter, alternating rounds without and with AppHistory
+ * > Each round really changes the same share of apps (the rest are rewritten unchanged), so only those get history rows
+ * > Prints the time of each round, the overhead of history over the rounds without it and AppWriter's own history share
+ * > Migrates and fills the given database, so point it at a scratch database
+ *
+ * Usage: java -cp <classes> db.HistoryBenchmark <address> <port> <database> <username> <password> [apps] [batch size] [changed share]
+ */
+public class HistoryBenchmark {
+    private static final int MEASURED_ROUNDS = 4; // Alternating Without and With History, After One Warmup Round
+    private static final int INSERT_CHUNK_SIZE = 5000;
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 5) {
+            System.out.println("Usage: db.HistoryBenchmark <address> <port> <database> <username> <password> [apps] [batch size] [changed share]");
+            System.exit(2);
+        }
+        int apps = args.length > 5 ? Integer.parseInt(args[5]) : 20000;
+        int batchSize = args.length > 6 ? Integer.parseInt(args[6]) : 500;
+        double changedShare = args.length > 7 ? Double.parseDouble(args[7]) : 0.1;
+
+        Logger logger = new Logger();
+        Connection conn = DBConnector.connect(new DatabaseInfo(args[0], args[1], args[3], args[4], args[2]));
+        if(!Migrations.migrate(conn, logger)) {
+            System.out.println("Failed to Migrate Benchmark Database");
+            System.exit(1);
+        }
+        AppHistory history = new AppHistory(conn, logger, 24);
+        history.maintainPartitions();
+        insertApps(conn, apps);
+
+        AppWriter plainWriter = new AppWriter(conn, logger, null, null, null, "history-benchmark");
+        AppWriter historyWriter = new AppWriter(conn, logger, null, history, null, "history-benchmark");
+        int[] versions = new int[apps + 1];
+        Random random = new Random(42);
+
+        writeRound(plainWriter, versions, 0, 1.0, batchSize, random); // Warmup, Gives Every App Details
+        plainWriter.logTiming();
+
+        long plainNanos = 0;
+        long historyNanos = 0;
+        for(int round = 1; round <= MEASURED_ROUNDS; round++) {
+            boolean withHistory = round % 2 == 0;
+            long nanos = writeRound(withHistory ? historyWriter : plainWriter, versions, round, changedShare, batchSize, random);
+            if(withHistory) {
+                historyNanos += nanos;
+                historyWriter.logTiming(); // Logs History Share of the Write Time
+            }
+            else {
+                plainNanos += nanos;
+                plainWriter.logTiming();
+            }
+            System.out.printf("Round %d %-15s %8.0fms%n", round, withHistory ? "With History" : "Without History", nanos / 1e6);
+        }
+
+        System.out.printf("%d Apps in Batches of %d, %.0f%% Changed per Round - History Overhead: %+.1f%%%n",
+                apps, batchSize, 100 * changedShare, 100.0 * (historyNanos - plainNanos) / plainNanos);
+        conn.close();
+        logger.closeLogFile();
+    }
+
+    /**
+     * Method to write every app once, changing the details of a share of them
+     * @return elapsed nanos
+     */
+    private static long writeRound(AppWriter writer, int[] versions, int round, double changedShare, int batchSize, Random random) {
+        long start = System.nanoTime();
+        for(int appid = 1; appid < versions.length; appid++) {
+            if(random.nextDouble() < changedShare) {
+                versions[appid] = round;
+            }
+            String cdn = "https://cdn.akamai.steamstatic.com/steam/apps/" + appid;
+            writer.add(new AppEntry(appid, "game", cdn + "/header.jpg?t=" + versions[appid], cdn + "/page_bg_generated_v6b.jpg?t=" + versions[appid]));
+
+            if(appid % batchSize == 0 && writer.flush() == null) {
+                throw new IllegalStateException("Failed to Write Batch Ending at " + appid);
+            }
+        }
+        if(writer.flush() == null) {
+            throw new IllegalStateException("Failed to Write Last Batch");
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Method to add the benchmark apps if missing
+     */
+    private static void insertApps(Connection conn, int apps) throws Exception {
+        ArrayList<App> chunk = new ArrayList<>(INSERT_CHUNK_SIZE);
+        for(int appid = 1; appid <= apps; appid++) {
+            chunk.add(new App(appid, "App " + appid));
+            if(chunk.size() == INSERT_CHUNK_SIZE || appid == apps) {
+                try(PreparedStatement pStmt = conn.prepareStatement(getMultiRowInsertQuery(insertNewAppIgnore, chunk.size(), 2))) {
+                    int cnt = 1;
+                    for(App app : chunk) {
+                        pStmt.setInt(cnt++, app.appid());
+                        pStmt.setString(cnt++, app.name());
+                    }
+                    pStmt.executeUpdate();
+                }
+                chunk.clear();
+            }
+        }
+    }
+}
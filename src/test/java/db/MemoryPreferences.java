@@ -0,0 +1,79 @@
+package db;
+
+import java.util.HashMap;
+import java.util.prefs.AbstractPreferences;
+import java.util.prefs.Preferences;
+import java.util.prefs.PreferencesFactory;
+
+/**
+ * Class - Preferences kept in memory only, so harness runs neither read nor change the user's saved settings
+ * > Install with Factory.install() before anything touches Preferences (e.g. the RateController's learned rate)
+ */
+public class MemoryPreferences extends AbstractPreferences {
+    private final HashMap<String, String> values = new HashMap<>();
+    private final HashMap<String, MemoryPreferences> children = new HashMap<>();
+
+    /**
+     * Class - PreferencesFactory handing out fresh in-memory roots for the process
+     * > Preferences creates the one instance when first used, so the roots are made then and not when this class loads
+     */
+    public static class Factory implements PreferencesFactory {
+        private final Preferences userRoot = new MemoryPreferences(null, "");
+        private final Preferences systemRoot = new MemoryPreferences(null, "");
+
+        /**
+         * Method to make Preferences use in-memory nodes for the rest of the process
+         * > Lives here and not in MemoryPreferences, whose initialization would initialize Preferences (and its factory) first
+         */
+        public static void install() {
+            System.setProperty("java.util.prefs.PreferencesFactory", Factory.class.getName());
+        }
+
+        public Preferences userRoot() {
+            return userRoot;
+        }
+
+        public Preferences systemRoot() {
+            return systemRoot;
+        }
+    }
+
+    private MemoryPreferences(MemoryPreferences parent, String name) {
+        super(parent, name);
+    }
+
+    protected void putSpi(String key, String value) {
+        values.put(key, value);
+    }
+
+    protected String getSpi(String key) {
+        return values.get(key);
+    }
+
+    protected void removeSpi(String key) {
+        values.remove(key);
+    }
+
+    protected void removeNodeSpi() {
+        values.clear();
+        if(parent() != null) {
+            ((MemoryPreferences) parent()).children.remove(name());
+        }
+    }
+
+    protected String[] keysSpi() {
+        return values.keySet().toArray(new String[0]);
+    }
+
+    protected String[] childrenNamesSpi() {
+        return children.keySet().toArray(new String[0]);
+    }
+
+    protected AbstractPreferences childSpi(String name) {
+        return children.computeIfAbsent(name, n -> new MemoryPreferences(this, n));
+    }
+
+    protected void syncSpi() {}
+
+    protected void flushSpi() {}
+}
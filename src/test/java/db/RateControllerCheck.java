@@ -0,0 +1,144 @@
+package db;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Class - Runnable check of the updater's Steam calls adapting to a local stub whose rate limit changes during the run
+ * > Apps are fetched through SteamConnector pointed at the stub, so pacing, 429 retries and the circuit breaker all take part
+ * > The stub answers 429 once more calls than its current limit were made in the last minute, like Steam's per-IP limit
+ * > Runs on a SimulatedTimeSource (each stub call takes CALL_MILLIS), so two hours of calls take seconds
+ * > Starts from the default rate with in-memory preferences and logs to memory only, so runs leave nothing behind
+ * > Prints the stub's answers and the controller's rate per phase and fails if any phase has too many 429s,
+ *   or neither reaches a share of the limit nor climbs towards it (additive increase is about 1 call/min per minute)
+ *
+ * Usage: java -cp <classes> db.RateControllerCheck
+ */
+public class RateControllerCheck {
+    // Stub Limits (Calls per Minute) and How Long Each Holds (Minutes)
+    private static final int[] PHASE_LIMITS = {60, 20, 100, 40};
+    private static final int PHASE_MINUTES = 30;
+
+    // Simulated Latency of Each Call
+    private static final long CALL_MILLIS = 100;
+
+    // Pass Criteria per Phase
+    private static final double MAX_REJECTED_SHARE = 0.10; // At Most 10% of Calls Answered With 429
+    private static final double MIN_THROUGHPUT_SHARE = 0.40; // At Least 40% of the Limit (AIMD Oscillates Under It)
+    private static final double MIN_CLIMB_PER_MINUTE = 0.5; // Or the Rate Climbed at Least 0.5 Calls/Min per Minute
+
+    // Stub Server State {Guarded by RateControllerCheck.class}
+    private static final ArrayDeque<Long> acceptedTimes = new ArrayDeque<>();
+    private static int limit;
+    private static int accepted;
+    private static int rejected;
+
+    public static void main(String[] args) throws Exception {
+        MemoryPreferences.Factory.install(); // Fresh Learned Rate, User Settings Untouched
+        System.setProperty("sun.net.httpserver.nodelay", "true"); // Small Responses Without Nagle Delays
+        SimulatedTimeSource time = new SimulatedTimeSource();
+        Utils.setTimeSource(time);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/appdetails", RateControllerCheck::answer);
+        server.start();
+        System.setProperty("steam.store.url", "http://127.0.0.1:" + server.getAddress().getPort()); // Before SteamConnector Loads
+
+        Logger logger = new Logger(new LogBuffer(10000), false);
+        RateController controller = new RateController(logger);
+        SteamConnector.setRateController(controller);
+        SteamConnector.setCircuitLogger(logger);
+        CircuitBreaker circuit = SteamConnector.getAppDetailsCircuit();
+        System.out.printf("Start Rate: %.1f Calls/Min%n", controller.getRate());
+
+        boolean passed = true;
+        int appid = 0;
+        for(int phaseLimit : PHASE_LIMITS) {
+            synchronized(RateControllerCheck.class) {
+                limit = phaseLimit;
+                accepted = 0;
+                rejected = 0;
+            }
+
+            double startRate = controller.getRate();
+            int failed = 0;
+            long phaseEnd = time.currentTimeMillis() + PHASE_MINUTES * 60 * 1000L;
+            while(time.currentTimeMillis() < phaseEnd) {
+                AppEntry entry = SteamConnector.getAppInfoFromAppid(++appid, logger);
+                if(entry == null) {
+                    failed++;
+                    time.sleep(circuit.getRemainingOpenMillis()); // Pause Like the Update While the Circuit is Open
+                }
+            }
+
+            int phaseAccepted;
+            int phaseRejected;
+            synchronized(RateControllerCheck.class) {
+                phaseAccepted = accepted;
+                phaseRejected = rejected;
+            }
+            double perMinute = (double) phaseAccepted / PHASE_MINUTES;
+            double rejectedShare = (double) phaseRejected / Math.max(1, phaseAccepted + phaseRejected);
+            boolean climbing = controller.getRate() - startRate >= PHASE_MINUTES * MIN_CLIMB_PER_MINUTE;
+            boolean phasePassed = rejectedShare <= MAX_REJECTED_SHARE && (perMinute >= phaseLimit * MIN_THROUGHPUT_SHARE || climbing);
+            passed &= phasePassed;
+            System.out.printf("Limit %3d/Min: %6.1f Accepted/Min (%3.0f%% of Limit), %4d Rejected (%4.1f%%), %3d Failed Apps, Rate %5.1f -> %5.1f/Min - %s%n",
+                    phaseLimit, perMinute, 100 * perMinute / phaseLimit, phaseRejected, 100 * rejectedShare, failed, startRate, controller.getRate(),
+                    phasePassed ? "OK" : "FAIL");
+        }
+
+        server.stop(0);
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Method to answer an app details call with the app or 429 (Stub Thread)
+     */
+    private static void answer(HttpExchange exchange) throws IOException {
+        try {
+            Utils.getTimeSource().sleep(CALL_MILLIS); // Call Latency
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String query = exchange.getRequestURI().getQuery();
+        String appid = query.substring(query.indexOf('=') + 1);
+        byte[] body = admit() ? ("{\"" + appid + "\":{\"success\":true,\"data\":{\"type\":\"game\","
+                + "\"header_image\":\"https://cdn.akamai.steamstatic.com/steam/apps/" + appid + "/header.jpg\","
+                + "\"background\":\"https://cdn.akamai.steamstatic.com/steam/apps/" + appid + "/page_bg_generated_v6b.jpg\"}}}")
+                .getBytes(StandardCharsets.UTF_8) : null;
+
+        exchange.sendResponseHeaders(body != null ? 200 : 429, body != null ? body.length : -1);
+        if(body != null) {
+            exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Method to admit a call if fewer than the current limit were accepted in the last minute (Stub Thread)
+     * @return true if the call is accepted
+     */
+    private static synchronized boolean admit() {
+        long now = Utils.getTimeSource().currentTimeMillis();
+        while(!acceptedTimes.isEmpty() && now - acceptedTimes.peekFirst() >= 60 * 1000) {
+            acceptedTimes.pollFirst();
+        }
+        if(acceptedTimes.size() >= limit) {
+            rejected++;
+            return false;
+        }
+        acceptedTimes.addLast(now);
+        accepted++;
+        return true;
+    }
+}
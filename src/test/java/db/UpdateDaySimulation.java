@@ -0,0 +1,301 @@
+package db;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static db.ConnectorInterface.*;
+
+/**
+ * Class - Runnable simulation of a full day of scheduled update cycles against a local Steam stub
+ * > An UpdateScheduler runs a LocalConnector (embedded database in a temp directory) on a SimulatedTimeSource, so the day takes seconds
+ * > The stub's app list grows by NEW_APPS_PER_HOUR and renames RENAMED_PER_HUNDRED of every hundred apps every RENAME_STEP_HOURS,
+ *   every INVALID_EVERY-th app is unknown to Steam, and app details calls past the per-minute limit get a 429
+ * > Starts from the default rate with in-memory preferences and logs to memory only, so runs leave nothing behind
+ * > Prints each cycle and fails if apps listed at the last app list sync are missing, unfetched or not renamed,
+ *   or too many calls got a 429
+ *
+ * Usage: java -cp <classes> db.UpdateDaySimulation [apps] [interval hours] [limit per minute]
+ */
+public class UpdateDaySimulation {
+    // Stub Catalog Changes Through the Day
+    private static final int NEW_APPS_PER_HOUR = 10;
+    private static final int RENAME_STEP_HOURS = 4;
+    private static final int RENAMED_PER_HUNDRED = 5;
+    private static final int INVALID_EVERY = 25;
+
+    // Simulated Latency of Each Call
+    private static final long CALL_MILLIS = 100;
+
+    // Pass Criteria
+    private static final double MAX_REJECTED_SHARE = 0.10; // At Most 10% of Calls Answered With 429
+    private static final long MAX_REAL_MINUTES = 15; // Give Up if the Day Takes Longer in Real Time
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    // Record for Storing a Finished Cycle
+    private record Cycle(long start, long end, UpdateResults results, int backlog, boolean synced) {}
+
+    // Stub Server State {Guarded by UpdateDaySimulation.class}
+    private static final ArrayDeque<Long> acceptedTimes = new ArrayDeque<>();
+    private static long dayStart;
+    private static int baseApps;
+    private static int limit;
+    private static int accepted;
+    private static int rejected;
+    private static int appListCalls;
+    private static long lastListedAt;
+
+    public static void main(String[] args) throws Exception {
+        int apps = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long intervalMillis = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 6) * HOUR_MILLIS);
+        int limitPerMinute = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+
+        MemoryPreferences.Factory.install(); // Fresh Learned Rate, User Settings Untouched
+        System.setProperty("sun.net.httpserver.nodelay", "true"); // Small Responses Without Nagle Delays
+        long start = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        SimulatedTimeSource time = new SimulatedTimeSource(start);
+        Utils.setTimeSource(time);
+        synchronized(UpdateDaySimulation.class) {
+            dayStart = start;
+            baseApps = apps;
+            limit = limitPerMinute;
+        }
+
+        // Stub Steam (Before SteamConnector Loads)
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ISteamApps/GetAppList/v2/", UpdateDaySimulation::answerAppList);
+        server.createContext("/api/appdetails", UpdateDaySimulation::answerAppDetails);
+        server.start();
+        String stubUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        System.setProperty("steam.api.url", stubUrl);
+        System.setProperty("steam.store.url", stubUrl);
+
+        // Updater on an Embedded Database
+        Path dir = Files.createTempDirectory("steam-day-simulation");
+        Path database = dir.resolve("apps.db");
+        LogBuffer logBuffer = new LogBuffer(100000);
+        Logger logger = new Logger(logBuffer, false);
+        LocalConnector connector = new LocalConnector(logger);
+        if(!connector.openConnection(new DatabaseInfo(EmbeddedSink.ADDRESS_PREFIX + database, "", "", "", ""))) {
+            System.out.println("Failed to Open Simulation Database");
+            System.exit(1);
+        }
+
+        // Run Cycles Until the Next One Would Start After the Day
+        long dayEnd = start + DAY_MILLIS;
+        ArrayList<Cycle> cycles = new ArrayList<>();
+        CountDownLatch dayOver = new CountDownLatch(1);
+        UpdateScheduler[] scheduler = new UpdateScheduler[1];
+        scheduler[0] = new UpdateScheduler(connector, intervalMillis, new ArrayList<>(), new UpdateScheduler.Listener() {
+            private long cycleStart;
+            private int listCallsAtStart;
+
+            public void updateStarted() {
+                cycleStart = time.currentTimeMillis();
+                listCallsAtStart = getAppListCalls();
+            }
+
+            public void updateFinished(UpdateResults results) {
+                cycles.add(new Cycle(cycleStart, time.currentTimeMillis(), results, connector.getBacklog(), getAppListCalls() > listCallsAtStart));
+            }
+
+            public void nextUpdateScheduled(long timeMillis) {
+                if(timeMillis >= dayEnd) {
+                    scheduler[0].stop(false);
+                    dayOver.countDown();
+                }
+            }
+        }, logger);
+        scheduler[0].start();
+
+        boolean finished = dayOver.await(MAX_REAL_MINUTES, TimeUnit.MINUTES);
+        if(!finished) {
+            scheduler[0].stop(true);
+        }
+        connector.closeConnection();
+        server.stop(0);
+
+        // Report Cycles
+        DateTimeFormatter clock = DateTimeFormatter.ofPattern("HH:mm");
+        for(int i = 0; i < cycles.size(); i++) {
+            Cycle cycle = cycles.get(i);
+            System.out.printf("Cycle %2d %s -> %s (%4d Min): %5d New, %5d Updated, %5d Waiting%s%n", i + 1,
+                    clock.format(Instant.ofEpochMilli(cycle.start()).atZone(ZoneId.systemDefault())),
+                    clock.format(Instant.ofEpochMilli(cycle.end()).atZone(ZoneId.systemDefault())),
+                    (cycle.end() - cycle.start()) / 60000, cycle.results().newApps(), cycle.results().updatedApps(), cycle.backlog(),
+                    cycle.synced() ? ", App List Synced" : "");
+        }
+
+        // Check the Database Against the Last App List Served
+        long listedAt;
+        int callsAccepted;
+        int callsRejected;
+        synchronized(UpdateDaySimulation.class) {
+            listedAt = lastListedAt;
+            callsAccepted = accepted;
+            callsRejected = rejected;
+        }
+        int listed = countListed(listedAt);
+        int stored = 0;
+        int fetched = 0;
+        int invalid = 0;
+        int waiting = 0;
+        int wrongNames = 0;
+        try(Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+            PreparedStatement pStmt = conn.prepareStatement("SELECT appid, name, type FROM AppInfo")) {
+            ResultSet rs = pStmt.executeQuery();
+            while(rs.next()) {
+                int appid = rs.getInt(1);
+                String type = rs.getString(3);
+                stored++;
+                if(type == null) {
+                    waiting++;
+                }
+                else if(type.equals("invalid")) {
+                    invalid++;
+                }
+                else {
+                    fetched++;
+                }
+                if(appid <= listed && !rs.getString(2).equals(getName(appid, listedAt))) {
+                    wrongNames++;
+                }
+            }
+        }
+
+        double rejectedShare = (double) callsRejected / Math.max(1, callsAccepted + callsRejected);
+        System.out.printf("%d Cycles, %d Apps Listed at Last Sync, %d Stored: %d Fetched, %d Invalid, %d Waiting, %d Not Renamed%n",
+                cycles.size(), listed, stored, fetched, invalid, waiting, wrongNames);
+        System.out.printf("Steam Calls: %d Accepted, %d Rejected (%.1f%%), %d Errors Logged%n",
+                callsAccepted, callsRejected, 100 * rejectedShare, logBuffer.size(Logger.LOG_TYPE_ERROR, 0));
+
+        boolean passed = finished && !cycles.isEmpty() && stored == listed && waiting == 0 && wrongNames == 0 && rejectedShare <= MAX_REJECTED_SHARE;
+        if(!finished) {
+            System.out.printf("Day Not Finished Within %d Real Minutes%n", MAX_REAL_MINUTES);
+        }
+        deleteDirectory(dir);
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // *** Stub Steam ***
+
+    /**
+     * Method to answer the app list with the apps released by now (Stub Thread)
+     */
+    private static void answerAppList(HttpExchange exchange) throws IOException {
+        long now = Utils.getTimeSource().currentTimeMillis();
+        int listed = countListed(now);
+
+        StringBuilder json = new StringBuilder("{\"applist\":{\"apps\":[");
+        for(int appid = 1; appid <= listed; appid++) {
+            json.append(appid == 1 ? "" : ",").append("{\"appid\":").append(appid).append(",\"name\":\"").append(getName(appid, now)).append("\"}");
+        }
+        json.append("]}}");
+
+        synchronized(UpdateDaySimulation.class) {
+            appListCalls++;
+            lastListedAt = now;
+        }
+        send(exchange, 200, json.toString());
+    }
+
+    /**
+     * Method to answer an app details call with the app, an unknown app or 429 (Stub Thread)
+     */
+    private static void answerAppDetails(HttpExchange exchange) throws IOException {
+        try {
+            Utils.getTimeSource().sleep(CALL_MILLIS); // Call Latency
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(!admit()) {
+            send(exchange, 429, null);
+            return;
+        }
+
+        String query = exchange.getRequestURI().getQuery();
+        int appid = Integer.parseInt(query.substring(query.indexOf('=') + 1));
+        if(appid % INVALID_EVERY == 0) {
+            send(exchange, 200, "{\"" + appid + "\":{\"success\":false}}");
+            return;
+        }
+
+        String cdn = "https://cdn.akamai.steamstatic.com/steam/apps/" + appid;
+        send(exchange, 200, "{\"" + appid + "\":{\"success\":true,\"data\":{\"type\":\"" + (appid % 3 == 0 ? "dlc" : "game") + "\","
+                + "\"header_image\":\"" + cdn + "/header.jpg\",\"background\":\"" + cdn + "/page_bg_generated_v6b.jpg\"}}}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    /**
+     * Method to admit a call if fewer than the limit were accepted in the last minute (Stub Thread)
+     * @return true if the call is accepted
+     */
+    private static synchronized boolean admit() {
+        long now = Utils.getTimeSource().currentTimeMillis();
+        while(!acceptedTimes.isEmpty() && now - acceptedTimes.peekFirst() >= 60 * 1000) {
+            acceptedTimes.pollFirst();
+        }
+        if(acceptedTimes.size() >= limit) {
+            rejected++;
+            return false;
+        }
+        acceptedTimes.addLast(now);
+        accepted++;
+        return true;
+    }
+
+    /**
+     * Method to get the number of apps released by a time (appids 1 to n)
+     */
+    private static synchronized int countListed(long timeMillis) {
+        return baseApps + (int) (Math.max(0, timeMillis - dayStart) * NEW_APPS_PER_HOUR / HOUR_MILLIS);
+    }
+
+    /**
+     * Method to get the name of an app at a time (RENAMED_PER_HUNDRED of every hundred apps are renamed every RENAME_STEP_HOURS)
+     */
+    private static synchronized String getName(int appid, long timeMillis) {
+        int step = (int) (Math.max(0, timeMillis - dayStart) / (RENAME_STEP_HOURS * HOUR_MILLIS));
+        return appid % 100 < RENAMED_PER_HUNDRED && step > 0 ? "App " + appid + " (Renamed " + step + ")" : "App " + appid;
+    }
+
+    private static synchronized int getAppListCalls() {
+        return appListCalls;
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try(var files = Files.list(dir)) {
+            for(Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}